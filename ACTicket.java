@@ -1,71 +1,80 @@
+import java.time.LocalDate;
+
 /**
  * AC class ticket - extends Ticket
  * Demonstrates INHERITANCE and POLYMORPHISM
  */
 public class ACTicket extends Ticket {
+    private static final TravelClass[] CLASSES = TravelClass.values(); // values() copies on every call
+
     // Additional fields specific to AC ticket
-    private String acTier;
-    private double acCharge;
+    private final String acTier;
+    private final TravelClass travelClass;
+    private final double acCharge;
 
     // Constructor
-    public ACTicket(String ticketId, String passengerName, int age, String trainNumber, double baseFare, String acTier) {
-        super(ticketId, passengerName, age, trainNumber, baseFare);
+    public ACTicket(long ticketNumber, String passengerName, int age, String trainNumber, double baseFare,
+                    String acTier) {
+        this(ticketNumber, passengerName, age, trainNumber, null, baseFare, acTier);
+    }
+
+    public ACTicket(long ticketNumber, String passengerName, int age, String trainNumber, LocalDate journeyDate,
+                    double baseFare, String acTier) {
+        // Set AC charge from the tariff table based on tier
+        this(ticketNumber, passengerName, age, trainNumber, journeyDate, baseFare, acTier,
+                FareEngine.getDefault().getClassCharge(tierClass(acTier)));
+    }
+
+    /**
+     * Restores a ticket with the AC charge it was sold with (snapshots keep it across tariff changes)
+     */
+    ACTicket(long ticketNumber, String passengerName, int age, String trainNumber, LocalDate journeyDate,
+             double baseFare, String acTier, double acCharge) {
+        super(ticketNumber, passengerName, age, trainNumber, journeyDate, baseFare);
         this.acTier = acTier;
-        
-        // Set AC charge based on tier
-        switch (acTier) {
-            case "1A":
-                this.acCharge = 500.0;
-                break;
-            case "2A":
-                this.acCharge = 300.0;
-                break;
-            case "3A":
-                this.acCharge = 200.0;
-                break;
-            default:
-                this.acCharge = 200.0;
-        }
+        this.travelClass = tierClass(acTier);
+        this.acCharge = acCharge;
     }
 
     // POLYMORPHISM - Overriding abstract method with AC-specific logic
     @Override
     public double calculateFare() {
-        double totalFare = getBaseFare() + acCharge;
-        
-        // Apply age-based discount
-        if (getAge() < 12) {
-            totalFare = totalFare * 0.5; // 50% discount for children
-        } else if (getAge() >= 60) {
-            totalFare = totalFare * 0.7; // 30% discount for senior citizens (less discount than sleeper)
-        }
-        
-        return totalFare;
+        // Base fare + AC charge, then the age-based discount from the tariff table
+        // (50% for children, 30% for senior citizens - less discount than sleeper)
+        return FareEngine.getDefault().applyDiscount(travelClass, getAge(), getBaseFare() + acCharge,
+                FareEngine.Quota.GENERAL);
     }
 
-    // Override displayTicketDetails to add AC-specific information
+    // Override appendDetails to add AC-specific information
     @Override
-    public void displayTicketDetails() {
-        super.displayTicketDetails();
-        System.out.println("AC Tier         : " + acTier);
-        System.out.println("AC Charge       : ₹" + acCharge);
-        System.out.println("====================================\n");
+    protected void appendDetails(StringBuilder out) {
+        super.appendDetails(out);
+        out.append("AC Tier         : ").append(acTier).append('\n');
+        out.append("AC Charge       : ₹").append(acCharge).append('\n');
     }
 
-    // Getters and Setters
+    // Getters only - the tier and AC charge are fixed when the ticket is created
     public String getAcTier() {
         return acTier;
     }
 
-    public void setAcTier(String acTier) {
-        this.acTier = acTier;
+    public TravelClass getTravelClass() {
+        return travelClass;
     }
 
     public double getAcCharge() {
         return acCharge;
     }
 
-    public void setAcCharge(double acCharge) {
-        this.acCharge = acCharge;
+    /**
+     * Maps a tier code to its class, unknown tiers are treated as Third AC (3A)
+     */
+    private static TravelClass tierClass(String acTier) {
+        for (TravelClass candidate : CLASSES) {
+            if (candidate.isAc() && candidate.getCode().equals(acTier)) {
+                return candidate;
+            }
+        }
+        return TravelClass.THIRD_AC;
     }
 }
@@ -0,0 +1,195 @@
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Admission control for bookings: a token bucket per train, a bounded wait and fast rejection
+ *
+ * Each train admits ratePerTrain bookings per second on average and up to burst at once. A booking
+ * that finds its train's bucket empty may wait for its token - but only if the token is due within
+ * maxWaitMillis (its deadline) and fewer than maxQueued bookings are already waiting. Otherwise it is
+ * shed at once with an OverloadedException saying when to retry, so a surge costs a few hundred
+ * nanoseconds per rejected request instead of a growing backlog of threads and memory.
+ *
+ * Buckets use the virtual scheduling form of the token bucket (GCRA): one timestamp per train,
+ * the time the bucket would be full again, updated with a compare-and-set - no locks, no timer thread.
+ * A waiting booking reserves its future token up front, so waiters are admitted in arrival order.
+ * A bucket that is full again holds nothing a new one wouldn't, so idle trains' buckets are evicted
+ * once there are many of them - made-up train numbers can't grow the table without bound.
+ */
+public class AdmissionController {
+    private static final int MIN_SWEEP_SIZE = 1024;
+    private static final long EVICTED = Long.MIN_VALUE; // set on a bucket once it left the table
+    private final long intervalNanos;      // time to earn one token
+    private final long burstNanos;         // how far ahead of the clock a train may be booked
+    private final long maxWaitNanos;
+    private final int maxQueued;
+    private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private volatile int sweepAt = MIN_SWEEP_SIZE; // bucket count that triggers the next eviction pass
+    private final AtomicInteger queued = new AtomicInteger();
+    private final LongAdder admitted = new LongAdder();       // admitted without waiting
+    private final LongAdder admittedQueued = new LongAdder(); // admitted after waiting for a token
+    private final LongAdder shed = new LongAdder();           // rejected with a retry-after hint
+
+    public AdmissionController(double ratePerTrain, int burst, int maxQueued, long maxWaitMillis) {
+        if (ratePerTrain <= 0 || burst < 1 || maxQueued < 0 || maxWaitMillis < 0) {
+            throw new IllegalArgumentException("Admission limits must be positive (rate " + ratePerTrain
+                    + "/s, burst " + burst + ", queue " + maxQueued + ", wait " + maxWaitMillis + " ms)!");
+        }
+        this.intervalNanos = Math.max(1, Math.round(1_000_000_000.0 / ratePerTrain));
+        this.burstNanos = intervalNanos * (burst - 1);
+        this.maxQueued = maxQueued;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+    }
+
+    /**
+     * Returns once the booking may go ahead, after waiting for its token if needed
+     * Throws OverloadedException if the token is not due before the deadline or the wait queue is full,
+     * BookingInterruptedException if the thread is interrupted while it waits (not counted as shed)
+     */
+    public void admit(String trainNumber) {
+        String key = TicketRepository.normalizeTrainNumber(trainNumber);
+        AtomicLong bucket = bucketOf(key);
+        while (true) {
+            long now = System.nanoTime();
+            long full = bucket.get();
+            if (full == EVICTED) { // lost a race with evictIdle - start over on the train's new bucket
+                bucket = bucketOf(key);
+                continue;
+            }
+            long start = full - now < 0 ? now : full; // already full: nothing carries over
+            long wait = start - burstNanos - now;      // > 0: the bucket is empty until then
+            if (wait <= 0) {
+                if (bucket.compareAndSet(full, start + intervalNanos)) {
+                    admitted.increment();
+                    return;
+                }
+                continue;
+            }
+            if (wait > maxWaitNanos) {
+                throw shed(wait, "Train " + trainNumber + " is taking too many bookings right now");
+            }
+            if (queued.incrementAndGet() > maxQueued) {
+                queued.decrementAndGet();
+                throw shed(wait, "Too many bookings are waiting");
+            }
+            if (!bucket.compareAndSet(full, start + intervalNanos)) {
+                queued.decrementAndGet();
+                continue;
+            }
+            try {
+                awaitToken(now + wait);
+            } catch (BookingInterruptedException e) {
+                bucket.compareAndSet(start + intervalNanos, full); // hand the token back if nobody queued behind
+                throw e;
+            } finally {
+                queued.decrementAndGet();
+            }
+            admittedQueued.increment();
+            return;
+        }
+    }
+
+    /**
+     * Per train: the time its bucket will be full again if no other booking arrives
+     */
+    private AtomicLong bucketOf(String key) {
+        AtomicLong bucket = buckets.get(key);
+        if (bucket != null) {
+            return bucket;
+        }
+        if (buckets.size() >= sweepAt) {
+            evictIdle();
+        }
+        return buckets.computeIfAbsent(key, k -> new AtomicLong(System.nanoTime()));
+    }
+
+    /**
+     * Drops the buckets that are full again - their trains start over with a new, full bucket
+     * The next pass comes once the table has doubled, so eviction costs O(1) per new bucket
+     */
+    private synchronized void evictIdle() {
+        if (buckets.size() < sweepAt) {
+            return; // another thread just swept
+        }
+        long now = System.nanoTime();
+        buckets.forEach((key, bucket) -> {
+            long full = bucket.get();
+            if (full != EVICTED && full - now < 0 && bucket.compareAndSet(full, EVICTED)) {
+                buckets.remove(key, bucket);
+            }
+        });
+        sweepAt = Math.max(MIN_SWEEP_SIZE, buckets.size() * 2);
+    }
+
+    /**
+     * Trains with a bucket right now (busy ones, plus idle ones not evicted yet)
+     */
+    int getTrackedTrains() {
+        return buckets.size();
+    }
+
+    /**
+     * Parks until the token is due; an interrupt ends the wait with the flag still set
+     */
+    private static void awaitToken(long dueNanos) {
+        long remaining;
+        while ((remaining = dueNanos - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+            if (Thread.currentThread().isInterrupted()) {
+                throw new BookingInterruptedException("Interrupted while waiting to book",
+                        new InterruptedException());
+            }
+        }
+    }
+
+    private OverloadedException shed(long waitNanos, String reason) {
+        shed.increment();
+        long retryAfterMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(waitNanos - maxWaitNanos) + 1);
+        return new OverloadedException(reason + " - please retry in " + retryAfterMillis + " ms",
+                retryAfterMillis);
+    }
+
+    public long getAdmitted() {
+        return admitted.sum();
+    }
+
+    public long getAdmittedQueued() {
+        return admittedQueued.sum();
+    }
+
+    public long getShed() {
+        return shed.sum();
+    }
+
+    /**
+     * Bookings waiting for a token right now
+     */
+    public int getQueued() {
+        return queued.get();
+    }
+
+    public void appendSummary(StringBuilder out) {
+        out.append("🚦 Admitted / waited   : ").append(getAdmitted()).append(" / ").append(getAdmittedQueued())
+                .append(" (").append(getQueued()).append(" waiting now)\n");
+        out.append("🛑 Shed (retry later)  : ").append(getShed()).append(String.format(Locale.ROOT,
+                " (limit %.1f/s per train, burst %d, wait ≤ %d ms, queue ≤ %d)%n", 1e9 / intervalNanos,
+                burstNanos / intervalNanos + 1, TimeUnit.NANOSECONDS.toMillis(maxWaitNanos), maxQueued));
+    }
+
+    public void appendPrometheus(StringBuilder out) {
+        out.append("# HELP railway_admission_requests_total Bookings by admission decision\n");
+        out.append("# TYPE railway_admission_requests_total counter\n");
+        out.append("railway_admission_requests_total{decision=\"admitted\"} ").append(getAdmitted()).append('\n');
+        out.append("railway_admission_requests_total{decision=\"queued\"} ").append(getAdmittedQueued())
+                .append('\n');
+        out.append("railway_admission_requests_total{decision=\"shed\"} ").append(getShed()).append('\n');
+        out.append("# HELP railway_admission_waiting Bookings waiting for a token\n");
+        out.append("# TYPE railway_admission_waiting gauge\n");
+        out.append("railway_admission_waiting ").append(getQueued()).append('\n');
+    }
+}
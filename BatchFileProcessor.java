@@ -0,0 +1,295 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Headless bulk booking/cancellation from a CSV (line-delimited) file
+ *
+ * Record formats, one per line (blank lines and lines starting with '#' are skipped):
+ *   BOOK,<passenger name>,<age>,<train number>,<base fare>,<class SL|1A|2A|3A>[,<journey date YYYY-MM-DD>]
+ *   CANCEL,<ticket ID>
+ * Fields may be double-quoted. Records are streamed and applied in batches (one journal fsync per
+ * batch); every record gets one report line, in input order:
+ *   <line>,BOOKED,<ticket ID>,<coach-berth>,<total fare>
+ *   <line>,CANCELLED,<ticket ID>,<refund>
+ *   <line>,ERROR,<message>
+ */
+public class BatchFileProcessor {
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    private static final int KIND_ERROR = 0;
+    private static final int KIND_BOOK = 1;
+    private static final int KIND_CANCEL = 2;
+
+    private final ReservationService reservationService;
+    private final int batchSize;
+
+    public BatchFileProcessor(ReservationService reservationService, int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be greater than 0!");
+        }
+        this.reservationService = reservationService;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Reads every record from the input, applies it and writes the per-record report
+     */
+    public Summary process(BufferedReader input, Writer report) throws IOException {
+        Summary summary = new Summary();
+        List<PendingRecord> pending = new ArrayList<>(batchSize);
+        int pendingKind = KIND_ERROR;
+        long start = System.nanoTime();
+
+        String line;
+        int lineNumber = 0;
+        while ((line = input.readLine()) != null) {
+            lineNumber++;
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#") || (lineNumber == 1 && isHeader(trimmed))) {
+                continue;
+            }
+            PendingRecord record = parse(lineNumber, trimmed);
+
+            // Bookings and cancellations are applied in file order, so a switch ends the batch
+            boolean kindSwitch = record.kind != KIND_ERROR && pendingKind != KIND_ERROR && record.kind != pendingKind;
+            if (pending.size() >= batchSize || kindSwitch) {
+                flush(pending, report, summary);
+                pendingKind = KIND_ERROR;
+            }
+            pending.add(record);
+            if (record.kind != KIND_ERROR) {
+                pendingKind = record.kind;
+            }
+        }
+        flush(pending, report, summary);
+        report.flush();
+
+        summary.elapsedNanos = System.nanoTime() - start;
+        return summary;
+    }
+
+    /**
+     * Applies the pending records as one batch and reports each outcome in order
+     */
+    private void flush(List<PendingRecord> pending, Writer report, Summary summary) throws IOException {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<BookingRequest> bookings = new ArrayList<>();
+        List<String> cancellations = new ArrayList<>();
+        for (PendingRecord record : pending) {
+            if (record.kind == KIND_BOOK) {
+                bookings.add(record.booking);
+            } else if (record.kind == KIND_CANCEL) {
+                cancellations.add(record.ticketId);
+            }
+        }
+        List<BatchResult> bookingResults = reservationService.bookTickets(bookings);
+        List<BatchResult> cancelResults = reservationService.cancelTickets(cancellations);
+
+        int nextBooking = 0;
+        int nextCancel = 0;
+        StringBuilder out = new StringBuilder(64 * pending.size());
+        for (PendingRecord record : pending) {
+            summary.records++;
+            out.append(record.lineNumber).append(',');
+            if (record.kind == KIND_ERROR) {
+                summary.failed++;
+                out.append("ERROR,").append(csv(record.error));
+            } else if (record.kind == KIND_BOOK) {
+                BatchResult result = bookingResults.get(nextBooking++);
+                if (result.isSuccess()) {
+                    Ticket ticket = result.getTicket();
+                    summary.booked++;
+                    // Berth, or the RAC/waiting list status for a passenger without one
+                    out.append("BOOKED,").append(ticket.getTicketId()).append(',')
+                            .append(ticket.getSeat() != null ? ticket.getSeat()
+                                    : reservationService.getBookingStatus(ticket.getTicketId()))
+                            .append(',').append(formatAmount(ticket.getFare()));
+                } else {
+                    summary.failed++;
+                    out.append("ERROR,").append(csv(result.getError()));
+                }
+            } else {
+                BatchResult result = cancelResults.get(nextCancel++);
+                if (result.isSuccess()) {
+                    Ticket ticket = result.getTicket();
+                    summary.cancelled++;
+                    out.append("CANCELLED,").append(ticket.getTicketId()).append(',')
+                            .append(formatAmount(ReservationService.calculateRefund(ticket)));
+                } else {
+                    summary.failed++;
+                    out.append("ERROR,").append(csv(result.getError()));
+                }
+            }
+            out.append('\n');
+        }
+        report.write(out.toString());
+        pending.clear();
+    }
+
+    /**
+     * Parses one record; format problems become an ERROR record instead of an exception
+     */
+    private static PendingRecord parse(int lineNumber, String line) {
+        List<String> fields = parseCsvLine(line);
+        String type = fields.get(0).trim().toUpperCase(Locale.ROOT);
+        try {
+            if (type.equals("BOOK")) {
+                if (fields.size() != 6 && fields.size() != 7) {
+                    throw new IllegalArgumentException("BOOK needs 6 fields: BOOK,name,age,train,fare,class"
+                            + " (and optionally a journey date)");
+                }
+                int age = parseInt(fields.get(2), "Invalid age! Age must be between 1 and 120.");
+                double baseFare = parseDouble(fields.get(4), "Fare must be greater than 0!");
+                LocalDate journeyDate = fields.size() == 7 ? ReservationService.parseJourneyDate(fields.get(6)) : null;
+                BookingRequest request = new BookingRequest(fields.get(1), age, fields.get(3), journeyDate, baseFare,
+                        TravelClass.fromCode(fields.get(5)));
+                request.validate();
+                return PendingRecord.booking(lineNumber, request);
+            }
+            if (type.equals("CANCEL")) {
+                if (fields.size() != 2 || fields.get(1).trim().isEmpty()) {
+                    throw new IllegalArgumentException("CANCEL needs a ticket ID: CANCEL,TKT1000");
+                }
+                return PendingRecord.cancellation(lineNumber, fields.get(1).trim());
+            }
+            throw new IllegalArgumentException("Unknown record type: " + fields.get(0));
+        } catch (IllegalArgumentException e) {
+            return PendingRecord.error(lineNumber, e.getMessage());
+        }
+    }
+
+    /**
+     * Splits a CSV line, honouring double quotes ("" inside quotes is a literal quote)
+     */
+    static List<String> parseCsvLine(String line) {
+        List<String> fields = new ArrayList<>(6);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static boolean isHeader(String line) {
+        return line.toLowerCase(Locale.ROOT).startsWith("type,");
+    }
+
+    private static int parseInt(String value, String error) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(error);
+        }
+    }
+
+    private static double parseDouble(String value, String error) {
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(error);
+        }
+    }
+
+    private static String formatAmount(double amount) {
+        return String.format(Locale.ROOT, "%.2f", amount);
+    }
+
+    private static String csv(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    /**
+     * A parsed input line waiting for its batch
+     */
+    private static final class PendingRecord {
+        final int lineNumber;
+        final int kind;
+        final BookingRequest booking;
+        final String ticketId;
+        final String error;
+
+        private PendingRecord(int lineNumber, int kind, BookingRequest booking, String ticketId, String error) {
+            this.lineNumber = lineNumber;
+            this.kind = kind;
+            this.booking = booking;
+            this.ticketId = ticketId;
+            this.error = error;
+        }
+
+        static PendingRecord booking(int lineNumber, BookingRequest booking) {
+            return new PendingRecord(lineNumber, KIND_BOOK, booking, null, null);
+        }
+
+        static PendingRecord cancellation(int lineNumber, String ticketId) {
+            return new PendingRecord(lineNumber, KIND_CANCEL, null, ticketId, null);
+        }
+
+        static PendingRecord error(int lineNumber, String error) {
+            return new PendingRecord(lineNumber, KIND_ERROR, null, null, error);
+        }
+    }
+
+    /**
+     * Totals for one processed file
+     */
+    public static final class Summary {
+        private long records;
+        private long booked;
+        private long cancelled;
+        private long failed;
+        private long elapsedNanos;
+
+        public long getRecords() {
+            return records;
+        }
+
+        public long getBooked() {
+            return booked;
+        }
+
+        public long getCancelled() {
+            return cancelled;
+        }
+
+        public long getFailed() {
+            return failed;
+        }
+
+        public double getRecordsPerSecond() {
+            return elapsedNanos == 0 ? 0 : records * 1_000_000_000.0 / elapsedNanos;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedNanos / 1_000_000;
+        }
+    }
+}
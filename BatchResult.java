@@ -0,0 +1,33 @@
+/**
+ * Outcome of one record in a bulk booking/cancellation
+ * Either the ticket that was booked/cancelled, or the reason the record was rejected
+ */
+public final class BatchResult {
+    private final Ticket ticket;
+    private final String error;
+
+    private BatchResult(Ticket ticket, String error) {
+        this.ticket = ticket;
+        this.error = error;
+    }
+
+    public static BatchResult success(Ticket ticket) {
+        return new BatchResult(ticket, null);
+    }
+
+    public static BatchResult failure(String error) {
+        return new BatchResult(null, error);
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    public Ticket getTicket() {
+        return ticket;
+    }
+
+    public String getError() {
+        return error;
+    }
+}
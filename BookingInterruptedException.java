@@ -0,0 +1,11 @@
+/**
+ * Thrown when a booking's thread is interrupted while it waits for admission - not a rejection:
+ * the booking was neither shed nor refused, the caller gave up on it. The interrupt flag stays set.
+ */
+public class BookingInterruptedException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public BookingInterruptedException(String message, InterruptedException cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,778 @@
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.zip.CRC32;
+
+/**
+ * Durable write-ahead journal for bookings and cancellations
+ *
+ * Record layout: [int length][int crc32][byte type][long sequence][payload]
+ * - writers encode their record, then wait while one flusher thread writes and fsyncs
+ *   everything queued so far (group commit: many bookings share one fsync)
+ * - a snapshot of all live tickets lets recovery replay only the journal tail
+ * - the journal is split into segments named after their first sequence number, segments
+ *   fully covered by a snapshot are deleted
+ * - the first write or fsync error fails the journal for good: nothing more is appended after a
+ *   possibly torn record, so recovery never stops short of records that were acknowledged
+ */
+public class BookingJournal implements Closeable {
+    static final byte RECORD_CANCEL = 2;
+    static final byte RECORD_PROMOTE = 3; // a waitlisted/RAC ticket got a berth
+    static final byte RECORD_BOOK = 4; // 1 was an undated booking, recovery rejects it
+
+    private static final int RECORD_HEADER_SIZE = 8;      // length + crc
+    private static final String SNAPSHOT_FILE = "snapshot.dat";
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int IO_BUFFER_SIZE = 1 << 20;
+    private static final long NO_JOURNEY_DATE = Long.MIN_VALUE;
+
+    private final Path directory;
+    private final long snapshotEveryRecords;
+    private final RecoveredState recoveredState;
+
+    // Pending writes in sequence order - appended under the journal monitor
+    private final LinkedBlockingQueue<PendingWrite> queue = new LinkedBlockingQueue<>();
+    private final Thread flusher;
+    private final ExecutorService snapshotExecutor;
+    private final AtomicBoolean snapshotRunning = new AtomicBoolean();
+    private final Object snapshotLock = new Object(); // one snapshot file writer at a time
+    private volatile Runnable snapshotTask;
+    private volatile boolean closed;
+    private volatile IOException failure; // first write/fsync error, set by the flusher
+    private final SegmentOpener segmentOpener;
+
+    private long lastSequence;          // guarded by this
+    private FileChannel segment;        // flusher thread only
+    private ByteBuffer writeBuffer = ByteBuffer.allocateDirect(IO_BUFFER_SIZE); // flusher thread only
+    private long recordsSinceSnapshot;  // flusher thread only
+
+    /**
+     * Opens a journal segment file for appending - tests substitute one that fails
+     */
+    interface SegmentOpener {
+        FileChannel open(Path path) throws IOException;
+    }
+
+    private BookingJournal(Path directory, long snapshotEveryRecords, SegmentOpener segmentOpener)
+            throws IOException {
+        this.directory = directory;
+        this.snapshotEveryRecords = snapshotEveryRecords;
+        this.segmentOpener = segmentOpener;
+        Files.createDirectories(directory);
+        this.recoveredState = recover(directory);
+        this.lastSequence = recoveredState.lastSequence;
+        this.segment = openSegment(lastSequence + 1);
+
+        this.flusher = new Thread(this::flushLoop, "booking-journal-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+        this.snapshotExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "booking-journal-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Opens (or creates) the journal in a directory and recovers its state
+     * A snapshot is taken automatically every snapshotEveryRecords records (0 = never)
+     */
+    public static BookingJournal open(Path directory, long snapshotEveryRecords) throws IOException {
+        return open(directory, snapshotEveryRecords, path -> FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND));
+    }
+
+    static BookingJournal open(Path directory, long snapshotEveryRecords, SegmentOpener segmentOpener)
+            throws IOException {
+        return new BookingJournal(directory, snapshotEveryRecords, segmentOpener);
+    }
+
+    /**
+     * Live tickets and ticket counter as found on disk when the journal was opened
+     */
+    public RecoveredState getRecoveredState() {
+        return recoveredState;
+    }
+
+    /**
+     * Sets the task run in the background when enough records have accumulated for a snapshot
+     */
+    public void setSnapshotTask(Runnable snapshotTask) {
+        this.snapshotTask = snapshotTask;
+    }
+
+    /**
+     * Records a booking and waits until it is durable on disk
+     */
+    public void logBooking(Ticket ticket) {
+        append(RECORD_BOOK, encode(out -> writeTicket(out, ticket)));
+    }
+
+    /**
+     * Records a cancellation and waits until it is durable on disk
+     */
+    public void logCancellation(String ticketId) {
+        append(RECORD_CANCEL, encode(out -> out.writeUTF(ticketId)));
+    }
+
+    /**
+     * Records a batch of bookings and waits until all of them are durable (one fsync for the batch)
+     */
+    public void logBookings(List<Ticket> tickets) {
+        List<byte[]> payloads = new ArrayList<>(tickets.size());
+        for (Ticket ticket : tickets) {
+            payloads.add(encode(out -> writeTicket(out, ticket)));
+        }
+        appendAll(RECORD_BOOK, payloads);
+    }
+
+    /**
+     * Records a batch of cancellations and waits until all of them are durable
+     */
+    public void logCancellations(List<String> ticketIds) {
+        List<byte[]> payloads = new ArrayList<>(ticketIds.size());
+        for (String ticketId : ticketIds) {
+            payloads.add(encode(out -> out.writeUTF(ticketId)));
+        }
+        appendAll(RECORD_CANCEL, payloads);
+    }
+
+    /**
+     * Records the berths given to promoted waitlisted/RAC tickets and waits until they are durable
+     */
+    public void logPromotions(List<Ticket> tickets) {
+        List<byte[]> payloads = new ArrayList<>(tickets.size());
+        for (Ticket ticket : tickets) {
+            payloads.add(encode(out -> {
+                out.writeUTF(ticket.getTicketId());
+                out.writeShort(ticket.getSeat().getCoachIndex());
+                out.writeShort(ticket.getSeat().getBerthNumber());
+            }));
+        }
+        appendAll(RECORD_PROMOTE, payloads);
+    }
+
+    /**
+     * Writes a snapshot of all live tickets, then drops journal segments it covers
+     * Bookings continue while the snapshot is written - records after the rotation point are
+     * replayed on recovery, and replay is idempotent for tickets the snapshot already saw
+     */
+    public void writeSnapshot(TicketSnapshot.Source tickets, LongSupplier nextTicketNumber) {
+        synchronized (snapshotLock) {
+            writeSnapshotFile(tickets, nextTicketNumber);
+        }
+    }
+
+    private void writeSnapshotFile(TicketSnapshot.Source tickets, LongSupplier nextTicketNumber) {
+        try {
+            PendingWrite rotation;
+            long snapshotSequence;
+            synchronized (this) {
+                checkOpen();
+                snapshotSequence = lastSequence;
+                rotation = new PendingWrite(null, snapshotSequence + 1);
+                queue.add(rotation);
+            }
+            await(rotation.done);
+
+            TicketSnapshot.write(directory.resolve(SNAPSHOT_FILE), snapshotSequence, tickets, nextTicketNumber);
+
+            for (Path path : listSegments(directory)) {
+                if (segmentStart(path) <= snapshotSequence) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Snapshot failed: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Flushes pending records and closes the journal files
+     */
+    @Override
+    public void close() throws IOException {
+        PendingWrite stop;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            stop = new PendingWrite(null, -1);
+            queue.add(stop);
+        }
+        try {
+            await(stop.done);
+        } finally {
+            snapshotExecutor.shutdown();
+        }
+    }
+
+    // ==================== Write path ====================
+
+    /**
+     * Assigns the next sequence number, queues the record and blocks until it is fsynced
+     */
+    private void append(byte type, byte[] payload) {
+        PendingWrite write;
+        synchronized (this) {
+            checkOpen();
+            write = new PendingWrite(frame(type, ++lastSequence, payload), lastSequence);
+            queue.add(write);
+        }
+        await(write.done);
+    }
+
+    /**
+     * Queues several records back to back and blocks until all are fsynced
+     */
+    private void appendAll(byte type, List<byte[]> payloads) {
+        if (payloads.isEmpty()) {
+            return;
+        }
+        List<PendingWrite> writes = new ArrayList<>(payloads.size());
+        synchronized (this) {
+            checkOpen();
+            for (byte[] payload : payloads) {
+                PendingWrite write = new PendingWrite(frame(type, ++lastSequence, payload), lastSequence);
+                writes.add(write);
+                queue.add(write);
+            }
+        }
+        for (PendingWrite write : writes) {
+            await(write.done);
+        }
+    }
+
+    /**
+     * Flusher thread - drains everything queued, writes it in one go and fsyncs once
+     * After an I/O error it writes nothing more: records already buffered get a JournalFailedException
+     * (they may be on disk), later ones are rejected (they are not)
+     */
+    private void flushLoop() {
+        List<PendingWrite> batch = new ArrayList<>();
+        List<PendingWrite> written = new ArrayList<>();
+        boolean running = true;
+        while (running) {
+            try {
+                batch.add(queue.take());
+                queue.drainTo(batch);
+
+                for (PendingWrite write : batch) {
+                    if (write.sequence < 0) {
+                        running = false; // stop marker: close() comes after every append
+                    }
+                    if (failure != null) {
+                        reject(write);
+                        continue;
+                    }
+                    try {
+                        if (write.record != null) {
+                            bufferRecord(write.record);
+                            written.add(write);
+                            continue;
+                        }
+                        // Control marker: rotate to a new segment, or stop
+                        syncBuffer();
+                        completeAll(written);
+                        segment.close();
+                        if (write.sequence >= 0) {
+                            segment = openSegment(write.sequence);
+                            recordsSinceSnapshot = 0;
+                        }
+                        write.done.complete(null);
+                    } catch (IOException e) {
+                        fail(e, written);
+                        write.done.completeExceptionally(new JournalFailedException(e));
+                    }
+                }
+                if (failure == null && segment.isOpen() && !written.isEmpty()) {
+                    try {
+                        syncBuffer();
+                        recordsSinceSnapshot += written.size();
+                        completeAll(written);
+                    } catch (IOException e) {
+                        fail(e, written);
+                    }
+                }
+                batch.clear();
+                maybeScheduleSnapshot();
+            } catch (InterruptedException e) {
+                running = false;
+            }
+        }
+    }
+
+    /**
+     * Fails the journal for good - the records buffered since the last fsync may or may not be on disk
+     */
+    private void fail(IOException e, List<PendingWrite> written) {
+        failure = e;
+        writeBuffer.clear();
+        failAll(written, new JournalFailedException(e));
+        System.err.println("⚠️  Booking journal failed, no more changes are accepted: " + e.getMessage());
+    }
+
+    /**
+     * Answers a record that arrived after the journal failed - it was never written
+     */
+    private void reject(PendingWrite write) {
+        if (write.sequence < 0) {
+            try {
+                segment.close();
+            } catch (IOException e) {
+                // already failed, nothing more to lose
+            }
+            write.done.complete(null);
+        } else {
+            write.done.completeExceptionally(failedError());
+        }
+    }
+
+    private IllegalStateException failedError() {
+        return new IllegalStateException("Booking journal failed (" + failure.getMessage()
+                + ") - restart to recover!");
+    }
+
+    private void bufferRecord(byte[] record) throws IOException {
+        if (record.length > writeBuffer.remaining()) {
+            writeOut();
+            if (record.length > writeBuffer.capacity()) {
+                writeBuffer = ByteBuffer.allocateDirect(record.length);
+            }
+        }
+        writeBuffer.put(record);
+    }
+
+    private void writeOut() throws IOException {
+        writeBuffer.flip();
+        while (writeBuffer.hasRemaining()) {
+            segment.write(writeBuffer);
+        }
+        writeBuffer.clear();
+    }
+
+    private void syncBuffer() throws IOException {
+        writeOut();
+        segment.force(false);
+    }
+
+    private void maybeScheduleSnapshot() {
+        Runnable task = snapshotTask;
+        if (task == null || closed || snapshotEveryRecords <= 0 || recordsSinceSnapshot < snapshotEveryRecords) {
+            return;
+        }
+        if (snapshotRunning.compareAndSet(false, true)) {
+            recordsSinceSnapshot = 0;
+            snapshotExecutor.execute(() -> {
+                try {
+                    if (!closed) {
+                        task.run();
+                    }
+                } catch (RuntimeException e) {
+                    System.err.println("⚠️  Background snapshot failed: " + e.getMessage());
+                } finally {
+                    snapshotRunning.set(false);
+                }
+            });
+        }
+    }
+
+    private FileChannel openSegment(long firstSequence) throws IOException {
+        Path path = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstSequence, SEGMENT_SUFFIX));
+        return segmentOpener.open(path);
+    }
+
+    private synchronized void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Booking journal is closed!");
+        }
+        if (failure != null) {
+            throw failedError();
+        }
+    }
+
+    /**
+     * True once a write or fsync failed - every further change is rejected until the node restarts
+     */
+    public boolean isFailed() {
+        return failure != null;
+    }
+
+    // ==================== Recovery ====================
+
+    /**
+     * Opens the snapshot (if any) and replays journal records written after it
+     * The snapshot stays memory-mapped: only the journal tail is decoded here, snapshot tickets are
+     * decoded while RecoveredState.forEachTicket hands them out
+     */
+    private static RecoveredState recover(Path directory) throws IOException {
+        Map<String, Ticket> tickets = new LinkedHashMap<>(); // booked after the snapshot
+        TicketSnapshot mapped = null;
+        long snapshotSequence = 0;
+        long nextTicketNumber = 0;
+
+        Path snapshot = directory.resolve(SNAPSHOT_FILE);
+        if (Files.exists(snapshot)) {
+            mapped = TicketSnapshot.open(snapshot);
+            snapshotSequence = mapped.getSequence();
+            nextTicketNumber = mapped.getNextTicketNumber();
+        }
+
+        // Changes to tickets that are still in the mapped snapshot
+        Set<String> cancelled = new HashSet<>();
+        Map<String, Integer> promotions = new HashMap<>(); // ticket ID -> coach << 16 | berth
+
+        long lastSequence = snapshotSequence;
+        int replayed = 0;
+        try {
+            for (Path path : listSegments(directory)) {
+                long validLength = 0;
+                try (DataInputStream in = openInput(path)) {
+                    while (true) {
+                        Record record = readRecord(in);
+                        if (record == null) {
+                            break;
+                        }
+                        validLength += RECORD_HEADER_SIZE + record.length;
+                        lastSequence = Math.max(lastSequence, record.sequence);
+                        if (record.sequence <= snapshotSequence) {
+                            continue;
+                        }
+                        DataInputStream payload = new DataInputStream(new ByteArrayInputStream(record.payload));
+                        if (record.type == RECORD_BOOK) {
+                            Ticket ticket = readTicket(payload);
+                            String id = TicketRepository.normalizeTicketId(ticket.getTicketId());
+                            if (mapped == null || mapped.find(id) == null) {
+                                tickets.putIfAbsent(id, ticket);
+                            }
+                        } else if (record.type == RECORD_CANCEL) {
+                            String id = TicketRepository.normalizeTicketId(payload.readUTF());
+                            if (tickets.remove(id) == null && mapped != null) {
+                                cancelled.add(id);
+                            }
+                        } else if (record.type == RECORD_PROMOTE) {
+                            String id = TicketRepository.normalizeTicketId(payload.readUTF());
+                            int coachIndex = payload.readShort();
+                            int berthNumber = payload.readShort();
+                            Ticket ticket = tickets.get(id);
+                            if (ticket != null) {
+                                ticket.setSeat(new Seat(TravelClass.of(ticket), coachIndex, berthNumber));
+                            } else if (mapped != null) {
+                                promotions.put(id, coachIndex << 16 | berthNumber);
+                            }
+                        } else {
+                            throw new IOException("Unknown record type " + record.type + " in " + path);
+                        }
+                        replayed++;
+                    }
+                }
+                // Drop a torn record left by a crash mid-write
+                if (validLength < Files.size(path)) {
+                    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                        channel.truncate(validLength);
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            if (mapped != null) {
+                mapped.close();
+            }
+            throw e;
+        }
+
+        for (Ticket ticket : tickets.values()) {
+            nextTicketNumber = Math.max(nextTicketNumber, JourneyDateStore.sequenceOf(ticket.getTicketNumber()) + 1);
+        }
+        return new RecoveredState(mapped, cancelled, promotions, new ArrayList<>(tickets.values()),
+                nextTicketNumber, lastSequence, replayed);
+    }
+
+    /**
+     * Reads one record, returns null at end of file or at a torn/corrupt record
+     */
+    private static Record readRecord(DataInputStream in) throws IOException {
+        int length;
+        int crc;
+        byte[] body;
+        try {
+            length = in.readInt();
+            crc = in.readInt();
+            if (length < 9) {
+                return null;
+            }
+            body = new byte[length];
+            in.readFully(body);
+        } catch (EOFException e) {
+            return null;
+        }
+        CRC32 checksum = new CRC32();
+        checksum.update(body);
+        if ((int) checksum.getValue() != crc) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(body);
+        byte type = buffer.get();
+        long sequence = buffer.getLong();
+        byte[] payload = new byte[length - 9];
+        buffer.get(payload);
+        return new Record(type, sequence, length, payload);
+    }
+
+    private static List<Path> listSegments(Path directory) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory,
+                SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                segments.add(path);
+            }
+        }
+        segments.sort((a, b) -> Long.compare(segmentStart(a), segmentStart(b)));
+        return segments;
+    }
+
+    private static long segmentStart(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static DataInputStream openInput(Path path) throws IOException {
+        InputStream in = Files.newInputStream(path);
+        return new DataInputStream(new BufferedInputStream(in, IO_BUFFER_SIZE));
+    }
+
+    // ==================== Encoding ====================
+
+    /**
+     * Writes a ticket with its berth and journey date as an epoch day (NO_JOURNEY_DATE for undated tickets)
+     */
+    static void writeTicket(DataOutput out, Ticket ticket) throws IOException {
+        Seat seat = ticket.getSeat();
+        out.writeUTF(ticket.getTicketId());
+        out.writeUTF(ticket.getPassengerName());
+        out.writeByte(ticket.getAge());
+        out.writeUTF(ticket.getTrainNumber());
+        out.writeDouble(ticket.getBaseFare());
+        out.writeByte(TravelClass.of(ticket).ordinal());
+        out.writeShort(seat == null ? -1 : seat.getCoachIndex());
+        out.writeShort(seat == null ? -1 : seat.getBerthNumber());
+        LocalDate journeyDate = ticket.getJourneyDate();
+        out.writeLong(journeyDate == null ? NO_JOURNEY_DATE : journeyDate.toEpochDay());
+    }
+
+    static Ticket readTicket(DataInput in) throws IOException {
+        String ticketId = in.readUTF();
+        String passengerName = in.readUTF();
+        int age = in.readUnsignedByte();
+        String trainNumber = in.readUTF();
+        double baseFare = in.readDouble();
+        TravelClass travelClass = TravelClass.values()[in.readUnsignedByte()];
+        int coachIndex = in.readShort();
+        int berthNumber = in.readShort();
+        long journeyDay = in.readLong();
+        long ticketNumber = ReservationService.parseTicketNumber(ticketId);
+        if (ticketNumber < 0) {
+            throw new IOException("Unrecognised ticket ID in journal: " + ticketId);
+        }
+        Ticket ticket = ReservationService.createTicket(ticketNumber, passengerName, age, trainNumber,
+                journeyDay == NO_JOURNEY_DATE ? null : LocalDate.ofEpochDay(journeyDay), baseFare, travelClass);
+        if (coachIndex >= 0) {
+            ticket.setSeat(new Seat(travelClass, coachIndex, berthNumber));
+        }
+        return ticket;
+    }
+
+    private static byte[] frame(byte type, long sequence, byte[] payload) {
+        int length = 1 + 8 + payload.length;
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_SIZE + length);
+        buffer.putInt(length);
+        buffer.putInt(0); // crc placeholder
+        buffer.put(type);
+        buffer.putLong(sequence);
+        buffer.put(payload);
+        CRC32 checksum = new CRC32();
+        checksum.update(buffer.array(), RECORD_HEADER_SIZE, length);
+        buffer.putInt(4, (int) checksum.getValue());
+        return buffer.array();
+    }
+
+    private static byte[] encode(PayloadWriter writer) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+            DataOutputStream out = new DataOutputStream(bytes);
+            writer.write(out);
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // ==================== Helpers ====================
+
+    private static void completeAll(List<PendingWrite> writes) {
+        for (PendingWrite write : writes) {
+            write.done.complete(null);
+        }
+        writes.clear();
+    }
+
+    private static void failAll(List<PendingWrite> writes, RuntimeException e) {
+        for (PendingWrite write : writes) {
+            write.done.completeExceptionally(e);
+        }
+        writes.clear();
+    }
+
+    /**
+     * Waits for a queued record's outcome - uninterruptibly: once queued, the record is written whether
+     * or not anyone waits, so giving up early would let the caller undo a change that is on disk
+     * (join() keeps waiting through an interrupt and sets the flag again before it returns)
+     * Throws JournalFailedException if the write failed, IllegalStateException if it was rejected unwritten
+     */
+    private static void await(CompletableFuture<Void> done) {
+        try {
+            done.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException("Booking journal write failed", cause);
+        }
+    }
+
+    private interface PayloadWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * A queued record (or a control marker when record is null) and its completion signal
+     */
+    private static final class PendingWrite {
+        final byte[] record;
+        final long sequence;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        PendingWrite(byte[] record, long sequence) {
+            this.record = record;
+            this.sequence = sequence;
+        }
+    }
+
+    private static final class Record {
+        final byte type;
+        final long sequence;
+        final int length;
+        final byte[] payload;
+
+        Record(byte type, long sequence, int length, byte[] payload) {
+            this.type = type;
+            this.sequence = sequence;
+            this.length = length;
+            this.payload = payload;
+        }
+    }
+
+    /**
+     * State rebuilt from the snapshot and journal tail
+     */
+    public static final class RecoveredState {
+        private TicketSnapshot snapshot; // null once released, or if there was no mapped snapshot
+        private final Set<String> cancelled;
+        private final Map<String, Integer> promotions;
+        private final List<Ticket> tickets;
+        private final long nextTicketNumber;
+        private final long lastSequence;
+        private final int replayedRecords;
+
+        RecoveredState(TicketSnapshot snapshot, Set<String> cancelled, Map<String, Integer> promotions,
+                       List<Ticket> tickets, long nextTicketNumber, long lastSequence, int replayedRecords) {
+            this.snapshot = snapshot;
+            this.cancelled = cancelled;
+            this.promotions = promotions;
+            this.tickets = tickets;
+            this.nextTicketNumber = nextTicketNumber;
+            this.lastSequence = lastSequence;
+            this.replayedRecords = replayedRecords;
+        }
+
+        /**
+         * Visits every recovered ticket: the snapshot's (decoded in parallel, with the journal tail's
+         * cancellations and promotions applied), then those booked after it - the action must be thread-safe
+         */
+        public synchronized void forEachTicket(Consumer<? super Ticket> action) {
+            if (snapshot != null) {
+                snapshot.parallelForEachTicket(ticket -> {
+                    String id = TicketRepository.normalizeTicketId(ticket.getTicketId());
+                    if (cancelled.contains(id)) {
+                        return;
+                    }
+                    Integer berth = promotions.get(id);
+                    if (berth != null) {
+                        ticket.setSeat(new Seat(TravelClass.of(ticket), berth >>> 16, berth & 0xFFFF));
+                    }
+                    action.accept(ticket);
+                });
+            }
+            tickets.forEach(action);
+        }
+
+        /**
+         * Drops the recovered tickets (and closes the mapped snapshot) once they have been restored
+         */
+        public synchronized void release() {
+            if (snapshot != null) {
+                try {
+                    snapshot.close();
+                } catch (IOException e) {
+                    System.err.println("⚠️  Could not close snapshot: " + e.getMessage());
+                }
+                snapshot = null;
+            }
+            cancelled.clear();
+            promotions.clear();
+            tickets.clear();
+        }
+
+        public long getNextTicketNumber() {
+            return nextTicketNumber;
+        }
+
+        public int getReplayedRecords() {
+            return replayedRecords;
+        }
+    }
+}
@@ -0,0 +1,427 @@
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Pipelined booking engine: callers hand bookings to a single writer thread per group of trains
+ *
+ * Every train belongs to one writer (by its ShardRing partition), so a hot train is only ever booked
+ * by one thread - its berths, waiting list and counters are never contended. Each writer owns a
+ * preallocated ring of request slots; callers claim a slot with one compare-and-set, fill it in and
+ * publish it. The writer drains whatever has been published, up to maxBatch at a time, and applies the
+ * micro-batch in one pass (validate, allocate the ID, create and price the ticket, store it) with a
+ * single journal write. Results go back through a BookingCallback on the writer thread.
+ *
+ * Steady state allocates nothing but the tickets themselves: slots, batch arrays and (per caller thread)
+ * the waiter used by book() are reused. A full ring makes callers wait for a free slot (backpressure);
+ * validation and then admission control, if configured, run on the caller thread before a slot is claimed.
+ */
+public class BookingPipeline implements AutoCloseable {
+    public static final int DEFAULT_RING_SIZE = 4096;
+    public static final int DEFAULT_MAX_BATCH = 256;
+
+    private static final long CLOSED = Long.MIN_VALUE; // set on Writer.claimed once no slot may be claimed
+    private static final int SPINS = 100;
+    private static final int YIELDS = 100;
+    private static final long PARK_NANOS = 50_000;
+    private static final long IDLE_PARK_NANOS = 1_000_000;
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    /**
+     * Receives the outcome of one booking - the ticket, or the exception that rejected it
+     * Runs on the writer thread, so it should be quick and must not book through the same pipeline
+     */
+    public interface BookingCallback {
+        void onComplete(Ticket ticket, RuntimeException error);
+    }
+
+    private final ReservationService service;
+    private final Writer[] writers;
+    private final ThreadLocal<Waiter> waiters = ThreadLocal.withInitial(Waiter::new);
+
+    public BookingPipeline(ReservationService service, int writerCount) {
+        this(service, writerCount, DEFAULT_RING_SIZE, DEFAULT_MAX_BATCH);
+    }
+
+    public BookingPipeline(ReservationService service, int writerCount, int ringSize, int maxBatch) {
+        if (writerCount < 1 || writerCount > ShardRing.PARTITIONS) {
+            throw new IllegalArgumentException("A booking pipeline needs 1 to " + ShardRing.PARTITIONS
+                    + " writers!");
+        }
+        if (ringSize < 2 || Integer.bitCount(ringSize) != 1 || maxBatch < 1 || maxBatch > ringSize) {
+            throw new IllegalArgumentException("Pipeline ring size must be a power of two of at least 2 "
+                    + "and the batch size between 1 and the ring size!");
+        }
+        this.service = service;
+        this.writers = new Writer[writerCount];
+        for (int i = 0; i < writerCount; i++) {
+            writers[i] = new Writer(ringSize, maxBatch);
+        }
+        for (int i = 0; i < writerCount; i++) {
+            writers[i].thread = new Thread(writers[i], "booking-writer-" + i);
+            writers[i].thread.setDaemon(true);
+            writers[i].thread.start();
+        }
+    }
+
+    /**
+     * Books a ticket through the pipeline and waits for the outcome
+     * Same contract as ReservationService.bookTicket
+     */
+    public Ticket book(String passengerName, int age, String trainNumber, double baseFare,
+                       TravelClass travelClass) {
+        return book(passengerName, age, trainNumber, null, baseFare, travelClass);
+    }
+
+    public Ticket book(String passengerName, int age, String trainNumber, LocalDate journeyDate, double baseFare,
+                       TravelClass travelClass) {
+        Waiter waiter = waiters.get();
+        waiter.reset();
+        submit(passengerName, age, trainNumber, journeyDate, baseFare, travelClass, waiter);
+        return waiter.await();
+    }
+
+    /**
+     * Queues a booking; the future completes on the writer thread
+     * Invalid or shed bookings throw at once, as in submit
+     */
+    public CompletableFuture<Ticket> bookAsync(String passengerName, int age, String trainNumber, double baseFare,
+                                               TravelClass travelClass) {
+        CompletableFuture<Ticket> result = new CompletableFuture<>();
+        submit(passengerName, age, trainNumber, baseFare, travelClass, (ticket, error) -> {
+            if (error == null) {
+                result.complete(ticket);
+            } else {
+                result.completeExceptionally(error);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Queues a booking and returns at once (after waiting for a free slot if the writer's ring is full)
+     * Validates on the caller thread first, as bookTicket does: throws IllegalArgumentException if a field
+     * is invalid, OverloadedException if admission control sheds it, IllegalStateException once closed
+     */
+    public void submit(String passengerName, int age, String trainNumber, double baseFare,
+                       TravelClass travelClass, BookingCallback callback) {
+        submit(passengerName, age, trainNumber, null, baseFare, travelClass, callback);
+    }
+
+    public void submit(String passengerName, int age, String trainNumber, LocalDate journeyDate, double baseFare,
+                       TravelClass travelClass, BookingCallback callback) {
+        try {
+            service.admitBooking(passengerName, age, trainNumber, journeyDate, baseFare, travelClass);
+        } catch (IllegalArgumentException e) {
+            service.getMetrics().recordFailedValidation();
+            throw e;
+        }
+        Writer writer = writers[ShardRing.partitionOf(trainNumber) % writers.length];
+        long sequence = writer.claim();
+        Slot slot = writer.ring[(int) sequence & writer.mask];
+        writer.awaitFreeSlot(sequence);
+        slot.passengerName = passengerName;
+        slot.age = age;
+        slot.trainNumber = trainNumber;
+        slot.journeyDate = journeyDate;
+        slot.baseFare = baseFare;
+        slot.travelClass = travelClass;
+        slot.callback = callback;
+        slot.published = sequence; // hands the slot to the writer
+        if (writer.sleeping) {
+            LockSupport.unpark(writer.thread);
+        }
+    }
+
+    /**
+     * Bookings queued but not yet applied, over all writers
+     */
+    public long getPending() {
+        long pending = 0;
+        for (Writer writer : writers) {
+            pending += (writer.claimed.get() & ~CLOSED) - writer.consumed;
+        }
+        return pending;
+    }
+
+    public int getWriterCount() {
+        return writers.length;
+    }
+
+    /**
+     * Micro-batches applied so far and the bookings in them (average batch = bookings / batches)
+     */
+    public long getBatches() {
+        long batches = 0;
+        for (Writer writer : writers) {
+            batches += writer.batches;
+        }
+        return batches;
+    }
+
+    public long getBookings() {
+        long bookings = 0;
+        for (Writer writer : writers) {
+            bookings += writer.consumed;
+        }
+        return bookings;
+    }
+
+    /**
+     * Bytes allocated by the writer threads so far - counted up to their exit once the pipeline is closed,
+     * for benchmarks that need allocation per booking (the callers' own threads only hold the requests)
+     */
+    public long getAllocatedBytes() {
+        long bytes = 0;
+        for (Writer writer : writers) {
+            long live = writer.thread.isAlive() ? THREADS.getThreadAllocatedBytes(writer.thread.getId()) : -1;
+            bytes += live >= 0 ? live : writer.allocatedBytes; // -1 once the writer has exited
+        }
+        return bytes;
+    }
+
+    public void appendSummary(StringBuilder out) {
+        long batches = getBatches();
+        out.append("🚂 Pipeline batches    : ").append(batches).append(" (").append(writers.length)
+                .append(" writers, ").append(batches == 0 ? 0 : getBookings() / batches)
+                .append(" bookings per batch, ").append(getPending()).append(" queued now)\n");
+    }
+
+    public void appendPrometheus(StringBuilder out) {
+        out.append("# HELP railway_pipeline_batches_total Micro-batches applied by the booking writers\n");
+        out.append("# TYPE railway_pipeline_batches_total counter\n");
+        out.append("railway_pipeline_batches_total ").append(getBatches()).append('\n');
+        out.append("# HELP railway_pipeline_bookings_total Bookings applied by the booking writers\n");
+        out.append("# TYPE railway_pipeline_bookings_total counter\n");
+        out.append("railway_pipeline_bookings_total ").append(getBookings()).append('\n');
+        out.append("# HELP railway_pipeline_queued Bookings queued for a writer\n");
+        out.append("# TYPE railway_pipeline_queued gauge\n");
+        out.append("railway_pipeline_queued ").append(getPending()).append('\n');
+    }
+
+    /**
+     * Stops taking bookings, lets the writers apply everything already queued, then stops them
+     */
+    @Override
+    public void close() {
+        for (Writer writer : writers) {
+            writer.close();
+        }
+        for (Writer writer : writers) {
+            LockSupport.unpark(writer.thread);
+            boolean interrupted = false;
+            while (writer.thread.isAlive()) {
+                try {
+                    writer.thread.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * One booking request in a writer's ring, reused every time the ring wraps around
+     */
+    static final class Slot {
+        volatile long published = -1; // sequence of the request in the slot once it is ready
+        String passengerName;
+        int age;
+        String trainNumber;
+        LocalDate journeyDate;
+        double baseFare;
+        TravelClass travelClass;
+        BookingCallback callback;
+        Ticket ticket;          // outcome, set by ReservationService.bookBatch
+        RuntimeException error;
+
+        void clear() {
+            passengerName = null;
+            trainNumber = null;
+            journeyDate = null;
+            travelClass = null;
+            callback = null;
+            ticket = null;
+            error = null;
+        }
+    }
+
+    private final class Writer implements Runnable {
+        final Slot[] ring;
+        final int mask;
+        final Slot[] batch;
+        final List<Ticket> booked;
+        final AtomicLong claimed = new AtomicLong(); // next sequence to hand out, | CLOSED once closed
+        volatile long consumed;                       // every sequence below this is applied, its slot free
+        volatile long batches;
+        volatile boolean sleeping;
+        volatile long allocatedBytes; // by the writer thread, recorded when it exits
+        Thread thread;
+
+        Writer(int ringSize, int maxBatch) {
+            this.ring = new Slot[ringSize];
+            for (int i = 0; i < ringSize; i++) {
+                ring[i] = new Slot();
+            }
+            this.mask = ringSize - 1;
+            this.batch = new Slot[maxBatch];
+            this.booked = new ArrayList<>(maxBatch);
+        }
+
+        long claim() {
+            while (true) {
+                long next = claimed.get();
+                if (next < 0) {
+                    throw new IllegalStateException("Booking pipeline is closed!");
+                }
+                if (claimed.compareAndSet(next, next + 1)) {
+                    return next;
+                }
+            }
+        }
+
+        void close() {
+            long next;
+            do {
+                next = claimed.get();
+            } while (next >= 0 && !claimed.compareAndSet(next, next | CLOSED));
+        }
+
+        /**
+         * Waits until the slot for sequence is no longer used by the request one lap earlier
+         */
+        void awaitFreeSlot(long sequence) {
+            for (int round = 0; sequence - consumed >= ring.length; round++) {
+                if (round < SPINS) {
+                    Thread.onSpinWait();
+                } else if (round < SPINS + YIELDS) {
+                    Thread.yield();
+                } else {
+                    LockSupport.parkNanos(PARK_NANOS);
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            long next = 0;
+            int idle = 0;
+            while (true) {
+                int count = 0;
+                Slot slot;
+                while (count < batch.length && (slot = ring[(int) (next + count) & mask]).published == next + count) {
+                    batch[count++] = slot;
+                }
+                if (count > 0) {
+                    apply(count);
+                    next += count;
+                    consumed = next; // frees the slots for the next lap
+                    idle = 0;
+                } else if (claimed.get() == (next | CLOSED)) {
+                    allocatedBytes = THREADS.getCurrentThreadAllocatedBytes();
+                    return; // closed and drained
+                } else {
+                    idle = idle(idle, next);
+                }
+            }
+        }
+
+        private void apply(int count) {
+            try {
+                service.bookBatch(batch, count, booked);
+            } catch (RuntimeException e) {
+                // bookBatch reports per request; anything else fails the requests it did not finish
+                for (int i = 0; i < count; i++) {
+                    if (batch[i].ticket == null && batch[i].error == null) {
+                        batch[i].error = e;
+                    }
+                }
+            }
+            batches++;
+            for (int i = 0; i < count; i++) {
+                Slot slot = batch[i];
+                try {
+                    slot.callback.onComplete(slot.ticket, slot.error);
+                } catch (RuntimeException e) {
+                    System.err.println("⚠️ Booking callback failed: " + e);
+                }
+                slot.clear();
+                batch[i] = null;
+            }
+        }
+
+        /**
+         * Spins, then yields, then parks until a caller publishes (callers unpark a sleeping writer)
+         */
+        private int idle(int round, long next) {
+            if (round < SPINS) {
+                Thread.onSpinWait();
+            } else if (round < SPINS + YIELDS) {
+                Thread.yield();
+            } else {
+                sleeping = true;
+                // Re-checked after announcing sleep: a caller publishing now sees the flag and unparks
+                if (ring[(int) next & mask].published != next && claimed.get() >= 0) {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+                sleeping = false;
+            }
+            return round + 1;
+        }
+    }
+
+    /**
+     * Callback that book() waits on - one per caller thread, reused for every booking
+     */
+    private static final class Waiter implements BookingCallback {
+        private final Thread caller = Thread.currentThread();
+        private volatile boolean done;
+        private Ticket ticket;
+        private RuntimeException error;
+
+        void reset() {
+            done = false;
+            ticket = null;
+            error = null;
+        }
+
+        @Override
+        public void onComplete(Ticket bookedTicket, RuntimeException bookingError) {
+            ticket = bookedTicket;
+            error = bookingError;
+            done = true;
+            LockSupport.unpark(caller);
+        }
+
+        Ticket await() {
+            boolean interrupted = false;
+            for (int round = 0; !done; round++) {
+                if (round < SPINS) {
+                    Thread.onSpinWait();
+                } else {
+                    LockSupport.park(this);
+                    interrupted |= Thread.interrupted();
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            Ticket result = ticket;
+            RuntimeException failure = error;
+            ticket = null;
+            error = null;
+            if (failure != null) {
+                throw failure;
+            }
+            return result;
+        }
+    }
+}
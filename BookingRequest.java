@@ -0,0 +1,61 @@
+import java.time.LocalDate;
+
+/**
+ * Everything needed to book one ticket - used by the bulk and programmatic APIs
+ * Immutable value object
+ */
+public final class BookingRequest {
+    private final String passengerName;
+    private final int age;
+    private final String trainNumber;
+    private final LocalDate journeyDate; // null = no journey date
+    private final double baseFare;
+    private final TravelClass travelClass;
+
+    public BookingRequest(String passengerName, int age, String trainNumber, double baseFare,
+                          TravelClass travelClass) {
+        this(passengerName, age, trainNumber, null, baseFare, travelClass);
+    }
+
+    public BookingRequest(String passengerName, int age, String trainNumber, LocalDate journeyDate,
+                          double baseFare, TravelClass travelClass) {
+        this.passengerName = passengerName;
+        this.age = age;
+        this.trainNumber = trainNumber;
+        this.journeyDate = journeyDate;
+        this.baseFare = baseFare;
+        this.travelClass = travelClass;
+    }
+
+    /**
+     * Checks the request against the same rules as the interactive booking
+     * (the journey date is checked by the service, against its clock)
+     */
+    public void validate() {
+        ReservationService.validateBooking(passengerName, age, trainNumber, baseFare, travelClass);
+    }
+
+    public String getPassengerName() {
+        return passengerName;
+    }
+
+    public int getAge() {
+        return age;
+    }
+
+    public String getTrainNumber() {
+        return trainNumber;
+    }
+
+    public LocalDate getJourneyDate() {
+        return journeyDate;
+    }
+
+    public double getBaseFare() {
+        return baseFare;
+    }
+
+    public TravelClass getTravelClass() {
+        return travelClass;
+    }
+}
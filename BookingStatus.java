@@ -0,0 +1,74 @@
+/**
+ * Booking status of a ticket as printed on it: CNF, RAC 3 or WL 12
+ * Immutable value object - the position of a waiting ticket changes as others are promoted,
+ * so a status is only valid at the moment it was read
+ */
+public final class BookingStatus {
+    public enum Type {
+        CONFIRMED("CNF"), RAC("RAC"), WAITLISTED("WL");
+
+        private final String code;
+
+        Type(String code) {
+            this.code = code;
+        }
+
+        public String getCode() {
+            return code;
+        }
+    }
+
+    public static final BookingStatus CONFIRMED = new BookingStatus(Type.CONFIRMED, 0);
+
+    private final Type type;
+    private final int position; // 1-based position within RAC or the waiting list, 0 when confirmed
+
+    private BookingStatus(Type type, int position) {
+        this.type = type;
+        this.position = position;
+    }
+
+    /**
+     * Status of the passenger at a 1-based queue position - the first racSlots positions are RAC
+     */
+    static BookingStatus ofQueuePosition(int position, int racSlots) {
+        if (position <= racSlots) {
+            return new BookingStatus(Type.RAC, position);
+        }
+        return new BookingStatus(Type.WAITLISTED, position - racSlots);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public int getPosition() {
+        return position;
+    }
+
+    public boolean isConfirmed() {
+        return type == Type.CONFIRMED;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof BookingStatus)) {
+            return false;
+        }
+        BookingStatus status = (BookingStatus) other;
+        return type == status.type && position == status.position;
+    }
+
+    @Override
+    public int hashCode() {
+        return type.ordinal() * 31 + position;
+    }
+
+    @Override
+    public String toString() {
+        return type == Type.CONFIRMED ? type.getCode() : type.getCode() + " " + position;
+    }
+}
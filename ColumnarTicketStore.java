@@ -0,0 +1,469 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+
+/**
+ * Compact ticket store - tickets are kept as primitive columns (struct-of-arrays), not objects
+ *
+ * Per ticket slot: ticket number (long), age (byte), base fare in paise (long), class ordinal (byte),
+ * dictionary codes for train number, passenger name and normalized passenger key (int each),
+ * journey date as an epoch day (int), packed coach/berth (int) and intrusive train/passenger list links
+ * (int each). That is about 58 bytes per ticket plus the primary index, versus several hundred bytes for a
+ * Ticket object graph with its Strings. Columns are allocated in fixed-size chunks, on the heap or
+ * off-heap (direct buffers) so they add nothing to GC work.
+ *
+ * Ticket objects returned by this store are views built on demand - changing them does not
+ * change the stored ticket. Base fares are kept to the paisa.
+ *
+ * Removal only drops the primary index entry and marks the slot as a tombstone (constant time).
+ * Unlinking from the train/passenger lists, releasing dictionary codes and recycling the slot is
+ * done later by compact(), in small steps, so a mass cancellation never holds the lock for long.
+ */
+public class ColumnarTicketStore implements TicketStore {
+    private static final int CHUNK_BITS = 14;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS; // slots per chunk
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final byte FREE_SLOT = -1;
+    private static final byte TOMBSTONE = -2; // removed, waiting for compaction
+    private static final int NONE = -1;
+    private static final int NO_JOURNEY_DATE = Integer.MIN_VALUE;
+
+    private final boolean offHeap;
+    private final StampedLock lock = new StampedLock();
+
+    // Primary index: ticket number -> slot
+    private final LongIntHashMap slotsByNumber = new LongIntHashMap(1024);
+
+    // Dictionary-encoded strings
+    private final StringDictionary trainNumbers = new StringDictionary();
+    private final StringDictionary passengerNames = new StringDictionary();
+    private final StringDictionary passengerKeys = new StringDictionary();
+
+    // Secondary indexes: dictionary code -> first slot of an intrusive doubly linked list
+    private int[] trainHeads = new int[0];
+    private int[] passengerHeads = new int[0];
+
+    private Chunk[] chunks = new Chunk[16];
+    private int chunkCount;
+    private int highWaterSlot;              // slots below this have been used at least once
+    private int[] freeSlots = new int[64];  // recycled slots of cancelled tickets
+    private int freeCount;
+    private int[] tombstones = new int[64]; // removed slots not compacted yet
+    private int tombstoneCount;
+    private int size;
+
+    public ColumnarTicketStore(boolean offHeap) {
+        this.offHeap = offHeap;
+    }
+
+    @Override
+    public void add(Ticket ticket) {
+        long number = ticket.getTicketNumber();
+        long stamp = lock.writeLock();
+        try {
+            if (slotsByNumber.get(number) != LongIntHashMap.NO_VALUE) {
+                throw new IllegalStateException("Duplicate ticket ID: " + ticket.getTicketId());
+            }
+            int slot = allocateSlot();
+            Chunk chunk = chunks[slot >>> CHUNK_BITS];
+            int i = slot & CHUNK_MASK;
+            Seat seat = ticket.getSeat();
+
+            chunk.ticketNumbers.put(i, number);
+            chunk.ages.put(i, (byte) ticket.getAge());
+            chunk.farePaise.put(i, Math.round(ticket.getBaseFare() * 100));
+            chunk.classes.put(i, (byte) TravelClass.of(ticket).ordinal());
+            chunk.journeyDays.put(i, ticket.getJourneyDate() == null ? NO_JOURNEY_DATE
+                    : Math.toIntExact(ticket.getJourneyDate().toEpochDay()));
+            chunk.seats.put(i, seat == null ? NONE : (seat.getCoachIndex() << 16) | seat.getBerthNumber());
+            chunk.nameCodes.put(i, passengerNames.acquire(ticket.getPassengerName()));
+
+            int trainCode = trainNumbers.acquire(TicketRepository.normalizeTrainNumber(ticket.getTrainNumber()));
+            chunk.trainCodes.put(i, trainCode);
+            trainHeads = ensureHeads(trainHeads, trainNumbers.capacity());
+            trainHeads[trainCode] = linkFirst(trainHeads[trainCode], slot, true);
+
+            int passengerCode = passengerKeys.acquire(TicketRepository.normalizePassengerName(
+                    ticket.getPassengerName()));
+            chunk.passengerKeyCodes.put(i, passengerCode);
+            passengerHeads = ensureHeads(passengerHeads, passengerKeys.capacity());
+            passengerHeads[passengerCode] = linkFirst(passengerHeads[passengerCode], slot, false);
+
+            slotsByNumber.put(number, slot);
+            size++;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public Ticket findById(long number) {
+        long stamp = lock.readLock();
+        try {
+            int slot = slotsByNumber.get(number);
+            return slot == LongIntHashMap.NO_VALUE ? null : view(slot);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public Ticket remove(long number) {
+        long stamp = lock.writeLock();
+        try {
+            int slot = slotsByNumber.remove(number);
+            if (slot == LongIntHashMap.NO_VALUE) {
+                return null;
+            }
+            Ticket ticket = view(slot);
+            markTombstone(slot);
+            return ticket;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean assignSeat(long number, Seat seat) {
+        long stamp = lock.writeLock();
+        try {
+            int slot = slotsByNumber.get(number);
+            if (slot == LongIntHashMap.NO_VALUE) {
+                return false;
+            }
+            chunks[slot >>> CHUNK_BITS].seats.put(slot & CHUNK_MASK,
+                    (seat.getCoachIndex() << 16) | seat.getBerthNumber());
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Walks the train's list once and tombstones every live ticket on it
+     */
+    @Override
+    public List<Ticket> removeByTrain(String trainNumber) {
+        long stamp = lock.writeLock();
+        try {
+            List<Ticket> removed = new ArrayList<>();
+            int code = trainNumbers.codeOf(TicketRepository.normalizeTrainNumber(trainNumber));
+            if (code < 0) {
+                return removed;
+            }
+            for (int slot = trainHeads[code]; slot != NONE; slot = next(slot, true)) {
+                if (isLive(slot)) {
+                    removed.add(view(slot));
+                    slotsByNumber.remove(chunks[slot >>> CHUNK_BITS].ticketNumbers.get(slot & CHUNK_MASK));
+                    markTombstone(slot);
+                }
+            }
+            return removed;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Unlinks up to maxTickets tombstones, releases their strings and recycles their slots
+     */
+    @Override
+    public int compact(int maxTickets) {
+        long stamp = lock.writeLock();
+        try {
+            int reclaimed = 0;
+            while (reclaimed < maxTickets && tombstoneCount > 0) {
+                int slot = tombstones[--tombstoneCount];
+                Chunk chunk = chunks[slot >>> CHUNK_BITS];
+                int i = slot & CHUNK_MASK;
+
+                int trainCode = chunk.trainCodes.get(i);
+                trainHeads[trainCode] = unlink(trainHeads[trainCode], slot, true);
+                trainNumbers.release(trainCode);
+                int passengerCode = chunk.passengerKeyCodes.get(i);
+                passengerHeads[passengerCode] = unlink(passengerHeads[passengerCode], slot, false);
+                passengerKeys.release(passengerCode);
+                passengerNames.release(chunk.nameCodes.get(i));
+
+                chunk.classes.put(i, FREE_SLOT);
+                if (freeCount == freeSlots.length) {
+                    freeSlots = Arrays.copyOf(freeSlots, freeSlots.length * 2);
+                }
+                freeSlots[freeCount++] = slot;
+                reclaimed++;
+            }
+            return reclaimed;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public int getPendingCompaction() {
+        long stamp = lock.readLock();
+        try {
+            return tombstoneCount;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public List<Ticket> findByTrain(String trainNumber) {
+        long stamp = lock.readLock();
+        try {
+            int code = trainNumbers.codeOf(TicketRepository.normalizeTrainNumber(trainNumber));
+            return code < 0 ? new ArrayList<>() : viewList(trainHeads[code], true);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public List<Ticket> findByPassenger(String passengerName) {
+        long stamp = lock.readLock();
+        try {
+            int code = passengerKeys.codeOf(TicketRepository.normalizePassengerName(passengerName));
+            return code < 0 ? new ArrayList<>() : viewList(passengerHeads[code], false);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public List<Ticket> findAll() {
+        long stamp = lock.readLock();
+        try {
+            List<Ticket> tickets = new ArrayList<>(size);
+            for (int slot = 0; slot < highWaterSlot; slot++) {
+                if (isLive(slot)) {
+                    tickets.add(view(slot));
+                }
+            }
+            return tickets;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Visits the tickets one chunk at a time - the read lock is held only while a chunk's views
+     * are built, never while the action runs, so a long export does not hold up bookings
+     */
+    @Override
+    public void forEachTicket(Consumer<? super Ticket> action) {
+        List<Ticket> batch = new ArrayList<>(CHUNK_SIZE);
+        for (int first = 0; ; first += CHUNK_SIZE) {
+            long stamp = lock.readLock();
+            try {
+                if (first >= highWaterSlot) {
+                    return;
+                }
+                int end = Math.min(first + CHUNK_SIZE, highWaterSlot);
+                for (int slot = first; slot < end; slot++) {
+                    if (isLive(slot)) {
+                        batch.add(view(slot));
+                    }
+                }
+            } finally {
+                lock.unlockRead(stamp);
+            }
+            batch.forEach(action);
+            batch.clear();
+        }
+    }
+
+    @Override
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+
+    // ==================== Helpers (caller holds the lock) ====================
+
+    /**
+     * Builds a Ticket object from the columns of one slot
+     */
+    private Ticket view(int slot) {
+        Chunk chunk = chunks[slot >>> CHUNK_BITS];
+        int i = slot & CHUNK_MASK;
+        TravelClass travelClass = TravelClass.values()[chunk.classes.get(i)];
+        int journeyDay = chunk.journeyDays.get(i);
+        Ticket ticket = ReservationService.createTicket(
+                chunk.ticketNumbers.get(i),
+                passengerNames.valueOf(chunk.nameCodes.get(i)),
+                chunk.ages.get(i),
+                trainNumbers.valueOf(chunk.trainCodes.get(i)),
+                journeyDay == NO_JOURNEY_DATE ? null : LocalDate.ofEpochDay(journeyDay),
+                chunk.farePaise.get(i) / 100.0,
+                travelClass);
+        int seat = chunk.seats.get(i);
+        if (seat != NONE) {
+            ticket.setSeat(new Seat(travelClass, seat >>> 16, seat & 0xFFFF));
+        }
+        return ticket;
+    }
+
+    private List<Ticket> viewList(int head, boolean trainList) {
+        List<Ticket> tickets = new ArrayList<>();
+        for (int slot = head; slot != NONE; slot = next(slot, trainList)) {
+            if (isLive(slot)) {
+                tickets.add(view(slot));
+            }
+        }
+        return tickets;
+    }
+
+    /**
+     * Slot holds a booked ticket (not free, not a tombstone)
+     */
+    private boolean isLive(int slot) {
+        return chunks[slot >>> CHUNK_BITS].classes.get(slot & CHUNK_MASK) >= 0;
+    }
+
+    /**
+     * Marks a removed slot as a tombstone - it stays linked until compact() reclaims it
+     */
+    private void markTombstone(int slot) {
+        chunks[slot >>> CHUNK_BITS].classes.put(slot & CHUNK_MASK, TOMBSTONE);
+        if (tombstoneCount == tombstones.length) {
+            tombstones = Arrays.copyOf(tombstones, tombstones.length * 2);
+        }
+        tombstones[tombstoneCount++] = slot;
+        size--;
+    }
+
+    /**
+     * Inserts a slot at the front of a list, returns the new head
+     */
+    private int linkFirst(int head, int slot, boolean trainList) {
+        setNext(slot, head, trainList);
+        setPrev(slot, NONE, trainList);
+        if (head != NONE) {
+            setPrev(head, slot, trainList);
+        }
+        return slot;
+    }
+
+    /**
+     * Removes a slot from a list, returns the (possibly new) head
+     */
+    private int unlink(int head, int slot, boolean trainList) {
+        int prev = prev(slot, trainList);
+        int next = next(slot, trainList);
+        if (next != NONE) {
+            setPrev(next, prev, trainList);
+        }
+        if (prev != NONE) {
+            setNext(prev, next, trainList);
+            return head;
+        }
+        return next;
+    }
+
+    private int next(int slot, boolean trainList) {
+        Chunk chunk = chunks[slot >>> CHUNK_BITS];
+        return (trainList ? chunk.trainNext : chunk.passengerNext).get(slot & CHUNK_MASK);
+    }
+
+    private int prev(int slot, boolean trainList) {
+        Chunk chunk = chunks[slot >>> CHUNK_BITS];
+        return (trainList ? chunk.trainPrev : chunk.passengerPrev).get(slot & CHUNK_MASK);
+    }
+
+    private void setNext(int slot, int value, boolean trainList) {
+        Chunk chunk = chunks[slot >>> CHUNK_BITS];
+        (trainList ? chunk.trainNext : chunk.passengerNext).put(slot & CHUNK_MASK, value);
+    }
+
+    private void setPrev(int slot, int value, boolean trainList) {
+        Chunk chunk = chunks[slot >>> CHUNK_BITS];
+        (trainList ? chunk.trainPrev : chunk.passengerPrev).put(slot & CHUNK_MASK, value);
+    }
+
+    private int allocateSlot() {
+        if (freeCount > 0) {
+            return freeSlots[--freeCount];
+        }
+        int slot = highWaterSlot++;
+        int chunkIndex = slot >>> CHUNK_BITS;
+        if (chunkIndex == chunkCount) {
+            if (chunkCount == chunks.length) {
+                chunks = Arrays.copyOf(chunks, chunks.length * 2);
+            }
+            chunks[chunkCount++] = new Chunk(offHeap);
+        }
+        return slot;
+    }
+
+    private static int[] ensureHeads(int[] heads, int capacity) {
+        if (capacity <= heads.length) {
+            return heads;
+        }
+        int oldLength = heads.length;
+        int[] grown = Arrays.copyOf(heads, Math.max(capacity, oldLength * 2));
+        Arrays.fill(grown, oldLength, grown.length, NONE);
+        return grown;
+    }
+
+    /**
+     * One block of CHUNK_SIZE slots - every column is its own buffer
+     */
+    private static final class Chunk {
+        final LongBuffer ticketNumbers;
+        final ByteBuffer ages;
+        final LongBuffer farePaise;
+        final ByteBuffer classes;
+        final IntBuffer journeyDays;
+        final IntBuffer trainCodes;
+        final IntBuffer nameCodes;
+        final IntBuffer passengerKeyCodes;
+        final IntBuffer seats;
+        final IntBuffer trainNext;
+        final IntBuffer trainPrev;
+        final IntBuffer passengerNext;
+        final IntBuffer passengerPrev;
+
+        Chunk(boolean offHeap) {
+            ticketNumbers = allocate(offHeap, 8).asLongBuffer();
+            ages = allocate(offHeap, 1);
+            farePaise = allocate(offHeap, 8).asLongBuffer();
+            classes = allocate(offHeap, 1);
+            journeyDays = allocate(offHeap, 4).asIntBuffer();
+            trainCodes = allocate(offHeap, 4).asIntBuffer();
+            nameCodes = allocate(offHeap, 4).asIntBuffer();
+            passengerKeyCodes = allocate(offHeap, 4).asIntBuffer();
+            seats = allocate(offHeap, 4).asIntBuffer();
+            trainNext = allocate(offHeap, 4).asIntBuffer();
+            trainPrev = allocate(offHeap, 4).asIntBuffer();
+            passengerNext = allocate(offHeap, 4).asIntBuffer();
+            passengerPrev = allocate(offHeap, 4).asIntBuffer();
+        }
+
+        private static ByteBuffer allocate(boolean offHeap, int bytesPerSlot) {
+            int bytes = CHUNK_SIZE * bytesPerSlot;
+            ByteBuffer buffer = offHeap ? ByteBuffer.allocateDirect(bytes) : ByteBuffer.allocate(bytes);
+            return buffer.order(ByteOrder.nativeOrder());
+        }
+    }
+}
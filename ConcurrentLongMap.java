@@ -0,0 +1,252 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * Concurrent hash map from long keys to objects, without boxing or entry objects
+ *
+ * Keys are spread over SEGMENTS segments, each an open-addressing table (linear probing) of parallel
+ * key and value arrays. Writers lock their segment; readers never lock. A value is written before its
+ * key (release/acquire), so a reader that finds a key also sees the object stored under it. Removal
+ * clears the value and leaves the key behind as a marker, so probe chains never move under a reader;
+ * a segment that fills up with markers is rebuilt into a fresh table and swapped in whole.
+ */
+public class ConcurrentLongMap<V> {
+    private static final long EMPTY = Long.MIN_VALUE; // reserved, cannot be used as a key
+    private static final int SEGMENTS = 64;           // power of two
+    private static final int MIN_CAPACITY = 16;
+    private static final VarHandle KEYS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle VALUES = MethodHandles.arrayElementVarHandle(Object[].class);
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+
+    public ConcurrentLongMap() {
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    /**
+     * Returns the value for a key, or null if absent - never blocks
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        long hash = hash(key);
+        Table table = segmentOf(hash).table;
+        int index = table.indexOf(hash);
+        while (true) {
+            long current = (long) KEYS.getAcquire(table.keys, index);
+            if (current == key) {
+                return (V) VALUES.getAcquire(table.values, index);
+            }
+            if (current == EMPTY) {
+                return null;
+            }
+            index = (index + 1) & table.mask;
+        }
+    }
+
+    /**
+     * Stores a value unless the key is present, returns the present value or null if it was stored
+     */
+    @SuppressWarnings("unchecked")
+    public V putIfAbsent(long key, V value) {
+        if (key == EMPTY || value == null) {
+            throw new IllegalArgumentException("Key " + key + " is reserved and values must not be null!");
+        }
+        long hash = hash(key);
+        Segment segment = segmentOf(hash);
+        synchronized (segment) {
+            Table table = segment.table;
+            int index = table.indexOf(hash);
+            while (true) {
+                long current = table.keys[index];
+                if (current == key) {
+                    Object present = table.values[index];
+                    if (present != null) {
+                        return (V) present;
+                    }
+                    VALUES.setRelease(table.values, index, value); // the key's removal marker is reused
+                    segment.size++;
+                    return null;
+                }
+                if (current == EMPTY) {
+                    VALUES.setRelease(table.values, index, value);
+                    KEYS.setRelease(table.keys, index, key);
+                    segment.size++;
+                    if (++table.used > table.mask - (table.mask >> 2)) { // 75% of the slots taken
+                        segment.rebuild();
+                    }
+                    return null;
+                }
+                index = (index + 1) & table.mask;
+            }
+        }
+    }
+
+    /**
+     * Removes a key, returns its value or null
+     */
+    public V remove(long key) {
+        return remove(key, null);
+    }
+
+    /**
+     * Removes a key only while it maps to the given value (any value if null), returns the removed value
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key, V expected) {
+        long hash = hash(key);
+        Segment segment = segmentOf(hash);
+        synchronized (segment) {
+            Table table = segment.table;
+            int index = table.find(hash, key);
+            if (index < 0) {
+                return null;
+            }
+            Object present = table.values[index];
+            if (present == null || (expected != null && present != expected)) {
+                return null;
+            }
+            VALUES.setRelease(table.values, index, null);
+            segment.size--;
+            return (V) present;
+        }
+    }
+
+    /**
+     * Replaces the value of a present key with update(value), under the segment lock
+     * Returns the new value, or null if the key is absent
+     */
+    @SuppressWarnings("unchecked")
+    public V computeIfPresent(long key, UnaryOperator<V> update) {
+        long hash = hash(key);
+        Segment segment = segmentOf(hash);
+        synchronized (segment) {
+            Table table = segment.table;
+            int index = table.find(hash, key);
+            Object present = index < 0 ? null : table.values[index];
+            if (present == null) {
+                return null;
+            }
+            V updated = update.apply((V) present);
+            if (updated == null) {
+                throw new IllegalArgumentException("Values must not be null!");
+            }
+            VALUES.setRelease(table.values, index, updated);
+            return updated;
+        }
+    }
+
+    /**
+     * Visits every value - weakly consistent, like the iterators of the java.util.concurrent maps
+     */
+    @SuppressWarnings("unchecked")
+    public void forEachValue(Consumer<? super V> action) {
+        for (Segment segment : segments) {
+            Table table = segment.table;
+            for (int i = 0; i < table.values.length; i++) {
+                Object value = VALUES.getAcquire(table.values, i);
+                if (value != null) {
+                    action.accept((V) value);
+                }
+            }
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size;
+        }
+        return size;
+    }
+
+    public boolean isEmpty() {
+        for (Segment segment : segments) {
+            if (segment.size > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Segment segmentOf(long hash) {
+        return segments[(int) (hash >>> 58) & (SEGMENTS - 1)];
+    }
+
+    private static long hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L; // Fibonacci hashing spreads sequential ticket numbers
+        return h ^ (h >>> 29);
+    }
+
+    private static final class Segment {
+        volatile Table table = new Table(MIN_CAPACITY);
+        volatile int size; // live keys, written under the segment lock
+
+        /**
+         * Copies the live entries into a new table - grown until they fill at most 3/8 of it, so at least
+         * 3/8 is free for inserts before the next rebuild - and swaps it in; readers still on the old
+         * table see it unchanged
+         */
+        void rebuild() {
+            Table old = table;
+            int capacity = old.keys.length;
+            while (size * 8L > capacity * 3L) {
+                capacity <<= 1;
+            }
+            Table fresh = new Table(capacity);
+            for (int i = 0; i < old.keys.length; i++) {
+                Object value = old.values[i];
+                if (value != null) {
+                    long hash = hash(old.keys[i]);
+                    int index = fresh.indexOf(hash);
+                    while (fresh.keys[index] != EMPTY) {
+                        index = (index + 1) & fresh.mask;
+                    }
+                    fresh.keys[index] = old.keys[i];
+                    fresh.values[index] = value;
+                    fresh.used++;
+                }
+            }
+            table = fresh; // volatile write publishes the filled arrays
+        }
+    }
+
+    private static final class Table {
+        final long[] keys;
+        final Object[] values;
+        final int mask;
+        int used; // slots holding a key, live or removed - only touched under the segment lock
+
+        Table(int capacity) {
+            keys = new long[capacity];
+            values = new Object[capacity];
+            Arrays.fill(keys, EMPTY);
+            mask = capacity - 1;
+        }
+
+        int indexOf(long hash) {
+            return (int) hash & mask;
+        }
+
+        /**
+         * Slot of a key (live or removed), -1 if it was never stored in this table
+         */
+        int find(long hash, long key) {
+            int index = indexOf(hash);
+            while (true) {
+                long current = keys[index];
+                if (current == key) {
+                    return index;
+                }
+                if (current == EMPTY) {
+                    return -1;
+                }
+                index = (index + 1) & mask;
+            }
+        }
+    }
+}
@@ -0,0 +1,197 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Table-driven fare calculation
+ *
+ * Total fare = (base fare + class charge) x discount factor, where the class charge and the
+ * discount factor come from a precomputed tariff table indexed by class x age band x quota.
+ * The default tariff reproduces the original SleeperTicket/ACTicket rules exactly
+ * (same operations in the same order, so results are bit-for-bit identical).
+ *
+ * Batch repricing runs in two passes over primitive arrays: a gather pass that looks up the
+ * charge and factor of every ticket, then a branch-free element-wise kernel that C2 auto-vectorizes.
+ * The kernel is isolated in computeFares() so a jdk.incubator.vector implementation can replace it
+ * on builds that enable the incubator module.
+ */
+public final class FareEngine {
+    /**
+     * Age bands with their own discount
+     */
+    public enum AgeBand {
+        CHILD, ADULT, SENIOR;
+
+        public static AgeBand of(int age) {
+            if (age < 12) {
+                return CHILD;
+            }
+            return age >= 60 ? SENIOR : ADULT;
+        }
+    }
+
+    /**
+     * Booking quota - every ticket is GENERAL today, TATKAL starts with the same rates
+     */
+    public enum Quota {
+        GENERAL, TATKAL
+    }
+
+    private static final int CLASSES = TravelClass.values().length;
+    private static final int BANDS = AgeBand.values().length;
+    private static final int QUOTAS = Quota.values().length;
+
+    private static volatile FareEngine defaultEngine = new FareEngine(Tariff.standard());
+
+    private final Tariff tariff;
+
+    public FareEngine(Tariff tariff) {
+        this.tariff = tariff;
+    }
+
+    /**
+     * Engine used by SleeperTicket and ACTicket
+     */
+    public static FareEngine getDefault() {
+        return defaultEngine;
+    }
+
+    /**
+     * Switches to a new tariff - tickets already priced keep their fare until repriced
+     */
+    public static void setDefaultTariff(Tariff tariff) {
+        defaultEngine = new FareEngine(tariff);
+    }
+
+    public Tariff getTariff() {
+        return tariff;
+    }
+
+    /**
+     * Prices one ticket from the tariff table
+     */
+    public double calculateFare(TravelClass travelClass, int age, double baseFare, Quota quota) {
+        return applyDiscount(travelClass, age, baseFare + tariff.classCharge(travelClass, quota), quota);
+    }
+
+    public double calculateFare(TravelClass travelClass, int age, double baseFare) {
+        return calculateFare(travelClass, age, baseFare, Quota.GENERAL);
+    }
+
+    /**
+     * Applies only the age/quota discount to an amount that already includes the class charge
+     */
+    public double applyDiscount(TravelClass travelClass, int age, double amount, Quota quota) {
+        return amount * tariff.discountFactor(travelClass, AgeBand.of(age), quota);
+    }
+
+    public double getClassCharge(TravelClass travelClass) {
+        return tariff.classCharge(travelClass, Quota.GENERAL);
+    }
+
+    /**
+     * Reprices a whole set of tickets (e.g. every ticket on a train) in one data-parallel pass
+     * and stores the new fare on each ticket, returns the new total
+     */
+    public double reprice(List<Ticket> tickets) {
+        int count = tickets.size();
+        double[] baseFares = new double[count];
+        double[] charges = new double[count];
+        double[] factors = new double[count];
+        double[] fares = new double[count];
+
+        // Gather: table lookups per ticket - every class from the current tariff, never the charge
+        // stored on the ticket, so a store that rebuilds its tickets reprices them to the same fare
+        for (int i = 0; i < count; i++) {
+            Ticket ticket = tickets.get(i);
+            TravelClass travelClass = TravelClass.of(ticket);
+            baseFares[i] = ticket.getBaseFare();
+            charges[i] = tariff.classCharge(travelClass, Quota.GENERAL);
+            factors[i] = tariff.discountFactor(travelClass, AgeBand.of(ticket.getAge()), Quota.GENERAL);
+        }
+
+        computeFares(baseFares, charges, factors, fares, count);
+
+        double total = 0;
+        for (int i = 0; i < count; i++) {
+            tickets.get(i).setFare(fares[i]);
+            total += fares[i];
+        }
+        return total;
+    }
+
+    /**
+     * Element-wise kernel: fares[i] = (baseFares[i] + charges[i]) * factors[i]
+     */
+    static void computeFares(double[] baseFares, double[] charges, double[] factors, double[] fares, int count) {
+        for (int i = 0; i < count; i++) {
+            fares[i] = (baseFares[i] + charges[i]) * factors[i];
+        }
+    }
+
+    /**
+     * Immutable tariff table: class charge per class x quota, discount factor per class x age band x quota
+     */
+    public static final class Tariff {
+        private final double[] classCharges;    // [class][quota]
+        private final double[] discountFactors; // [class][band][quota]
+
+        private Tariff(double[] classCharges, double[] discountFactors) {
+            this.classCharges = classCharges;
+            this.discountFactors = discountFactors;
+        }
+
+        /**
+         * The original rules: Sleeper +50, 1A +500, 2A +300, 3A +200;
+         * children pay 50%, seniors 60% in Sleeper and 70% in AC
+         */
+        public static Tariff standard() {
+            Tariff tariff = new Tariff(new double[CLASSES * QUOTAS], new double[CLASSES * BANDS * QUOTAS]);
+            Arrays.fill(tariff.discountFactors, 1.0);
+            for (Quota quota : Quota.values()) {
+                tariff.setCharge(TravelClass.SLEEPER, quota, 50.0);
+                tariff.setCharge(TravelClass.FIRST_AC, quota, 500.0);
+                tariff.setCharge(TravelClass.SECOND_AC, quota, 300.0);
+                tariff.setCharge(TravelClass.THIRD_AC, quota, 200.0);
+                for (TravelClass travelClass : TravelClass.values()) {
+                    tariff.setFactor(travelClass, AgeBand.CHILD, quota, 0.5);
+                    tariff.setFactor(travelClass, AgeBand.SENIOR, quota, travelClass.isAc() ? 0.7 : 0.6);
+                }
+            }
+            return tariff;
+        }
+
+        /**
+         * Returns a copy with a different class charge
+         */
+        public Tariff withClassCharge(TravelClass travelClass, Quota quota, double charge) {
+            Tariff copy = new Tariff(classCharges.clone(), discountFactors.clone());
+            copy.setCharge(travelClass, quota, charge);
+            return copy;
+        }
+
+        /**
+         * Returns a copy with a different discount factor (1.0 = no discount)
+         */
+        public Tariff withDiscountFactor(TravelClass travelClass, AgeBand band, Quota quota, double factor) {
+            Tariff copy = new Tariff(classCharges.clone(), discountFactors.clone());
+            copy.setFactor(travelClass, band, quota, factor);
+            return copy;
+        }
+
+        public double classCharge(TravelClass travelClass, Quota quota) {
+            return classCharges[travelClass.ordinal() * QUOTAS + quota.ordinal()];
+        }
+
+        public double discountFactor(TravelClass travelClass, AgeBand band, Quota quota) {
+            return discountFactors[(travelClass.ordinal() * BANDS + band.ordinal()) * QUOTAS + quota.ordinal()];
+        }
+
+        private void setCharge(TravelClass travelClass, Quota quota, double charge) {
+            classCharges[travelClass.ordinal() * QUOTAS + quota.ordinal()] = charge;
+        }
+
+        private void setFactor(TravelClass travelClass, AgeBand band, Quota quota, double factor) {
+            discountFactors[(travelClass.ordinal() * BANDS + band.ordinal()) * QUOTAS + quota.ordinal()] = factor;
+        }
+    }
+}
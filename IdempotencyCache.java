@@ -0,0 +1,187 @@
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Remembers the outcome of recent requests by client idempotency key, so a retried booking or
+ * cancellation gets the original result back instead of running a second time
+ *
+ * Fixed memory: keys are spread over SEGMENTS segments, each an insertion-ordered map of at most
+ * capacity / SEGMENTS entries. A full segment drops its oldest entry, and entries older than the
+ * time-to-live count as absent and are dropped from the old end as new ones arrive.
+ * One lock per segment, held only to look up or insert an entry - never while the request runs.
+ * A retry that arrives while the first attempt is still running waits for its outcome.
+ * Only successful outcomes are kept: a request that failed can be retried under the same key.
+ * Each entry keeps a 128-bit digest of its request (see fingerprint) to tell a retry from a different
+ * request sent with a reused key - a fixed 16 bytes, however long the request fields are.
+ */
+public class IdempotencyCache<V> {
+    public static final int DEFAULT_CAPACITY = 100_000;
+    public static final long DEFAULT_TTL_MILLIS = 10 * 60 * 1000; // 10 minutes
+    public static final int MAX_KEY_LENGTH = 64;
+    private static final int SEGMENTS = 64;
+    private static final int FINGERPRINT_BYTES = 16; // SHA-256 cut to 128 bits
+
+    private final Segment<V>[] segments;
+    private final long ttlNanos;
+    private final LongAdder evictions = new LongAdder();
+
+    @SuppressWarnings("unchecked")
+    public IdempotencyCache(int capacity, long ttlMillis) {
+        if (capacity < SEGMENTS || ttlMillis <= 0) {
+            throw new IllegalArgumentException("Idempotency cache needs at least " + SEGMENTS
+                    + " entries and a positive time-to-live!");
+        }
+        this.ttlNanos = ttlMillis * 1_000_000;
+        this.segments = (Segment<V>[]) new Segment<?>[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment<>(capacity / SEGMENTS);
+        }
+    }
+
+    /**
+     * Runs the action once per key: a repeat of the same request returns the first outcome
+     * The fingerprint identifies the request - reusing a key for a different one throws IllegalArgumentException
+     */
+    public V execute(String key, byte[] fingerprint, Supplier<V> action) {
+        validateKey(key);
+        Segment<V> segment = segments[(key.hashCode() & 0x7FFFFFFF) % SEGMENTS];
+        long now = System.nanoTime();
+        Entry<V> entry;
+        Entry<V> created = null;
+        synchronized (segment) {
+            evictExpired(segment, now);
+            entry = segment.entries.get(key);
+            if (entry == null) {
+                created = new Entry<>(fingerprint, now);
+                segment.entries.put(key, created);
+                if (segment.entries.size() > segment.capacity) {
+                    Iterator<Entry<V>> oldest = segment.entries.values().iterator();
+                    oldest.next();
+                    oldest.remove();
+                    evictions.increment();
+                }
+            }
+        }
+
+        if (created == null) {
+            if (!Arrays.equals(entry.fingerprint, fingerprint)) {
+                throw new IllegalArgumentException("Idempotency key " + key
+                        + " was already used for a different request!");
+            }
+            try {
+                return entry.result.join();
+            } catch (CompletionException e) {
+                // The first attempt failed while this retry waited for it - same outcome
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+
+        try {
+            V value = action.get();
+            created.result.complete(value);
+            return value;
+        } catch (RuntimeException e) {
+            synchronized (segment) {
+                segment.entries.remove(key, created);
+            }
+            created.result.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Digest of a request's (normalized) fields, in order - equal only for the same fields, null included
+     */
+    public static byte[] fingerprint(Object... fields) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e); // every JDK must provide it
+        }
+        for (Object field : fields) {
+            if (field == null) {
+                digest.update((byte) 0);
+                continue;
+            }
+            byte[] bytes = field.toString().getBytes(StandardCharsets.UTF_8);
+            digest.update((byte) 1);
+            digest.update(new byte[] {(byte) (bytes.length >>> 24), (byte) (bytes.length >>> 16),
+                    (byte) (bytes.length >>> 8), (byte) bytes.length}); // length first: no two splits collide
+            digest.update(bytes);
+        }
+        return Arrays.copyOf(digest.digest(), FINGERPRINT_BYTES);
+    }
+
+    /**
+     * A key is 1 to MAX_KEY_LENGTH printable ASCII characters (a UUID fits), so entries have a bounded size
+     */
+    public static void validateKey(String key) {
+        if (key == null || key.isEmpty() || key.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Idempotency key must have 1 to " + MAX_KEY_LENGTH
+                    + " characters!");
+        }
+        for (int i = 0; i < key.length(); i++) {
+            if (key.charAt(i) < 0x21 || key.charAt(i) > 0x7E) {
+                throw new IllegalArgumentException("Idempotency key must be printable ASCII without spaces!");
+            }
+        }
+    }
+
+    /**
+     * Keys dropped before their time-to-live because their segment was full
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment<V> segment : segments) {
+            synchronized (segment) {
+                size += segment.entries.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Entries are in insertion order, so the expired ones are all at the front
+     */
+    private void evictExpired(Segment<V> segment, long now) {
+        Iterator<Entry<V>> oldest = segment.entries.values().iterator();
+        while (oldest.hasNext() && now - oldest.next().createdNanos > ttlNanos) {
+            oldest.remove();
+        }
+    }
+
+    private static final class Segment<V> {
+        final int capacity;
+        final Map<String, Entry<V>> entries;
+
+        Segment(int capacity) {
+            this.capacity = capacity;
+            this.entries = new LinkedHashMap<>(capacity * 4 / 3 + 1);
+        }
+    }
+
+    private static final class Entry<V> {
+        final byte[] fingerprint;
+        final long createdNanos;
+        final CompletableFuture<V> result = new CompletableFuture<>();
+
+        Entry(byte[] fingerprint, long createdNanos) {
+            this.fingerprint = fingerprint;
+            this.createdNanos = createdNanos;
+        }
+    }
+}
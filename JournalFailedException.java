@@ -0,0 +1,15 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Thrown when the booking journal failed while writing or syncing a record: the record may or may not
+ * be on disk, so the change it describes must not be undone - recovery decides. The journal accepts
+ * nothing after this; the node has to be restarted.
+ */
+public class JournalFailedException extends UncheckedIOException {
+    private static final long serialVersionUID = 1L;
+
+    public JournalFailedException(IOException cause) {
+        super("Booking journal write failed: " + cause.getMessage(), cause);
+    }
+}
@@ -0,0 +1,289 @@
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Ticket store partitioned by journey date: one child store per date, plus one for undated tickets
+ *
+ * A dated ticket number carries its date's slot above SLOT_SPAN (slot * SLOT_SPAN + sequence number), so a
+ * lookup by number goes straight to one partition. The slot is 1 + the date's epoch day modulo SLOTS;
+ * undated tickets are slot 0 and keep their plain numbers (TKT1000). Slots stay unique as long as the
+ * live dates span fewer than SLOTS days - ReservationService books at most MAX_ADVANCE_DAYS ahead and
+ * drops each date soon after its journey.
+ *
+ * Dropping a date (removeJourney) is constant time, however many tickets it holds - the child store is
+ * handed back whole. Lookups that name a date touch only its partition; the others visit every one.
+ */
+public class JourneyDateStore implements TicketStore {
+    public static final long SLOT_SPAN = 1_000_000_000_000L; // a multiple of ShardRing.PARTITIONS
+    public static final int SLOTS = 366;
+
+    private final Supplier<TicketStore> storeFactory;
+    private final AtomicReferenceArray<Partition> partitions = new AtomicReferenceArray<>(SLOTS + 1);
+    private int compactionCursor; // partition compact() starts at, so each gets its turn
+
+    /**
+     * Undated tickets go to the given store, each journey date gets a new one from storeFactory
+     */
+    public JourneyDateStore(TicketStore undated, Supplier<TicketStore> storeFactory) {
+        this.storeFactory = storeFactory;
+        partitions.set(0, new Partition(null, undated));
+    }
+
+    @Override
+    public void add(Ticket ticket) {
+        partitionFor(ticket.getJourneyDate()).store.add(ticket);
+    }
+
+    @Override
+    public Ticket findById(long ticketNumber) {
+        Partition partition = partitionOf(ticketNumber);
+        return partition == null ? null : partition.store.findById(ticketNumber);
+    }
+
+    @Override
+    public Ticket remove(long ticketNumber) {
+        Partition partition = partitionOf(ticketNumber);
+        return partition == null ? null : partition.store.remove(ticketNumber);
+    }
+
+    @Override
+    public boolean assignSeat(long ticketNumber, Seat seat) {
+        Partition partition = partitionOf(ticketNumber);
+        return partition != null && partition.store.assignSeat(ticketNumber, seat);
+    }
+
+    @Override
+    public List<Ticket> removeByTrain(String trainNumber) {
+        List<Ticket> removed = new ArrayList<>();
+        for (int slot = 0; slot <= SLOTS; slot++) {
+            Partition partition = partitions.get(slot);
+            if (partition != null) {
+                removed.addAll(partition.store.removeByTrain(trainNumber));
+            }
+        }
+        return removed;
+    }
+
+    @Override
+    public List<Ticket> findByTrain(String trainNumber) {
+        List<Ticket> tickets = new ArrayList<>();
+        for (int slot = 0; slot <= SLOTS; slot++) {
+            Partition partition = partitions.get(slot);
+            if (partition != null) {
+                tickets.addAll(partition.store.findByTrain(trainNumber));
+            }
+        }
+        return tickets;
+    }
+
+    /**
+     * Tickets on one journey of a train (null date = undated tickets) - touches only that date's partition
+     */
+    public List<Ticket> findByTrain(String trainNumber, LocalDate journeyDate) {
+        Partition partition = findPartition(journeyDate);
+        return partition == null ? new ArrayList<>() : partition.store.findByTrain(trainNumber);
+    }
+
+    @Override
+    public List<Ticket> findByPassenger(String passengerName) {
+        List<Ticket> tickets = new ArrayList<>();
+        for (int slot = 0; slot <= SLOTS; slot++) {
+            Partition partition = partitions.get(slot);
+            if (partition != null) {
+                tickets.addAll(partition.store.findByPassenger(passengerName));
+            }
+        }
+        return tickets;
+    }
+
+    @Override
+    public List<Ticket> findAll() {
+        List<Ticket> tickets = new ArrayList<>(size());
+        forEachTicket(tickets::add);
+        return tickets;
+    }
+
+    @Override
+    public void forEachTicket(Consumer<? super Ticket> action) {
+        for (int slot = 0; slot <= SLOTS; slot++) {
+            Partition partition = partitions.get(slot);
+            if (partition != null) {
+                partition.store.forEachTicket(action);
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (int slot = 0; slot <= SLOTS; slot++) {
+            Partition partition = partitions.get(slot);
+            if (partition != null) {
+                size += partition.store.size();
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        for (int slot = 0; slot <= SLOTS; slot++) {
+            Partition partition = partitions.get(slot);
+            if (partition != null && !partition.store.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int compact(int maxTickets) {
+        int compacted = 0;
+        int start = compactionCursor;
+        for (int i = 0; i <= SLOTS && compacted < maxTickets; i++) {
+            int slot = (start + i) % (SLOTS + 1);
+            Partition partition = partitions.get(slot);
+            if (partition != null && partition.store.getPendingCompaction() > 0) {
+                compacted += partition.store.compact(maxTickets - compacted);
+                compactionCursor = slot;
+            }
+        }
+        return compacted;
+    }
+
+    @Override
+    public int getPendingCompaction() {
+        int pending = 0;
+        for (int slot = 0; slot <= SLOTS; slot++) {
+            Partition partition = partitions.get(slot);
+            if (partition != null) {
+                pending += partition.store.getPendingCompaction();
+            }
+        }
+        return pending;
+    }
+
+    @Override
+    public void appendSummary(StringBuilder out) {
+        out.append("📅 Journey dates       : ").append(getJourneyDates().size()).append(" open\n");
+        partitions.get(0).store.appendSummary(out);
+    }
+
+    @Override
+    public void appendPrometheus(StringBuilder out) {
+        out.append("# HELP railway_store_journey_dates Journey dates with a partition of their own\n");
+        out.append("# TYPE railway_store_journey_dates gauge\n");
+        out.append("railway_store_journey_dates ").append(getJourneyDates().size()).append('\n');
+        partitions.get(0).store.appendPrometheus(out);
+    }
+
+    /**
+     * Dates that currently have a partition, in date order
+     */
+    public List<LocalDate> getJourneyDates() {
+        List<LocalDate> dates = new ArrayList<>();
+        for (int slot = 1; slot <= SLOTS; slot++) {
+            Partition partition = partitions.get(slot);
+            if (partition != null) {
+                dates.add(partition.date);
+            }
+        }
+        dates.sort(null);
+        return dates;
+    }
+
+    /**
+     * Detaches the partition of a journey date in one step and returns its store (null if it has none)
+     * Its tickets are gone from this store; archiving or closing the returned store is up to the caller
+     */
+    public TicketStore removeJourney(LocalDate journeyDate) {
+        int slot = slotOf(Objects.requireNonNull(journeyDate, "journeyDate"));
+        Partition partition = partitions.get(slot);
+        if (partition == null || !journeyDate.equals(partition.date)
+                || !partitions.compareAndSet(slot, partition, null)) {
+            return null;
+        }
+        return partition.store;
+    }
+
+    /**
+     * Partition slot of a journey date, 0 for undated tickets
+     */
+    public static int slotOf(LocalDate journeyDate) {
+        return journeyDate == null ? 0 : 1 + (int) Math.floorMod(journeyDate.toEpochDay(), (long) SLOTS);
+    }
+
+    /**
+     * Ticket number of the given sequence number on a journey date (the sequence number itself when undated)
+     */
+    public static long ticketNumberOf(LocalDate journeyDate, long sequenceNumber) {
+        if (sequenceNumber < 0 || sequenceNumber >= SLOT_SPAN) {
+            throw new IllegalStateException("Ticket sequence number " + sequenceNumber + " is out of range!");
+        }
+        return slotOf(journeyDate) * SLOT_SPAN + sequenceNumber;
+    }
+
+    /**
+     * Sequence part of a ticket number, without the date slot - what the ticket counter handed out
+     */
+    public static long sequenceOf(long ticketNumber) {
+        return ticketNumber % SLOT_SPAN;
+    }
+
+    private Partition partitionOf(long ticketNumber) {
+        long slot = ticketNumber / SLOT_SPAN;
+        return ticketNumber < 0 || slot > SLOTS ? null : partitions.get((int) slot);
+    }
+
+    private Partition findPartition(LocalDate journeyDate) {
+        Partition partition = partitions.get(slotOf(journeyDate));
+        return partition != null && Objects.equals(partition.date, journeyDate) ? partition : null;
+    }
+
+    /**
+     * The partition of a date, created on the first ticket for it
+     */
+    private Partition partitionFor(LocalDate journeyDate) {
+        int slot = slotOf(journeyDate);
+        while (true) {
+            Partition partition = partitions.get(slot);
+            if (partition != null) {
+                if (!Objects.equals(partition.date, journeyDate)) {
+                    throw new IllegalStateException("Journey date " + journeyDate + " shares its partition with "
+                            + partition.date + ", which has not been dropped yet!");
+                }
+                return partition;
+            }
+            Partition created = new Partition(journeyDate, storeFactory.get());
+            if (partitions.compareAndSet(slot, null, created)) {
+                return created;
+            }
+            closeQuietly(created.store); // another thread created it first
+        }
+    }
+
+    static void closeQuietly(TicketStore store) {
+        if (store instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) store).close();
+            } catch (Exception e) {
+                System.err.println("⚠️  Could not close a ticket store: " + e.getMessage());
+            }
+        }
+    }
+
+    private static final class Partition {
+        final LocalDate date; // null for the undated partition
+        final TicketStore store;
+
+        Partition(LocalDate date, TicketStore store) {
+            this.date = date;
+            this.store = store;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background expiry of completed journeys
+ * Advances the service's expiry timing wheel on a daemon thread, so journey dates are dropped on time
+ * even while no new date is being booked (see ReservationService.expireJourneys).
+ */
+public class JourneyExpiry implements AutoCloseable {
+    public static final long DEFAULT_INTERVAL_MILLIS = 60_000;
+
+    private final ReservationService service;
+    private final ScheduledExecutorService executor;
+
+    public JourneyExpiry(ReservationService service, long intervalMillis) {
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("Journey expiry interval must be greater than 0!");
+        }
+        this.service = service;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "journey-expiry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::runOnce, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void runOnce() {
+        try {
+            service.expireJourneys(); // counted in the metrics - printing here would cut into the menu
+        } catch (RuntimeException e) {
+            System.err.println("⚠️  Journey expiry failed: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
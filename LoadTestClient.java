@@ -0,0 +1,257 @@
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load-test client for the ReservationServer
+ * Every client loops: book a ticket, view it, and cancel one booking in four.
+ * Reports requests/s and latency percentiles per operation.
+ *
+ * Run:  java RailwayReservationSystem --serve 8080        (in one terminal)
+ *       java LoadTestClient [--url http://localhost:8080] [--clients 200] [--requests 100000] [--trains 1000]
+ *   or  java LoadTestClient --embedded [--clients ...]     (server and client in one JVM)
+ */
+public class LoadTestClient {
+    private static final int BOOK = 0;
+    private static final int VIEW = 1;
+    private static final int CANCEL = 2;
+    private static final String[] OPERATIONS = {"POST /tickets", "GET /tickets/{id}", "DELETE /tickets/{id}"};
+
+    private final HttpClient client;
+    private final String baseUrl;
+    private final int trains;
+    private final AtomicLong remaining;
+    private final AtomicLong rejected = new AtomicLong(); // 409 - class and waiting list full
+    private final AtomicLong shed = new AtomicLong();     // 429 - admission control, retry later
+    private final AtomicLong failed = new AtomicLong();   // transport errors and unexpected statuses
+
+    public LoadTestClient(String baseUrl, int totalRequests, int trains) {
+        this.baseUrl = baseUrl;
+        this.trains = trains;
+        this.remaining = new AtomicLong(totalRequests);
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .executor(ReservationServer.newThreadPerTaskExecutor("load-test-http"))
+                .build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        int clients = Integer.parseInt(getOption(args, "--clients", "200"));
+        int requests = Integer.parseInt(getOption(args, "--requests", "100000"));
+        int trains = Integer.parseInt(getOption(args, "--trains", "1000"));
+        String url = getOption(args, "--url", "http://localhost:" + ReservationServer.DEFAULT_PORT);
+
+        ReservationServer embedded = null;
+        if (Arrays.asList(args).contains("--embedded")) {
+            embedded = new ReservationServer(new ReservationService(), 0);
+            embedded.start();
+            url = "http://localhost:" + embedded.getPort();
+        }
+        try {
+            new LoadTestClient(url, requests, trains).run(clients);
+        } finally {
+            if (embedded != null) {
+                embedded.close();
+            }
+        }
+    }
+
+    /**
+     * Runs the clients until the request budget is used up, then prints the report
+     */
+    public void run(int clients) throws InterruptedException {
+        System.out.println("🚦 " + clients + " clients -> " + baseUrl + " ("
+                + (ReservationServer.isVirtualThreadsAvailable() ? "virtual" : "platform") + " threads)");
+        long[][][] latencies = new long[clients][][];
+        int[][] counts = new int[clients][];
+        CountDownLatch done = new CountDownLatch(clients);
+        ExecutorService executor = ReservationServer.newThreadPerTaskExecutor("load-test-client");
+        long start = System.nanoTime();
+        for (int c = 0; c < clients; c++) {
+            int clientIndex = c;
+            executor.execute(() -> {
+                try {
+                    Worker worker = new Worker(clientIndex);
+                    worker.run();
+                    latencies[clientIndex] = worker.latencies;
+                    counts[clientIndex] = worker.counts;
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        long elapsed = System.nanoTime() - start;
+        executor.shutdown();
+        printReport(latencies, counts, elapsed);
+    }
+
+    private void printReport(long[][][] latencies, int[][] counts, long elapsedNanos) {
+        long total = 0;
+        List<String> lines = new ArrayList<>();
+        long[] all = new long[0];
+        for (int op = 0; op < OPERATIONS.length; op++) {
+            long[] merged = merge(latencies, counts, op);
+            total += merged.length;
+            all = concat(all, merged);
+            lines.add(formatLine(OPERATIONS[op], merged));
+        }
+        Arrays.sort(all);
+        lines.add(formatLine("all", all));
+
+        double seconds = elapsedNanos / 1_000_000_000.0;
+        System.out.println();
+        System.out.println(String.format(Locale.ROOT, "%-22s %10s %10s %10s %10s %10s", "Operation", "Requests",
+                "p50 ms", "p90 ms", "p99 ms", "max ms"));
+        for (String line : lines) {
+            System.out.println(line);
+        }
+        System.out.println();
+        System.out.println(String.format(Locale.ROOT, "Throughput : %.0f requests/s (%d requests in %.2f s)",
+                total / seconds, total, seconds));
+        System.out.println("Rejected   : " + rejected.get() + " (409 - class and waiting list full)");
+        System.out.println("Shed       : " + shed.get() + " (429 - admission control, retry later)");
+        System.out.println("Failed     : " + failed.get());
+    }
+
+    /**
+     * One simulated client with its own latency buffers (no sharing on the hot path)
+     */
+    private final class Worker {
+        final long[][] latencies = {new long[1024], new long[1024], new long[1024]};
+        final int[] counts = new int[OPERATIONS.length];
+        final Random random;
+        final int clientIndex;
+
+        Worker(int clientIndex) {
+            this.random = new Random(clientIndex);
+            this.clientIndex = clientIndex;
+        }
+
+        void run() {
+            int iteration = 0;
+            while (remaining.getAndDecrement() > 0) {
+                String ticketId = book(iteration);
+                if (ticketId != null && remaining.getAndDecrement() > 0) {
+                    send(VIEW, HttpRequest.newBuilder(URI.create(baseUrl + "/tickets/" + ticketId)).GET(), 200);
+                    if (iteration % 4 == 0 && remaining.getAndDecrement() > 0) {
+                        send(CANCEL, HttpRequest.newBuilder(URI.create(baseUrl + "/tickets/" + ticketId))
+                                .header("Idempotency-Key", "client" + clientIndex + "-cancel" + iteration)
+                                .DELETE(), 200);
+                    }
+                }
+                iteration++;
+            }
+        }
+
+        private String book(int iteration) {
+            int roll = random.nextInt(100);
+            String travelClass = roll < 70 ? "SL" : roll < 90 ? "3A" : roll < 97 ? "2A" : "1A";
+            String body = "{\"passengerName\":\"Load Client " + iteration + "\",\"age\":" + (1 + random.nextInt(90))
+                    + ",\"trainNumber\":\"T" + random.nextInt(trains) + "\",\"baseFare\":" + (100 + random.nextInt(2000))
+                    + ",\"class\":\"" + travelClass + "\"}";
+            HttpResponse<String> response = send(BOOK, HttpRequest.newBuilder(URI.create(baseUrl + "/tickets"))
+                    .header("Content-Type", "application/json")
+                    .header("Idempotency-Key", "client" + clientIndex + "-book" + iteration)
+                    .POST(HttpRequest.BodyPublishers.ofString(body)), 201);
+            if (response == null || response.statusCode() != 201) {
+                return null;
+            }
+            String json = response.body();
+            int start = json.indexOf("\"ticketId\":\"") + 12;
+            return json.substring(start, json.indexOf('"', start));
+        }
+
+        private HttpResponse<String> send(int operation, HttpRequest.Builder request, int expectedStatus) {
+            long start = System.nanoTime();
+            try {
+                HttpResponse<String> response = client.send(request.timeout(Duration.ofSeconds(30)).build(),
+                        HttpResponse.BodyHandlers.ofString());
+                record(operation, System.nanoTime() - start);
+                if (response.statusCode() == 409) {
+                    rejected.incrementAndGet();
+                } else if (response.statusCode() == 429) {
+                    shed.incrementAndGet();
+                } else if (response.statusCode() != expectedStatus) {
+                    failed.incrementAndGet();
+                }
+                return response;
+            } catch (Exception e) {
+                if (e instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+                failed.incrementAndGet();
+                return null;
+            }
+        }
+
+        private void record(int operation, long nanos) {
+            if (counts[operation] == latencies[operation].length) {
+                latencies[operation] = Arrays.copyOf(latencies[operation], counts[operation] * 2);
+            }
+            latencies[operation][counts[operation]++] = nanos;
+        }
+    }
+
+    // ==================== Helpers ====================
+
+    private static long[] merge(long[][][] latencies, int[][] counts, int operation) {
+        int size = 0;
+        for (int c = 0; c < latencies.length; c++) {
+            size += counts[c] == null ? 0 : counts[c][operation];
+        }
+        long[] merged = new long[size];
+        int position = 0;
+        for (int c = 0; c < latencies.length; c++) {
+            if (counts[c] != null) {
+                System.arraycopy(latencies[c][operation], 0, merged, position, counts[c][operation]);
+                position += counts[c][operation];
+            }
+        }
+        Arrays.sort(merged);
+        return merged;
+    }
+
+    private static long[] concat(long[] first, long[] second) {
+        long[] result = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+
+    private static String formatLine(String name, long[] sorted) {
+        return String.format(Locale.ROOT, "%-22s %10d %10.2f %10.2f %10.2f %10.2f", name, sorted.length,
+                percentile(sorted, 0.50), percentile(sorted, 0.90), percentile(sorted, 0.99),
+                sorted.length == 0 ? 0 : sorted[sorted.length - 1] / 1_000_000.0);
+    }
+
+    /**
+     * Nearest-rank percentile of sorted nanosecond latencies, in milliseconds
+     */
+    private static double percentile(long[] sorted, double fraction) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(fraction * sorted.length);
+        return sorted[Math.max(0, rank - 1)] / 1_000_000.0;
+    }
+
+    private static String getOption(String[] args, String name, String defaultValue) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals(name)) {
+                return args[i + 1];
+            }
+        }
+        return defaultValue;
+    }
+}
@@ -0,0 +1,143 @@
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from long keys to int values, without boxing
+ * Linear probing with backward-shift deletion (no tombstones). Not thread-safe.
+ */
+public class LongIntHashMap {
+    public static final int NO_VALUE = -1;
+
+    private static final long EMPTY = Long.MIN_VALUE; // reserved, cannot be used as a key
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+    private int resizeAt;
+
+    public LongIntHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        allocate(capacity);
+    }
+
+    /**
+     * Returns the value for a key, or NO_VALUE if absent
+     */
+    public int get(long key) {
+        int index = indexOf(key);
+        while (true) {
+            long current = keys[index];
+            if (current == key) {
+                return values[index];
+            }
+            if (current == EMPTY) {
+                return NO_VALUE;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    /**
+     * Stores a value, returns the previous value or NO_VALUE
+     */
+    public int put(long key, int value) {
+        if (key == EMPTY) {
+            throw new IllegalArgumentException("Key " + key + " is reserved!");
+        }
+        int index = indexOf(key);
+        while (true) {
+            long current = keys[index];
+            if (current == key) {
+                int previous = values[index];
+                values[index] = value;
+                return previous;
+            }
+            if (current == EMPTY) {
+                keys[index] = key;
+                values[index] = value;
+                if (++size >= resizeAt) {
+                    resize();
+                }
+                return NO_VALUE;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    /**
+     * Removes a key, returns its value or NO_VALUE
+     */
+    public int remove(long key) {
+        int index = indexOf(key);
+        while (true) {
+            long current = keys[index];
+            if (current == EMPTY) {
+                return NO_VALUE;
+            }
+            if (current == key) {
+                int previous = values[index];
+                shiftBack(index);
+                size--;
+                return previous;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Backward-shift deletion: pull later entries of the probe chain into the gap
+     */
+    private void shiftBack(int gap) {
+        int index = gap;
+        while (true) {
+            index = (index + 1) & mask;
+            long key = keys[index];
+            if (key == EMPTY) {
+                break;
+            }
+            int home = indexOf(key);
+            // Move the entry if its home slot is not between the gap and its current slot
+            if (((index - home) & mask) >= ((index - gap) & mask)) {
+                keys[gap] = key;
+                values[gap] = values[index];
+                gap = index;
+            }
+        }
+        keys[gap] = EMPTY;
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(oldKeys.length << 1);
+        for (int i = 0; i < oldKeys.length; i++) {
+            long key = oldKeys[i];
+            if (key != EMPTY) {
+                int index = indexOf(key);
+                while (keys[index] != EMPTY) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = key;
+                values[index] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        mask = capacity - 1;
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private int indexOf(long key) {
+        long h = key * 0x9E3779B97F4A7C15L; // Fibonacci hashing spreads sequential ticket numbers
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,315 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.time.LocalDate;
+
+/**
+ * Streams a ticket manifest/report in human-readable text, CSV or JSON
+ *
+ * Tickets are formatted into one reusable buffer (no per-field Strings, no String.format) and the
+ * buffer is handed to the underlying Writer in large blocks, so dumping millions of tickets runs at
+ * the speed of the file or pipe. Call finish() once after the last ticket. Not thread-safe.
+ */
+public class ManifestWriter {
+    public static final String DIVIDER = "═".repeat(50);
+    public static final String THIN_DIVIDER = "─".repeat(50);
+
+    private static final int FLUSH_THRESHOLD = 1 << 16; // chars buffered before each write
+
+    /**
+     * Output format, chosen with --format text|csv|json
+     */
+    public enum Format {
+        TEXT, CSV, JSON;
+
+        public static Format fromName(String name) {
+            if (name == null) {
+                return TEXT;
+            }
+            for (Format format : values()) {
+                if (format.name().equalsIgnoreCase(name.trim())) {
+                    return format;
+                }
+            }
+            throw new IllegalArgumentException("Unknown format: " + name + " (expected text, csv or json)");
+        }
+    }
+
+    private final Writer out;
+    private final Format format;
+    private final StringBuilder buffer = new StringBuilder(FLUSH_THRESHOLD + 1024);
+    private char[] chunk = new char[FLUSH_THRESHOLD + 1024];
+    private long ticketCount;
+    private long totalFarePaise;
+    private boolean finished;
+
+    public ManifestWriter(Writer out, Format format) {
+        this.out = out;
+        this.format = format;
+        appendHeader();
+    }
+
+    /**
+     * Appends one ticket, writing the buffer out once it is full
+     */
+    public void write(Ticket ticket) throws IOException {
+        if (finished) {
+            throw new IllegalStateException("Manifest is already finished!");
+        }
+        switch (format) {
+            case CSV:
+                appendCsv(ticket);
+                break;
+            case JSON:
+                appendJson(ticket);
+                break;
+            default:
+                appendText(ticket);
+        }
+        ticketCount++;
+        totalFarePaise += toPaise(ticket.getFare());
+        if (buffer.length() >= FLUSH_THRESHOLD) {
+            drain();
+        }
+    }
+
+    /**
+     * Writes the footer and everything still buffered, then flushes the Writer (it is not closed)
+     */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        appendFooter();
+        drain();
+        out.flush();
+    }
+
+    public long getTicketCount() {
+        return ticketCount;
+    }
+
+    public double getTotalFare() {
+        return totalFarePaise / 100.0;
+    }
+
+    // ==================== Formats ====================
+
+    private void appendHeader() {
+        if (format == Format.CSV) {
+            buffer.append("ticket_id,passenger_name,age,train_number,journey_date,class,seat,base_fare,total_fare\n");
+        } else if (format == Format.JSON) {
+            buffer.append("[\n");
+        } else {
+            buffer.append(DIVIDER).append('\n');
+            buffer.append("🚂 TICKET MANIFEST\n");
+            buffer.append(DIVIDER).append('\n');
+            pad(buffer.append("Ticket ID"), 9, 20);
+            pad(buffer.append("Passenger"), 9, 26);
+            pad(buffer.append("Age"), 3, 5);
+            pad(buffer.append("Train"), 5, 10);
+            pad(buffer.append("Date"), 4, 12);
+            pad(buffer.append("Class"), 5, 7);
+            pad(buffer.append("Berth"), 5, 9);
+            buffer.append("Total Fare\n");
+            buffer.append(THIN_DIVIDER).append('\n');
+        }
+    }
+
+    private void appendFooter() {
+        if (format == Format.JSON) {
+            buffer.append(ticketCount == 0 ? "]\n" : "\n]\n");
+        } else if (format == Format.TEXT) {
+            buffer.append(THIN_DIVIDER).append('\n');
+            buffer.append("Tickets : ").append(ticketCount).append('\n');
+            buffer.append("Total   : ₹");
+            appendAmount(buffer, totalFarePaise);
+            buffer.append('\n').append(DIVIDER).append('\n');
+        }
+    }
+
+    private void appendText(Ticket ticket) {
+        int start = buffer.length();
+        buffer.append(Ticket.ID_PREFIX).append(ticket.getTicketNumber());
+        pad(buffer, buffer.length() - start, 20);
+        start = buffer.length();
+        buffer.append(ticket.getPassengerName(), 0, Math.min(ticket.getPassengerName().length(), 25));
+        pad(buffer, buffer.length() - start, 26);
+        start = buffer.length();
+        buffer.append(ticket.getAge());
+        pad(buffer, buffer.length() - start, 5);
+        start = buffer.length();
+        buffer.append(ticket.getTrainNumber());
+        pad(buffer, buffer.length() - start, 10);
+        start = buffer.length();
+        appendJourneyDate(buffer, ticket, "-");
+        pad(buffer, buffer.length() - start, 12);
+        start = buffer.length();
+        buffer.append(TravelClass.of(ticket).getCode());
+        pad(buffer, buffer.length() - start, 7);
+        start = buffer.length();
+        appendSeat(buffer, ticket, "-");
+        pad(buffer, buffer.length() - start, 9);
+        buffer.append('₹');
+        appendAmount(buffer, toPaise(ticket.getFare()));
+        buffer.append('\n');
+    }
+
+    private void appendCsv(Ticket ticket) {
+        buffer.append(Ticket.ID_PREFIX).append(ticket.getTicketNumber()); // never needs quoting
+        buffer.append(',');
+        appendCsvField(ticket.getPassengerName());
+        buffer.append(',').append(ticket.getAge()).append(',');
+        appendCsvField(ticket.getTrainNumber());
+        buffer.append(',');
+        appendJourneyDate(buffer, ticket, "");
+        buffer.append(',').append(TravelClass.of(ticket).getCode()).append(',');
+        appendSeat(buffer, ticket, "");
+        buffer.append(',');
+        appendAmount(buffer, toPaise(ticket.getBaseFare()));
+        buffer.append(',');
+        appendAmount(buffer, toPaise(ticket.getFare()));
+        buffer.append('\n');
+    }
+
+    private void appendJson(Ticket ticket) {
+        if (ticketCount > 0) {
+            buffer.append(",\n");
+        }
+        appendJson(buffer, ticket);
+    }
+
+    /**
+     * Appends one ticket as a JSON object - shared with the HTTP server
+     */
+    static void appendJson(StringBuilder out, Ticket ticket) {
+        appendJson(out, ticket, null);
+    }
+
+    /**
+     * Appends one ticket as a JSON object, with its booking status (CNF, RAC n, WL n) unless null
+     */
+    static void appendJson(StringBuilder out, Ticket ticket, BookingStatus status) {
+        out.append("{\"ticketId\":\"").append(Ticket.ID_PREFIX).append(ticket.getTicketNumber()).append('"');
+        out.append(",\"passengerName\":");
+        appendJsonString(out, ticket.getPassengerName());
+        out.append(",\"age\":").append(ticket.getAge());
+        out.append(",\"trainNumber\":");
+        appendJsonString(out, ticket.getTrainNumber());
+        out.append(",\"journeyDate\":");
+        if (ticket.getJourneyDate() == null) {
+            out.append("null");
+        } else {
+            appendJourneyDate(out.append('"'), ticket, "").append('"');
+        }
+        out.append(",\"class\":\"").append(TravelClass.of(ticket).getCode()).append('"');
+        out.append(",\"seat\":");
+        if (ticket.getSeat() == null) {
+            out.append("null");
+        } else {
+            out.append('"');
+            appendSeat(out, ticket, "");
+            out.append('"');
+        }
+        out.append(",\"baseFare\":");
+        appendAmount(out, toPaise(ticket.getBaseFare()));
+        out.append(",\"totalFare\":");
+        appendAmount(out, toPaise(ticket.getFare()));
+        if (status != null) {
+            out.append(",\"status\":\"").append(status).append('"');
+        }
+        out.append('}');
+    }
+
+    // ==================== Helpers ====================
+
+    private static StringBuilder appendJourneyDate(StringBuilder out, Ticket ticket, String none) {
+        LocalDate journeyDate = ticket.getJourneyDate();
+        return journeyDate == null ? out.append(none) : out.append(journeyDate); // ISO yyyy-MM-dd
+    }
+
+    private static void appendSeat(StringBuilder out, Ticket ticket, String none) {
+        Seat seat = ticket.getSeat();
+        if (seat == null) {
+            out.append(none);
+        } else {
+            out.append(seat.getTravelClass().getCoachPrefix()).append(seat.getCoachIndex() + 1)
+                    .append('-').append(seat.getBerthNumber());
+        }
+    }
+
+    private void appendCsvField(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            buffer.append(value);
+            return;
+        }
+        buffer.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                buffer.append('"');
+            }
+            buffer.append(c);
+        }
+        buffer.append('"');
+    }
+
+    /**
+     * Appends a JSON string literal, escaping quotes, backslashes and control characters
+     */
+    static void appendJsonString(StringBuilder out, String value) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c < 0x20) {
+                out.append("\\u00");
+                out.append(Character.forDigit(c >> 4, 16)).append(Character.forDigit(c & 0xF, 16));
+            } else {
+                out.append(c);
+            }
+        }
+        out.append('"');
+    }
+
+    /**
+     * Appends an amount in paise as rupees with two decimals (12345 -> 123.45) without String.format
+     */
+    static void appendAmount(StringBuilder out, long paise) {
+        if (paise < 0) {
+            out.append('-');
+            paise = -paise;
+        }
+        long fraction = paise % 100;
+        out.append(paise / 100).append('.');
+        if (fraction < 10) {
+            out.append('0');
+        }
+        out.append(fraction);
+    }
+
+    static long toPaise(double amount) {
+        return Math.round(amount * 100);
+    }
+
+    private static StringBuilder pad(StringBuilder out, int written, int width) {
+        for (int i = written; i < width; i++) {
+            out.append(' ');
+        }
+        return out;
+    }
+
+    /**
+     * Copies the buffer into the reusable char block and writes it in one call
+     */
+    private void drain() throws IOException {
+        int length = buffer.length();
+        if (length > chunk.length) {
+            chunk = new char[length];
+        }
+        buffer.getChars(0, length, chunk, 0);
+        out.write(chunk, 0, length);
+        buffer.setLength(0);
+    }
+}
@@ -0,0 +1,26 @@
+/**
+ * Thrown when admission control sheds a booking: the system is saturated, try again later
+ * Carries how long the caller should wait before retrying (sent as Retry-After over HTTP)
+ */
+public class OverloadedException extends IllegalStateException {
+    private static final long serialVersionUID = 1L;
+    private final long retryAfterMillis;
+
+    public OverloadedException(String message, long retryAfterMillis) {
+        super(message);
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+
+    /**
+     * No stack trace: shedding happens in bulk during a surge and must stay cheap, and the cause is
+     * always the same - the caller was over its limit
+     */
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
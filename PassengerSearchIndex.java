@@ -0,0 +1,559 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Search over passenger names, for finding tickets when the passenger has lost the ticket ID
+ *
+ * Names match case-insensitively, word by word. Each distinct name is one entry holding the numbers
+ * (and trains) of its live tickets; each distinct word is one vocabulary entry listing the names
+ * that contain it. The vocabulary is far smaller than the number of names, so both searches work
+ * on words and only then expand to names:
+ * - prefix: the vocabulary is kept sorted, so "ver" finds verma, vermani, ... with one range scan
+ * - fuzzy: an inverted index from character bigrams to words gives, for every query word, the
+ *   words spelled similarly (Jaccard similarity of their bigrams); candidate names are those of
+ *   the query word with the fewest, each ranked by how well all query words match its words
+ *
+ * Thread-safe: the first and last ticket of a name, and the first and last name using a word, are
+ * serialized per key; searches never block updates and see a weakly consistent view.
+ */
+public class PassengerSearchIndex {
+    public static final double MIN_SIMILARITY = 0.4; // bigram Jaccard similarity of a fuzzy word match
+
+    private final ConcurrentHashMap<String, NameEntry> names = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, WordEntry> vocabulary = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<String, WordEntry> sortedWords = new ConcurrentSkipListMap<>();
+    private final ConcurrentHashMap<Integer, Postings<WordEntry>> wordsByBigram = new ConcurrentHashMap<>();
+
+    public void add(Ticket ticket) {
+        String trainNumber = TicketRepository.normalizeTrainNumber(ticket.getTrainNumber());
+        String key = normalize(ticket.getPassengerName());
+        // A known name only needs its entry's lock - unless the entry's last ticket just went
+        NameEntry known = names.get(key);
+        if (known != null && known.addIfLive(ticket.getTicketNumber(), trainNumber)) {
+            return;
+        }
+        names.compute(key, (name, entry) -> {
+            if (entry == null) {
+                entry = new NameEntry(name, acquireWords(name));
+                for (WordEntry word : entry.words) {
+                    word.names.add(entry);
+                }
+            }
+            entry.addIfLive(ticket.getTicketNumber(), trainNumber);
+            return entry;
+        });
+    }
+
+    public void remove(Ticket ticket) {
+        names.computeIfPresent(normalize(ticket.getPassengerName()), (name, entry) -> {
+            if (!entry.removeAndRetire(ticket.getTicketNumber())) {
+                return entry;
+            }
+            for (WordEntry word : entry.words) {
+                word.names.removed();
+                releaseWord(word);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Numbers of tickets whose passenger name has a word starting with the prefix, in word order
+     * With several words ("asha ver") the last one is the prefix and the others must be words of the name.
+     * A null or blank train number searches every train
+     */
+    public long[] findByPrefix(String prefix, String trainNumber, int limit) {
+        TicketNumbers ticketNumbers = new TicketNumbers(limit);
+        String[] queryWords = splitWords(normalize(prefix));
+        if (queryWords.length == 0 || limit <= 0) {
+            return ticketNumbers.toArray();
+        }
+        WordEntry[] required = new WordEntry[queryWords.length - 1];
+        for (int i = 0; i < required.length; i++) {
+            required[i] = vocabulary.get(queryWords[i]);
+            if (required[i] == null) {
+                return ticketNumbers.toArray();
+            }
+        }
+        String last = queryWords[queryWords.length - 1];
+        String train = normalizeTrainFilter(trainNumber);
+        Set<NameEntry> seen = new HashSet<>(); // a name can have more than one word with the prefix
+        List<NameEntry> batch = new ArrayList<>();
+        for (WordEntry word : sortedWords.subMap(last, last + Character.MAX_VALUE).values()) {
+            batch.clear();
+            word.names.collectLive(batch);
+            for (NameEntry entry : batch) {
+                if (entry.containsAll(required) && seen.add(entry) && entry.collect(train, ticketNumbers)) {
+                    return ticketNumbers.toArray();
+                }
+            }
+        }
+        return ticketNumbers.toArray();
+    }
+
+    /**
+     * Numbers of tickets whose passenger name is spelled like the query (typos, missing letters, words in
+     * another order), best match first. A null or blank train number searches every train
+     */
+    public long[] findSimilar(String query, String trainNumber, int limit) {
+        TicketNumbers ticketNumbers = new TicketNumbers(limit);
+        String[] queryWords = splitWords(normalize(query));
+        if (queryWords.length == 0 || limit <= 0) {
+            return ticketNumbers.toArray();
+        }
+        // Every query word has to match some word of the name
+        List<Map<WordEntry, Double>> similar = new ArrayList<>(queryWords.length);
+        int driver = 0;
+        long driverNames = Long.MAX_VALUE;
+        for (int i = 0; i < queryWords.length; i++) {
+            Map<WordEntry, Double> words = findSimilarWords(queryWords[i]);
+            if (words.isEmpty()) {
+                return ticketNumbers.toArray();
+            }
+            similar.add(words);
+            long nameCount = 0;
+            for (WordEntry word : words.keySet()) {
+                nameCount += word.names.size();
+            }
+            if (nameCount < driverNames) {
+                driver = i;
+                driverNames = nameCount;
+            }
+        }
+
+        // Candidates: names containing a word like the rarest query word
+        Set<NameEntry> candidates = new HashSet<>();
+        List<NameEntry> batch = new ArrayList<>();
+        for (WordEntry word : similar.get(driver).keySet()) {
+            batch.clear();
+            word.names.collectLive(batch);
+            candidates.addAll(batch);
+        }
+        List<Match> matches = new ArrayList<>();
+        for (NameEntry candidate : candidates) {
+            double score = candidate.score(similar);
+            if (score > 0) {
+                matches.add(new Match(candidate, score));
+            }
+        }
+        matches.sort(Comparator.comparingDouble((Match match) -> -match.score)
+                .thenComparing(match -> match.entry.name));
+
+        String train = normalizeTrainFilter(trainNumber);
+        for (Match match : matches) {
+            if (match.entry.collect(train, ticketNumbers)) {
+                break;
+            }
+        }
+        return ticketNumbers.toArray();
+    }
+
+    /**
+     * Number of distinct passenger names with live tickets
+     */
+    public int getNameCount() {
+        return names.size();
+    }
+
+    /**
+     * Number of distinct words in those names
+     */
+    public int getWordCount() {
+        return vocabulary.size();
+    }
+
+    // ==================== Helpers ====================
+
+    /**
+     * Lower case, trimmed, runs of whitespace collapsed to one space
+     * A name that is already in that form is returned as it is
+     */
+    static String normalize(String passengerName) {
+        if (passengerName == null) {
+            return "";
+        }
+        if (isNormalized(passengerName)) {
+            return passengerName;
+        }
+        String name = passengerName.toLowerCase(Locale.ROOT);
+        StringBuilder normalized = new StringBuilder(name.length());
+        boolean space = false;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = normalized.length() > 0;
+            } else {
+                if (space) {
+                    normalized.append(' ');
+                    space = false;
+                }
+                normalized.append(c);
+            }
+        }
+        return normalized.toString();
+    }
+
+    private static boolean isNormalized(String name) {
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c == ' ' ? i == 0 || i == name.length() - 1 || name.charAt(i - 1) == ' '
+                    : Character.isWhitespace(c) || Character.toLowerCase(c) != c || c > 0x7F) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String[] splitWords(String normalizedName) {
+        return normalizedName.isEmpty() ? new String[0] : normalizedName.split(" ");
+    }
+
+    private static String normalizeTrainFilter(String trainNumber) {
+        return trainNumber == null || trainNumber.trim().isEmpty() ? null
+                : TicketRepository.normalizeTrainNumber(trainNumber);
+    }
+
+    /**
+     * Vocabulary entries of the distinct words of a new name, adding words not seen before
+     */
+    private WordEntry[] acquireWords(String name) {
+        String[] words = splitWords(name);
+        List<WordEntry> entries = new ArrayList<>(words.length);
+        for (String word : words) {
+            WordEntry entry = vocabulary.compute(word, (key, existing) -> {
+                if (existing == null) {
+                    existing = new WordEntry(key);
+                    sortedWords.put(key, existing);
+                    for (int bigram : existing.bigrams) {
+                        wordsByBigram.computeIfAbsent(bigram, k -> new Postings<>()).add(existing);
+                    }
+                }
+                existing.nameCount++;
+                return existing;
+            });
+            if (!entries.contains(entry)) {
+                entries.add(entry);
+            } else {
+                releaseWord(entry); // repeated word ("anna anna") - one reference is enough
+            }
+        }
+        return entries.toArray(new WordEntry[0]);
+    }
+
+    private void releaseWord(WordEntry word) {
+        vocabulary.computeIfPresent(word.word, (key, entry) -> {
+            if (--entry.nameCount > 0) {
+                return entry;
+            }
+            sortedWords.remove(key);
+            entry.removed = true;
+            for (int bigram : entry.bigrams) {
+                Postings<WordEntry> postings = wordsByBigram.get(bigram);
+                if (postings != null) {
+                    postings.removed();
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Vocabulary words whose bigram similarity to the query word is at least MIN_SIMILARITY
+     */
+    private Map<WordEntry, Double> findSimilarWords(String queryWord) {
+        Map<WordEntry, Double> similar = new HashMap<>();
+        int[] queryGrams = bigrams(queryWord);
+        // Similarity >= MIN_SIMILARITY needs at least `required` shared bigrams, and a bigram count
+        // within [required, maxGrams] (the union is at least as large as either set)
+        int required = (int) Math.ceil(MIN_SIMILARITY * queryGrams.length);
+        int maxGrams = (int) (queryGrams.length / MIN_SIMILARITY);
+
+        // Such a word contains at least one of any (length - required + 1) query bigrams: take the rarest.
+        // Sizes are read once, into the sort key, as the lists keep changing meanwhile.
+        List<Postings<WordEntry>> lists = new ArrayList<>(queryGrams.length);
+        long[] bySize = new long[queryGrams.length];
+        for (int i = 0; i < queryGrams.length; i++) {
+            Postings<WordEntry> postings = wordsByBigram.get(queryGrams[i]);
+            lists.add(postings);
+            bySize[i] = (long) (postings == null ? 0 : postings.size()) << 32 | i;
+        }
+        Arrays.sort(bySize);
+        List<WordEntry> candidates = new ArrayList<>();
+        for (int i = 0; i <= queryGrams.length - required; i++) {
+            Postings<WordEntry> postings = lists.get((int) bySize[i]);
+            if (postings != null) {
+                postings.collectLive(candidates);
+            }
+        }
+        for (WordEntry candidate : candidates) {
+            if (candidate.bigrams.length < required || candidate.bigrams.length > maxGrams
+                    || similar.containsKey(candidate)) {
+                continue;
+            }
+            int shared = sharedCount(candidate.bigrams, queryGrams);
+            double similarity = shared / (double) (queryGrams.length + candidate.bigrams.length - shared);
+            if (similarity >= MIN_SIMILARITY) {
+                similar.put(candidate, similarity);
+            }
+        }
+        return similar;
+    }
+
+    /**
+     * Distinct bigrams of the word padded with a space on both sides, sorted
+     * Each bigram is packed into an int (two 16-bit chars)
+     */
+    static int[] bigrams(String word) {
+        int[] grams = new int[word.length() + 1];
+        for (int i = 0; i < grams.length; i++) {
+            char first = i == 0 ? ' ' : word.charAt(i - 1);
+            char second = i == word.length() ? ' ' : word.charAt(i);
+            grams[i] = first << 16 | second;
+        }
+        Arrays.sort(grams);
+        int distinct = 0;
+        for (int i = 0; i < grams.length; i++) {
+            if (distinct == 0 || grams[i] != grams[distinct - 1]) {
+                grams[distinct++] = grams[i];
+            }
+        }
+        return distinct == grams.length ? grams : Arrays.copyOf(grams, distinct);
+    }
+
+    /**
+     * Number of values two sorted, distinct arrays have in common
+     */
+    private static int sharedCount(int[] a, int[] b) {
+        int shared = 0;
+        for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+            if (a[i] == b[j]) {
+                shared++;
+                i++;
+                j++;
+            } else if (a[i] < b[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return shared;
+    }
+
+    /**
+     * Base of the entries kept in Postings - flagged once removed, dropped from the lists lazily
+     */
+    private abstract static class Entry {
+        volatile boolean removed;
+    }
+
+    /**
+     * One distinct word and the names using it
+     */
+    private static final class WordEntry extends Entry {
+        final String word;
+        final int[] bigrams;
+        final Postings<NameEntry> names = new Postings<>();
+        int nameCount; // guarded by the vocabulary entry (compute)
+
+        WordEntry(String word) {
+            this.word = word;
+            this.bigrams = bigrams(word);
+        }
+    }
+
+    /**
+     * One distinct (normalized) name, its words and its live tickets
+     */
+    private static final class NameEntry extends Entry {
+        final String name;
+        final WordEntry[] words;
+
+        private long[] ticketNumbers = new long[1];
+        private String[] trainNumbers = new String[1];
+        private int count;
+
+        NameEntry(String name, WordEntry[] words) {
+            this.name = name;
+            this.words = words;
+        }
+
+        boolean containsAll(WordEntry[] required) {
+            for (WordEntry word : required) {
+                if (!Arrays.asList(words).contains(word)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Average over the query words of their best match among this name's words, divided by the
+         * larger word count (so extra words rank lower) - 0 if some query word matches nothing
+         */
+        double score(List<Map<WordEntry, Double>> similar) {
+            double total = 0;
+            for (Map<WordEntry, Double> queryWord : similar) {
+                double best = 0;
+                for (WordEntry word : words) {
+                    best = Math.max(best, queryWord.getOrDefault(word, 0.0));
+                }
+                if (best == 0) {
+                    return 0;
+                }
+                total += best;
+            }
+            return total / Math.max(similar.size(), words.length);
+        }
+
+        /**
+         * Adds a ticket, returns false if the entry has been removed (the caller goes through the map)
+         */
+        synchronized boolean addIfLive(long ticketNumber, String trainNumber) {
+            if (removed) {
+                return false;
+            }
+            if (count == ticketNumbers.length) {
+                ticketNumbers = Arrays.copyOf(ticketNumbers, count * 2);
+                trainNumbers = Arrays.copyOf(trainNumbers, count * 2);
+            }
+            ticketNumbers[count] = ticketNumber;
+            trainNumbers[count] = trainNumber;
+            count++;
+            return true;
+        }
+
+        /**
+         * Removes a ticket, returns true if it was the last one - the entry is then marked removed in
+         * the same step, so no add can slip in between
+         */
+        synchronized boolean removeAndRetire(long ticketNumber) {
+            for (int i = 0; i < count; i++) {
+                if (ticketNumbers[i] == ticketNumber) {
+                    // Swap in the last one - order within a name does not matter
+                    count--;
+                    ticketNumbers[i] = ticketNumbers[count];
+                    trainNumbers[i] = trainNumbers[count];
+                    trainNumbers[count] = null;
+                    break;
+                }
+            }
+            if (count > 0) {
+                return false;
+            }
+            removed = true;
+            return true;
+        }
+
+        /**
+         * Adds the numbers of this name's tickets (on one train, or all when train is null) to out,
+         * returns true once out is full
+         */
+        synchronized boolean collect(String train, TicketNumbers out) {
+            for (int i = 0; i < count && !out.isFull(); i++) {
+                if (train == null || trainNumbers[i].equals(train)) {
+                    out.add(ticketNumbers[i]);
+                }
+            }
+            return out.isFull();
+        }
+    }
+
+    /**
+     * Append-only list of entries. Removed entries are counted and purged once they are half the list,
+     * so removal never has to search it.
+     */
+    private static final class Postings<T extends Entry> {
+        private Entry[] entries = new Entry[2];
+        private int size;
+        private int removedCount;
+
+        synchronized void add(T entry) {
+            if (size == entries.length) {
+                entries = Arrays.copyOf(entries, size * 2);
+            }
+            entries[size++] = entry;
+        }
+
+        synchronized void removed() {
+            if (++removedCount * 2 > size) {
+                purge();
+            }
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized void collectLive(List<? super T> out) {
+            for (int i = 0; i < size; i++) {
+                if (!entries[i].removed) {
+                    out.add((T) entries[i]);
+                }
+            }
+        }
+
+        private void purge() {
+            int live = 0;
+            for (int i = 0; i < size; i++) {
+                if (!entries[i].removed) {
+                    entries[live++] = entries[i];
+                }
+            }
+            Arrays.fill(entries, live, size, null);
+            size = live;
+            removedCount = 0;
+            if (entries.length > 16 && size < entries.length / 4) {
+                entries = Arrays.copyOf(entries, entries.length / 2);
+            }
+        }
+    }
+
+    /**
+     * Search result being filled, at most limit ticket numbers
+     */
+    private static final class TicketNumbers {
+        private final int limit;
+        private long[] numbers;
+        private int size;
+
+        TicketNumbers(int limit) {
+            this.limit = Math.max(0, limit);
+            this.numbers = new long[Math.min(this.limit, 16)];
+        }
+
+        void add(long number) {
+            if (size == numbers.length) {
+                numbers = Arrays.copyOf(numbers, (int) Math.min(limit, size * 2L));
+            }
+            numbers[size++] = number;
+        }
+
+        boolean isFull() {
+            return size >= limit;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(numbers, size);
+        }
+    }
+
+    private static final class Match {
+        final NameEntry entry;
+        final double score;
+
+        Match(NameEntry entry, double score) {
+            this.entry = entry;
+            this.score = score;
+        }
+    }
+}
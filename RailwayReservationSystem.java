@@ -1,4 +1,20 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
 import java.util.Scanner;
 import java.util.InputMismatchException;
 
@@ -7,21 +23,164 @@ import java.util.InputMismatchException;
  * Demonstrates POLYMORPHISM through runtime method dispatch
  */
 public class RailwayReservationSystem {
-    // In-memory storage for tickets
-    private static ArrayList<Ticket> ticketList = new ArrayList<>();
-    private static int ticketCounter = 1000; // For generating unique ticket IDs
+    // Booking logic and ticket storage (thread-safe, shared by all entry points)
+    private static ReservationService reservationService;
     private static Scanner scanner = new Scanner(System.in);
 
+    // Journal settings - enabled with: java RailwayReservationSystem --data-dir <directory>
+    private static final long SNAPSHOT_EVERY_RECORDS = 100_000;
+    private static BookingJournal journal;
+
+    // Reclaims the space of cancelled tickets in the background
+    private static StoreCompactor compactor;
+    // Drops the journey dates whose journeys are over
+    private static JourneyExpiry journeyExpiry;
+
+    private static final int SEARCH_LIMIT = 20; // tickets listed per passenger search
+
+    // Options a router passes on to the node processes it starts
+    private static final String[] NODE_OPTIONS = {"--store", "--hot-tickets", "--train-rate", "--train-burst",
+            "--max-queued", "--max-wait-ms", "--pipeline"};
+
+    // Admission control defaults, used once --train-rate is given
+    private static final int DEFAULT_MAX_QUEUED = 1000;
+    private static final long DEFAULT_MAX_WAIT_MILLIS = 200;
+
     public static void main(String[] args) {
-        clearScreen();
-        printWelcomeBanner();
+        // Router mode: java RailwayReservationSystem --route <port> (--nodes host:port,... | --spawn <count>)
+        //                                            [--data-dir <dir>] [node options, e.g. --store <mode>]
+        String routePort = getOption(args, "--route");
+        if (routePort != null) {
+            List<String> nodeOptions = new ArrayList<>();
+            for (String option : NODE_OPTIONS) {
+                if (getOption(args, option) != null) {
+                    nodeOptions.add(option);
+                    nodeOptions.add(getOption(args, option));
+                }
+            }
+            runRouter(routePort, getOption(args, "--nodes"), getOption(args, "--spawn"),
+                    getOption(args, "--data-dir"), nodeOptions);
+            return;
+        }
+
+        // Storage mode: --store objects (default) | columnar | offheap | tiered [--hot-tickets <count>]
+        // Each journey date gets a store of the same mode
+        String storeMode = getOption(args, "--store");
+        TicketStore store;
+        int hotCapacity;
+        try {
+            String hotTickets = getOption(args, "--hot-tickets");
+            hotCapacity = hotTickets == null ? TieredTicketStore.DEFAULT_HOT_CAPACITY : parseHotTickets(hotTickets);
+            store = TicketStore.create(storeMode, hotCapacity);
+        } catch (IllegalArgumentException | UncheckedIOException e) {
+            System.out.println("❌ " + e.getMessage());
+            return;
+        }
+        // A shard node (started by a router) encodes its partition in every ticket ID
+        boolean shardNode = Arrays.asList(args).contains("--shard-node");
+        reservationService = new ReservationService(store, () -> TicketStore.create(storeMode, hotCapacity),
+                new SeatInventoryManager(), shardNode);
+        // Expired journey dates: --archive-dir <dir> keeps a snapshot file of each instead of dropping it
+        String archiveDir = getOption(args, "--archive-dir");
+        if (archiveDir != null) {
+            try {
+                reservationService.setArchiveDirectory(Files.createDirectories(Paths.get(archiveDir)));
+            } catch (IOException | RuntimeException e) {
+                System.out.println("❌ Cannot use archive directory " + archiveDir + ": " + e.getMessage());
+                return;
+            }
+        }
+        // Tatkal surges: --train-rate <bookings/s> [--train-burst <n>] [--max-queued <n>] [--max-wait-ms <ms>]
+        String trainRate = getOption(args, "--train-rate");
+        if (trainRate != null) {
+            try {
+                reservationService.setAdmissionController(createAdmissionController(trainRate,
+                        getOption(args, "--train-burst"), getOption(args, "--max-queued"),
+                        getOption(args, "--max-wait-ms")));
+            } catch (IllegalArgumentException e) {
+                System.out.println("❌ " + e.getMessage());
+                return;
+            }
+        }
+        // Pipelined booking: --pipeline <writers> books every train on one writer thread, in micro-batches
+        String pipelineWriters = getOption(args, "--pipeline");
+        if (pipelineWriters != null) {
+            try {
+                reservationService.setBookingPipeline(new BookingPipeline(reservationService,
+                        parsePipelineWriters(pipelineWriters)));
+            } catch (IllegalArgumentException e) {
+                System.out.println("❌ " + e.getMessage());
+                return;
+            }
+        }
+        compactor = new StoreCompactor(reservationService.getTicketStore(), StoreCompactor.DEFAULT_BATCH_SIZE,
+                StoreCompactor.DEFAULT_INTERVAL_MILLIS);
+        journeyExpiry = new JourneyExpiry(reservationService, JourneyExpiry.DEFAULT_INTERVAL_MILLIS);
+
+        String batchFile = getOption(args, "--batch");
+        String saveSnapshotFile = getOption(args, "--save-snapshot");
+        if (batchFile == null && getOption(args, "--export") == null && getOption(args, "--serve") == null
+                && saveSnapshotFile == null) {
+            clearScreen();
+            printWelcomeBanner();
+        }
+
+        String dataDir = getOption(args, "--data-dir");
+        // Messages go to stderr when a manifest is streamed to stdout
+        PrintStream console = "-".equals(getOption(args, "--export")) ? System.err : System.out;
+        if (dataDir != null && !openJournal(dataDir, console)) {
+            return;
+        }
+        // Bulk load: --load-snapshot <file> restores a snapshot written by --save-snapshot
+        String loadSnapshotFile = getOption(args, "--load-snapshot");
+        if (loadSnapshotFile != null && !loadSnapshot(loadSnapshotFile, console)) {
+            closeJournal();
+            return;
+        }
+
+        // Export mode: java RailwayReservationSystem --data-dir <dir> --export <file|-> [--format text|csv|json]
+        //                                            [--train <number>]
+        // Server mode: java RailwayReservationSystem --serve <port> [--data-dir <dir>] [--store <mode>]
+        //                                            [--shard-node]
+        String servePort = getOption(args, "--serve");
+        if (servePort != null) {
+            runServer(servePort);
+            return;
+        }
+
+        // Snapshot mode: java RailwayReservationSystem --data-dir <dir> --save-snapshot <file>
+        if (saveSnapshotFile != null) {
+            saveSnapshot(saveSnapshotFile);
+            closeJournal();
+            compactor.close();
+            journeyExpiry.close();
+            return;
+        }
+
+        String exportFile = getOption(args, "--export");
+        if (exportFile != null) {
+            runExport(exportFile, getOption(args, "--format"), getOption(args, "--train"));
+            closeJournal();
+            compactor.close();
+            journeyExpiry.close();
+            return;
+        }
+
+        // Headless mode: java RailwayReservationSystem --batch <file> [--report <file>] [--data-dir <dir>]
+        if (batchFile != null) {
+            runBatch(batchFile, getOption(args, "--report"));
+            closeJournal();
+            compactor.close();
+            journeyExpiry.close();
+            return;
+        }
 
         boolean running = true;
 
         while (running) {
             try {
                 displayMenu();
-                int choice = getIntInput("👉 Enter your choice (1-4): ");
+                int choice = getIntInput("👉 Enter your choice (1-8): ");
 
                 switch (choice) {
                     case 1:
@@ -43,12 +202,36 @@ public class RailwayReservationSystem {
                         clearScreen();
                         break;
                     case 4:
+                        clearScreen();
+                        cancelTrain();
+                        pressEnterToContinue();
+                        clearScreen();
+                        break;
+                    case 5:
+                        clearScreen();
+                        showMetrics();
+                        pressEnterToContinue();
+                        clearScreen();
+                        break;
+                    case 6:
+                        clearScreen();
+                        showTrainReport();
+                        pressEnterToContinue();
+                        clearScreen();
+                        break;
+                    case 7:
+                        clearScreen();
+                        searchPassenger();
+                        pressEnterToContinue();
+                        clearScreen();
+                        break;
+                    case 8:
                         clearScreen();
                         printGoodbyeMessage();
                         running = false;
                         break;
                     default:
-                        System.out.println("\n❌ Invalid choice! Please select between 1-4.\n");
+                        System.out.println("\n❌ Invalid choice! Please select between 1-8.\n");
                         pressEnterToContinue();
                         clearScreen();
                 }
@@ -62,6 +245,257 @@ public class RailwayReservationSystem {
         }
 
         scanner.close();
+        closePipeline();
+        closeJournal();
+        compactor.close();
+        journeyExpiry.close();
+    }
+
+    /**
+     * Processes a bulk booking/cancellation file without the interactive menu
+     */
+    private static void runBatch(String batchFile, String reportFile) {
+        if (reportFile == null) {
+            reportFile = batchFile + ".report.csv";
+        }
+        BatchFileProcessor processor = new BatchFileProcessor(reservationService, BatchFileProcessor.DEFAULT_BATCH_SIZE);
+        try (BufferedReader input = Files.newBufferedReader(Paths.get(batchFile), StandardCharsets.UTF_8);
+             Writer report = new BufferedWriter(Files.newBufferedWriter(Paths.get(reportFile), StandardCharsets.UTF_8),
+                     1 << 16)) {
+            BatchFileProcessor.Summary summary = processor.process(input, report);
+            System.out.println("📦 Batch complete: " + batchFile);
+            System.out.println("   Records   : " + summary.getRecords());
+            System.out.println("   Booked    : " + summary.getBooked());
+            System.out.println("   Cancelled : " + summary.getCancelled());
+            System.out.println("   Failed    : " + summary.getFailed());
+            System.out.println("   Time      : " + summary.getElapsedMillis() + " ms ("
+                    + String.format("%.0f", summary.getRecordsPerSecond()) + " records/s)");
+            System.out.println("   Report    : " + reportFile);
+        } catch (IOException | RuntimeException e) {
+            System.out.println("❌ Batch failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Serves book/view/cancel over HTTP/JSON until the process is stopped (Ctrl+C)
+     */
+    private static void runServer(String port) {
+        try {
+            ReservationServer server = new ReservationServer(reservationService, Integer.parseInt(port));
+            server.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                server.close();
+                closePipeline();
+                closeJournal();
+                compactor.close();
+                journeyExpiry.close();
+                System.out.println("\n🛑 Server stopped");
+            }, "reservation-server-shutdown"));
+            System.out.println("🌐 Serving on http://localhost:" + server.getPort() + " ("
+                    + (ReservationServer.isVirtualThreadsAvailable() ? "virtual" : "platform")
+                    + " threads) - press Ctrl+C to stop");
+        } catch (NumberFormatException e) {
+            System.out.println("❌ Invalid port: " + port);
+        } catch (IOException | RuntimeException e) {
+            System.out.println("❌ Could not start server: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Starts a shard router in front of running nodes, or in front of local node processes it starts itself
+     * (ports after the router's, each with its own data directory under --data-dir)
+     */
+    private static void runRouter(String port, String nodeList, String spawnCount, String dataDir,
+                                  List<String> nodeOptions) {
+        ShardRouter router = null;
+        List<Process> processes = new ArrayList<>();
+        try {
+            int routerPort = Integer.parseInt(port);
+            List<String> nodes = new ArrayList<>();
+            if (spawnCount != null) {
+                int count = Integer.parseInt(spawnCount);
+                if (count < 1) {
+                    throw new IllegalArgumentException("--spawn needs at least one node!");
+                }
+                for (int i = 1; i <= count; i++) {
+                    int nodePort = routerPort + i;
+                    nodes.add("localhost:" + nodePort);
+                    processes.add(ShardRouter.startLocalNode(nodePort,
+                            dataDir == null ? null : Paths.get(dataDir, "node-" + nodePort), nodeOptions));
+                }
+            } else if (nodeList != null) {
+                nodes.addAll(Arrays.asList(nodeList.split(",")));
+            } else {
+                throw new IllegalArgumentException("--route needs --nodes host:port,... or --spawn <count>!");
+            }
+            router = new ShardRouter(nodes, routerPort);
+            router.adoptLocalNodes(processes);
+            for (String node : nodes) {
+                router.awaitNode(node);
+            }
+            router.start();
+            ShardRouter started = router;
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                started.close();
+                System.out.println("\n🛑 Router stopped");
+            }, "shard-router-shutdown"));
+            System.out.println("🔀 Routing on http://localhost:" + router.getPort() + " to " + nodes
+                    + " - add nodes with POST /admin/nodes, press Ctrl+C to stop");
+        } catch (NumberFormatException e) {
+            System.out.println("❌ Invalid port or node count: " + e.getMessage());
+        } catch (IOException | RuntimeException e) {
+            System.out.println("❌ Could not start router: " + e.getMessage());
+            if (router != null) {
+                router.close(); // also stops the nodes it started
+            } else {
+                processes.forEach(Process::destroy);
+            }
+        }
+    }
+
+    /**
+     * Streams a ticket manifest (one train or all tickets) to a file, or to stdout with "-"
+     */
+    private static void runExport(String exportFile, String formatName, String trainNumber) {
+        boolean toStdout = exportFile.equals("-");
+        // Progress goes to stderr when the manifest itself goes to stdout
+        PrintStream console = toStdout ? System.err : System.out;
+        try {
+            ManifestWriter.Format format = ManifestWriter.Format.fromName(formatName);
+            long start = System.nanoTime();
+            // Stdout is written through its own buffered stream, not the synchronized System.out
+            try (Writer output = new BufferedWriter(toStdout
+                    ? new OutputStreamWriter(new FileOutputStream(FileDescriptor.out), StandardCharsets.UTF_8)
+                    : Files.newBufferedWriter(Paths.get(exportFile), StandardCharsets.UTF_8), 1 << 16)) {
+                ManifestWriter manifest = new ManifestWriter(output, format);
+                long written = reservationService.writeManifest(trainNumber, manifest);
+                long millis = (System.nanoTime() - start) / 1_000_000;
+                console.println("📄 Exported " + written + " ticket(s) as " + format + " to "
+                        + (toStdout ? "stdout" : exportFile) + " in " + millis + " ms");
+            }
+        } catch (IOException | RuntimeException e) {
+            console.println("❌ Export failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes every ticket to a binary snapshot file (see TicketSnapshot)
+     */
+    private static void saveSnapshot(String snapshotFile) {
+        try {
+            long start = System.nanoTime();
+            int written = reservationService.exportSnapshot(Paths.get(snapshotFile));
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            System.out.println("💾 Saved " + written + " ticket(s) to snapshot " + snapshotFile + " in " + millis
+                    + " ms");
+        } catch (IOException | RuntimeException e) {
+            System.out.println("❌ Snapshot failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Restores the tickets of a binary snapshot file into the (empty) reservation service
+     */
+    private static boolean loadSnapshot(String snapshotFile, PrintStream console) {
+        try {
+            long start = System.nanoTime();
+            int restored = reservationService.importSnapshot(Paths.get(snapshotFile));
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            console.println("💾 Loaded " + restored + " ticket(s) from snapshot " + snapshotFile + " in " + millis
+                    + " ms\n");
+            return true;
+        } catch (IOException | RuntimeException e) {
+            console.println("❌ Could not load snapshot " + snapshotFile + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Opens the booking journal and restores tickets saved by earlier runs
+     */
+    private static boolean openJournal(String dataDir, PrintStream console) {
+        try {
+            long start = System.nanoTime();
+            journal = BookingJournal.open(Paths.get(dataDir), SNAPSHOT_EVERY_RECORDS);
+            reservationService.attachJournal(journal);
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            console.println("💾 Restored " + reservationService.getTicketCount() + " ticket(s) from " + dataDir
+                    + " in " + millis + " ms\n");
+            return true;
+        } catch (IOException | RuntimeException e) {
+            console.println("❌ Could not open booking journal in " + dataDir + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Writes a final snapshot (so the next start replays nothing) and closes the journal
+     */
+    private static void closeJournal() {
+        if (journal == null) {
+            return;
+        }
+        try {
+            reservationService.writeSnapshot();
+            journal.close();
+        } catch (IOException | RuntimeException e) {
+            System.out.println("⚠️  Could not close booking journal cleanly: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Lets the booking pipeline (if any) apply what is queued, then stops its writer threads
+     */
+    private static void closePipeline() {
+        BookingPipeline pipeline = reservationService.getBookingPipeline();
+        if (pipeline != null) {
+            reservationService.setBookingPipeline(null);
+            pipeline.close();
+        }
+    }
+
+    private static int parsePipelineWriters(String value) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid --pipeline writer count: " + value);
+        }
+    }
+
+    private static int parseHotTickets(String value) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid --hot-tickets count: " + value);
+        }
+    }
+
+    /**
+     * Per-train limits from the command line; the burst defaults to one second's worth of bookings
+     */
+    private static AdmissionController createAdmissionController(String rate, String burst, String maxQueued,
+                                                                 String maxWaitMillis) {
+        try {
+            double ratePerTrain = Double.parseDouble(rate.trim());
+            return new AdmissionController(ratePerTrain,
+                    burst == null ? (int) Math.max(1, Math.ceil(ratePerTrain)) : Integer.parseInt(burst.trim()),
+                    maxQueued == null ? DEFAULT_MAX_QUEUED : Integer.parseInt(maxQueued.trim()),
+                    maxWaitMillis == null ? DEFAULT_MAX_WAIT_MILLIS : Long.parseLong(maxWaitMillis.trim()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid admission limit: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Helper method to read a command line option value (e.g. --data-dir data), null if absent
+     */
+    private static String getOption(String[] args, String name) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals(name)) {
+                return args[i + 1];
+            }
+        }
+        return null;
     }
 
     /**
@@ -109,7 +543,11 @@ public class RailwayReservationSystem {
         System.out.println("║  📝 1. Book New Ticket                           ║");
         System.out.println("║  🔍 2. View Ticket Details                       ║");
         System.out.println("║  ❌ 3. Cancel Ticket                             ║");
-        System.out.println("║  🚪 4. Exit System                               ║");
+        System.out.println("║  🚫 4. Cancel All Tickets on a Train             ║");
+        System.out.println("║  📊 5. View Metrics                              ║");
+        System.out.println("║  📈 6. Train Revenue Report                      ║");
+        System.out.println("║  🔎 7. Search by Passenger Name                  ║");
+        System.out.println("║  🚪 8. Exit System                               ║");
         System.out.println("║                                                  ║");
         System.out.println("╚══════════════════════════════════════════════════╝\n");
     }
@@ -128,116 +566,117 @@ public class RailwayReservationSystem {
             scanner.nextLine(); // Clear buffer
             System.out.print("👤 Enter Passenger Name: ");
             String name = scanner.nextLine().trim();
-
-            if (name.isEmpty()) {
-                System.out.println("\n❌ Error: Name cannot be empty!");
-                return;
-            }
+            ReservationService.validatePassengerName(name);
 
             // Get and validate age
             int age = getIntInput("🎂 Enter Age: ");
-            if (age <= 0 || age > 120) {
-                System.out.println("\n❌ Error: Invalid age! Age must be between 1 and 120.");
-                return;
-            }
+            ReservationService.validateAge(age);
 
             System.out.print("🚂 Enter Train Number: ");
             String trainNumber = scanner.nextLine().trim();
+            ReservationService.validateTrainNumber(trainNumber);
 
-            if (trainNumber.isEmpty()) {
-                System.out.println("\n❌ Error: Train number cannot be empty!");
-                return;
-            }
+            System.out.print("📅 Enter Journey Date (YYYY-MM-DD, blank for none): ");
+            LocalDate journeyDate = ReservationService.parseJourneyDate(scanner.nextLine());
+            reservationService.validateJourneyDate(journeyDate);
 
             // Get base fare
             double baseFare = getDoubleInput("💰 Enter Base Fare (₹): ");
-            if (baseFare <= 0) {
-                System.out.println("\n❌ Error: Fare must be greater than 0!");
-                return;
-            }
+            ReservationService.validateBaseFare(baseFare);
 
             // Select ticket type
-            System.out.println("\n" + "─".repeat(50));
+            System.out.println("\n" + ManifestWriter.THIN_DIVIDER);
             System.out.println("🎫 SELECT TICKET CLASS:");
-            System.out.println("─".repeat(50));
+            System.out.println(ManifestWriter.THIN_DIVIDER);
             System.out.println("  1️⃣  Sleeper Class (Budget Friendly)");
             System.out.println("  2️⃣  AC Class (Premium Comfort)");
-            System.out.println("─".repeat(50));
+            System.out.println(ManifestWriter.THIN_DIVIDER);
             int ticketType = getIntInput("👉 Enter your choice (1 or 2): ");
 
-            // Generate unique ticket ID
-            String ticketId = "TKT" + (ticketCounter++);
-
-            // POLYMORPHISM - Ticket reference can hold SleeperTicket or ACTicket object
-            Ticket ticket = null;
+            TravelClass travelClass;
 
             if (ticketType == 1) {
-                // Create Sleeper ticket
-                ticket = new SleeperTicket(ticketId, name, age, trainNumber, baseFare);
+                // Sleeper ticket
+                travelClass = TravelClass.SLEEPER;
                 System.out.println("\n✅ Sleeper Class ticket selected!");
             } else if (ticketType == 2) {
                 // Create AC ticket
-                System.out.println("\n" + "─".repeat(50));
+                System.out.println("\n" + ManifestWriter.THIN_DIVIDER);
                 System.out.println("❄️  SELECT AC TIER:");
-                System.out.println("─".repeat(50));
+                System.out.println(ManifestWriter.THIN_DIVIDER);
                 System.out.println("  1️⃣  First AC (1A) - Most Premium");
                 System.out.println("  2️⃣  Second AC (2A) - Comfortable");
                 System.out.println("  3️⃣  Third AC (3A) - Affordable AC");
-                System.out.println("─".repeat(50));
+                System.out.println(ManifestWriter.THIN_DIVIDER);
                 int tierChoice = getIntInput("👉 Enter your choice (1-3): ");
 
-                String tier;
                 switch (tierChoice) {
                     case 1:
-                        tier = "1A";
+                        travelClass = TravelClass.FIRST_AC;
                         System.out.println("\n✅ First AC (1A) selected!");
                         break;
                     case 2:
-                        tier = "2A";
+                        travelClass = TravelClass.SECOND_AC;
                         System.out.println("\n✅ Second AC (2A) selected!");
                         break;
                     case 3:
-                        tier = "3A";
+                        travelClass = TravelClass.THIRD_AC;
                         System.out.println("\n✅ Third AC (3A) selected!");
                         break;
                     default:
                         System.out.println("\n⚠️  Invalid tier! Defaulting to Third AC (3A).");
-                        tier = "3A";
+                        travelClass = TravelClass.THIRD_AC;
                 }
-
-                ticket = new ACTicket(ticketId, name, age, trainNumber, baseFare, tier);
             } else {
                 System.out.println("\n❌ Error: Invalid ticket type! Please select 1 or 2.");
                 return;
             }
 
-            // Add ticket to list
-            ticketList.add(ticket);
-
-            // POLYMORPHISM - calculateFare() behaves differently based on actual object type
-            double totalFare = ticket.calculateFare();
-
-            // Success message with booking summary
-            System.out.println("\n" + "═".repeat(50));
-            System.out.println("🎉 BOOKING SUCCESSFUL! 🎉");
-            System.out.println("═".repeat(50));
-            System.out.println("📋 Booking Summary:");
-            System.out.println("   🎫 Ticket ID    : " + ticketId);
-            System.out.println("   👤 Passenger    : " + name);
-            System.out.println("   🚂 Train No.    : " + trainNumber);
-            System.out.println("   💰 Total Fare   : ₹" + String.format("%.2f", totalFare));
-            
+            // POLYMORPHISM - Ticket reference holds a SleeperTicket or ACTicket object
+            Ticket ticket = reservationService.bookTicket(name, age, trainNumber, journeyDate, baseFare,
+                    travelClass);
+            String ticketId = ticket.getTicketId();
+
+            // POLYMORPHISM - priced by the calculateFare() of the actual object type
+            double totalFare = ticket.getFare();
+
+            // Success message with booking summary - built in one buffer, printed with one write
+            StringBuilder summary = new StringBuilder(512);
+            summary.append('\n').append(ManifestWriter.DIVIDER).append('\n');
+            summary.append("🎉 BOOKING SUCCESSFUL! 🎉\n");
+            summary.append(ManifestWriter.DIVIDER).append('\n');
+            summary.append("📋 Booking Summary:\n");
+            summary.append("   🎫 Ticket ID    : ").append(ticketId).append('\n');
+            summary.append("   👤 Passenger    : ").append(name).append('\n');
+            summary.append("   🚂 Train No.    : ").append(trainNumber).append('\n');
+            if (journeyDate != null) {
+                summary.append("   📅 Journey Date : ").append(journeyDate).append('\n');
+            }
+            if (ticket.getSeat() != null) {
+                summary.append("   💺 Coach/Berth  : ").append(ticket.getSeat()).append('\n');
+            } else {
+                // Class full - on the RAC/waiting list, promoted automatically when a berth frees up
+                summary.append("   🕒 Status       : ").append(reservationService.getBookingStatus(ticketId))
+                        .append(" (a berth is allotted automatically on cancellation)\n");
+            }
+            summary.append("   💰 Total Fare   : ₹").append(String.format("%.2f", totalFare)).append('\n');
+
             // Show discount info if applicable
             if (age < 12) {
-                System.out.println("   🎁 Child Discount Applied (50% OFF)");
+                summary.append("   🎁 Child Discount Applied (50% OFF)\n");
             } else if (age >= 60) {
-                System.out.println("   🎁 Senior Citizen Discount Applied");
+                summary.append("   🎁 Senior Citizen Discount Applied\n");
             }
-            
-            System.out.println("═".repeat(50));
-            System.out.println("💡 Tip: Save your Ticket ID for future reference!");
-            System.out.println("═".repeat(50) + "\n");
 
+            summary.append(ManifestWriter.DIVIDER).append('\n');
+            summary.append("💡 Tip: Save your Ticket ID for future reference!\n");
+            summary.append(ManifestWriter.DIVIDER).append("\n\n");
+            System.out.print(summary);
+
+        } catch (IllegalArgumentException e) {
+            System.out.println("\n❌ Error: " + e.getMessage());
+        } catch (IllegalStateException e) {
+            System.out.println("\n❌ Sorry! " + e.getMessage());
         } catch (InputMismatchException e) {
             System.out.println("\n❌ Invalid input! Please enter the correct data type.");
             scanner.nextLine(); // Clear buffer
@@ -255,13 +694,13 @@ public class RailwayReservationSystem {
             System.out.println("║              🔍 VIEW TICKET DETAILS              ║");
             System.out.println("╚══════════════════════════════════════════════════╝\n");
 
-            if (ticketList.isEmpty()) {
+            if (!reservationService.hasTickets()) {
                 System.out.println("❌ No tickets found in the system!");
                 System.out.println("💡 Please book a ticket first.\n");
                 return;
             }
 
-            System.out.println("📊 Total tickets in system: " + ticketList.size() + "\n");
+            System.out.println("📊 Total tickets in system: " + reservationService.getTicketCount() + "\n");
             
             scanner.nextLine(); // Clear buffer
             System.out.print("🎫 Enter Ticket ID (e.g., TKT1000): ");
@@ -279,6 +718,7 @@ public class RailwayReservationSystem {
                 System.out.println("\n✅ Ticket found!\n");
                 // POLYMORPHISM - displayTicketDetails() behaves based on actual object type
                 foundTicket.displayTicketDetails();
+                System.out.println("📌 Booking Status: " + reservationService.getBookingStatus(ticketId) + "\n");
             } else {
                 System.out.println("\n❌ Ticket not found!");
                 System.out.println("🔍 No ticket exists with ID: " + ticketId);
@@ -290,6 +730,54 @@ public class RailwayReservationSystem {
         }
     }
 
+    /**
+     * Finds tickets by passenger name when the ticket ID is lost: names (or surnames) starting with
+     * what was typed, or similarly spelled names if nothing starts with it
+     */
+    private static void searchPassenger() {
+        try {
+            System.out.println("╔══════════════════════════════════════════════════╗");
+            System.out.println("║           🔎 SEARCH BY PASSENGER NAME            ║");
+            System.out.println("╚══════════════════════════════════════════════════╝\n");
+
+            scanner.nextLine(); // Clear buffer
+            System.out.print("👤 Enter Passenger Name (or its beginning): ");
+            String name = scanner.nextLine().trim();
+            ReservationService.validatePassengerName(name);
+            System.out.print("🚆 Enter Train Number (blank for all trains): ");
+            String trainNumber = scanner.nextLine().trim();
+
+            List<Ticket> tickets = reservationService.findTicketsByNamePrefix(name, trainNumber, SEARCH_LIMIT);
+            if (tickets.isEmpty()) {
+                tickets = reservationService.findTicketsBySimilarName(name, trainNumber, SEARCH_LIMIT);
+                if (tickets.isEmpty()) {
+                    System.out.println("\n❌ No passenger found matching: " + name + "\n");
+                    return;
+                }
+                System.out.println("\n💡 No name starts with \"" + name + "\" - did you mean:");
+            }
+
+            StringBuilder out = new StringBuilder(128 * (tickets.size() + 3));
+            out.append('\n').append(ManifestWriter.DIVIDER).append('\n');
+            out.append(String.format(Locale.ROOT, "%-11s %-24s %-8s %-6s %s%n", "Ticket ID", "Passenger", "Train",
+                    "Class", "Status"));
+            out.append(ManifestWriter.THIN_DIVIDER).append('\n');
+            for (Ticket ticket : tickets) {
+                BookingStatus status = reservationService.getBookingStatus(ticket.getTicketId());
+                out.append(String.format(Locale.ROOT, "%-11s %-24.24s %-8s %-6s %s%n", ticket.getTicketId(),
+                        ticket.getPassengerName(), ticket.getTrainNumber(), TravelClass.of(ticket).getCode(),
+                        status == null ? "CANCELLED" : status));
+            }
+            out.append(ManifestWriter.DIVIDER).append('\n');
+            if (tickets.size() == SEARCH_LIMIT) {
+                out.append("💡 Showing the first ").append(SEARCH_LIMIT).append(" matches - type more of the name\n");
+            }
+            System.out.print(out);
+        } catch (IllegalArgumentException e) {
+            System.out.println("\n❌ Error: " + e.getMessage());
+        }
+    }
+
     /**
      * Cancels a ticket by ticket ID
      */
@@ -299,13 +787,13 @@ public class RailwayReservationSystem {
             System.out.println("║              ❌ CANCEL TICKET                    ║");
             System.out.println("╚══════════════════════════════════════════════════╝\n");
 
-            if (ticketList.isEmpty()) {
+            if (!reservationService.hasTickets()) {
                 System.out.println("❌ No tickets found in the system!");
                 System.out.println("💡 Please book a ticket first.\n");
                 return;
             }
 
-            System.out.println("📊 Total tickets in system: " + ticketList.size() + "\n");
+            System.out.println("📊 Total tickets in system: " + reservationService.getTicketCount() + "\n");
             
             scanner.nextLine(); // Clear buffer
             System.out.print("🎫 Enter Ticket ID to cancel (e.g., TKT1000): ");
@@ -330,16 +818,20 @@ public class RailwayReservationSystem {
                 String confirm = scanner.nextLine().trim().toLowerCase();
                 
                 if (confirm.equals("yes") || confirm.equals("y")) {
-                    double refundAmount = foundTicket.calculateFare() * 0.8; // 80% refund
-                    ticketList.remove(foundTicket);
+                    Ticket cancelledTicket = reservationService.cancelTicket(ticketId);
+                    if (cancelledTicket == null) {
+                        System.out.println("\n❌ Ticket was already cancelled!\n");
+                        return;
+                    }
+                    double refundAmount = ReservationService.calculateRefund(cancelledTicket); // 80% refund
                     
-                    System.out.println("\n" + "═".repeat(50));
+                    System.out.println("\n" + ManifestWriter.DIVIDER);
                     System.out.println("✅ TICKET CANCELLED SUCCESSFULLY!");
-                    System.out.println("═".repeat(50));
+                    System.out.println(ManifestWriter.DIVIDER);
                     System.out.println("   🎫 Ticket ID     : " + ticketId);
                     System.out.println("   💰 Refund Amount : ₹" + String.format("%.2f", refundAmount));
                     System.out.println("   ⏰ Processing Time: 7-10 working days");
-                    System.out.println("═".repeat(50) + "\n");
+                    System.out.println(ManifestWriter.DIVIDER + "\n");
                 } else {
                     System.out.println("\n✅ Cancellation aborted. Ticket is still active.\n");
                 }
@@ -355,15 +847,125 @@ public class RailwayReservationSystem {
     }
 
     /**
-     * Helper method to find ticket by ID
+     * Cancels every ticket on a train (e.g. the train itself is cancelled)
      */
-    private static Ticket findTicketById(String ticketId) {
-        for (Ticket ticket : ticketList) {
-            if (ticket.getTicketId().equalsIgnoreCase(ticketId)) {
-                return ticket;
+    private static void cancelTrain() {
+        try {
+            System.out.println("╔══════════════════════════════════════════════════╗");
+            System.out.println("║          🚫 CANCEL ALL TICKETS ON A TRAIN        ║");
+            System.out.println("╚══════════════════════════════════════════════════╝\n");
+
+            scanner.nextLine(); // Clear buffer
+            System.out.print("🚆 Enter Train Number: ");
+            String trainNumber = scanner.nextLine().trim();
+            ReservationService.validateTrainNumber(trainNumber);
+
+            int booked = reservationService.findTicketsByTrain(trainNumber).size();
+            if (booked == 0) {
+                System.out.println("\n❌ No tickets found on train " + trainNumber + "!\n");
+                return;
+            }
+
+            System.out.print("\n⚠️  Cancel all " + booked + " ticket(s) on train " + trainNumber + "? (yes/no): ");
+            String confirm = scanner.nextLine().trim().toLowerCase();
+            if (!confirm.equals("yes") && !confirm.equals("y")) {
+                System.out.println("\n✅ Cancellation aborted. All tickets are still active.\n");
+                return;
+            }
+
+            List<Ticket> cancelled = reservationService.cancelTrain(trainNumber);
+            double totalRefund = 0;
+            for (Ticket ticket : cancelled) {
+                totalRefund += ReservationService.calculateRefund(ticket);
             }
+
+            System.out.println("\n" + ManifestWriter.DIVIDER);
+            System.out.println("✅ TRAIN " + trainNumber.toUpperCase() + " CANCELLED!");
+            System.out.println(ManifestWriter.DIVIDER);
+            System.out.println("   🎫 Tickets Cancelled : " + cancelled.size());
+            System.out.println("   💰 Total Refund      : ₹" + String.format("%.2f", totalRefund));
+            System.out.println("   ⏰ Processing Time   : 7-10 working days");
+            System.out.println(ManifestWriter.DIVIDER + "\n");
+        } catch (IllegalArgumentException e) {
+            System.out.println("\n❌ Error: " + e.getMessage());
+        } catch (Exception e) {
+            System.out.println("\n❌ Error cancelling train: " + e.getMessage());
         }
-        return null;
+    }
+
+    /**
+     * Dumps booking/lookup/cancellation counters and latency percentiles
+     */
+    private static void showMetrics() {
+        scanner.nextLine(); // Clear buffer
+        StringBuilder out = new StringBuilder(2048);
+        out.append("╔══════════════════════════════════════════════════╗\n");
+        out.append("║              📊 SYSTEM METRICS                   ║\n");
+        out.append("╚══════════════════════════════════════════════════╝\n\n");
+        reservationService.getMetrics().appendSummary(out, reservationService.getTicketCount());
+        reservationService.getTicketStore().appendSummary(out);
+        AdmissionController admission = reservationService.getAdmissionController();
+        if (admission != null) {
+            admission.appendSummary(out);
+        }
+        BookingPipeline pipeline = reservationService.getBookingPipeline();
+        if (pipeline != null) {
+            pipeline.appendSummary(out);
+        }
+        out.append('\n');
+        System.out.print(out);
+    }
+
+    /**
+     * Revenue, refunds and passenger counts of one train (or all trains), checked against a full rebuild
+     */
+    private static void showTrainReport() {
+        try {
+            System.out.println("╔══════════════════════════════════════════════════╗");
+            System.out.println("║             📈 TRAIN REVENUE REPORT              ║");
+            System.out.println("╚══════════════════════════════════════════════════╝\n");
+
+            scanner.nextLine(); // Clear buffer
+            System.out.print("🚆 Enter Train Number (blank for all trains): ");
+            String trainNumber = scanner.nextLine().trim();
+
+            TrainStatistics statistics = reservationService.getStatistics();
+            TrainStatistics.Report report;
+            if (trainNumber.isEmpty()) {
+                report = statistics.getTotals();
+            } else {
+                ReservationService.validateTrainNumber(trainNumber);
+                report = statistics.getReport(trainNumber);
+                if (report == null) {
+                    System.out.println("\n❌ No bookings found on train " + trainNumber + "!\n");
+                    return;
+                }
+            }
+
+            StringBuilder out = new StringBuilder(1024);
+            out.append('\n');
+            report.appendSummary(out);
+            out.append('\n');
+            long start = System.nanoTime();
+            List<String> mismatches = reservationService.checkStatistics();
+            long micros = (System.nanoTime() - start) / 1000;
+            if (mismatches.isEmpty()) {
+                out.append("✅ Matches a full rebuild from the stored tickets (").append(micros).append(" µs)\n");
+            } else {
+                out.append("⚠️  Differs from a full rebuild on train(s) ").append(String.join(", ", mismatches))
+                        .append(" (bookings in progress?)\n");
+            }
+            System.out.print(out);
+        } catch (IllegalArgumentException e) {
+            System.out.println("\n❌ Error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Helper method to find ticket by ID (constant-time hash lookup)
+     */
+    private static Ticket findTicketById(String ticketId) {
+        return reservationService.findTicket(ticketId);
     }
 
     /**
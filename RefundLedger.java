@@ -0,0 +1,93 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Record of the refunds paid out for cancelled tickets
+ * One entry per cancelled ticket number; totals are kept in paise so they add up exactly.
+ * Thread-safe - recording a refund is a single hash insert plus two counter updates.
+ * The ledger covers cancellations made since the service started (it is not journaled).
+ */
+public class RefundLedger {
+    private final ConcurrentLongMap<Entry> refundsById = new ConcurrentLongMap<>();
+    private final LongAdder totalPaise = new LongAdder();
+    private final LongAdder refundCount = new LongAdder();
+
+    /**
+     * Records the refund for a cancelled ticket, returns the entry (the existing one if already recorded)
+     */
+    public Entry record(Ticket ticket) {
+        Entry entry = new Entry(ticket.getTicketNumber(), ticket.getTrainNumber(),
+                ReservationService.calculateRefund(ticket), System.currentTimeMillis());
+        Entry existing = refundsById.putIfAbsent(ticket.getTicketNumber(), entry);
+        if (existing != null) {
+            return existing;
+        }
+        totalPaise.add(Math.round(entry.amount * 100));
+        refundCount.increment();
+        return entry;
+    }
+
+    /**
+     * Finds the refund of a cancelled ticket (case-insensitive ID), returns null if none was recorded
+     */
+    public Entry findRefund(String ticketId) {
+        long ticketNumber = ReservationService.parseTicketNumber(ticketId);
+        return ticketNumber < 0 ? null : refundsById.get(ticketNumber);
+    }
+
+    public double getTotalRefunds() {
+        return totalPaise.sum() / 100.0;
+    }
+
+    public long getRefundCount() {
+        return refundCount.sum();
+    }
+
+    /**
+     * Every recorded refund (a copy, weakly consistent with concurrent cancellations)
+     */
+    public Collection<Entry> getEntries() {
+        List<Entry> entries = new ArrayList<>(refundsById.size());
+        refundsById.forEachValue(entries::add);
+        return entries;
+    }
+
+    /**
+     * One refund - immutable
+     */
+    public static final class Entry {
+        private final long ticketNumber;
+        private final String trainNumber;
+        private final double amount;
+        private final long refundedAtMillis;
+
+        Entry(long ticketNumber, String trainNumber, double amount, long refundedAtMillis) {
+            this.ticketNumber = ticketNumber;
+            this.trainNumber = trainNumber;
+            this.amount = amount;
+            this.refundedAtMillis = refundedAtMillis;
+        }
+
+        public long getTicketNumber() {
+            return ticketNumber;
+        }
+
+        public String getTicketId() {
+            return Ticket.formatTicketId(ticketNumber);
+        }
+
+        public String getTrainNumber() {
+            return trainNumber;
+        }
+
+        public double getAmount() {
+            return amount;
+        }
+
+        public long getRefundedAtMillis() {
+            return refundedAtMillis;
+        }
+    }
+}
@@ -0,0 +1,594 @@
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Micro-benchmarks for the booking, lookup, fare and cancellation hot paths
+ * Reports throughput (ops/s) and allocation (B/op, MB/s) for every benchmark, JMH style
+ *
+ * Run:  java -Xms4g -Xmx4g ReservationBenchmark [--sizes 10000,1000000,10000000] [--iterations 5]
+ *                                              [--store objects|columnar|offheap|tiered]
+ *   or  mvn -B -Pbench verify
+ *
+ * Each benchmark runs warmup iterations (discarded) followed by measured iterations.
+ * Every iteration executes a fixed number of operations on freshly prepared state,
+ * so setup cost is never part of the score.
+ */
+public class ReservationBenchmark {
+    private static final int OPS_PER_ITERATION = 200_000;
+    private static final int TRAINS = 50_000; // spread bookings so no class runs out of berths
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    // Results are folded into this field so the JIT cannot drop the measured work
+    private static volatile long sink;
+
+    // Bytes allocated by finished worker threads (their counters vanish when they exit)
+    private static final AtomicLong workerAllocatedBytes = new AtomicLong();
+
+    private static String storeMode; // --store objects | columnar | offheap | tiered
+
+    private final int warmupIterations;
+    private final int measuredIterations;
+    private final List<String> report = new ArrayList<>();
+
+    public ReservationBenchmark(int warmupIterations, int measuredIterations) {
+        this.warmupIterations = warmupIterations;
+        this.measuredIterations = measuredIterations;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int[] sizes = parseSizes(getOption(args, "--sizes", "10000,1000000"));
+        int iterations = Integer.parseInt(getOption(args, "--iterations", "5"));
+        storeMode = getOption(args, "--store", "objects");
+        ReservationBenchmark benchmark = new ReservationBenchmark(Math.max(1, iterations / 2 + 1), iterations);
+
+        benchmark.benchmarkBooking();
+        benchmark.benchmarkConcurrentBooking(Runtime.getRuntime().availableProcessors());
+        benchmark.benchmarkPipelinedBooking(Runtime.getRuntime().availableProcessors());
+        for (int size : sizes) {
+            benchmark.benchmarkLookup(size);
+        }
+        benchmark.benchmarkMixedFares();
+        benchmark.benchmarkRepricing();
+        benchmark.benchmarkCancellation();
+        benchmark.benchmarkTrainCancellation();
+        benchmark.benchmarkWaitlist();
+        for (int size : sizes) {
+            benchmark.benchmarkStatistics(size);
+        }
+        for (int size : sizes) {
+            benchmark.benchmarkNameSearch(size);
+        }
+        for (int size : sizes) {
+            benchmark.benchmarkSnapshot(size);
+        }
+        benchmark.printReport();
+    }
+
+    // ==================== Benchmarks ====================
+
+    /**
+     * Single-threaded bookTicket throughput on an empty service
+     */
+    public void benchmarkBooking() throws Exception {
+        run("booking.single", OPS_PER_ITERATION, () -> {
+            ReservationService service = newService();
+            BookingRequest[] requests = bookingRequests(OPS_PER_ITERATION, 1);
+            return () -> {
+                long checksum = 0;
+                for (BookingRequest request : requests) {
+                    checksum += book(service, request).getAge();
+                }
+                return checksum;
+            };
+        });
+    }
+
+    /**
+     * bookTicket throughput with several threads booking on the same service
+     */
+    public void benchmarkConcurrentBooking(int threads) throws Exception {
+        int perThread = OPS_PER_ITERATION / threads;
+        run("booking.concurrent(" + threads + " threads)", perThread * threads, () -> {
+            ReservationService service = newService();
+            BookingRequest[][] requests = new BookingRequest[threads][];
+            for (int t = 0; t < threads; t++) {
+                requests[t] = bookingRequests(perThread, t + 1);
+            }
+            return () -> runOnThreads(threads, t -> {
+                long checksum = 0;
+                for (BookingRequest request : requests[t]) {
+                    checksum += book(service, request).getAge();
+                }
+                return checksum;
+            });
+        });
+    }
+
+    /**
+     * BookingPipeline throughput: several threads submitting, one writer per processor applying
+     * micro-batches; an iteration ends when every booking has been applied
+     * (allocation counts the submitting threads and the writers, so B/op compares with the other rows)
+     */
+    public void benchmarkPipelinedBooking(int threads) throws Exception {
+        int perThread = OPS_PER_ITERATION / threads;
+        run("booking.pipelined(" + threads + " threads)", perThread * threads, () -> {
+            ReservationService service = newService();
+            BookingRequest[][] requests = new BookingRequest[threads][];
+            for (int t = 0; t < threads; t++) {
+                requests[t] = bookingRequests(perThread, t + 1);
+            }
+            AtomicLong completed = new AtomicLong();
+            BookingPipeline.BookingCallback callback = (ticket, error) -> completed.addAndGet(ticket.getAge());
+            return () -> {
+                BookingPipeline pipeline = new BookingPipeline(service, threads);
+                try {
+                    runOnThreads(threads, t -> {
+                        for (BookingRequest request : requests[t]) {
+                            pipeline.submit(request.getPassengerName(), request.getAge(),
+                                    request.getTrainNumber(), request.getBaseFare(), request.getTravelClass(),
+                                    callback);
+                        }
+                        return 0;
+                    });
+                } finally {
+                    pipeline.close(); // waits until everything queued is applied
+                    workerAllocatedBytes.addAndGet(pipeline.getAllocatedBytes());
+                }
+                return completed.get();
+            };
+        });
+    }
+
+    /**
+     * findTicket latency with a given number of live tickets
+     */
+    public void benchmarkLookup(int storeSize) throws Exception {
+        ReservationService service = newService();
+        String[] booked = bookedIds(service.bookTickets(Arrays.asList(bookingRequests(storeSize, 7))));
+        String[] ids = new String[OPS_PER_ITERATION];
+        Random random = new Random(42);
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = booked[random.nextInt(booked.length)];
+        }
+        run("lookup(" + storeSize + " tickets)", OPS_PER_ITERATION, () -> () -> {
+            long checksum = 0;
+            for (String id : ids) {
+                checksum += service.findTicket(id).getAge();
+            }
+            return checksum;
+        });
+    }
+
+    /**
+     * Polymorphic calculateFare() over a mix of Sleeper and 1A/2A/3A tickets, all age bands
+     */
+    public void benchmarkMixedFares() throws Exception {
+        Ticket[] tickets = new Ticket[OPS_PER_ITERATION];
+        BookingRequest[] requests = bookingRequests(tickets.length, 3);
+        for (int i = 0; i < tickets.length; i++) {
+            BookingRequest request = requests[i];
+            tickets[i] = ReservationService.createTicket(i, request.getPassengerName(), request.getAge(),
+                    request.getTrainNumber(), request.getJourneyDate(), request.getBaseFare(),
+                    request.getTravelClass());
+        }
+        run("fare.mixed", OPS_PER_ITERATION, () -> () -> {
+            double total = 0;
+            for (Ticket ticket : tickets) {
+                total += ticket.calculateFare();
+            }
+            return (long) total;
+        });
+    }
+
+    /**
+     * FareEngine batch repricing of the same mix in one pass
+     */
+    public void benchmarkRepricing() throws Exception {
+        List<Ticket> tickets = new ArrayList<>(OPS_PER_ITERATION);
+        BookingRequest[] requests = bookingRequests(OPS_PER_ITERATION, 3);
+        for (int i = 0; i < OPS_PER_ITERATION; i++) {
+            BookingRequest request = requests[i];
+            tickets.add(ReservationService.createTicket(i, request.getPassengerName(), request.getAge(),
+                    request.getTrainNumber(), request.getJourneyDate(), request.getBaseFare(),
+                    request.getTravelClass()));
+        }
+        run("fare.reprice", OPS_PER_ITERATION, () -> () -> (long) FareEngine.getDefault().reprice(tickets));
+    }
+
+    /**
+     * cancelTicket cost, including berth release
+     */
+    public void benchmarkCancellation() throws Exception {
+        run("cancellation", OPS_PER_ITERATION, () -> {
+            ReservationService service = newService();
+            String[] ids = bookedIds(service.bookTickets(Arrays.asList(bookingRequests(OPS_PER_ITERATION, 5))));
+            return () -> {
+                long checksum = 0;
+                for (String id : ids) {
+                    checksum += service.cancelTicket(id).getAge();
+                }
+                return checksum;
+            };
+        });
+    }
+
+    /**
+     * cancelTrain cost per cancelled ticket, whole trains cancelled in one pass each
+     */
+    public void benchmarkTrainCancellation() throws Exception {
+        int trains = OPS_PER_ITERATION / 500;
+        run("cancellation.train", OPS_PER_ITERATION, () -> {
+            ReservationService service = newService();
+            List<BookingRequest> requests = new ArrayList<>(OPS_PER_ITERATION);
+            Random random = new Random(9);
+            for (int i = 0; i < OPS_PER_ITERATION; i++) {
+                // 500 tickets per train: 375 Sleeper (720 berths) + 125 Third AC (256 berths)
+                TravelClass travelClass = i % 4 == 0 ? TravelClass.THIRD_AC : TravelClass.SLEEPER;
+                requests.add(new BookingRequest("Passenger " + i, 1 + random.nextInt(90), "T" + (i % trains),
+                        100 + random.nextInt(2000), travelClass));
+            }
+            service.bookTickets(requests);
+            return () -> {
+                long checksum = 0;
+                for (int t = 0; t < trains; t++) {
+                    checksum += service.cancelTrain("T" + t).size();
+                }
+                return checksum;
+            };
+        });
+    }
+
+    /**
+     * Cancelling a berth holder promotes the head of a 5000-passenger waiting list;
+     * status queries for passengers anywhere in such a list
+     */
+    public void benchmarkWaitlist() throws Exception {
+        int trains = OPS_PER_ITERATION / 5000;
+        int perTrain = OPS_PER_ITERATION / trains + TravelClass.FIRST_AC.getBerthsPerCoach();
+        run("waitlist.promotion", OPS_PER_ITERATION, () -> {
+            ReservationService service = newService();
+            String[][] ids = bookFirstAcWaitlists(service, trains, perTrain);
+            return () -> {
+                long checksum = 0;
+                // Booking order: every cancelled ticket holds a berth, which goes to the head of the queue
+                for (int i = 0; i < perTrain - TravelClass.FIRST_AC.getBerthsPerCoach(); i++) {
+                    for (int t = 0; t < trains; t++) {
+                        checksum += service.cancelTicket(ids[t][i]).getAge();
+                    }
+                }
+                return checksum;
+            };
+        });
+
+        ReservationService service = newService();
+        String[][] ids = bookFirstAcWaitlists(service, trains, perTrain);
+        Random random = new Random(11);
+        String[] queries = new String[OPS_PER_ITERATION];
+        for (int i = 0; i < queries.length; i++) {
+            queries[i] = ids[random.nextInt(trains)][random.nextInt(perTrain)];
+        }
+        run("waitlist.status", OPS_PER_ITERATION, () -> () -> {
+            long checksum = 0;
+            for (String id : queries) {
+                checksum += service.getBookingStatus(id).getPosition();
+            }
+            return checksum;
+        });
+    }
+
+    /**
+     * Reading a train's revenue/occupancy report (constant time, whatever the store size)
+     * and rebuilding every train's aggregates from the store with fork/join, per ticket
+     */
+    public void benchmarkStatistics(int storeSize) throws Exception {
+        ReservationService service = newService();
+        service.bookTickets(Arrays.asList(bookingRequests(storeSize, 13)));
+        TrainStatistics statistics = service.getStatistics();
+        String[] trains = new String[OPS_PER_ITERATION];
+        Random random = new Random(17);
+        for (int i = 0; i < trains.length; i++) {
+            trains[i] = "T" + random.nextInt(Math.min(TRAINS, storeSize));
+        }
+        run("stats.report(" + storeSize + " tickets)", OPS_PER_ITERATION, () -> () -> {
+            long checksum = 0;
+            for (String train : trains) {
+                TrainStatistics.Report report = statistics.getReport(train);
+                checksum += report == null ? 0 : report.getPassengers();
+            }
+            return checksum;
+        });
+        run("stats.rebuild(" + storeSize + " tickets)", service.getTicketCount(),
+                () -> () -> service.rebuildStatistics().size());
+    }
+
+    /**
+     * Passenger name search with a given number of live tickets: prefix of the surname,
+     * and a fuzzy search for a full name with one letter mistyped
+     */
+    public void benchmarkNameSearch(int storeSize) throws Exception {
+        int queries = 20_000;
+        ReservationService service = newService();
+        BookingRequest[] requests = bookingRequests(storeSize, 19);
+        String[] names = passengerNames(storeSize, 19);
+        List<BookingRequest> named = new ArrayList<>(storeSize);
+        for (int i = 0; i < storeSize; i++) {
+            named.add(new BookingRequest(names[i], requests[i].getAge(), requests[i].getTrainNumber(),
+                    requests[i].getBaseFare(), requests[i].getTravelClass()));
+        }
+        service.bookTickets(named);
+
+        Random random = new Random(23);
+        String[] prefixes = new String[queries];
+        String[] typos = new String[queries];
+        for (int i = 0; i < queries; i++) {
+            String name = names[random.nextInt(storeSize)];
+            int surname = name.indexOf(' ') + 1;
+            prefixes[i] = name.substring(surname, Math.min(name.length(), surname + 3));
+            char[] letters = name.toCharArray();
+            letters[random.nextInt(letters.length)] = (char) ('a' + random.nextInt(26));
+            typos[i] = new String(letters);
+        }
+        run("search.prefix(" + storeSize + " tickets)", queries, () -> () -> {
+            long checksum = 0;
+            for (String prefix : prefixes) {
+                checksum += service.findTicketsByNamePrefix(prefix, null, 20).size();
+            }
+            return checksum;
+        });
+        run("search.fuzzy(" + storeSize + " tickets)", queries, () -> () -> {
+            long checksum = 0;
+            for (String typo : typos) {
+                checksum += service.findTicketsBySimilarName(typo, null, 20).size();
+            }
+            return checksum;
+        });
+    }
+
+    /**
+     * Binary snapshot with a given number of live tickets: streaming export, then lookups by ID
+     * and a full scan straight from the memory-mapped file
+     */
+    public void benchmarkSnapshot(int storeSize) throws Exception {
+        ReservationService service = newService();
+        String[] booked = bookedIds(service.bookTickets(Arrays.asList(bookingRequests(storeSize, 29))));
+        Path file = Files.createTempFile("benchmark", ".snapshot");
+        try {
+            run("snapshot.export(" + storeSize + " tickets)", booked.length,
+                    () -> () -> service.exportSnapshot(file));
+            try (TicketSnapshot snapshot = TicketSnapshot.open(file)) {
+                String[] ids = new String[OPS_PER_ITERATION];
+                Random random = new Random(31);
+                for (int i = 0; i < ids.length; i++) {
+                    ids[i] = booked[random.nextInt(booked.length)];
+                }
+                run("snapshot.find(" + storeSize + " tickets)", OPS_PER_ITERATION, () -> () -> {
+                    long checksum = 0;
+                    for (String id : ids) {
+                        checksum += snapshot.find(id).getAge();
+                    }
+                    return checksum;
+                });
+                run("snapshot.scan(" + storeSize + " tickets)", snapshot.size(), () -> () -> {
+                    long checksum = 0;
+                    for (Ticket ticket : snapshot) {
+                        checksum += ticket.getAge();
+                    }
+                    return checksum;
+                });
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static String[][] bookFirstAcWaitlists(ReservationService service, int trains, int perTrain) {
+        String[][] ids = new String[trains][perTrain];
+        for (int i = 0; i < perTrain; i++) {
+            for (int t = 0; t < trains; t++) {
+                ids[t][i] = service.bookTicket("Passenger " + i, 30, "W" + t, 1500, TravelClass.FIRST_AC)
+                        .getTicketId();
+            }
+        }
+        return ids;
+    }
+
+    // ==================== Harness ====================
+
+    private interface Setup {
+        Workload prepare() throws Exception;
+    }
+
+    private interface Workload {
+        long execute() throws Exception;
+    }
+
+    private interface ThreadWork {
+        long execute(int threadIndex);
+    }
+
+    /**
+     * Runs warmup + measured iterations and records ops/s and allocation per operation
+     */
+    private void run(String name, int opsPerIteration, Setup setup) throws Exception {
+        System.out.println("# Running " + name + " ...");
+        for (int i = 0; i < warmupIterations; i++) {
+            sink += setup.prepare().execute();
+        }
+        double[] throughput = new double[measuredIterations];
+        long totalBytes = 0;
+        long totalNanos = 0;
+        for (int i = 0; i < measuredIterations; i++) {
+            Workload workload = setup.prepare();
+            System.gc();
+            long bytesBefore = allocatedBytes();
+            long start = System.nanoTime();
+            sink += workload.execute();
+            long elapsed = System.nanoTime() - start;
+            totalBytes += allocatedBytes() - bytesBefore;
+            totalNanos += elapsed;
+            throughput[i] = opsPerIteration * 1_000_000_000.0 / elapsed;
+        }
+
+        double mean = 0;
+        for (double value : throughput) {
+            mean += value;
+        }
+        mean /= throughput.length;
+        double variance = 0;
+        for (double value : throughput) {
+            variance += (value - mean) * (value - mean);
+        }
+        double error = throughput.length > 1 ? Math.sqrt(variance / (throughput.length - 1)) : 0;
+        long totalOps = (long) opsPerIteration * measuredIterations;
+
+        report.add(String.format(Locale.ROOT, "%-48s thrpt %3d %14.0f ± %12.0f  ops/s",
+                name, measuredIterations, mean, error));
+        report.add(String.format(Locale.ROOT, "%-48s       %3d %14.1f                 ns/op",
+                name + ":latency", measuredIterations, totalNanos / (double) totalOps));
+        report.add(String.format(Locale.ROOT, "%-48s       %3d %14.1f                 B/op",
+                name + ":gc.alloc.rate.norm", measuredIterations, totalBytes / (double) totalOps));
+        report.add(String.format(Locale.ROOT, "%-48s       %3d %14.1f                 MB/s",
+                name + ":gc.alloc.rate", measuredIterations, totalBytes * 1000.0 / totalNanos));
+    }
+
+    private void printReport() {
+        System.out.println();
+        System.out.println(String.format("%-48s %5s %3s %14s   %12s  %s", "Benchmark", "Mode", "Cnt", "Score",
+                "Error", "Units"));
+        for (String line : report) {
+            System.out.println(line);
+        }
+    }
+
+    /**
+     * Bytes allocated so far by the benchmark thread plus all finished worker threads
+     */
+    private static long allocatedBytes() {
+        return currentThreadAllocatedBytes() + workerAllocatedBytes.get();
+    }
+
+    private static long currentThreadAllocatedBytes() {
+        return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static long runOnThreads(int threads, ThreadWork work) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        long[] results = new long[threads];
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int threadIndex = t;
+            workers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                    long bytesBefore = currentThreadAllocatedBytes();
+                    results[threadIndex] = work.execute(threadIndex);
+                    workerAllocatedBytes.addAndGet(currentThreadAllocatedBytes() - bytesBefore);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, "benchmark-" + t);
+            workers[t].start();
+        }
+        start.countDown();
+        long checksum = 0;
+        for (int t = 0; t < threads; t++) {
+            workers[t].join();
+            checksum += results[t];
+        }
+        return checksum;
+    }
+
+    // ==================== Test data ====================
+
+    private static ReservationService newService() {
+        return new ReservationService(TicketStore.create(storeMode), new SeatInventoryManager());
+    }
+
+    private static Ticket book(ReservationService service, BookingRequest request) {
+        return service.bookTicket(request.getPassengerName(), request.getAge(), request.getTrainNumber(),
+                request.getJourneyDate(), request.getBaseFare(), request.getTravelClass());
+    }
+
+    /**
+     * Deterministic mix of classes, ages (child / adult / senior) and trains
+     */
+    static BookingRequest[] bookingRequests(int count, long seed) {
+        Random random = new Random(seed);
+        TravelClass[] classes = TravelClass.values();
+        BookingRequest[] requests = new BookingRequest[count];
+        for (int i = 0; i < count; i++) {
+            int age = 1 + random.nextInt(90);
+            String train = "T" + random.nextInt(TRAINS);
+            double fare = 100 + random.nextInt(2000);
+            requests[i] = new BookingRequest("Passenger " + i, age, train, fare, classes[random.nextInt(classes.length)]);
+        }
+        return requests;
+    }
+
+    /**
+     * Deterministic "First Last" names built from syllables - mostly distinct, like real passengers
+     */
+    static String[] passengerNames(int count, long seed) {
+        String[] syllables = {"a", "ra", "hul", "ku", "mar", "an", "ja", "li", "sha", "pri", "ya", "ve", "ma", "dev",
+                "si", "ngh", "na", "ar", "jun", "mee", "ta", "ro", "han", "su", "re", "ka", "pa", "tel", "go", "el"};
+        Random random = new Random(seed);
+        String[] names = new String[count];
+        StringBuilder name = new StringBuilder(24);
+        for (int i = 0; i < count; i++) {
+            name.setLength(0);
+            for (int word = 0; word < 2; word++) {
+                if (word > 0) {
+                    name.append(' ');
+                }
+                int start = name.length();
+                for (int j = 2 + random.nextInt(2); j > 0; j--) {
+                    name.append(syllables[random.nextInt(syllables.length)]);
+                }
+                name.setCharAt(start, Character.toUpperCase(name.charAt(start)));
+            }
+            names[i] = name.toString();
+        }
+        return names;
+    }
+
+    /**
+     * IDs of the bookings that succeeded (a class can fill up on large stores)
+     */
+    private static String[] bookedIds(List<BatchResult> results) {
+        List<String> ids = new ArrayList<>(results.size());
+        for (BatchResult result : results) {
+            if (result.isSuccess()) {
+                ids.add(result.getTicket().getTicketId());
+            }
+        }
+        return ids.toArray(new String[0]);
+    }
+
+    private static int[] parseSizes(String value) {
+        String[] parts = value.split(",");
+        int[] sizes = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            sizes[i] = Integer.parseInt(parts[i].trim());
+        }
+        return sizes;
+    }
+
+    private static String getOption(String[] args, String name, String defaultValue) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals(name)) {
+                return args[i + 1];
+            }
+        }
+        return defaultValue;
+    }
+}
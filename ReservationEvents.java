@@ -0,0 +1,67 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Custom JDK Flight Recorder events for the reservation operations
+ * They cost almost nothing unless a recording is running, e.g.:
+ *   java -XX:StartFlightRecording=filename=railway.jfr RailwayReservationSystem ...
+ *   jfr print --events railway.Booking railway.jfr
+ */
+final class ReservationEvents {
+    private ReservationEvents() {
+    }
+
+    @Name("railway.Booking")
+    @Label("Ticket Booking")
+    @Category("Railway Reservation")
+    @Description("One bookTicket call, successful or not")
+    @StackTrace(false)
+    static final class Booking extends Event {
+        @Label("Ticket ID")
+        String ticketId;
+
+        @Label("Train Number")
+        String trainNumber;
+
+        @Label("Class")
+        String travelClass;
+
+        @Label("Outcome")
+        String outcome;
+    }
+
+    @Name("railway.Cancellation")
+    @Label("Ticket Cancellation")
+    @Category("Railway Reservation")
+    @Description("A single, batch or whole-train cancellation")
+    @StackTrace(false)
+    static final class Cancellation extends Event {
+        @Label("Ticket ID / Train Number")
+        String target;
+
+        @Label("Tickets Cancelled")
+        int tickets;
+
+        @Label("Refund")
+        double refund;
+    }
+
+    @Name("railway.Lookup")
+    @Label("Ticket Lookup")
+    @Category("Railway Reservation")
+    @Description("A findTicket call that took longer than the threshold")
+    @StackTrace(false)
+    @Threshold("1 ms")
+    static final class Lookup extends Event {
+        @Label("Ticket ID")
+        String ticketId;
+
+        @Label("Found")
+        boolean found;
+    }
+}
@@ -0,0 +1,256 @@
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Operational metrics of a ReservationService: latency histograms and counters
+ * Recording is lock-free (striped counters and histograms), so metrics are always on.
+ * Exposed as a human-readable dump (console menu) and in Prometheus text format (GET /metrics).
+ */
+public class ReservationMetrics {
+    /**
+     * Timed operations, each with its own latency histogram
+     */
+    public enum Operation {
+        BOOK("book"), BOOK_BATCH("book_batch"), LOOKUP("lookup"), CANCEL("cancel"), CANCEL_BATCH("cancel_batch");
+
+        private final String metricName;
+
+        Operation(String metricName) {
+            this.metricName = metricName;
+        }
+
+        public String getMetricName() {
+            return metricName;
+        }
+    }
+
+    // Lookup latency is sampled: the lookup histogram counts samples, lookup counters count every call
+    public static final int LOOKUP_SAMPLE_RATE = 64;
+
+    private static final double[] QUANTILES = {0.5, 0.99, 0.999};
+
+    private final LatencyHistogram[] latencies = new LatencyHistogram[Operation.values().length];
+    private final LongAdder[] bookingsByClass = new LongAdder[TravelClass.values().length];
+    private final LongAdder waitlistedBookings = new LongAdder(); // booked without a berth (RAC/WL)
+    private final LongAdder promotions = new LongAdder();         // RAC/WL passengers given a berth
+    private final LongAdder failedValidations = new LongAdder();
+    private final LongAdder rejectedBookings = new LongAdder(); // class and waiting list full (or journal down)
+    private final LongAdder lookupHits = new LongAdder();
+    private final LongAdder lookupMisses = new LongAdder();
+    private final LongAdder cancellations = new LongAdder();
+    private final LongAdder cancellationsNotFound = new LongAdder();
+    private final LongAdder refundPaise = new LongAdder();
+    private final LongAdder idempotentReplays = new LongAdder(); // retries answered with the first outcome
+    private final LongAdder expiredJourneys = new LongAdder(); // journey dates dropped once they were over
+
+    public ReservationMetrics() {
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new LatencyHistogram();
+        }
+        for (int i = 0; i < bookingsByClass.length; i++) {
+            bookingsByClass[i] = new LongAdder();
+        }
+    }
+
+    // ==================== Recording ====================
+
+    public void recordLatency(Operation operation, long nanos) {
+        latencies[operation.ordinal()].record(nanos);
+    }
+
+    public void recordBooking(TravelClass travelClass, boolean waitlisted) {
+        bookingsByClass[travelClass.ordinal()].increment();
+        if (waitlisted) {
+            waitlistedBookings.increment();
+        }
+    }
+
+    public void recordPromotion() {
+        promotions.increment();
+    }
+
+    public void recordFailedValidation() {
+        failedValidations.increment();
+    }
+
+    public void recordRejectedBooking() {
+        rejectedBookings.increment();
+    }
+
+    /**
+     * True for roughly one lookup in LOOKUP_SAMPLE_RATE - only those are timed
+     */
+    public boolean shouldSampleLookup() {
+        return ThreadLocalRandom.current().nextInt(LOOKUP_SAMPLE_RATE) == 0;
+    }
+
+    public void recordLookup(boolean found) {
+        (found ? lookupHits : lookupMisses).increment();
+    }
+
+    public void recordCancellation(double refund) {
+        cancellations.increment();
+        refundPaise.add(Math.round(refund * 100));
+    }
+
+    public void recordCancellationNotFound() {
+        cancellationsNotFound.increment();
+    }
+
+    public void recordIdempotentReplay() {
+        idempotentReplays.increment();
+    }
+
+    public void recordExpiredJourney() {
+        expiredJourneys.increment();
+    }
+
+    // ==================== Reading ====================
+
+    public LatencyHistogram.Snapshot getLatency(Operation operation) {
+        return latencies[operation.ordinal()].snapshot();
+    }
+
+    public long getBookings(TravelClass travelClass) {
+        return bookingsByClass[travelClass.ordinal()].sum();
+    }
+
+    public long getWaitlistedBookings() {
+        return waitlistedBookings.sum();
+    }
+
+    public long getPromotions() {
+        return promotions.sum();
+    }
+
+    public long getFailedValidations() {
+        return failedValidations.sum();
+    }
+
+    public long getRejectedBookings() {
+        return rejectedBookings.sum();
+    }
+
+    public long getCancellations() {
+        return cancellations.sum();
+    }
+
+    public double getTotalRefunds() {
+        return refundPaise.sum() / 100.0;
+    }
+
+    public long getIdempotentReplays() {
+        return idempotentReplays.sum();
+    }
+
+    public long getExpiredJourneys() {
+        return expiredJourneys.sum();
+    }
+
+    /**
+     * Human-readable dump: counters, then p50/p99/p999/max per operation in microseconds
+     * (the lookup row counts sampled calls only)
+     */
+    public void appendSummary(StringBuilder out, long liveTickets) {
+        out.append("📊 Live tickets        : ").append(liveTickets).append('\n');
+        for (TravelClass travelClass : TravelClass.values()) {
+            out.append(String.format(Locale.ROOT, "🎫 Booked %-13s: %d%n", travelClass.getDisplayName(),
+                    getBookings(travelClass)));
+        }
+        out.append("🕒 Waitlisted / RAC    : ").append(getWaitlistedBookings()).append(" (")
+                .append(getPromotions()).append(" promoted)\n");
+        out.append("❌ Failed validations  : ").append(getFailedValidations()).append('\n');
+        out.append("🚫 Rejected (WL full)  : ").append(getRejectedBookings()).append('\n');
+        out.append("🔍 Lookups (hit/miss)  : ").append(lookupHits.sum()).append(" / ").append(lookupMisses.sum())
+                .append('\n');
+        out.append("💸 Cancellations       : ").append(getCancellations()).append(" (")
+                .append(cancellationsNotFound.sum()).append(" not found)\n");
+        out.append("💰 Refunds             : ₹").append(String.format(Locale.ROOT, "%.2f", getTotalRefunds()))
+                .append('\n');
+        out.append("🔁 Retries replayed    : ").append(getIdempotentReplays()).append('\n');
+        out.append("📅 Journeys expired    : ").append(getExpiredJourneys()).append('\n');
+        out.append('\n');
+        out.append(String.format(Locale.ROOT, "%-14s %10s %10s %10s %10s %10s%n", "Operation (µs)", "Count",
+                "p50", "p99", "p999", "max"));
+        for (Operation operation : Operation.values()) {
+            LatencyHistogram.Snapshot snapshot = getLatency(operation);
+            out.append(String.format(Locale.ROOT, "%-14s %10d %10.1f %10.1f %10.1f %10.1f%n",
+                    operation.getMetricName(), snapshot.getCount(),
+                    snapshot.getValueAtQuantile(0.5) / 1000.0, snapshot.getValueAtQuantile(0.99) / 1000.0,
+                    snapshot.getValueAtQuantile(0.999) / 1000.0, snapshot.getMaxNanos() / 1000.0));
+        }
+    }
+
+    /**
+     * Prometheus text exposition format (version 0.0.4)
+     */
+    public void appendPrometheus(StringBuilder out, long liveTickets) {
+        gauge(out, "railway_tickets_live", "Tickets currently booked", liveTickets);
+
+        header(out, "railway_bookings_total", "Tickets booked, by class", "counter");
+        for (TravelClass travelClass : TravelClass.values()) {
+            out.append("railway_bookings_total{class=\"").append(travelClass.getCode()).append("\"} ")
+                    .append(getBookings(travelClass)).append('\n');
+        }
+        header(out, "railway_bookings_waitlisted_total", "Tickets booked onto the RAC/waiting list", "counter");
+        out.append("railway_bookings_waitlisted_total ").append(getWaitlistedBookings()).append('\n');
+        header(out, "railway_promotions_total", "RAC/waitlisted tickets given a berth", "counter");
+        out.append("railway_promotions_total ").append(getPromotions()).append('\n');
+        header(out, "railway_bookings_rejected_total", "Bookings that failed, by reason", "counter");
+        out.append("railway_bookings_rejected_total{reason=\"validation\"} ").append(getFailedValidations())
+                .append('\n');
+        out.append("railway_bookings_rejected_total{reason=\"unavailable\"} ").append(getRejectedBookings())
+                .append('\n');
+        header(out, "railway_lookups_total", "Ticket lookups, by result", "counter");
+        out.append("railway_lookups_total{result=\"hit\"} ").append(lookupHits.sum()).append('\n');
+        out.append("railway_lookups_total{result=\"miss\"} ").append(lookupMisses.sum()).append('\n');
+        header(out, "railway_cancellations_total", "Tickets cancelled", "counter");
+        out.append("railway_cancellations_total ").append(getCancellations()).append('\n');
+        header(out, "railway_cancellations_not_found_total", "Cancellations of unknown ticket IDs", "counter");
+        out.append("railway_cancellations_not_found_total ").append(cancellationsNotFound.sum()).append('\n');
+        header(out, "railway_refunds_rupees_total", "Refunds paid out, in rupees", "counter");
+        out.append("railway_refunds_rupees_total ").append(getTotalRefunds()).append('\n');
+        header(out, "railway_idempotent_replays_total", "Retried requests answered with their first outcome",
+                "counter");
+        out.append("railway_idempotent_replays_total ").append(getIdempotentReplays()).append('\n');
+        header(out, "railway_journeys_expired_total", "Journey dates dropped after their journey was over",
+                "counter");
+        out.append("railway_journeys_expired_total ").append(getExpiredJourneys()).append('\n');
+
+        header(out, "railway_operation_latency_seconds", "Latency of reservation operations (lookups sampled 1 in "
+                + LOOKUP_SAMPLE_RATE + ")", "summary");
+        for (Operation operation : Operation.values()) {
+            LatencyHistogram.Snapshot snapshot = getLatency(operation);
+            String name = operation.getMetricName();
+            for (double quantile : QUANTILES) {
+                out.append("railway_operation_latency_seconds{operation=\"").append(name).append("\",quantile=\"")
+                        .append(quantile).append("\"} ").append(seconds(snapshot.getValueAtQuantile(quantile)))
+                        .append('\n');
+            }
+            out.append("railway_operation_latency_seconds_sum{operation=\"").append(name).append("\"} ")
+                    .append(seconds(snapshot.getTotalNanos())).append('\n');
+            out.append("railway_operation_latency_seconds_count{operation=\"").append(name).append("\"} ")
+                    .append(snapshot.getCount()).append('\n');
+        }
+        header(out, "railway_operation_latency_max_seconds", "Slowest call of each operation", "gauge");
+        for (Operation operation : Operation.values()) {
+            out.append("railway_operation_latency_max_seconds{operation=\"").append(operation.getMetricName())
+                    .append("\"} ").append(seconds(getLatency(operation).getMaxNanos())).append('\n');
+        }
+    }
+
+    private static void gauge(StringBuilder out, String name, String help, long value) {
+        header(out, name, help, "gauge");
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void header(StringBuilder out, String name, String help, String type) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static double seconds(long nanos) {
+        return nanos / 1_000_000_000.0;
+    }
+}
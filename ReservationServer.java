@@ -0,0 +1,625 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * HTTP/JSON front end for the ReservationService, built on the JDK's own HTTP server
+ *
+ *   POST   /tickets        {"passengerName":"Asha","age":34,"trainNumber":"12951","baseFare":1450,"class":"3A"}
+ *                          -> 201 with the booked ticket and its status (CNF, RAC n or WL n); an optional
+ *                          "journeyDate":"2026-11-02" books that date's journey instead of an undated ticket
+ *   GET    /tickets/{id}   -> 200 with the ticket and its current status, 404 if not found
+ *   GET    /tickets?name=ash[&train=12951][&date=2026-11-02][&fuzzy=true][&limit=20]
+ *                          -> 200 with {"tickets":[...]}: names (or any word of them) starting with name,
+ *                          or with fuzzy=true names spelled similarly, best match first; with date, only
+ *                          that journey date is searched
+ *   DELETE /tickets/{id}   -> 200 with the cancelled ticket and its refund, 404 if not found
+ *   GET    /trains/{number}/report -> 200 with the train's revenue, refunds and passenger counts, 404 if
+ *                          nothing was booked on it; GET /trains/report gives the totals over all trains
+ *   GET    /health         -> 200 with the number of live tickets
+ *   GET    /metrics        -> counters and latency percentiles in Prometheus text format
+ *
+ * A shard node (ticket IDs encode the train's ShardRing partition) also serves, for the ShardRouter:
+ *   GET    /shard/partitions/{p} -> the partition's tickets, binary (count, then journal-encoded tickets)
+ *   PUT    /shard/partitions/{p} -> adopts tickets in that format, 200 with {"partition":p,"tickets":n}
+ *   DELETE /shard/partitions/{p} -> removes the partition's tickets once adopted elsewhere
+ *
+ * POST and DELETE take an optional Idempotency-Key header (up to 64 characters, e.g. a UUID): a retry
+ * with the same key gets the original ticket back instead of booking (or cancelling) again.
+ *
+ * Errors are returned as {"error":"..."}: 400 for invalid input (or a key reused for another request),
+ * 409 when the class and its waiting list are full, 429 with a Retry-After header when admission
+ * control sheds a booking (--train-rate).
+ * Every request runs on its own virtual thread (Java 21+), so a booking waiting for its journal
+ * fsync parks cheaply instead of pinning a pool thread; on older JDKs a thread per request is used.
+ */
+public class ReservationServer implements AutoCloseable {
+    public static final int DEFAULT_PORT = 8080;
+
+    private static final int MAX_BODY_BYTES = 16 * 1024;
+    private static final int DEFAULT_SEARCH_LIMIT = 20;
+    private static final int MAX_SEARCH_LIMIT = 500;
+    private static final int BACKLOG = 4096;
+    private static final String JSON_TYPE = "application/json; charset=utf-8";
+    private static final String BINARY_TYPE = "application/octet-stream";
+    static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
+    private final ReservationService reservationService;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    public ReservationServer(ReservationService reservationService, int port) throws IOException {
+        this.reservationService = reservationService;
+        this.server = HttpServer.create(new InetSocketAddress(port), BACKLOG);
+        this.executor = newThreadPerTaskExecutor("reservation-http");
+        server.setExecutor(executor);
+        server.createContext("/tickets", this::handleTickets);
+        server.createContext("/trains", this::handleTrains);
+        server.createContext("/health", this::handleHealth);
+        server.createContext("/metrics", this::handleMetrics);
+        if (reservationService.hasPartitionedTicketIds()) {
+            server.createContext("/shard/partitions/", this::handlePartition);
+        }
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops accepting requests, waits up to a second for running ones, then stops the threads
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdown();
+    }
+
+    /**
+     * True when requests run on virtual threads (Java 21+)
+     */
+    public static boolean isVirtualThreadsAvailable() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * One new thread per task: a virtual thread when the JDK has them, else a daemon platform thread
+     * Looked up reflectively so the code still compiles for Java 17
+     */
+    static ExecutorService newThreadPerTaskExecutor(String name) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            AtomicInteger threadNumber = new AtomicInteger();
+            ThreadFactory factory = r -> {
+                Thread thread = new Thread(r, name + "-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            };
+            return Executors.newCachedThreadPool(factory);
+        }
+    }
+
+    // ==================== Handlers ====================
+
+    private void handleTickets(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            String path = exchange.getRequestURI().getRawPath();
+            if (!path.equals("/tickets") && !path.startsWith("/tickets/")) {
+                sendError(exchange, 404, "Not found: " + path);
+                return;
+            }
+            String ticketId = path.length() > "/tickets/".length()
+                    ? URLDecoder.decode(path.substring("/tickets/".length()), StandardCharsets.UTF_8) : null;
+
+            if (ticketId == null) {
+                if (method.equals("POST")) {
+                    bookTicket(exchange);
+                } else if (method.equals("GET")) {
+                    searchTickets(exchange);
+                } else {
+                    sendMethodNotAllowed(exchange, "GET, POST");
+                }
+            } else if (method.equals("GET")) {
+                viewTicket(exchange, ticketId);
+            } else if (method.equals("DELETE")) {
+                cancelTicket(exchange, ticketId);
+            } else {
+                sendMethodNotAllowed(exchange, "GET, DELETE");
+            }
+        } catch (IllegalArgumentException e) {
+            sendError(exchange, 400, e.getMessage());
+        } catch (OverloadedException e) {
+            // Whole seconds, rounded up - the exact delay is in the message
+            long retryAfterSeconds = (e.getRetryAfterMillis() + 999) / 1000;
+            exchange.getResponseHeaders().set("Retry-After", Long.toString(retryAfterSeconds));
+            sendError(exchange, 429, e.getMessage());
+        } catch (BookingInterruptedException e) {
+            sendError(exchange, 503, e.getMessage()); // the request thread was interrupted, try again
+        } catch (IllegalStateException e) {
+            sendError(exchange, 409, e.getMessage());
+        } catch (RuntimeException e) {
+            sendError(exchange, 500, "Internal error: " + e.getMessage());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * GET /trains/{number}/report and GET /trains/report - read from the live aggregates, no ticket scan
+     */
+    private void handleTrains(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getRawPath();
+            if (!path.startsWith("/trains/") || !path.endsWith("/report")) {
+                sendError(exchange, 404, "Not found: " + path);
+                return;
+            }
+            if (!exchange.getRequestMethod().equals("GET")) {
+                sendMethodNotAllowed(exchange, "GET");
+                return;
+            }
+            TrainStatistics statistics = reservationService.getStatistics();
+            TrainStatistics.Report report;
+            if (path.equals("/trains/report")) {
+                report = statistics.getTotals();
+            } else {
+                String trainNumber = URLDecoder.decode(path.substring("/trains/".length(),
+                        path.length() - "/report".length()), StandardCharsets.UTF_8);
+                report = statistics.getReport(trainNumber);
+                if (report == null) {
+                    sendError(exchange, 404, "No bookings found on train " + trainNumber);
+                    return;
+                }
+            }
+            StringBuilder body = new StringBuilder(256);
+            report.appendJson(body);
+            send(exchange, 200, body);
+        } catch (IllegalArgumentException e) {
+            sendError(exchange, 400, e.getMessage());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleHealth(HttpExchange exchange) throws IOException {
+        try {
+            StringBuilder body = new StringBuilder(64);
+            body.append("{\"status\":\"UP\",\"tickets\":").append(reservationService.getTicketCount()).append('}');
+            send(exchange, 200, body);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * GET /metrics - scrapeable by Prometheus
+     */
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        try {
+            StringBuilder body = new StringBuilder(4096);
+            reservationService.getMetrics().appendPrometheus(body, reservationService.getTicketCount());
+            reservationService.getTicketStore().appendPrometheus(body);
+            AdmissionController admission = reservationService.getAdmissionController();
+            if (admission != null) {
+                admission.appendPrometheus(body);
+            }
+            BookingPipeline pipeline = reservationService.getBookingPipeline();
+            if (pipeline != null) {
+                pipeline.appendPrometheus(body);
+            }
+            byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * GET/PUT/DELETE /shard/partitions/{p} - moves a partition's tickets between shard nodes
+     */
+    private void handlePartition(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getRawPath();
+            int partition = parseInt(path.substring("/shard/partitions/".length()), "Invalid partition: " + path);
+            if (partition < 0 || partition >= ShardRing.PARTITIONS) {
+                throw new IllegalArgumentException("Partition must be between 0 and " + (ShardRing.PARTITIONS - 1));
+            }
+            String method = exchange.getRequestMethod();
+            if (method.equals("GET")) {
+                List<Ticket> tickets = reservationService.findTicketsInPartition(partition);
+                exchange.getResponseHeaders().set("Content-Type", BINARY_TYPE);
+                exchange.sendResponseHeaders(200, 0); // chunked - the size is not known up front
+                try (DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(exchange.getResponseBody(), 1 << 16))) {
+                    out.writeInt(tickets.size());
+                    for (Ticket ticket : tickets) {
+                        BookingJournal.writeTicket(out, ticket);
+                    }
+                }
+            } else if (method.equals("PUT")) {
+                List<Ticket> tickets = new ArrayList<>();
+                try (DataInputStream in = new DataInputStream(
+                        new BufferedInputStream(exchange.getRequestBody(), 1 << 16))) {
+                    int count = in.readInt();
+                    for (int i = 0; i < count; i++) {
+                        Ticket ticket = BookingJournal.readTicket(in);
+                        if (ShardRing.partitionOf(ticket.getTrainNumber()) != partition) {
+                            throw new IllegalArgumentException("Ticket " + ticket.getTicketId()
+                                    + " does not belong to partition " + partition);
+                        }
+                        tickets.add(ticket);
+                    }
+                }
+                sendPartitionResult(exchange, partition, reservationService.adoptTickets(tickets));
+            } else if (method.equals("DELETE")) {
+                sendPartitionResult(exchange, partition, reservationService.releasePartition(partition));
+            } else {
+                sendMethodNotAllowed(exchange, "GET, PUT, DELETE");
+            }
+        } catch (EOFException e) {
+            sendError(exchange, 400, "Ticket data is truncated!");
+        } catch (IllegalArgumentException e) {
+            sendError(exchange, 400, e.getMessage());
+        } catch (IllegalStateException e) {
+            sendError(exchange, 409, e.getMessage());
+        } catch (RuntimeException e) {
+            sendError(exchange, 500, "Internal error: " + e.getMessage());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void sendPartitionResult(HttpExchange exchange, int partition, int tickets) throws IOException {
+        StringBuilder body = new StringBuilder(64);
+        body.append("{\"partition\":").append(partition).append(",\"tickets\":").append(tickets).append('}');
+        send(exchange, 200, body);
+    }
+
+    /**
+     * POST /tickets - same validation as the console booking flow
+     */
+    private void bookTicket(HttpExchange exchange) throws IOException {
+        String passengerName;
+        int age;
+        String trainNumber;
+        LocalDate journeyDate;
+        double baseFare;
+        TravelClass travelClass;
+        try {
+            Map<String, String> fields = parseJsonObject(readBody(exchange));
+            // Fields are checked in the same order as the console asks for them
+            passengerName = fields.get("passengerName");
+            ReservationService.validatePassengerName(passengerName);
+            age = parseInt(fields.get("age"), "Invalid age! Age must be between 1 and 120.");
+            ReservationService.validateAge(age);
+            trainNumber = fields.get("trainNumber");
+            ReservationService.validateTrainNumber(trainNumber);
+            journeyDate = ReservationService.parseJourneyDate(fields.get("journeyDate"));
+            reservationService.validateJourneyDate(journeyDate);
+            baseFare = parseDouble(fields.get("baseFare"), "Fare must be greater than 0!");
+            String classCode = fields.get("class");
+            if (classCode == null) {
+                throw new IllegalArgumentException("Ticket class must be selected!");
+            }
+            travelClass = TravelClass.fromCode(classCode);
+        } catch (IllegalArgumentException e) {
+            // Rejected before reaching the service - still counts as a failed validation
+            reservationService.getMetrics().recordFailedValidation();
+            throw e;
+        }
+
+        Ticket ticket = reservationService.bookTicket(passengerName, age, trainNumber, journeyDate, baseFare,
+                travelClass, exchange.getRequestHeaders().getFirst(IDEMPOTENCY_KEY_HEADER));
+        StringBuilder body = new StringBuilder(256);
+        BookingStatus status = reservationService.getBookingStatus(ticket.getTicketId());
+        if (status == null) {
+            ManifestWriter.appendJson(body, ticket); // a retry of a booking cancelled since
+        } else {
+            ManifestWriter.appendJson(body, ticket, status);
+        }
+        exchange.getResponseHeaders().set("Location", "/tickets/" + ticket.getTicketId());
+        send(exchange, 201, body);
+    }
+
+    /**
+     * GET /tickets/{id}
+     */
+    private void viewTicket(HttpExchange exchange, String ticketId) throws IOException {
+        Ticket ticket = reservationService.findTicket(ticketId);
+        if (ticket == null) {
+            sendError(exchange, 404, "No ticket exists with ID: " + ticketId);
+            return;
+        }
+        StringBuilder body = new StringBuilder(256);
+        ManifestWriter.appendJson(body, ticket, reservationService.getBookingStatus(ticket.getTicketId()));
+        send(exchange, 200, body);
+    }
+
+    /**
+     * GET /tickets?name=... - passenger name search, optionally on one train and/or one journey date
+     */
+    private void searchTickets(HttpExchange exchange) throws IOException {
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        String name = query.get("name");
+        if (name == null || name.trim().isEmpty()) {
+            throw new IllegalArgumentException("Query parameter 'name' is required!");
+        }
+        String trainNumber = query.get("train");
+        String limitError = "Limit must be a number between 1 and " + MAX_SEARCH_LIMIT + "!";
+        int limit = query.containsKey("limit") ? parseInt(query.get("limit"), limitError) : DEFAULT_SEARCH_LIMIT;
+        if (limit < 1 || limit > MAX_SEARCH_LIMIT) {
+            throw new IllegalArgumentException(limitError);
+        }
+        List<Ticket> tickets;
+        boolean fuzzy = Boolean.parseBoolean(query.get("fuzzy"));
+        if (query.containsKey("date")) {
+            LocalDate journeyDate = ReservationService.parseJourneyDate(query.get("date"));
+            tickets = fuzzy ? reservationService.findTicketsBySimilarName(name, trainNumber, journeyDate, limit)
+                    : reservationService.findTicketsByNamePrefix(name, trainNumber, journeyDate, limit);
+        } else {
+            tickets = fuzzy ? reservationService.findTicketsBySimilarName(name, trainNumber, limit)
+                    : reservationService.findTicketsByNamePrefix(name, trainNumber, limit);
+        }
+
+        StringBuilder body = new StringBuilder(64 + 256 * tickets.size());
+        body.append("{\"tickets\":[");
+        for (int i = 0; i < tickets.size(); i++) {
+            if (i > 0) {
+                body.append(',');
+            }
+            Ticket ticket = tickets.get(i);
+            BookingStatus status = reservationService.getBookingStatus(ticket.getTicketId());
+            if (status == null) {
+                ManifestWriter.appendJson(body, ticket); // cancelled while the response was being built
+            } else {
+                ManifestWriter.appendJson(body, ticket, status);
+            }
+        }
+        body.append("]}");
+        send(exchange, 200, body);
+    }
+
+    /**
+     * DELETE /tickets/{id} - returns the cancelled ticket and the refund amount
+     */
+    private void cancelTicket(HttpExchange exchange, String ticketId) throws IOException {
+        Ticket ticket = reservationService.cancelTicket(ticketId,
+                exchange.getRequestHeaders().getFirst(IDEMPOTENCY_KEY_HEADER));
+        if (ticket == null) {
+            sendError(exchange, 404, "No ticket exists with ID: " + ticketId);
+            return;
+        }
+        StringBuilder body = new StringBuilder(256);
+        body.append("{\"ticket\":");
+        ManifestWriter.appendJson(body, ticket);
+        body.append(",\"refund\":");
+        ManifestWriter.appendAmount(body, ManifestWriter.toPaise(ReservationService.calculateRefund(ticket)));
+        body.append('}');
+        send(exchange, 200, body);
+    }
+
+    // ==================== Helpers ====================
+
+    /**
+     * Parses a raw query string (a=1&b=two) into decoded parameters - the last value of a repeated name wins
+     */
+    static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> parameters = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return parameters;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int equals = pair.indexOf('=');
+            String key = equals < 0 ? pair : pair.substring(0, equals);
+            String value = equals < 0 ? "" : pair.substring(equals + 1);
+            parameters.put(URLDecoder.decode(key, StandardCharsets.UTF_8),
+                    URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return parameters;
+    }
+
+    static String readBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] bytes = in.readNBytes(MAX_BODY_BYTES + 1);
+            if (bytes.length > MAX_BODY_BYTES) {
+                throw new IllegalArgumentException("Request body is too large!");
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    static void send(HttpExchange exchange, int status, CharSequence body) throws IOException {
+        byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", JSON_TYPE);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        StringBuilder body = new StringBuilder(128);
+        body.append("{\"error\":");
+        ManifestWriter.appendJsonString(body, message == null ? "Unknown error" : message);
+        body.append('}');
+        send(exchange, status, body);
+    }
+
+    static void sendMethodNotAllowed(HttpExchange exchange, String allowed) throws IOException {
+        exchange.getResponseHeaders().set("Allow", allowed);
+        sendError(exchange, 405, "Method " + exchange.getRequestMethod() + " is not allowed here");
+    }
+
+    /**
+     * Parses a flat JSON object (string, number, boolean or null values) into field name -> raw value
+     * Throws IllegalArgumentException for anything else
+     */
+    static Map<String, String> parseJsonObject(String json) {
+        Map<String, String> fields = new HashMap<>();
+        int[] pos = {skipWhitespace(json, 0)};
+        expect(json, pos, '{');
+        if (peek(json, pos) == '}') {
+            pos[0]++;
+        } else {
+            while (true) {
+                String name = parseJsonString(json, pos);
+                expect(json, pos, ':');
+                String value = peek(json, pos) == '"' ? parseJsonString(json, pos) : parseJsonLiteral(json, pos);
+                fields.put(name, value);
+                char next = peek(json, pos);
+                pos[0]++;
+                if (next == '}') {
+                    break;
+                }
+                if (next != ',') {
+                    throw new IllegalArgumentException("Invalid JSON: expected ',' or '}' at " + (pos[0] - 1));
+                }
+            }
+        }
+        if (skipWhitespace(json, pos[0]) != json.length()) {
+            throw new IllegalArgumentException("Invalid JSON: unexpected content after the object");
+        }
+        return fields;
+    }
+
+    private static String parseJsonString(String json, int[] pos) {
+        expect(json, pos, '"');
+        StringBuilder value = new StringBuilder();
+        for (int i = pos[0]; i < json.length(); i++) {
+            char c = json.charAt(i);
+            if (c == '"') {
+                pos[0] = i + 1;
+                return value.toString();
+            }
+            if (c != '\\') {
+                value.append(c);
+                continue;
+            }
+            if (++i == json.length()) {
+                break;
+            }
+            char escaped = json.charAt(i);
+            switch (escaped) {
+                case 'n':
+                    value.append('\n');
+                    break;
+                case 't':
+                    value.append('\t');
+                    break;
+                case 'r':
+                    value.append('\r');
+                    break;
+                case 'b':
+                    value.append('\b');
+                    break;
+                case 'f':
+                    value.append('\f');
+                    break;
+                case 'u':
+                    if (i + 4 >= json.length()) {
+                        throw new IllegalArgumentException("Invalid JSON: bad \\u escape");
+                    }
+                    try {
+                        value.append((char) Integer.parseInt(json.substring(i + 1, i + 5), 16));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Invalid JSON: bad \\u escape");
+                    }
+                    i += 4;
+                    break;
+                default:
+                    value.append(escaped); // \" \\ \/
+            }
+        }
+        throw new IllegalArgumentException("Invalid JSON: unterminated string");
+    }
+
+    /**
+     * Number, true, false or null - returned as its text (null becomes a Java null)
+     */
+    private static String parseJsonLiteral(String json, int[] pos) {
+        int start = pos[0];
+        int end = start;
+        while (end < json.length() && ",}] \t\r\n".indexOf(json.charAt(end)) < 0) {
+            end++;
+        }
+        String literal = json.substring(start, end);
+        if (literal.isEmpty() || literal.charAt(0) == '{' || literal.charAt(0) == '[') {
+            throw new IllegalArgumentException("Invalid JSON: only flat objects are accepted");
+        }
+        pos[0] = end;
+        return literal.equals("null") ? null : literal;
+    }
+
+    private static void expect(String json, int[] pos, char expected) {
+        if (peek(json, pos) != expected) {
+            throw new IllegalArgumentException("Invalid JSON: expected '" + expected + "' at " + pos[0]);
+        }
+        pos[0]++;
+    }
+
+    /**
+     * Skips whitespace and returns the next character (0 at the end of input)
+     */
+    private static char peek(String json, int[] pos) {
+        pos[0] = skipWhitespace(json, pos[0]);
+        return pos[0] < json.length() ? json.charAt(pos[0]) : 0;
+    }
+
+    private static int skipWhitespace(String json, int pos) {
+        while (pos < json.length() && Character.isWhitespace(json.charAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static int parseInt(String value, String error) {
+        try {
+            return Integer.parseInt(value == null ? "" : value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(error);
+        }
+    }
+
+    private static double parseDouble(String value, String error) {
+        try {
+            return Double.parseDouble(value == null ? "" : value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(error);
+        }
+    }
+}
@@ -0,0 +1,1616 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Booking, lookup and cancellation logic, independent of the console UI
+ * Safe to call from many threads at once, without any lock on the booking path:
+ * - ticket IDs come from an atomic counter (no duplicates)
+ * - berths are claimed/released with CAS in the SeatInventoryManager
+ * - tickets are stored in the concurrent repository, reads never block
+ * - once a class is full, passengers join its RAC/waiting list; a freed berth goes straight to the
+ *   head of that queue (one lock per class of one train, so trains never wait for each other)
+ * With a BookingJournal attached, a booking/cancellation returns only once it is durable
+ * With a BookingPipeline set, bookTicket hands each booking to the writer thread that owns its train
+ *
+ * A ticket may carry a journey date. Everything about a date - its tickets (JourneyDateStore), berths and
+ * waiting lists, passenger index, refunds and its share of the statistics - is kept apart from the other
+ * dates, so bookings and lookups touch one date's data, and a timing wheel drops a whole date in one step
+ * once its journey is over (expireJourneys). Tickets booked without a date are kept until cancelled.
+ */
+public class ReservationService {
+    public static final double REFUND_RATE = 0.8; // 80% refund on cancellation
+    private static final long FIRST_TICKET_NUMBER = 1000;
+    public static final int MAX_ADVANCE_DAYS = 120; // how far ahead a journey date can be booked
+    public static final int EXPIRY_GRACE_DAYS = 1;  // a date is kept this many days after it ends (overnight trains)
+    private static final long EXPIRY_TICK_MILLIS = 60_000; // expiry timing wheel: one-minute ticks,
+    private static final int EXPIRY_WHEEL_SIZE = 64;        // 64 per level (64 min, ~3 days, ~6 months, ...)
+
+    // Train manifest order: journey date (undated first), class, coach, then berth (tickets without a berth last)
+    private static final Comparator<Ticket> MANIFEST_ORDER = Comparator
+            .comparing(Ticket::getJourneyDate, Comparator.nullsFirst(Comparator.<LocalDate>naturalOrder()))
+            .thenComparing((Ticket ticket) -> ticket.getSeat() == null)
+            .thenComparing(ticket -> TravelClass.of(ticket).ordinal())
+            .thenComparingInt(ticket -> ticket.getSeat() == null ? 0 : ticket.getSeat().getCoachIndex())
+            .thenComparingInt(ticket -> ticket.getSeat() == null ? 0 : ticket.getSeat().getBerthNumber());
+
+    private final JourneyDateStore repository;
+    private final SeatInventoryManager seatInventory;
+    private final ReservationMetrics metrics = new ReservationMetrics();
+    private final TrainStatistics statistics = new TrainStatistics();
+    private final Journey undated = new Journey(null);
+    private final ConcurrentSkipListMap<LocalDate, Journey> journeys = new ConcurrentSkipListMap<>();
+    private final Object expiryLock = new Object();
+    private final IdempotencyCache<Ticket> idempotencyCache = new IdempotencyCache<>(
+            IdempotencyCache.DEFAULT_CAPACITY, IdempotencyCache.DEFAULT_TTL_MILLIS);
+    private final AtomicLong ticketCounter = new AtomicLong(FIRST_TICKET_NUMBER);
+    private final int ticketStride; // 1, or ShardRing.PARTITIONS when ticket numbers end in the train's partition
+    private volatile BookingJournal journal; // null = in-memory only
+    private volatile AdmissionController admission; // null = every booking is admitted
+    private volatile BookingPipeline pipeline; // null = callers book on their own thread
+    private volatile Clock clock = Clock.systemDefaultZone();
+    private volatile Path archiveDirectory; // null = expired journey dates are dropped without a copy
+    private TimingWheel<LocalDate> expiries = newExpiryWheel(); // journey dates by expiry time, guarded by expiryLock
+    private final Map<LocalDate, TicketStore> unarchived = new LinkedHashMap<>(); // expired stores not yet written
+
+    public ReservationService() {
+        this(new TicketRepository(), new SeatInventoryManager());
+    }
+
+    public ReservationService(TicketStore repository, SeatInventoryManager seatInventory) {
+        this(repository, seatInventory, false);
+    }
+
+    /**
+     * With partitionedTicketIds, ticket numbers end in the train's ShardRing partition (a shard node),
+     * so a router can find the node of any ticket from its ID
+     */
+    public ReservationService(TicketStore repository, SeatInventoryManager seatInventory,
+                              boolean partitionedTicketIds) {
+        this(repository, TicketRepository::new, seatInventory, partitionedTicketIds);
+    }
+
+    /**
+     * Undated tickets are kept in repository; each journey date gets a store of its own from journeyStores
+     */
+    public ReservationService(TicketStore repository, Supplier<TicketStore> journeyStores,
+                              SeatInventoryManager seatInventory, boolean partitionedTicketIds) {
+        this.repository = new JourneyDateStore(repository, journeyStores);
+        this.seatInventory = seatInventory;
+        this.ticketStride = partitionedTicketIds ? ShardRing.PARTITIONS : 1;
+    }
+
+    /**
+     * Validates and books a new ticket, returns the created ticket
+     * The ticket has a berth, or none if it was put on the RAC/waiting list (see getBookingStatus)
+     * Throws IllegalArgumentException if any field is invalid, IllegalStateException if the class and
+     * its waiting list are full, OverloadedException if admission control sheds the booking
+     */
+    public Ticket bookTicket(String passengerName, int age, String trainNumber, double baseFare,
+                             TravelClass travelClass) {
+        return bookTicket(passengerName, age, trainNumber, null, baseFare, travelClass);
+    }
+
+    /**
+     * bookTicket on one journey date (null = no date); the date must be today or at most
+     * MAX_ADVANCE_DAYS ahead
+     */
+    public Ticket bookTicket(String passengerName, int age, String trainNumber, LocalDate journeyDate,
+                             double baseFare, TravelClass travelClass) {
+        BookingPipeline currentPipeline = pipeline;
+        if (currentPipeline != null) {
+            return bookPipelined(currentPipeline, passengerName, age, trainNumber, journeyDate, baseFare,
+                    travelClass);
+        }
+        long start = System.nanoTime();
+        ReservationEvents.Booking event = new ReservationEvents.Booking();
+        event.begin();
+        String outcome = "FAILED";
+        try {
+            Ticket ticket = book(passengerName, age, trainNumber, journeyDate, baseFare, travelClass);
+            metrics.recordBooking(travelClass, ticket.getSeat() == null);
+            recordBooking(ticket);
+            event.ticketId = ticket.getTicketId();
+            outcome = ticket.getSeat() == null ? "WAITLISTED" : "BOOKED";
+            return ticket;
+        } catch (IllegalArgumentException e) {
+            metrics.recordFailedValidation();
+            outcome = "INVALID";
+            throw e;
+        } catch (OverloadedException e) {
+            outcome = "SHED"; // counted by the AdmissionController
+            throw e;
+        } catch (BookingInterruptedException e) {
+            outcome = "INTERRUPTED"; // the caller gave up - neither invalid nor rejected
+            throw e;
+        } catch (IllegalStateException e) {
+            metrics.recordRejectedBooking();
+            outcome = "UNAVAILABLE";
+            throw e;
+        } finally {
+            metrics.recordLatency(ReservationMetrics.Operation.BOOK, System.nanoTime() - start);
+            event.end();
+            if (event.shouldCommit()) {
+                event.trainNumber = trainNumber;
+                event.travelClass = travelClass == null ? null : travelClass.getCode();
+                event.outcome = outcome;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * bookTicket through the booking pipeline: the writer thread books and records the outcome,
+     * only the end-to-end latency is recorded here
+     */
+    private Ticket bookPipelined(BookingPipeline currentPipeline, String passengerName, int age,
+                                 String trainNumber, LocalDate journeyDate, double baseFare,
+                                 TravelClass travelClass) {
+        long start = System.nanoTime();
+        ReservationEvents.Booking event = new ReservationEvents.Booking();
+        event.begin();
+        String outcome = "FAILED";
+        try {
+            Ticket ticket = currentPipeline.book(passengerName, age, trainNumber, journeyDate, baseFare,
+                    travelClass);
+            event.ticketId = ticket.getTicketId();
+            outcome = ticket.getSeat() == null ? "WAITLISTED" : "BOOKED";
+            return ticket;
+        } catch (IllegalArgumentException e) {
+            outcome = "INVALID";
+            throw e;
+        } catch (OverloadedException e) {
+            outcome = "SHED";
+            throw e;
+        } catch (BookingInterruptedException e) {
+            outcome = "INTERRUPTED";
+            throw e;
+        } catch (IllegalStateException e) {
+            outcome = "UNAVAILABLE";
+            throw e;
+        } finally {
+            metrics.recordLatency(ReservationMetrics.Operation.BOOK, System.nanoTime() - start);
+            event.end();
+            if (event.shouldCommit()) {
+                event.trainNumber = trainNumber;
+                event.travelClass = travelClass == null ? null : travelClass.getCode();
+                event.outcome = outcome;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * bookTicket with a client idempotency key (null = none): retrying with the same key and details
+     * returns the ticket booked the first time instead of booking another one
+     * Keys are remembered in memory for IdempotencyCache.DEFAULT_TTL_MILLIS, not across restarts
+     */
+    public Ticket bookTicket(String passengerName, int age, String trainNumber, double baseFare,
+                             TravelClass travelClass, String idempotencyKey) {
+        return bookTicket(passengerName, age, trainNumber, null, baseFare, travelClass, idempotencyKey);
+    }
+
+    public Ticket bookTicket(String passengerName, int age, String trainNumber, LocalDate journeyDate,
+                             double baseFare, TravelClass travelClass, String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return bookTicket(passengerName, age, trainNumber, journeyDate, baseFare, travelClass);
+        }
+        // Normalized as booking does: a retry differing only in blanks or the train number's case still matches
+        byte[] fingerprint = IdempotencyCache.fingerprint("BOOK",
+                passengerName == null ? null : passengerName.trim(), age,
+                TicketRepository.normalizeTrainNumber(trainNumber), journeyDate, baseFare, travelClass);
+        return deduplicate(idempotencyKey, fingerprint,
+                () -> bookTicket(passengerName, age, trainNumber, journeyDate, baseFare, travelClass));
+    }
+
+    /**
+     * Validates, reserves and journals one booking
+     */
+    private Ticket book(String passengerName, int age, String trainNumber, LocalDate journeyDate, double baseFare,
+                        TravelClass travelClass) {
+        admitBooking(passengerName, age, trainNumber, journeyDate, baseFare, travelClass);
+        Ticket ticket = reserve(passengerName.trim(), age, trainNumber.trim(), journeyDate, baseFare,
+                travelClass);
+
+        BookingJournal currentJournal = journal;
+        if (currentJournal != null) {
+            try {
+                currentJournal.logBooking(ticket);
+            } catch (JournalFailedException e) {
+                throw e; // may be on disk after all - nothing is undone, recovery decides
+            } catch (RuntimeException e) {
+                // Not durable - undo so memory never runs ahead of the journal
+                unreserve(ticket);
+                throw e;
+            }
+        }
+        return ticket;
+    }
+
+    /**
+     * Validates a booking, then lets admission control take a token for it - in that order, so an
+     * invalid booking is rejected as invalid and never uses up a train's tokens
+     */
+    void admitBooking(String passengerName, int age, String trainNumber, LocalDate journeyDate, double baseFare,
+                      TravelClass travelClass) {
+        validateBooking(passengerName, age, trainNumber, baseFare, travelClass);
+        validateJourneyDate(journeyDate);
+        AdmissionController currentAdmission = admission;
+        if (currentAdmission != null) {
+            currentAdmission.admit(trainNumber);
+        }
+    }
+
+    /**
+     * Books many tickets in one pass, returns one result per request (same order)
+     * Invalid requests or full classes fail individually; the whole batch is journaled with one fsync
+     */
+    public List<BatchResult> bookTickets(List<BookingRequest> requests) {
+        long start = System.nanoTime();
+        List<BatchResult> results = new ArrayList<>(requests.size());
+        List<Ticket> booked = new ArrayList<>(requests.size());
+        for (BookingRequest request : requests) {
+            try {
+                request.validate();
+                validateJourneyDate(request.getJourneyDate());
+                Ticket ticket = reserve(request.getPassengerName().trim(), request.getAge(),
+                        request.getTrainNumber().trim(), request.getJourneyDate(), request.getBaseFare(),
+                        request.getTravelClass());
+                booked.add(ticket);
+                results.add(BatchResult.success(ticket));
+            } catch (IllegalArgumentException e) {
+                metrics.recordFailedValidation();
+                results.add(BatchResult.failure(e.getMessage()));
+            } catch (IllegalStateException e) {
+                metrics.recordRejectedBooking();
+                results.add(BatchResult.failure(e.getMessage()));
+            }
+        }
+
+        BookingJournal currentJournal = journal;
+        if (currentJournal != null) {
+            try {
+                currentJournal.logBookings(booked);
+            } catch (JournalFailedException e) {
+                throw e; // may be on disk after all - nothing is undone, recovery decides
+            } catch (RuntimeException e) {
+                for (Ticket ticket : booked) {
+                    unreserve(ticket);
+                }
+                throw e;
+            }
+        }
+        for (Ticket ticket : booked) {
+            metrics.recordBooking(TravelClass.of(ticket), ticket.getSeat() == null);
+            recordBooking(ticket);
+        }
+        metrics.recordLatency(ReservationMetrics.Operation.BOOK_BATCH, System.nanoTime() - start);
+        return results;
+    }
+
+    /**
+     * Applies a micro-batch for a BookingPipeline writer: validate, reserve and price each request,
+     * then one journal write for the whole batch
+     * Each slot gets its ticket or the exception that rejected it; booked is the writer's scratch list
+     * Only ever called by the writer that owns the batch's trains, so their berths are never contended
+     */
+    void bookBatch(BookingPipeline.Slot[] batch, int count, List<Ticket> booked) {
+        long start = System.nanoTime();
+        booked.clear();
+        for (int i = 0; i < count; i++) {
+            BookingPipeline.Slot slot = batch[i];
+            try {
+                validateBooking(slot.passengerName, slot.age, slot.trainNumber, slot.baseFare, slot.travelClass);
+                validateJourneyDate(slot.journeyDate);
+                Ticket ticket = reserve(slot.passengerName.trim(), slot.age, slot.trainNumber.trim(),
+                        slot.journeyDate, slot.baseFare, slot.travelClass);
+                ticket.getFare(); // priced here, on the writer, not by the first reader
+                slot.ticket = ticket;
+                booked.add(ticket);
+            } catch (IllegalArgumentException e) {
+                metrics.recordFailedValidation();
+                slot.error = e;
+            } catch (IllegalStateException e) {
+                metrics.recordRejectedBooking();
+                slot.error = e;
+            }
+        }
+
+        BookingJournal currentJournal = journal;
+        if (currentJournal != null && !booked.isEmpty()) {
+            try {
+                currentJournal.logBookings(booked);
+            } catch (RuntimeException e) {
+                // Not durable - undo the whole batch so memory never runs ahead of the journal, unless
+                // the records may be on disk anyway: then the tickets stay and recovery decides
+                boolean undo = !(e instanceof JournalFailedException);
+                for (int i = 0; i < count; i++) {
+                    BookingPipeline.Slot slot = batch[i];
+                    if (slot.ticket != null) {
+                        if (undo) {
+                            unreserve(slot.ticket);
+                        }
+                        metrics.recordRejectedBooking();
+                        slot.ticket = null;
+                        slot.error = e;
+                    }
+                }
+                booked.clear();
+                return;
+            }
+        }
+        for (int i = 0; i < booked.size(); i++) {
+            Ticket ticket = booked.get(i);
+            metrics.recordBooking(TravelClass.of(ticket), ticket.getSeat() == null);
+            recordBooking(ticket);
+        }
+        booked.clear();
+        metrics.recordLatency(ReservationMetrics.Operation.BOOK_BATCH, System.nanoTime() - start);
+    }
+
+    /**
+     * Finds a ticket by ID (case-insensitive), returns null if not found
+     */
+    public Ticket findTicket(String ticketId) {
+        return findTicket(parseTicketNumber(ticketId), ticketId);
+    }
+
+    /**
+     * Finds a ticket by number (TKT1000 -> 1000), returns null if not found - allocation-free
+     */
+    public Ticket findTicket(long ticketNumber) {
+        return findTicket(ticketNumber, null);
+    }
+
+    /**
+     * ticketId is the ID as the caller wrote it, for the JFR event - null when called with a number
+     */
+    private Ticket findTicket(long ticketNumber, String ticketId) {
+        // A lookup is ~100 ns, so reading the clock on every call would cost more than the lookup itself
+        boolean sampled = metrics.shouldSampleLookup();
+        long start = sampled ? System.nanoTime() : 0;
+        ReservationEvents.Lookup event = new ReservationEvents.Lookup();
+        event.begin();
+        Ticket ticket = ticketNumber < 0 ? null : repository.findById(ticketNumber);
+        if (sampled) {
+            metrics.recordLatency(ReservationMetrics.Operation.LOOKUP, System.nanoTime() - start);
+        }
+        metrics.recordLookup(ticket != null);
+        event.end();
+        if (event.shouldCommit()) {
+            event.ticketId = ticketId != null ? ticketId : Ticket.formatTicketId(ticketNumber);
+            event.found = ticket != null;
+            event.commit();
+        }
+        return ticket;
+    }
+
+    /**
+     * Booking status of a ticket right now: CNF, RAC n or WL n - null if the ticket does not exist
+     * O(log n) in the length of the waiting list
+     */
+    public BookingStatus getBookingStatus(String ticketId) {
+        return getBookingStatus(parseTicketNumber(ticketId));
+    }
+
+    public BookingStatus getBookingStatus(long ticketNumber) {
+        Ticket ticket = ticketNumber < 0 ? null : repository.findById(ticketNumber);
+        if (ticket == null) {
+            return null;
+        }
+        if (ticket.getSeat() != null) {
+            return BookingStatus.CONFIRMED;
+        }
+        WaitlistQueue waitlist = seatInventory.findWaitlist(ticket.getTrainNumber(), ticket.getJourneyDate(),
+                TravelClass.of(ticket));
+        BookingStatus status = null;
+        if (waitlist != null) { // null once the journey date has expired
+            synchronized (waitlist) {
+                status = waitlist.statusOf(ticketNumber);
+            }
+        }
+        if (status != null) {
+            return status;
+        }
+        // Promoted (or cancelled) after the first read - the store has the final word
+        ticket = repository.findById(ticketNumber);
+        return ticket == null ? null : BookingStatus.CONFIRMED;
+    }
+
+    /**
+     * Cancels a ticket by ID, frees its berth (or its waiting list place) and records the refund
+     * A freed berth is given to the first RAC/waitlisted passenger of that class, if any
+     * Returns the cancelled ticket or null if not found
+     */
+    public Ticket cancelTicket(String ticketId) {
+        return cancelTicket(parseTicketNumber(ticketId), ticketId);
+    }
+
+    public Ticket cancelTicket(long ticketNumber) {
+        return cancelTicket(ticketNumber, null);
+    }
+
+    private Ticket cancelTicket(long ticketNumber, String ticketId) {
+        long start = System.nanoTime();
+        ReservationEvents.Cancellation event = new ReservationEvents.Cancellation();
+        event.begin();
+        Ticket ticket = null;
+        double refund = 0;
+        try {
+            ticket = cancel(ticketNumber);
+            if (ticket == null) {
+                metrics.recordCancellationNotFound();
+            } else {
+                List<Ticket> promoted = new ArrayList<>(1);
+                refund = release(ticket, promoted);
+                journalPromotions(promoted);
+            }
+            return ticket;
+        } finally {
+            metrics.recordLatency(ReservationMetrics.Operation.CANCEL, System.nanoTime() - start);
+            commitCancellation(event, ticketId != null ? ticketId : Ticket.formatTicketId(ticketNumber),
+                    ticket == null ? 0 : 1, refund);
+        }
+    }
+
+    /**
+     * cancelTicket with a client idempotency key (null = none): a retry returns the ticket cancelled
+     * the first time (with its refund) instead of "not found"
+     */
+    public Ticket cancelTicket(String ticketId, String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return cancelTicket(ticketId);
+        }
+        long ticketNumber = parseTicketNumber(ticketId);
+        byte[] fingerprint = IdempotencyCache.fingerprint("CANCEL",
+                ticketNumber < 0 ? ticketId : Ticket.formatTicketId(ticketNumber)); // tkt7 and TKT7 match
+        return deduplicate(idempotencyKey, fingerprint, () -> cancelTicket(ticketId));
+    }
+
+    /**
+     * Runs a request at most once per idempotency key and counts the retries answered from the cache
+     */
+    private Ticket deduplicate(String idempotencyKey, byte[] fingerprint, Supplier<Ticket> request) {
+        boolean[] ran = new boolean[1];
+        Ticket ticket = idempotencyCache.execute(idempotencyKey, fingerprint, () -> {
+            ran[0] = true;
+            return request.get();
+        });
+        if (!ran[0]) {
+            metrics.recordIdempotentReplay();
+        }
+        return ticket;
+    }
+
+    /**
+     * Removes and journals one cancellation, returns null if the ticket does not exist
+     */
+    private Ticket cancel(long ticketNumber) {
+        // Only one concurrent canceller gets the ticket back from remove()
+        Ticket ticket = ticketNumber < 0 ? null : repository.remove(ticketNumber);
+        if (ticket == null) {
+            return null;
+        }
+
+        BookingJournal currentJournal = journal;
+        if (currentJournal != null) {
+            try {
+                currentJournal.logCancellation(ticket.getTicketId());
+            } catch (JournalFailedException e) {
+                throw e; // may be on disk after all - nothing is undone, recovery decides
+            } catch (RuntimeException e) {
+                // Not durable - the ticket stays booked
+                repository.add(ticket);
+                throw e;
+            }
+        }
+        return ticket;
+    }
+
+    /**
+     * Cancels many tickets in one pass, returns one result per ID (same order)
+     */
+    public List<BatchResult> cancelTickets(List<String> ticketIds) {
+        long start = System.nanoTime();
+        ReservationEvents.Cancellation event = new ReservationEvents.Cancellation();
+        event.begin();
+        List<BatchResult> results = new ArrayList<>(ticketIds.size());
+        List<Ticket> cancelled = new ArrayList<>(ticketIds.size());
+        for (String ticketId : ticketIds) {
+            long ticketNumber = parseTicketNumber(ticketId);
+            Ticket ticket = ticketNumber < 0 ? null : repository.remove(ticketNumber);
+            if (ticket == null) {
+                metrics.recordCancellationNotFound();
+                results.add(BatchResult.failure("No ticket exists with ID: " + ticketId));
+            } else {
+                cancelled.add(ticket);
+                results.add(BatchResult.success(ticket));
+            }
+        }
+
+        BookingJournal currentJournal = journal;
+        if (currentJournal != null && !cancelled.isEmpty()) {
+            List<String> cancelledIds = new ArrayList<>(cancelled.size());
+            for (Ticket ticket : cancelled) {
+                cancelledIds.add(ticket.getTicketId());
+            }
+            try {
+                currentJournal.logCancellations(cancelledIds);
+            } catch (JournalFailedException e) {
+                throw e; // may be on disk after all - nothing is undone, recovery decides
+            } catch (RuntimeException e) {
+                for (Ticket ticket : cancelled) {
+                    repository.add(ticket);
+                }
+                throw e;
+            }
+        }
+        List<Ticket> promoted = new ArrayList<>();
+        double refund = releaseAll(cancelled, promoted);
+        journalPromotions(promoted);
+        metrics.recordLatency(ReservationMetrics.Operation.CANCEL_BATCH, System.nanoTime() - start);
+        commitCancellation(event, "(batch)", cancelled.size(), refund);
+        return results;
+    }
+
+    /**
+     * Cancels every ticket booked on a train in a single pass (e.g. the train is cancelled)
+     * Returns the cancelled tickets; all of them are journaled with one fsync
+     */
+    public List<Ticket> cancelTrain(String trainNumber) {
+        validateTrainNumber(trainNumber);
+        long start = System.nanoTime();
+        ReservationEvents.Cancellation event = new ReservationEvents.Cancellation();
+        event.begin();
+        List<Ticket> cancelled = repository.removeByTrain(trainNumber);
+
+        BookingJournal currentJournal = journal;
+        if (currentJournal != null && !cancelled.isEmpty()) {
+            List<String> cancelledIds = new ArrayList<>(cancelled.size());
+            for (Ticket ticket : cancelled) {
+                cancelledIds.add(ticket.getTicketId());
+            }
+            try {
+                currentJournal.logCancellations(cancelledIds);
+            } catch (JournalFailedException e) {
+                throw e; // may be on disk after all - nothing is undone, recovery decides
+            } catch (RuntimeException e) {
+                for (Ticket ticket : cancelled) {
+                    repository.add(ticket);
+                }
+                throw e;
+            }
+        }
+        // Passengers waiting on the train are cancelled with it - only bookings made meanwhile can be promoted
+        List<Ticket> promoted = new ArrayList<>();
+        double refund = releaseAll(cancelled, promoted);
+        journalPromotions(promoted);
+        metrics.recordLatency(ReservationMetrics.Operation.CANCEL_BATCH, System.nanoTime() - start);
+        commitCancellation(event, trainNumber, cancelled.size(), refund);
+        return cancelled;
+    }
+
+    /**
+     * Restores the tickets recovered by a journal, then journals every further change
+     * Must be called before the service takes any bookings
+     */
+    public void attachJournal(BookingJournal bookingJournal) {
+        if (journal != null || !repository.isEmpty()) {
+            throw new IllegalStateException("Journal must be attached to an empty reservation service!");
+        }
+        BookingJournal.RecoveredState state = bookingJournal.getRecoveredState();
+        List<Ticket> waiting = restoreAll(state::forEachTicket, state.getNextTicketNumber());
+        state.release();
+        bookingJournal.setSnapshotTask(this::writeSnapshot);
+        journal = bookingJournal;
+        promoteIntoFreeSeats(waiting);
+    }
+
+    /**
+     * Writes a snapshot of all live tickets so recovery only replays the journal tail
+     */
+    public void writeSnapshot() {
+        BookingJournal currentJournal = journal;
+        if (currentJournal == null) {
+            throw new IllegalStateException("No booking journal attached!");
+        }
+        currentJournal.writeSnapshot(repository::forEachTicket, this::getNextTicketNumber);
+    }
+
+    /**
+     * Streams every live ticket into a snapshot file (see TicketSnapshot) while bookings carry on,
+     * returns the number of tickets written
+     */
+    public int exportSnapshot(Path file) throws IOException {
+        return TicketSnapshot.write(file, 0, repository::forEachTicket, this::getNextTicketNumber);
+    }
+
+    /**
+     * Restores every ticket of a snapshot file into an empty service, returns the number restored
+     * With a journal attached, a journal snapshot is written afterwards so the imported tickets are durable
+     */
+    public int importSnapshot(Path file) throws IOException {
+        if (!repository.isEmpty()) {
+            throw new IllegalStateException("Snapshot must be imported into an empty reservation service!");
+        }
+        List<Ticket> waiting;
+        try (TicketSnapshot snapshot = TicketSnapshot.open(file)) {
+            waiting = restoreAll(snapshot::parallelForEachTicket, snapshot.getNextTicketNumber());
+        }
+        if (journal != null) {
+            writeSnapshot();
+        }
+        promoteIntoFreeSeats(waiting);
+        return repository.size();
+    }
+
+    /**
+     * Restores tickets with their berths, then the waiting ones, returns the waiting tickets
+     * Tickets of journey dates that have expired meanwhile are left out
+     * The source may hand out tickets from several threads at once - restoring a berth is as thread-safe
+     * as booking one
+     */
+    private List<Ticket> restoreAll(TicketSnapshot.Source tickets, long nextTicketNumber) {
+        Queue<Ticket> queued = new ConcurrentLinkedQueue<>();
+        long now = clock.millis();
+        tickets.forEachTicket(ticket -> {
+            if (isExpired(ticket.getJourneyDate(), now)) {
+                return; // the journey is over - its date would be dropped straight away
+            }
+            if (ticket.getSeat() == null) {
+                queued.add(ticket);
+            } else {
+                restoreTicket(ticket);
+            }
+        });
+        // Waiting passengers re-join their queues in booking order (ticket numbers are handed out in queue order)
+        List<Ticket> waiting = new ArrayList<>(queued);
+        waiting.sort(Comparator.comparingLong(Ticket::getTicketNumber));
+        for (Ticket ticket : waiting) {
+            restoreTicket(ticket);
+        }
+        advanceTicketCounter(nextTicketNumber);
+        return waiting;
+    }
+
+    /**
+     * Claims a berth and stores a new ticket (no validation, no journaling)
+     * Falls back to the RAC/waiting list when the class is full
+     */
+    private Ticket reserve(String passengerName, int age, String trainNumber, LocalDate journeyDate,
+                           double baseFare, TravelClass travelClass) {
+        Journey journey = openJourney(journeyDate);
+        Seat seat = seatInventory.claimSeat(trainNumber, journeyDate, travelClass);
+        if (seat == null) {
+            return reserveOrWaitlist(journey, passengerName, age, trainNumber, baseFare, travelClass);
+        }
+        Ticket ticket = createTicket(nextTicketNumber(trainNumber, journeyDate), passengerName, age,
+                seatInventory.internTrainNumber(trainNumber), journeyDate, baseFare, travelClass);
+        ticket.setSeat(seat);
+        store(journey, ticket);
+        return ticket;
+    }
+
+    /**
+     * Slow path of reserve() under the class's waiting list lock
+     * Berths are only returned to the pool under this lock when nobody is waiting, so retrying the
+     * claim here means a passenger is never waitlisted while a berth is free
+     */
+    private Ticket reserveOrWaitlist(Journey journey, String passengerName, int age, String trainNumber,
+                                     double baseFare, TravelClass travelClass) {
+        LocalDate journeyDate = journey.date;
+        WaitlistQueue waitlist = seatInventory.getWaitlist(trainNumber, journeyDate, travelClass);
+        synchronized (waitlist) {
+            Seat seat = seatInventory.claimSeat(trainNumber, journeyDate, travelClass);
+            if (seat == null && waitlist.isFull()) {
+                throw new IllegalStateException("No seats available in " + travelClass.getDisplayName()
+                        + " on train " + trainNumber + (journeyDate == null ? "" : " on " + journeyDate)
+                        + " and the waiting list is full!");
+            }
+            // ID allocated under the lock, so ticket numbers follow queue order
+            Ticket ticket = createTicket(nextTicketNumber(trainNumber, journeyDate), passengerName, age,
+                    seatInventory.internTrainNumber(trainNumber), journeyDate, baseFare, travelClass);
+            if (seat != null) {
+                ticket.setSeat(seat);
+            } else {
+                waitlist.add(ticket);
+            }
+            store(journey, ticket);
+            return ticket;
+        }
+    }
+
+    /**
+     * Stores a new ticket and indexes its passenger name
+     * Indexed first: a ticket can only be cancelled once stored, so its removal from the index always
+     * comes after it was added
+     */
+    private void store(Journey journey, Ticket ticket) {
+        journey.passengerIndex.add(ticket);
+        try {
+            repository.add(ticket);
+        } catch (RuntimeException e) {
+            journey.passengerIndex.remove(ticket);
+            throw e;
+        }
+    }
+
+    /**
+     * Frees the berth (or waiting list place) of a cancelled ticket and records its refund
+     * Adds the passenger promoted into the freed berth, if any, to promoted; returns the refund
+     */
+    private double release(Ticket ticket, List<Ticket> promoted) {
+        vacate(ticket, promoted);
+        Journey journey = findJourney(ticket.getJourneyDate());
+        double refund;
+        if (journey != null) {
+            journey.passengerIndex.remove(ticket);
+            refund = journey.refundLedger.record(ticket).getAmount();
+            if (journey.statistics != null) {
+                journey.statistics.recordCancellation(ticket, refund);
+            }
+        } else {
+            refund = calculateRefund(ticket); // its date expired while it was being cancelled
+        }
+        metrics.recordCancellation(refund);
+        statistics.recordCancellation(ticket, refund);
+        return refund;
+    }
+
+    private double releaseAll(List<Ticket> cancelled, List<Ticket> promoted) {
+        double refund = 0;
+        for (Ticket ticket : cancelled) {
+            refund += release(ticket, promoted);
+        }
+        return refund;
+    }
+
+    /**
+     * Takes a removed ticket out of its berth or its waiting list
+     */
+    private void vacate(Ticket ticket, List<Ticket> promoted) {
+        if (ticket.getSeat() != null) {
+            Ticket next = handOverSeat(ticket.getTrainNumber(), ticket.getJourneyDate(), ticket.getSeat());
+            if (next != null) {
+                promoted.add(next);
+            }
+            return;
+        }
+        WaitlistQueue waitlist = seatInventory.findWaitlist(ticket.getTrainNumber(), ticket.getJourneyDate(),
+                TravelClass.of(ticket));
+        if (waitlist == null) {
+            return; // the journey date expired meanwhile, its queues went with it
+        }
+        synchronized (waitlist) {
+            // false if a promotion polled it first - that promotion then found it gone from the store
+            waitlist.remove(ticket.getTicketNumber());
+        }
+    }
+
+    /**
+     * Gives a freed berth to the first passenger still waiting for it, or returns it to the pool
+     * O(log n) in the length of the waiting list. Returns the promoted ticket, null if nobody waits.
+     */
+    private Ticket handOverSeat(String trainNumber, LocalDate journeyDate, Seat seat) {
+        WaitlistQueue waitlist = seatInventory.findWaitlist(trainNumber, journeyDate, seat.getTravelClass());
+        if (waitlist == null) {
+            return null; // the journey date expired meanwhile, its berths went with it
+        }
+        synchronized (waitlist) {
+            Ticket next;
+            while ((next = waitlist.poll()) != null) {
+                // A passenger whose cancellation is in flight is already gone from the store - skip them
+                if (repository.assignSeat(next.getTicketNumber(), seat)) {
+                    next.setSeat(seat);
+                    metrics.recordPromotion();
+                    return next;
+                }
+            }
+            seatInventory.releaseSeat(trainNumber, journeyDate, seat);
+            return null;
+        }
+    }
+
+    /**
+     * Fills berths that are free while passengers of the same class are still waiting
+     * (after recovery, e.g. if a promotion never reached the journal)
+     */
+    private void promoteIntoFreeSeats(List<Ticket> waiting) {
+        Set<String> queues = new LinkedHashSet<>();
+        List<Ticket> promoted = new ArrayList<>();
+        for (Ticket ticket : waiting) {
+            String trainNumber = ticket.getTrainNumber();
+            LocalDate journeyDate = ticket.getJourneyDate();
+            TravelClass travelClass = TravelClass.of(ticket);
+            if (!queues.add(TicketRepository.normalizeTrainNumber(trainNumber) + "/" + journeyDate + "/"
+                    + travelClass)) {
+                continue;
+            }
+            WaitlistQueue waitlist = seatInventory.findWaitlist(trainNumber, journeyDate, travelClass);
+            if (waitlist == null) {
+                continue;
+            }
+            synchronized (waitlist) {
+                while (!waitlist.isEmpty()) {
+                    Seat seat = seatInventory.claimSeat(trainNumber, journeyDate, travelClass);
+                    if (seat == null) {
+                        break;
+                    }
+                    Ticket next = handOverSeat(trainNumber, journeyDate, seat);
+                    if (next != null) {
+                        promoted.add(next);
+                    }
+                }
+            }
+        }
+        journalPromotions(promoted);
+    }
+
+    /**
+     * Makes promotions durable. The cancellation that caused them already is, so a failure is only
+     * reported - recovery promotes the same passengers again into the berths left free.
+     */
+    private void journalPromotions(List<Ticket> promoted) {
+        BookingJournal currentJournal = journal;
+        if (currentJournal == null || promoted.isEmpty()) {
+            return;
+        }
+        try {
+            currentJournal.logPromotions(promoted);
+        } catch (RuntimeException e) {
+            System.err.println("⚠️  Could not journal " + promoted.size() + " promotion(s): " + e.getMessage());
+        }
+    }
+
+    private static void commitCancellation(ReservationEvents.Cancellation event, String target, int tickets,
+                                           double refund) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.target = target;
+            event.tickets = tickets;
+            event.refund = refund;
+            event.commit();
+        }
+    }
+
+    /**
+     * Reverts reserve() when a booking could not be made durable
+     */
+    private void unreserve(Ticket ticket) {
+        Ticket removed = repository.remove(ticket.getTicketNumber());
+        if (removed != null) {
+            removeFromIndex(removed);
+            List<Ticket> promoted = new ArrayList<>(1);
+            vacate(removed, promoted);
+            journalPromotions(promoted);
+        }
+    }
+
+    /**
+     * Re-inserts a previously booked ticket with its original ID and berth
+     * A ticket without a berth goes to the back of its class's waiting list
+     */
+    void restoreTicket(Ticket ticket) {
+        Seat seat = ticket.getSeat();
+        LocalDate journeyDate = ticket.getJourneyDate();
+        Journey journey = openJourney(journeyDate);
+        if (seat == null) {
+            WaitlistQueue waitlist = seatInventory.getWaitlist(ticket.getTrainNumber(), journeyDate,
+                    TravelClass.of(ticket));
+            synchronized (waitlist) {
+                waitlist.addUnbounded(ticket);
+                store(journey, ticket);
+            }
+        } else {
+            if (!seatInventory.claimSeat(ticket.getTrainNumber(), journeyDate, seat)) {
+                throw new IllegalStateException("Berth " + seat + " on train " + ticket.getTrainNumber()
+                        + (journeyDate == null ? "" : " on " + journeyDate) + " is held by two tickets!");
+            }
+            store(journey, ticket);
+        }
+        recordBooking(ticket);
+    }
+
+    // ==================== Journey dates ====================
+
+    private void recordBooking(Ticket ticket) {
+        statistics.recordBooking(ticket);
+        Journey journey = findJourney(ticket.getJourneyDate());
+        if (journey != null && journey.statistics != null) {
+            journey.statistics.recordBooking(ticket);
+        }
+    }
+
+    private void removeFromIndex(Ticket ticket) {
+        Journey journey = findJourney(ticket.getJourneyDate());
+        if (journey != null) {
+            journey.passengerIndex.remove(ticket);
+        }
+    }
+
+    /**
+     * The journey of a date (null = undated), or null if the date has none yet or has expired
+     */
+    private Journey findJourney(LocalDate journeyDate) {
+        return journeyDate == null ? undated : journeys.get(journeyDate);
+    }
+
+    /**
+     * The journey of a date, opened and scheduled for expiry on its first ticket
+     */
+    private Journey openJourney(LocalDate journeyDate) {
+        Journey journey = findJourney(journeyDate);
+        return journey != null ? journey : createJourney(journeyDate);
+    }
+
+    private Journey createJourney(LocalDate journeyDate) {
+        if (isExpired(journeyDate, clock.millis())) {
+            throw new IllegalStateException("The journey on " + journeyDate + " is over!");
+        }
+        Map<LocalDate, TicketStore> expired;
+        Journey journey;
+        synchronized (expiryLock) {
+            // Expire first: an old date may still hold the partition slot this one needs
+            expired = detachExpiredJourneys();
+            journey = journeys.get(journeyDate);
+            if (journey == null) {
+                journey = new Journey(journeyDate);
+                journeys.put(journeyDate, journey);
+                expiries.schedule(journeyDate, expiryMillis(journeyDate));
+            }
+        }
+        if (!expired.isEmpty()) {
+            archive(expired);
+        }
+        return journey;
+    }
+
+    /**
+     * Drops every journey date whose expiry time has passed, returns how many
+     * Each date goes in one step - its tickets, berths, waiting lists, passenger index and refunds - and
+     * its share is taken out of the statistics. With an archive directory, its tickets are then written
+     * to a snapshot file, outside the expiry lock - a date whose file could not be written is kept and
+     * tried again on the next call. Called on every new journey date and periodically by JourneyExpiry
+     */
+    public int expireJourneys() {
+        Map<LocalDate, TicketStore> expired;
+        synchronized (expiryLock) {
+            expired = detachExpiredJourneys();
+        }
+        archive(expired);
+        return expired.size();
+    }
+
+    /**
+     * Detaches the journey dates that are due from everything (under expiryLock), returns their
+     * stores by date - null for a date that never stored a ticket
+     */
+    private Map<LocalDate, TicketStore> detachExpiredJourneys() {
+        Map<LocalDate, TicketStore> expired = new LinkedHashMap<>();
+        for (LocalDate journeyDate : expiries.advance(clock.millis())) {
+            Journey journey = journeys.remove(journeyDate);
+            expired.put(journeyDate, repository.removeJourney(journeyDate));
+            seatInventory.removeJourney(journeyDate);
+            if (journey != null) {
+                statistics.subtract(journey.statistics);
+            }
+            metrics.recordExpiredJourney();
+        }
+        return expired;
+    }
+
+    /**
+     * Writes detached journey dates, and any whose earlier write failed, to the archive directory (if any)
+     * A store is closed once its file is written; on a failure it stays open for the next try.
+     */
+    private void archive(Map<LocalDate, TicketStore> expired) {
+        Path directory = archiveDirectory;
+        synchronized (unarchived) {
+            for (Map.Entry<LocalDate, TicketStore> entry : expired.entrySet()) {
+                if (entry.getValue() != null) {
+                    unarchived.put(entry.getKey(), entry.getValue());
+                }
+            }
+            Iterator<Map.Entry<LocalDate, TicketStore>> pending = unarchived.entrySet().iterator();
+            while (pending.hasNext()) {
+                Map.Entry<LocalDate, TicketStore> entry = pending.next();
+                TicketStore store = entry.getValue();
+                if (directory != null) {
+                    try {
+                        TicketSnapshot.write(directory.resolve("journey-" + entry.getKey() + ".snap"), 0,
+                                store::forEachTicket, () -> 0);
+                    } catch (IOException | RuntimeException e) {
+                        System.err.println("⚠️  Could not archive journey date " + entry.getKey() + " ("
+                                + e.getMessage() + ") - trying again on the next expiry run");
+                        continue;
+                    }
+                }
+                JourneyDateStore.closeQuietly(store);
+                pending.remove();
+            }
+        }
+    }
+
+    /**
+     * Start of the day a journey date expires: EXPIRY_GRACE_DAYS after the day of the journey
+     */
+    private long expiryMillis(LocalDate journeyDate) {
+        Clock current = clock;
+        return journeyDate.plusDays(1 + EXPIRY_GRACE_DAYS).atStartOfDay(current.getZone()).toInstant()
+                .toEpochMilli();
+    }
+
+    private boolean isExpired(LocalDate journeyDate, long nowMillis) {
+        return journeyDate != null && nowMillis >= expiryMillis(journeyDate);
+    }
+
+    private TimingWheel<LocalDate> newExpiryWheel() {
+        return new TimingWheel<>(EXPIRY_TICK_MILLIS, EXPIRY_WHEEL_SIZE, clock.millis());
+    }
+
+    /**
+     * Clock that decides today's date and when journeys expire - before any dated ticket is booked
+     */
+    public void setClock(Clock clock) {
+        synchronized (expiryLock) {
+            if (!journeys.isEmpty()) {
+                throw new IllegalStateException("Clock must be set before any journey date is booked!");
+            }
+            this.clock = clock;
+            expiries = newExpiryWheel();
+        }
+    }
+
+    /**
+     * Directory expired journey dates are archived to as snapshot files (null: dropped without a copy)
+     */
+    public void setArchiveDirectory(Path archiveDirectory) {
+        this.archiveDirectory = archiveDirectory;
+    }
+
+    /**
+     * Dates with tickets, in date order
+     */
+    public List<LocalDate> getJourneyDates() {
+        return new ArrayList<>(journeys.keySet());
+    }
+
+    /**
+     * Everything kept per journey date besides its tickets and berths
+     */
+    private static final class Journey {
+        final LocalDate date; // null for undated tickets
+        final PassengerSearchIndex passengerIndex = new PassengerSearchIndex();
+        final RefundLedger refundLedger = new RefundLedger();
+        final TrainStatistics statistics; // this date's share of the service totals, null when undated
+
+        Journey(LocalDate date) {
+            this.date = date;
+            this.statistics = date == null ? null : new TrainStatistics();
+        }
+    }
+
+    // ==================== Shard node ====================
+
+    /**
+     * Live tickets on the trains of one ShardRing partition (copied, nothing is removed)
+     */
+    public List<Ticket> findTicketsInPartition(int partition) {
+        List<Ticket> tickets = new ArrayList<>();
+        for (String trainNumber : seatInventory.getTrainNumbers()) {
+            if (ShardRing.partitionOf(trainNumber) == partition) {
+                tickets.addAll(repository.findByTrain(trainNumber));
+            }
+        }
+        return tickets;
+    }
+
+    /**
+     * Takes over tickets moved here from another shard node, with their IDs, berths and waiting order
+     * Throws IllegalStateException if this node already has tickets on one of their trains
+     */
+    public int adoptTickets(List<Ticket> tickets) {
+        long nextTicketNumber = 0;
+        Set<String> trains = new HashSet<>();
+        for (Ticket ticket : tickets) {
+            trains.add(TicketRepository.normalizeTrainNumber(ticket.getTrainNumber()));
+            nextTicketNumber = Math.max(nextTicketNumber, JourneyDateStore.sequenceOf(ticket.getTicketNumber()) + 1);
+        }
+        for (String trainNumber : trains) {
+            if (!repository.findByTrain(trainNumber).isEmpty()) {
+                throw new IllegalStateException("Train " + trainNumber + " already has tickets on this node!");
+            }
+        }
+        List<Ticket> waiting = restoreAll(tickets::forEach, nextTicketNumber);
+
+        BookingJournal currentJournal = journal;
+        if (currentJournal != null) {
+            try {
+                currentJournal.logBookings(tickets);
+            } catch (JournalFailedException e) {
+                throw e; // may be on disk after all - nothing is undone, recovery decides
+            } catch (RuntimeException e) {
+                for (Ticket ticket : tickets) {
+                    repository.remove(ticket.getTicketNumber());
+                }
+                detach(tickets);
+                throw e;
+            }
+        }
+        promoteIntoFreeSeats(waiting);
+        return tickets.size();
+    }
+
+    /**
+     * Removes the tickets of one partition once another node has adopted them, returns how many
+     * Nothing is refunded or counted as cancelled; the removals are journaled so they stay gone after a restart
+     */
+    public int releasePartition(int partition) {
+        List<Ticket> removed = new ArrayList<>();
+        for (String trainNumber : seatInventory.getTrainNumbers()) {
+            if (ShardRing.partitionOf(trainNumber) == partition) {
+                removed.addAll(repository.removeByTrain(trainNumber));
+            }
+        }
+
+        BookingJournal currentJournal = journal;
+        if (currentJournal != null && !removed.isEmpty()) {
+            List<String> removedIds = new ArrayList<>(removed.size());
+            for (Ticket ticket : removed) {
+                removedIds.add(ticket.getTicketId());
+            }
+            try {
+                currentJournal.logCancellations(removedIds);
+            } catch (JournalFailedException e) {
+                throw e; // may be on disk after all - nothing is undone, recovery decides
+            } catch (RuntimeException e) {
+                for (Ticket ticket : removed) {
+                    repository.add(ticket);
+                }
+                throw e;
+            }
+        }
+        detach(removed);
+        return removed.size();
+    }
+
+    /**
+     * Frees the berths and queue places of tickets removed from the store without a cancellation
+     */
+    private void detach(List<Ticket> removed) {
+        List<Ticket> promoted = new ArrayList<>();
+        for (Ticket ticket : removed) {
+            vacate(ticket, promoted);
+            removeFromIndex(ticket);
+            statistics.recordTransfer(ticket);
+            Journey journey = findJourney(ticket.getJourneyDate());
+            if (journey != null && journey.statistics != null) {
+                journey.statistics.recordTransfer(ticket);
+            }
+        }
+        journalPromotions(promoted);
+    }
+
+    /**
+     * True for a shard node: ticket numbers end in the train's ShardRing partition
+     */
+    public boolean hasPartitionedTicketIds() {
+        return ticketStride != 1;
+    }
+
+    /**
+     * Tickets on a train, on every journey date
+     */
+    public List<Ticket> findTicketsByTrain(String trainNumber) {
+        return repository.findByTrain(trainNumber);
+    }
+
+    /**
+     * Tickets on one journey of a train (null date = undated tickets) - only that date's tickets are looked at
+     */
+    public List<Ticket> findTicketsByTrain(String trainNumber, LocalDate journeyDate) {
+        return repository.findByTrain(trainNumber, journeyDate);
+    }
+
+    /**
+     * Reprices every ticket on a train with the current default tariff (e.g. after a tariff change)
+     * Returns the new total fare of the train
+     */
+    public double repriceTrain(String trainNumber) {
+        double total = FareEngine.getDefault().reprice(repository.findByTrain(trainNumber));
+        // Re-read rather than trust the repriced list: stores that hand out views may not keep the new fares
+        long revenuePaise = 0;
+        Map<LocalDate, Long> revenueByDate = new HashMap<>();
+        for (Ticket ticket : repository.findByTrain(trainNumber)) {
+            long farePaise = Math.round(ticket.getFare() * 100);
+            revenuePaise += farePaise;
+            if (ticket.getJourneyDate() != null) {
+                revenueByDate.merge(ticket.getJourneyDate(), farePaise, Long::sum);
+            }
+        }
+        // Only trains and dates that have counters already - recording 0 would add empty ones
+        if (revenuePaise != 0 || statistics.getReport(trainNumber) != null) {
+            statistics.recordRepricing(trainNumber, revenuePaise);
+        }
+        // Each date's share follows, so expiring a date still takes out exactly what it added
+        for (Journey journey : journeys.values()) {
+            Long datePaise = revenueByDate.get(journey.date);
+            if (datePaise != null || journey.statistics.getReport(trainNumber) != null) {
+                journey.statistics.recordRepricing(trainNumber, datePaise == null ? 0 : datePaise);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Recomputes the per-train aggregates from the stored tickets and the refund ledger (fork/join)
+     */
+    public Map<String, TrainStatistics.Report> rebuildStatistics() {
+        List<RefundLedger.Entry> refunds = new ArrayList<>(undated.refundLedger.getEntries());
+        for (Journey journey : journeys.values()) {
+            refunds.addAll(journey.refundLedger.getEntries());
+        }
+        return TrainStatistics.rebuild(repository.findAll(), refunds, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Trains whose incrementally kept aggregates differ from a full rebuild - empty when consistent
+     * (only meaningful while no bookings or cancellations are running)
+     */
+    public List<String> checkStatistics() {
+        return statistics.findMismatches(rebuildStatistics());
+    }
+
+    /**
+     * Streams a manifest of one train (ordered by class, coach and berth) or, with a null train number,
+     * of every ticket in the system. Finishes the manifest and returns the number of tickets written.
+     */
+    public long writeManifest(String trainNumber, ManifestWriter manifest) throws IOException {
+        if (trainNumber != null) {
+            List<Ticket> tickets = repository.findByTrain(trainNumber);
+            tickets.sort(MANIFEST_ORDER);
+            for (Ticket ticket : tickets) {
+                manifest.write(ticket);
+            }
+        } else {
+            try {
+                repository.forEachTicket(ticket -> {
+                    try {
+                        manifest.write(ticket);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+        manifest.finish();
+        return manifest.getTicketCount();
+    }
+
+    public List<Ticket> findTicketsByPassenger(String passengerName) {
+        return repository.findByPassenger(passengerName);
+    }
+
+    /**
+     * Up to limit tickets whose passenger name, or any word of it, starts with the prefix
+     * (case-insensitive), in name order. A null or blank train number searches every train
+     * Every journey date is searched, undated tickets first and then date by date
+     */
+    public List<Ticket> findTicketsByNamePrefix(String prefix, String trainNumber, int limit) {
+        List<Ticket> tickets = new ArrayList<>();
+        for (Journey journey : searchOrder()) {
+            resolveTickets(journey.passengerIndex.findByPrefix(prefix, trainNumber, limit - tickets.size()), tickets);
+            if (tickets.size() >= limit) {
+                break;
+            }
+        }
+        return tickets;
+    }
+
+    /**
+     * findTicketsByNamePrefix on one journey date only (null = undated tickets)
+     */
+    public List<Ticket> findTicketsByNamePrefix(String prefix, String trainNumber, LocalDate journeyDate,
+                                                int limit) {
+        Journey journey = findJourney(journeyDate);
+        List<Ticket> tickets = new ArrayList<>();
+        if (journey != null) {
+            resolveTickets(journey.passengerIndex.findByPrefix(prefix, trainNumber, limit), tickets);
+        }
+        return tickets;
+    }
+
+    /**
+     * Up to limit tickets whose passenger name is close to the given one (typos, missing letters),
+     * best match first. A null or blank train number searches every train
+     * Every journey date is searched, undated tickets first and then date by date
+     */
+    public List<Ticket> findTicketsBySimilarName(String passengerName, String trainNumber, int limit) {
+        List<Ticket> tickets = new ArrayList<>();
+        for (Journey journey : searchOrder()) {
+            resolveTickets(journey.passengerIndex.findSimilar(passengerName, trainNumber, limit - tickets.size()),
+                    tickets);
+            if (tickets.size() >= limit) {
+                break;
+            }
+        }
+        return tickets;
+    }
+
+    /**
+     * findTicketsBySimilarName on one journey date only (null = undated tickets)
+     */
+    public List<Ticket> findTicketsBySimilarName(String passengerName, String trainNumber, LocalDate journeyDate,
+                                                 int limit) {
+        Journey journey = findJourney(journeyDate);
+        List<Ticket> tickets = new ArrayList<>();
+        if (journey != null) {
+            resolveTickets(journey.passengerIndex.findSimilar(passengerName, trainNumber, limit), tickets);
+        }
+        return tickets;
+    }
+
+    private List<Journey> searchOrder() {
+        List<Journey> order = new ArrayList<>(journeys.size() + 1);
+        order.add(undated);
+        order.addAll(journeys.values());
+        return order;
+    }
+
+    private void resolveTickets(long[] ticketNumbers, List<Ticket> tickets) {
+        for (long ticketNumber : ticketNumbers) {
+            Ticket ticket = repository.findById(ticketNumber);
+            if (ticket != null) { // cancelled since the search, or not stored yet
+                tickets.add(ticket);
+            }
+        }
+    }
+
+    public int getAvailableSeats(String trainNumber, TravelClass travelClass) {
+        return seatInventory.getAvailableSeats(trainNumber, travelClass);
+    }
+
+    /**
+     * Free berths on one journey - 0 for a date that cannot be booked (past, too far ahead or expired)
+     */
+    public int getAvailableSeats(String trainNumber, LocalDate journeyDate, TravelClass travelClass) {
+        if (journeyDate != null && findJourney(journeyDate) == null) {
+            try {
+                validateJourneyDate(journeyDate);
+            } catch (IllegalArgumentException e) {
+                return 0;
+            }
+        }
+        return seatInventory.getAvailableSeats(trainNumber, journeyDate, travelClass);
+    }
+
+    /**
+     * Throttles bookings per train from now on (null switches admission control off)
+     * Batch bookings (bookTickets) are not throttled
+     */
+    public void setAdmissionController(AdmissionController admissionController) {
+        this.admission = admissionController;
+    }
+
+    public AdmissionController getAdmissionController() {
+        return admission;
+    }
+
+    /**
+     * Routes bookTicket through a booking pipeline from now on (null: callers book on their own thread)
+     * The pipeline must be built on this service; closing it is up to the caller
+     */
+    public void setBookingPipeline(BookingPipeline bookingPipeline) {
+        this.pipeline = bookingPipeline;
+    }
+
+    public BookingPipeline getBookingPipeline() {
+        return pipeline;
+    }
+
+    public TicketStore getTicketStore() {
+        return repository;
+    }
+
+    public SeatInventoryManager getSeatInventory() {
+        return seatInventory;
+    }
+
+    /**
+     * Refunds paid on undated tickets
+     */
+    public RefundLedger getRefundLedger() {
+        return undated.refundLedger;
+    }
+
+    /**
+     * Refunds paid on one journey date (null = undated tickets), null once the date has expired
+     */
+    public RefundLedger getRefundLedger(LocalDate journeyDate) {
+        Journey journey = findJourney(journeyDate);
+        return journey == null ? null : journey.refundLedger;
+    }
+
+    public ReservationMetrics getMetrics() {
+        return metrics;
+    }
+
+    public TrainStatistics getStatistics() {
+        return statistics;
+    }
+
+    public int getTicketCount() {
+        return repository.size();
+    }
+
+    public boolean hasTickets() {
+        return !repository.isEmpty();
+    }
+
+    /**
+     * Refund paid out when a ticket is cancelled
+     */
+    public static double calculateRefund(Ticket ticket) {
+        return ticket.getFare() * REFUND_RATE;
+    }
+
+    // Validation rules shared by the console and every other entry point
+    public static void validatePassengerName(String passengerName) {
+        if (passengerName == null || passengerName.trim().isEmpty()) {
+            throw new IllegalArgumentException("Name cannot be empty!");
+        }
+    }
+
+    public static void validateAge(int age) {
+        if (age <= 0 || age > 120) {
+            throw new IllegalArgumentException("Invalid age! Age must be between 1 and 120.");
+        }
+    }
+
+    public static void validateTrainNumber(String trainNumber) {
+        if (trainNumber == null || trainNumber.trim().isEmpty()) {
+            throw new IllegalArgumentException("Train number cannot be empty!");
+        }
+    }
+
+    public static void validateBaseFare(double baseFare) {
+        if (!(baseFare > 0) || Double.isInfinite(baseFare)) {
+            throw new IllegalArgumentException("Fare must be greater than 0!");
+        }
+    }
+
+    public static void validateBooking(String passengerName, int age, String trainNumber, double baseFare,
+                                       TravelClass travelClass) {
+        validatePassengerName(passengerName);
+        validateAge(age);
+        validateTrainNumber(trainNumber);
+        validateBaseFare(baseFare);
+        if (travelClass == null) {
+            throw new IllegalArgumentException("Ticket class must be selected!");
+        }
+    }
+
+    /**
+     * Parses a journey date as YYYY-MM-DD, null when blank (no date)
+     */
+    public static LocalDate parseJourneyDate(String journeyDate) {
+        if (journeyDate == null || journeyDate.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(journeyDate.trim());
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid journey date! Use YYYY-MM-DD.");
+        }
+    }
+
+    /**
+     * A journey date is optional; when given it must be today or at most MAX_ADVANCE_DAYS ahead
+     */
+    public void validateJourneyDate(LocalDate journeyDate) {
+        if (journeyDate == null) {
+            return;
+        }
+        LocalDate today = LocalDate.now(clock);
+        if (journeyDate.isBefore(today)) {
+            throw new IllegalArgumentException("Journey date cannot be in the past!");
+        }
+        if (journeyDate.isAfter(today.plusDays(MAX_ADVANCE_DAYS))) {
+            throw new IllegalArgumentException("Journey date can be at most " + MAX_ADVANCE_DAYS
+                    + " days ahead!");
+        }
+    }
+
+    /**
+     * Factory method - POLYMORPHISM: returns a SleeperTicket or ACTicket behind a Ticket reference
+     */
+    static Ticket createTicket(long ticketNumber, String passengerName, int age, String trainNumber,
+                               LocalDate journeyDate, double baseFare, TravelClass travelClass) {
+        if (travelClass.isAc()) {
+            return new ACTicket(ticketNumber, passengerName, age, trainNumber, journeyDate, baseFare,
+                    travelClass.getCode());
+        }
+        return new SleeperTicket(ticketNumber, passengerName, age, trainNumber, journeyDate, baseFare);
+    }
+
+    /**
+     * Extracts the numeric part of a ticket ID (TKT1234 -> 1234, case-insensitive, surrounding blanks
+     * ignored), -1 if the ID is not exactly TKT and a number - parsed in place, without allocating
+     */
+    static long parseTicketNumber(String ticketId) {
+        if (ticketId == null) {
+            return -1;
+        }
+        int start = 0;
+        int end = ticketId.length();
+        while (start < end && ticketId.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && ticketId.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        int prefix = Ticket.ID_PREFIX.length();
+        if (end - start <= prefix || !ticketId.regionMatches(true, start, Ticket.ID_PREFIX, 0, prefix)) {
+            return -1;
+        }
+        int digits = start + prefix;
+        if (ticketId.charAt(digits) == '0' && end - digits > 1) {
+            return -1; // TKT007 is not TKT7
+        }
+        long number = 0;
+        for (int i = digits; i < end; i++) {
+            int digit = ticketId.charAt(i) - '0';
+            if (digit < 0 || digit > 9 || number > (Long.MAX_VALUE - digit) / 10) {
+                return -1;
+            }
+            number = number * 10 + digit;
+        }
+        return number;
+    }
+
+    /**
+     * Allocates the next unique ticket number - a single atomic increment, no lock needed
+     * A dated ticket's number also carries its date's JourneyDateStore slot
+     */
+    private long nextTicketNumber(String trainNumber, LocalDate journeyDate) {
+        long sequence = ticketStride == 1 ? ticketCounter.getAndIncrement()
+                : ticketCounter.getAndIncrement() * ticketStride + ShardRing.partitionOf(trainNumber);
+        return JourneyDateStore.ticketNumberOf(journeyDate, sequence);
+    }
+
+    /**
+     * Lowest ticket number not handed out yet (recorded in snapshots)
+     */
+    private long getNextTicketNumber() {
+        return ticketCounter.get() * ticketStride;
+    }
+
+    /**
+     * Moves the counter past every ticket number below nextTicketNumber - never backwards
+     */
+    private void advanceTicketCounter(long nextTicketNumber) {
+        long sequence = (nextTicketNumber + ticketStride - 1) / ticketStride;
+        ticketCounter.accumulateAndGet(sequence, Math::max);
+    }
+}
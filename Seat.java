@@ -0,0 +1,53 @@
+/**
+ * A reserved berth - coach (e.g. S3, B1) and berth number inside the coach
+ * Immutable value object
+ */
+public final class Seat {
+    private final TravelClass travelClass;
+    private final int coachIndex;   // 0-based coach position within the class
+    private final int berthNumber;  // 1-based berth number printed on the ticket
+
+    public Seat(TravelClass travelClass, int coachIndex, int berthNumber) {
+        this.travelClass = travelClass;
+        this.coachIndex = coachIndex;
+        this.berthNumber = berthNumber;
+    }
+
+    public TravelClass getTravelClass() {
+        return travelClass;
+    }
+
+    public int getCoachIndex() {
+        return coachIndex;
+    }
+
+    public int getBerthNumber() {
+        return berthNumber;
+    }
+
+    public String getCoachCode() {
+        return travelClass.getCoachPrefix() + (coachIndex + 1);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof Seat)) {
+            return false;
+        }
+        Seat seat = (Seat) other;
+        return travelClass == seat.travelClass && coachIndex == seat.coachIndex && berthNumber == seat.berthNumber;
+    }
+
+    @Override
+    public int hashCode() {
+        return (travelClass.ordinal() * 31 + coachIndex) * 31 + berthNumber;
+    }
+
+    @Override
+    public String toString() {
+        return getCoachCode() + "-" + berthNumber;
+    }
+}
@@ -0,0 +1,162 @@
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Seat availability for one class of one train
+ * One bitset per coach (bit set = berth taken), stored in an AtomicLongArray
+ * Seats are claimed and released with compare-and-set, so concurrent bookings never wait on a lock
+ * Once the class is full, further passengers join its WaitlistQueue (RAC first, then waitlisted)
+ */
+public class SeatInventory {
+    public static final int DEFAULT_WAITLIST_LIMIT = 10_000; // RAC + waitlisted passengers per class
+
+    private final TravelClass travelClass;
+    private final int coaches;
+    private final int berthsPerCoach;
+    private final int wordsPerCoach;
+    private final AtomicLongArray berths;
+    private final WaitlistQueue waitlist;
+
+    // Where the next search starts - only a hint, races on it are harmless
+    private volatile int searchHint;
+
+    public SeatInventory(TravelClass travelClass, int coaches, int berthsPerCoach) {
+        this(travelClass, coaches, berthsPerCoach, DEFAULT_WAITLIST_LIMIT);
+    }
+
+    public SeatInventory(TravelClass travelClass, int coaches, int berthsPerCoach, int waitlistLimit) {
+        if (coaches <= 0 || berthsPerCoach <= 0) {
+            throw new IllegalArgumentException("Coaches and berths per coach must be greater than 0!");
+        }
+        this.travelClass = travelClass;
+        this.coaches = coaches;
+        this.berthsPerCoach = berthsPerCoach;
+        this.wordsPerCoach = (berthsPerCoach + 63) >>> 6;
+        this.berths = new AtomicLongArray(coaches * wordsPerCoach);
+        this.waitlist = new WaitlistQueue(coaches * travelClass.getRacPerCoach(), waitlistLimit);
+    }
+
+    /**
+     * Claims any free berth, returns null if the class is full
+     * Lock-free: a failed CAS means another booking got a berth, so the system always makes progress
+     */
+    public Seat claim() {
+        int totalWords = berths.length();
+        int start = searchHint;
+        int scanned = 0;
+        while (scanned < totalWords) {
+            int wordIndex = (start + scanned) % totalWords;
+            long word = berths.get(wordIndex);
+            long free = ~word & validMask(wordIndex);
+            if (free == 0) {
+                scanned++;
+                continue;
+            }
+            long bit = Long.lowestOneBit(free);
+            if (berths.compareAndSet(wordIndex, word, word | bit)) {
+                if (wordIndex != start) {
+                    searchHint = wordIndex;
+                }
+                return seatAt(wordIndex, Long.numberOfTrailingZeros(bit));
+            }
+            // Lost the race - jump to a random word so a burst spreads across coaches
+            start = ThreadLocalRandom.current().nextInt(totalWords);
+            scanned = 0;
+        }
+        return null;
+    }
+
+    /**
+     * Claims a specific berth, returns false if it is already taken
+     */
+    public boolean claim(Seat seat) {
+        int wordIndex = wordIndexOf(seat);
+        long bit = 1L << bitIndexOf(seat);
+        while (true) {
+            long word = berths.get(wordIndex);
+            if ((word & bit) != 0) {
+                return false;
+            }
+            if (berths.compareAndSet(wordIndex, word, word | bit)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Returns a berth to the pool immediately, returns false if it was not taken
+     * Callers with passengers waiting must hand the berth over instead - see ReservationService
+     */
+    public boolean release(Seat seat) {
+        int wordIndex = wordIndexOf(seat);
+        long bit = 1L << bitIndexOf(seat);
+        while (true) {
+            long word = berths.get(wordIndex);
+            if ((word & bit) == 0) {
+                return false;
+            }
+            if (berths.compareAndSet(wordIndex, word, word & ~bit)) {
+                if (wordIndex < searchHint) {
+                    searchHint = wordIndex;
+                }
+                return true;
+            }
+        }
+    }
+
+    public int getCapacity() {
+        return coaches * berthsPerCoach;
+    }
+
+    public int getAvailableSeats() {
+        int taken = 0;
+        for (int i = 0; i < berths.length(); i++) {
+            taken += Long.bitCount(berths.get(i));
+        }
+        return getCapacity() - taken;
+    }
+
+    public TravelClass getTravelClass() {
+        return travelClass;
+    }
+
+    /**
+     * Passengers waiting for this class - synchronize on it while using it
+     */
+    public WaitlistQueue getWaitlist() {
+        return waitlist;
+    }
+
+    /**
+     * Mask of bits that map to real berths (the last word of a coach may be partly unused)
+     */
+    private long validMask(int wordIndex) {
+        int remainder = berthsPerCoach & 63;
+        if (remainder != 0 && wordIndex % wordsPerCoach == wordsPerCoach - 1) {
+            return (1L << remainder) - 1;
+        }
+        return -1L;
+    }
+
+    private Seat seatAt(int wordIndex, int bitIndex) {
+        int coachIndex = wordIndex / wordsPerCoach;
+        int berthIndex = (wordIndex % wordsPerCoach) * 64 + bitIndex;
+        return new Seat(travelClass, coachIndex, berthIndex + 1);
+    }
+
+    private int wordIndexOf(Seat seat) {
+        checkSeat(seat);
+        return seat.getCoachIndex() * wordsPerCoach + ((seat.getBerthNumber() - 1) >>> 6);
+    }
+
+    private int bitIndexOf(Seat seat) {
+        return (seat.getBerthNumber() - 1) & 63;
+    }
+
+    private void checkSeat(Seat seat) {
+        if (seat.getTravelClass() != travelClass || seat.getCoachIndex() < 0 || seat.getCoachIndex() >= coaches
+                || seat.getBerthNumber() < 1 || seat.getBerthNumber() > berthsPerCoach) {
+            throw new IllegalArgumentException("Seat " + seat + " does not exist in " + travelClass.getDisplayName());
+        }
+    }
+}
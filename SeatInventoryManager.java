@@ -0,0 +1,215 @@
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Seat inventories for every journey of every train, one SeatInventory per class
+ * A journey is a train on one date - each date has its own berths and waiting lists; a null date is
+ * the undated journey of tickets booked without one. Trains not configured explicitly get the default
+ * coach layout from TravelClass, and a train's layout applies to all its dates.
+ *
+ * Only claiming a berth (and getWaitlist, on the booking path) creates a journey's inventories - the
+ * caller makes sure the journey is live first. Lookups and releases never do, so querying a train or a
+ * date that was never booked (or was dropped by removeJourney) leaves nothing behind.
+ */
+public class SeatInventoryManager {
+    // train number -> coaches per TravelClass ordinal (0 = not fixed yet), shared by every date
+    private final ConcurrentHashMap<String, int[]> layouts = new ConcurrentHashMap<>();
+    // normalized train number -> its one shared instance, one entry per layout
+    private final ConcurrentHashMap<String, String> trainNumbers = new ConcurrentHashMap<>();
+    // undated journeys: train number -> inventories indexed by TravelClass ordinal
+    private final ConcurrentHashMap<String, SeatInventory[]> undated = new ConcurrentHashMap<>();
+    // dated journeys, so a whole date can be dropped at once
+    private final ConcurrentHashMap<LocalDate, ConcurrentHashMap<String, SeatInventory[]>> dated =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Sets the number of coaches for one class of a train, on every date
+     * Must be called before the first booking on that train/class
+     */
+    public void configureTrain(String trainNumber, TravelClass travelClass, int coaches) {
+        if (coaches <= 0) {
+            throw new IllegalArgumentException("Coaches and berths per coach must be greater than 0!");
+        }
+        int[] layout = layoutFor(trainNumber);
+        synchronized (layout) {
+            if (layout[travelClass.ordinal()] != 0) {
+                throw new IllegalStateException("Train " + trainNumber + " is already open for booking in "
+                        + travelClass.getDisplayName() + "!");
+            }
+            layout[travelClass.ordinal()] = coaches;
+        }
+    }
+
+    /**
+     * Claims a free berth on the undated journey, returns null if the class is full
+     */
+    public Seat claimSeat(String trainNumber, TravelClass travelClass) {
+        return claimSeat(trainNumber, null, travelClass);
+    }
+
+    /**
+     * Claims a free berth on one journey, returns null if the class is full
+     */
+    public Seat claimSeat(String trainNumber, LocalDate journeyDate, TravelClass travelClass) {
+        return inventoryFor(trainNumber, journeyDate, travelClass).claim();
+    }
+
+    /**
+     * Claims a specific berth (used when rebuilding state), returns false if already taken
+     */
+    public boolean claimSeat(String trainNumber, Seat seat) {
+        return claimSeat(trainNumber, null, seat);
+    }
+
+    public boolean claimSeat(String trainNumber, LocalDate journeyDate, Seat seat) {
+        return inventoryFor(trainNumber, journeyDate, seat.getTravelClass()).claim(seat);
+    }
+
+    /**
+     * Returns a berth to the pool, false if it was free or the journey has no inventory (any more)
+     */
+    public boolean releaseSeat(String trainNumber, Seat seat) {
+        return releaseSeat(trainNumber, null, seat);
+    }
+
+    public boolean releaseSeat(String trainNumber, LocalDate journeyDate, Seat seat) {
+        SeatInventory inventory = findInventory(trainNumber, journeyDate, seat.getTravelClass());
+        return inventory != null && inventory.release(seat);
+    }
+
+    /**
+     * Passengers waiting for a class of one journey, created with its inventory if need be (booking
+     * path) - synchronize on the queue while using it
+     */
+    public WaitlistQueue getWaitlist(String trainNumber, TravelClass travelClass) {
+        return getWaitlist(trainNumber, null, travelClass);
+    }
+
+    public WaitlistQueue getWaitlist(String trainNumber, LocalDate journeyDate, TravelClass travelClass) {
+        return inventoryFor(trainNumber, journeyDate, travelClass).getWaitlist();
+    }
+
+    /**
+     * The waiting list of a class of one journey, null if nothing was ever booked on it
+     */
+    public WaitlistQueue findWaitlist(String trainNumber, LocalDate journeyDate, TravelClass travelClass) {
+        SeatInventory inventory = findInventory(trainNumber, journeyDate, travelClass);
+        return inventory == null ? null : inventory.getWaitlist();
+    }
+
+    /**
+     * Drops the berths and waiting lists of every train on a date in one step (the journeys are over)
+     */
+    public void removeJourney(LocalDate journeyDate) {
+        dated.remove(journeyDate);
+    }
+
+    /**
+     * Normalized numbers of every train that was ever opened for booking (a live view)
+     */
+    public Set<String> getTrainNumbers() {
+        return Collections.unmodifiableSet(layouts.keySet());
+    }
+
+    /**
+     * The shared instance of a train number, so tickets of one train don't each keep a copy and index
+     * lookups mostly compare by reference - only for trains opened for booking, written in normalized
+     * form; any other string comes back as it is, so lookups of unknown trains add nothing
+     */
+    public String internTrainNumber(String trainNumber) {
+        String canonical = trainNumbers.get(TicketRepository.normalizeTrainNumber(trainNumber));
+        return canonical != null && canonical.equals(trainNumber) ? canonical : trainNumber;
+    }
+
+    public int getAvailableSeats(String trainNumber, TravelClass travelClass) {
+        return getAvailableSeats(trainNumber, null, travelClass);
+    }
+
+    /**
+     * Free berths of a class on one journey - every berth if nothing was booked on it yet
+     */
+    public int getAvailableSeats(String trainNumber, LocalDate journeyDate, TravelClass travelClass) {
+        SeatInventory inventory = findInventory(trainNumber, journeyDate, travelClass);
+        return inventory == null ? getCapacity(trainNumber, travelClass) : inventory.getAvailableSeats();
+    }
+
+    public int getCapacity(String trainNumber, TravelClass travelClass) {
+        int[] layout = layouts.get(TicketRepository.normalizeTrainNumber(trainNumber));
+        int coaches = 0;
+        if (layout != null) {
+            synchronized (layout) {
+                coaches = layout[travelClass.ordinal()];
+            }
+        }
+        return (coaches == 0 ? travelClass.getDefaultCoaches() : coaches) * travelClass.getBerthsPerCoach();
+    }
+
+    /**
+     * The inventory of one class of a journey, null if it was never created - creates nothing
+     */
+    private SeatInventory findInventory(String trainNumber, LocalDate journeyDate, TravelClass travelClass) {
+        ConcurrentHashMap<String, SeatInventory[]> trains = journeyDate == null ? undated : dated.get(journeyDate);
+        SeatInventory[] inventories = trains == null ? null
+                : trains.get(TicketRepository.normalizeTrainNumber(trainNumber));
+        if (inventories == null) {
+            return null;
+        }
+        synchronized (inventories) { // pairs with the creation in inventoryFor
+            return inventories[travelClass.ordinal()];
+        }
+    }
+
+    /**
+     * Helper method to get (or lazily create) the inventory of one class of a journey - claim/booking
+     * paths only, once the journey is known to be live
+     */
+    private SeatInventory inventoryFor(String trainNumber, LocalDate journeyDate, TravelClass travelClass) {
+        String key = TicketRepository.normalizeTrainNumber(trainNumber);
+        SeatInventory[] inventories = inventoriesFor(journeyDate == null ? undated : trainsOn(journeyDate), key);
+        SeatInventory inventory = inventories[travelClass.ordinal()];
+        if (inventory == null) {
+            synchronized (inventories) {
+                inventory = inventories[travelClass.ordinal()];
+                if (inventory == null) {
+                    inventory = new SeatInventory(travelClass, coachesOf(key, travelClass),
+                            travelClass.getBerthsPerCoach());
+                    inventories[travelClass.ordinal()] = inventory;
+                }
+            }
+        }
+        return inventory;
+    }
+
+    private ConcurrentHashMap<String, SeatInventory[]> trainsOn(LocalDate journeyDate) {
+        ConcurrentHashMap<String, SeatInventory[]> trains = dated.get(journeyDate);
+        return trains != null ? trains : dated.computeIfAbsent(journeyDate, date -> new ConcurrentHashMap<>());
+    }
+
+    private static SeatInventory[] inventoriesFor(ConcurrentHashMap<String, SeatInventory[]> trains, String key) {
+        SeatInventory[] inventories = trains.get(key); // get first: computeIfAbsent may lock the bin even on a hit
+        return inventories != null ? inventories
+                : trains.computeIfAbsent(key, k -> new SeatInventory[TravelClass.values().length]);
+    }
+
+    /**
+     * Coaches of a class - the configured number, or the default, which is then fixed for the train
+     */
+    private int coachesOf(String trainNumber, TravelClass travelClass) {
+        int[] layout = layoutFor(trainNumber);
+        synchronized (layout) {
+            if (layout[travelClass.ordinal()] == 0) {
+                layout[travelClass.ordinal()] = travelClass.getDefaultCoaches();
+            }
+            return layout[travelClass.ordinal()];
+        }
+    }
+
+    private int[] layoutFor(String trainNumber) {
+        return layouts.computeIfAbsent(TicketRepository.normalizeTrainNumber(trainNumber), k -> {
+            trainNumbers.put(k, k);
+            return new int[TravelClass.values().length];
+        });
+    }
+}
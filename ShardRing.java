@@ -0,0 +1,101 @@
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Consistent-hash ring that assigns trains to reservation nodes
+ *
+ * Trains are first hashed into a fixed number of partitions, and the partitions are placed on a ring
+ * together with VIRTUAL_NODES points per node: a partition belongs to the next node point clockwise.
+ * Adding a node only moves the partitions that now fall just before one of its points, all of them
+ * to the new node - every other train stays where it is.
+ *
+ * A partition never changes for a train, so node processes encode it in their ticket numbers
+ * (TKT<sequence><partition, two digits>): the owner of any ticket is found from its ID alone.
+ * Immutable - withNode() returns a new ring.
+ */
+public final class ShardRing {
+    public static final int PARTITIONS = 100; // decimal, so the last two digits of a ticket number are its partition
+    private static final int VIRTUAL_NODES = 64;
+
+    private final List<String> nodes;
+    private final String[] owners; // partition -> node
+
+    public ShardRing(List<String> nodes) {
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("A shard ring needs at least one node!");
+        }
+        TreeMap<Long, String> points = new TreeMap<>();
+        for (String node : nodes) {
+            for (int i = 0; i < VIRTUAL_NODES; i++) {
+                points.put(hash(node + "#" + i), node);
+            }
+        }
+        if (points.size() != nodes.size() * VIRTUAL_NODES) {
+            throw new IllegalArgumentException("Duplicate node in shard ring: " + nodes);
+        }
+        this.nodes = Collections.unmodifiableList(new ArrayList<>(nodes));
+        this.owners = new String[PARTITIONS];
+        for (int partition = 0; partition < PARTITIONS; partition++) {
+            Map.Entry<Long, String> point = points.ceilingEntry(hash("partition-" + partition));
+            owners[partition] = (point == null ? points.firstEntry() : point).getValue();
+        }
+    }
+
+    /**
+     * A ring with one more node
+     */
+    public ShardRing withNode(String node) {
+        if (nodes.contains(node)) {
+            throw new IllegalArgumentException("Node " + node + " is already in the shard ring!");
+        }
+        List<String> grown = new ArrayList<>(nodes);
+        grown.add(node);
+        return new ShardRing(grown);
+    }
+
+    public List<String> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Node that owns a partition
+     */
+    public String ownerOf(int partition) {
+        return owners[partition];
+    }
+
+    /**
+     * Partition of a train, the same on every node and every run
+     */
+    public static int partitionOf(String trainNumber) {
+        long h = TicketRepository.normalizeTrainNumber(trainNumber).hashCode() * 0x9E3779B97F4A7C15L;
+        return (int) Long.remainderUnsigned(h ^ (h >>> 32), PARTITIONS);
+    }
+
+    /**
+     * Partition encoded in a node's ticket ID, -1 if the ID has no ticket number
+     */
+    public static int partitionOfTicket(String ticketId) {
+        long number = ReservationService.parseTicketNumber(ticketId);
+        return number < 0 ? -1 : (int) (number % PARTITIONS);
+    }
+
+    /**
+     * 64-bit FNV-1a of the UTF-8 bytes, with a final mix so nearby inputs spread around the ring
+     */
+    private static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xFF;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h;
+    }
+}
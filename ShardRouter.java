@@ -0,0 +1,622 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * HTTP front end that spreads trains over several reservation node processes (see ShardRing)
+ *
+ *   POST   /tickets               -> the node owning the body's trainNumber
+ *   GET    /tickets/{id}, DELETE  -> the node owning the partition encoded in the ticket ID (never a fan-out)
+ *   GET    /tickets?name=...      -> the train's node with &train=, otherwise every node, results interleaved
+ *   GET    /trains/{n}/report     -> the train's node; GET /trains/report gives every node's totals
+ *   GET    /health                -> the router and every node, 503 if a node is down
+ *   GET    /admin/nodes           -> the nodes and how many partitions each owns
+ *   POST   /admin/nodes           {"node":"localhost:8084"} -> adds a node and moves its partitions to it
+ *
+ * Nodes are ReservationServers started with --shard-node. Every partition has a read/write lock:
+ * requests hold the read lock while they are forwarded, moving the partition takes the write lock.
+ * A move copies the partition from the old node, lets the new node adopt it, switches the owner and
+ * only then releases it on the old node - bookings on the other partitions carry on meanwhile.
+ * A release that fails is retried before every fan-out, so searches and reports never count its copies twice.
+ */
+public class ShardRouter implements AutoCloseable {
+    private static final int BACKLOG = 4096;
+    private static final int DEFAULT_SEARCH_LIMIT = 20;
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+    private static final Duration MOVE_TIMEOUT = Duration.ofMinutes(10);
+    private static final Duration STARTUP_TIMEOUT = Duration.ofSeconds(60);
+    private static final String JSON_TYPE = "application/json; charset=utf-8";
+    private static final String BINARY_TYPE = "application/octet-stream";
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final HttpClient client;
+    private final ReentrantReadWriteLock[] partitionLocks = new ReentrantReadWriteLock[ShardRing.PARTITIONS];
+    private final AtomicReferenceArray<String> owners = new AtomicReferenceArray<>(ShardRing.PARTITIONS);
+    private final Object membershipLock = new Object(); // one node addition at a time
+    private final List<Process> localNodes = new ArrayList<>();
+    private final Map<String, Set<Integer>> unreleased = new ConcurrentHashMap<>(); // node -> moved partitions
+    private volatile ShardRing ring;
+
+    public ShardRouter(List<String> nodes, int port) throws IOException {
+        this.ring = new ShardRing(nodes);
+        for (int partition = 0; partition < ShardRing.PARTITIONS; partition++) {
+            partitionLocks[partition] = new ReentrantReadWriteLock();
+            owners.set(partition, ring.ownerOf(partition));
+        }
+        this.executor = ReservationServer.newThreadPerTaskExecutor("shard-router");
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .executor(ReservationServer.newThreadPerTaskExecutor("shard-router-client"))
+                .build();
+        this.server = HttpServer.create(new InetSocketAddress(port), BACKLOG);
+        server.setExecutor(executor);
+        server.createContext("/tickets", this::handleTickets);
+        server.createContext("/trains", this::handleTrains);
+        server.createContext("/health", this::handleHealth);
+        server.createContext("/admin/nodes", this::handleNodes);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public List<String> getNodes() {
+        return ring.getNodes();
+    }
+
+    /**
+     * Stops accepting requests, then stops any node processes this router started
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdown();
+        synchronized (localNodes) {
+            for (Process process : localNodes) {
+                process.destroy();
+            }
+        }
+    }
+
+    // ==================== Local nodes ====================
+
+    /**
+     * Starts a node process on this machine (same JVM and classpath) - wait for it with awaitNode()
+     * nodeOptions are passed on as they are (e.g. --store tiered). Its output goes to this process's console.
+     */
+    public static Process startLocalNode(int port, Path dataDir, List<String> nodeOptions) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add("RailwayReservationSystem");
+        command.add("--serve");
+        command.add(Integer.toString(port));
+        command.add("--shard-node");
+        command.addAll(nodeOptions);
+        if (dataDir != null) {
+            command.add("--data-dir");
+            command.add(dataDir.toString());
+        }
+        return new ProcessBuilder(command)
+                .redirectOutput(ProcessBuilder.Redirect.INHERIT)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .redirectInput(ProcessBuilder.Redirect.from(new File("/dev/null")))
+                .start();
+    }
+
+    /**
+     * Hands node processes to the router, which stops them when it closes
+     */
+    public void adoptLocalNodes(List<Process> processes) {
+        synchronized (localNodes) {
+            localNodes.addAll(processes);
+        }
+    }
+
+    /**
+     * Waits until a node answers GET /health, throws IllegalStateException after the startup timeout
+     */
+    public void awaitNode(String node) {
+        long deadline = System.nanoTime() + STARTUP_TIMEOUT.toNanos();
+        while (true) {
+            try {
+                if (call(node, "GET", "/health", null, REQUEST_TIMEOUT).statusCode() == 200) {
+                    return;
+                }
+            } catch (UncheckedIOException e) {
+                // not listening yet
+            }
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException("Node " + node + " did not start within "
+                        + STARTUP_TIMEOUT.getSeconds() + " s");
+            }
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for node " + node, e);
+            }
+        }
+    }
+
+    // ==================== Rebalancing ====================
+
+    /**
+     * Adds a node to the ring and moves to it every partition it now owns, one partition at a time
+     * If a move fails the partitions moved so far stay on the new node; adding it again resumes the rest.
+     */
+    public Rebalance addNode(String node) {
+        synchronized (membershipLock) {
+            ShardRing next = ring.withNode(node);
+            expectOk(call(node, "GET", "/health", null, REQUEST_TIMEOUT), "Node " + node + " is not healthy");
+            int partitions = 0;
+            long tickets = 0;
+            for (int partition = 0; partition < ShardRing.PARTITIONS; partition++) {
+                String owner = owners.get(partition);
+                if (!owner.equals(next.ownerOf(partition))) {
+                    tickets += movePartition(partition, owner, next.ownerOf(partition));
+                    partitions++;
+                }
+            }
+            ring = next;
+            return new Rebalance(node, partitions, tickets);
+        }
+    }
+
+    /**
+     * Copies a partition to its new owner, switches the owner, then releases it on the old one
+     * Requests for the partition wait meanwhile. Returns the number of tickets moved.
+     */
+    private int movePartition(int partition, String from, String to) {
+        String path = "/shard/partitions/" + partition;
+        Lock lock = partitionLocks[partition].writeLock();
+        lock.lock();
+        try {
+            HttpResponse<byte[]> copy = call(from, "GET", path, null, MOVE_TIMEOUT);
+            expectOk(copy, "Node " + from + " could not copy partition " + partition);
+            HttpResponse<byte[]> adopt = call(to, "PUT", path, copy.body(), MOVE_TIMEOUT);
+            expectOk(adopt, "Node " + to + " could not adopt partition " + partition);
+            owners.set(partition, to);
+            // The new owner has every ticket - a failed release is kept and retried until it succeeds
+            unreleased.computeIfAbsent(from, n -> ConcurrentHashMap.newKeySet()).add(partition);
+            releaseMovedPartitions(from);
+            return ByteBuffer.wrap(copy.body()).getInt();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Releases the partitions a node still holds after they moved away, returns false if any is left
+     * Requests to a node holding such copies would see its tickets twice, so fan-outs call this first.
+     */
+    private boolean releaseMovedPartitions(String node) {
+        Set<Integer> partitions = unreleased.getOrDefault(node, Set.of());
+        for (Integer partition : partitions) {
+            Lock lock = partitionLocks[partition].readLock();
+            lock.lock();
+            try {
+                if (!node.equals(owners.get(partition))) {
+                    HttpResponse<byte[]> release = call(node, "DELETE", "/shard/partitions/" + partition,
+                            null, REQUEST_TIMEOUT);
+                    expectOk(release, "Node " + node + " could not release partition " + partition);
+                }
+                partitions.remove(partition);
+            } catch (IllegalStateException | UncheckedIOException e) {
+                System.err.println("⚠️  " + e.getMessage() + " - retrying later");
+                return false;
+            } finally {
+                lock.unlock();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Outcome of adding a node: how many partitions and tickets moved to it
+     */
+    public static final class Rebalance {
+        private final String node;
+        private final int partitions;
+        private final long tickets;
+
+        Rebalance(String node, int partitions, long tickets) {
+            this.node = node;
+            this.partitions = partitions;
+            this.tickets = tickets;
+        }
+
+        public String getNode() {
+            return node;
+        }
+
+        public int getPartitions() {
+            return partitions;
+        }
+
+        public long getTickets() {
+            return tickets;
+        }
+    }
+
+    // ==================== Handlers ====================
+
+    private void handleTickets(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            String path = exchange.getRequestURI().getRawPath();
+            String rawQuery = exchange.getRequestURI().getRawQuery();
+            String target = rawQuery == null ? path : path + "?" + rawQuery;
+            if (path.equals("/tickets")) {
+                if (method.equals("POST")) {
+                    String body = ReservationServer.readBody(exchange);
+                    forward(exchange, partitionOfBooking(body), method, target, body.getBytes(StandardCharsets.UTF_8));
+                } else if (method.equals("GET")) {
+                    Map<String, String> query = ReservationServer.parseQuery(rawQuery);
+                    String trainNumber = query.get("train");
+                    if (trainNumber != null) {
+                        forward(exchange, ShardRing.partitionOf(trainNumber), method, target, null);
+                    } else {
+                        searchAllNodes(exchange, target, searchLimit(query.get("limit")));
+                    }
+                } else {
+                    ReservationServer.sendMethodNotAllowed(exchange, "GET, POST");
+                }
+            } else if (path.startsWith("/tickets/")) {
+                String ticketId = URLDecoder.decode(path.substring("/tickets/".length()), StandardCharsets.UTF_8);
+                int partition = ShardRing.partitionOfTicket(ticketId);
+                if (!method.equals("GET") && !method.equals("DELETE")) {
+                    ReservationServer.sendMethodNotAllowed(exchange, "GET, DELETE");
+                } else if (partition < 0) {
+                    ReservationServer.sendError(exchange, 404, "No ticket exists with ID: " + ticketId);
+                } else {
+                    forward(exchange, partition, method, target, null);
+                }
+            } else {
+                ReservationServer.sendError(exchange, 404, "Not found: " + path);
+            }
+        } catch (IllegalArgumentException e) {
+            ReservationServer.sendError(exchange, 400, e.getMessage());
+        } catch (UncheckedIOException e) {
+            ReservationServer.sendError(exchange, 502, e.getMessage());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleTrains(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getRawPath();
+            if (!exchange.getRequestMethod().equals("GET")) {
+                ReservationServer.sendMethodNotAllowed(exchange, "GET");
+            } else if (path.equals("/trains/report")) {
+                StringBuilder body = new StringBuilder(256);
+                body.append("{\"nodes\":{");
+                appendNodeResponses(body, callAllNodes("/trains/report"));
+                body.append("}}");
+                ReservationServer.send(exchange, 200, body);
+            } else if (path.startsWith("/trains/") && path.endsWith("/report")) {
+                String trainNumber = URLDecoder.decode(path.substring("/trains/".length(),
+                        path.length() - "/report".length()), StandardCharsets.UTF_8);
+                forward(exchange, ShardRing.partitionOf(trainNumber), "GET", path, null);
+            } else {
+                ReservationServer.sendError(exchange, 404, "Not found: " + path);
+            }
+        } catch (IllegalArgumentException e) {
+            ReservationServer.sendError(exchange, 400, e.getMessage());
+        } catch (UncheckedIOException e) {
+            ReservationServer.sendError(exchange, 502, e.getMessage());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleHealth(HttpExchange exchange) throws IOException {
+        try {
+            Map<String, HttpResponse<byte[]>> responses = callAllNodes("/health");
+            boolean allUp = !responses.containsValue(null);
+            StringBuilder body = new StringBuilder(256);
+            body.append("{\"status\":\"").append(allUp ? "UP" : "DEGRADED").append("\",\"nodes\":{");
+            appendNodeResponses(body, responses);
+            body.append("}}");
+            ReservationServer.send(exchange, allUp ? 200 : 503, body);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * GET /admin/nodes lists partition owners, POST /admin/nodes {"node":"host:port"} adds a node
+     */
+    private void handleNodes(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            if (method.equals("GET")) {
+                StringBuilder body = new StringBuilder(256);
+                body.append("{\"nodes\":[");
+                List<String> nodes = ring.getNodes();
+                for (int i = 0; i < nodes.size(); i++) {
+                    int partitions = 0;
+                    for (int partition = 0; partition < ShardRing.PARTITIONS; partition++) {
+                        partitions += owners.get(partition).equals(nodes.get(i)) ? 1 : 0;
+                    }
+                    body.append(i > 0 ? "," : "").append("{\"node\":");
+                    ManifestWriter.appendJsonString(body, nodes.get(i));
+                    body.append(",\"partitions\":").append(partitions).append('}');
+                }
+                body.append("]}");
+                ReservationServer.send(exchange, 200, body);
+            } else if (method.equals("POST")) {
+                String node = ReservationServer.parseJsonObject(ReservationServer.readBody(exchange)).get("node");
+                if (node == null || !node.matches("[A-Za-z0-9.\\-]+:[0-9]{1,5}")) {
+                    throw new IllegalArgumentException("Field 'node' must be host:port!");
+                }
+                Rebalance rebalance = addNode(node);
+                StringBuilder body = new StringBuilder(128);
+                body.append("{\"node\":");
+                ManifestWriter.appendJsonString(body, rebalance.getNode());
+                body.append(",\"partitions\":").append(rebalance.getPartitions())
+                        .append(",\"tickets\":").append(rebalance.getTickets()).append('}');
+                ReservationServer.send(exchange, 200, body);
+            } else {
+                ReservationServer.sendMethodNotAllowed(exchange, "GET, POST");
+            }
+        } catch (IllegalArgumentException e) {
+            ReservationServer.sendError(exchange, 400, e.getMessage());
+        } catch (IllegalStateException | UncheckedIOException e) {
+            ReservationServer.sendError(exchange, 502, e.getMessage());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    // ==================== Forwarding ====================
+
+    /**
+     * Sends a request to the partition's owner and relays the answer
+     * The partition's read lock is held until the node answered, not while the client reads the response
+     */
+    private void forward(HttpExchange exchange, int partition, String method, String target, byte[] body)
+            throws IOException {
+        HttpResponse<byte[]> response;
+        Lock lock = partitionLocks[partition].readLock();
+        lock.lock();
+        try {
+            response = call(owners.get(partition), method, target, body, REQUEST_TIMEOUT,
+                    exchange.getRequestHeaders().getFirst(ReservationServer.IDEMPOTENCY_KEY_HEADER));
+        } finally {
+            lock.unlock();
+        }
+        relay(exchange, response);
+    }
+
+    /**
+     * Name search without a train: asks every node, then takes their matches in turn up to the limit
+     * (each node's best matches come first, but scores are not compared across nodes)
+     */
+    private void searchAllNodes(HttpExchange exchange, String target, int limit) throws IOException {
+        Map<String, HttpResponse<byte[]>> responses = callAllNodes(target);
+        List<List<String>> results = new ArrayList<>();
+        for (Map.Entry<String, HttpResponse<byte[]>> entry : responses.entrySet()) {
+            HttpResponse<byte[]> response = entry.getValue();
+            if (response == null) {
+                throw new UncheckedIOException(new IOException("Node " + entry.getKey() + " is unreachable"));
+            }
+            if (response.statusCode() != 200) {
+                relay(exchange, response); // e.g. 400 for a missing name - the same from every node
+                return;
+            }
+            results.add(splitJsonArray(new String(response.body(), StandardCharsets.UTF_8)));
+        }
+        StringBuilder body = new StringBuilder(64 + 256 * limit);
+        body.append("{\"tickets\":[");
+        int count = 0;
+        for (int rank = 0; count < limit; rank++) {
+            boolean more = false;
+            for (List<String> tickets : results) {
+                if (rank < tickets.size() && count < limit) {
+                    body.append(count++ > 0 ? "," : "").append(tickets.get(rank));
+                    more = true;
+                }
+            }
+            if (!more) {
+                break;
+            }
+        }
+        body.append("]}");
+        ReservationServer.send(exchange, 200, body);
+    }
+
+    /**
+     * GETs a path from every node at once, node -> response (null if the node could not be reached)
+     * A node still holding moved partitions is not asked at all until they are released - it counts as down.
+     */
+    private Map<String, HttpResponse<byte[]>> callAllNodes(String target) {
+        Set<String> nodes = new LinkedHashSet<>(ring.getNodes());
+        for (int partition = 0; partition < ShardRing.PARTITIONS; partition++) {
+            nodes.add(owners.get(partition)); // a node whose addition failed half-way still owns some
+        }
+        Map<String, CompletableFuture<HttpResponse<byte[]>>> pending = new LinkedHashMap<>();
+        for (String node : nodes) {
+            if (!releaseMovedPartitions(node)) {
+                pending.put(node, CompletableFuture.failedFuture(new IOException("Node " + node
+                        + " still holds moved partitions")));
+                continue;
+            }
+            pending.put(node, client.sendAsync(request(node, "GET", target, null, REQUEST_TIMEOUT).build(),
+                    HttpResponse.BodyHandlers.ofByteArray()));
+        }
+        Map<String, HttpResponse<byte[]>> responses = new LinkedHashMap<>();
+        for (Map.Entry<String, CompletableFuture<HttpResponse<byte[]>>> entry : pending.entrySet()) {
+            try {
+                responses.put(entry.getKey(), entry.getValue().join());
+            } catch (CompletionException e) {
+                responses.put(entry.getKey(), null);
+            }
+        }
+        return responses;
+    }
+
+    private HttpResponse<byte[]> call(String node, String method, String target, byte[] body, Duration timeout) {
+        return call(node, method, target, body, timeout, null);
+    }
+
+    /**
+     * Sends one request to a node, passing on the client's idempotency key if it sent one
+     */
+    private HttpResponse<byte[]> call(String node, String method, String target, byte[] body, Duration timeout,
+                                      String idempotencyKey) {
+        HttpRequest.Builder request = request(node, method, target, body, timeout);
+        if (idempotencyKey != null) {
+            request.header(ReservationServer.IDEMPOTENCY_KEY_HEADER, idempotencyKey);
+        }
+        try {
+            return client.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UncheckedIOException(new IOException("Interrupted while calling node " + node));
+        } catch (IOException e) {
+            String reason = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            throw new UncheckedIOException("Node " + node + " is unreachable: " + reason, e);
+        }
+    }
+
+    private static HttpRequest.Builder request(String node, String method, String target, byte[] body,
+                                               Duration timeout) {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://" + node + target)).timeout(timeout);
+        if (body == null) {
+            return request.method(method, HttpRequest.BodyPublishers.noBody());
+        }
+        return request.header("Content-Type", method.equals("PUT") ? BINARY_TYPE : JSON_TYPE)
+                .method(method, HttpRequest.BodyPublishers.ofByteArray(body));
+    }
+
+    private static void relay(HttpExchange exchange, HttpResponse<byte[]> response) throws IOException {
+        for (String header : new String[]{"Content-Type", "Location", "Allow", "Retry-After"}) {
+            response.headers().firstValue(header).ifPresent(value -> exchange.getResponseHeaders().set(header, value));
+        }
+        byte[] body = response.body();
+        exchange.sendResponseHeaders(response.statusCode(), body.length == 0 ? -1 : body.length);
+        if (body.length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    private static void expectOk(HttpResponse<byte[]> response, String error) {
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException(error + ": " + new String(response.body(), StandardCharsets.UTF_8));
+        }
+    }
+
+    // ==================== Helpers ====================
+
+    /**
+     * Partition of the train a booking is for - a body without a train goes to partition 0,
+     * whose node rejects it with the usual validation error
+     */
+    private static int partitionOfBooking(String body) {
+        try {
+            String trainNumber = ReservationServer.parseJsonObject(body).get("trainNumber");
+            return trainNumber == null ? 0 : ShardRing.partitionOf(trainNumber);
+        } catch (IllegalArgumentException e) {
+            return 0;
+        }
+    }
+
+    private static int searchLimit(String value) {
+        try {
+            return value == null ? DEFAULT_SEARCH_LIMIT : Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return DEFAULT_SEARCH_LIMIT; // every node rejects it anyway
+        }
+    }
+
+    /**
+     * Appends "node":response pairs, with {"status":"DOWN"} for nodes that did not answer
+     */
+    private static void appendNodeResponses(StringBuilder body, Map<String, HttpResponse<byte[]>> responses) {
+        boolean first = true;
+        for (Map.Entry<String, HttpResponse<byte[]>> entry : responses.entrySet()) {
+            body.append(first ? "" : ",");
+            first = false;
+            ManifestWriter.appendJsonString(body, entry.getKey());
+            body.append(':');
+            HttpResponse<byte[]> response = entry.getValue();
+            body.append(response == null ? "{\"status\":\"DOWN\"}"
+                    : new String(response.body(), StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * The top-level objects of the first JSON array in a response, as raw text
+     */
+    static List<String> splitJsonArray(String json) {
+        List<String> elements = new ArrayList<>();
+        int start = json.indexOf('[');
+        if (start < 0) {
+            return elements;
+        }
+        int depth = 0;
+        int elementStart = -1;
+        boolean inString = false;
+        for (int i = start + 1; i < json.length(); i++) {
+            char c = json.charAt(i);
+            if (inString) {
+                if (c == '\\') {
+                    i++;
+                } else if (c == '"') {
+                    inString = false;
+                }
+            } else if (c == '"') {
+                inString = true;
+            } else if (c == '{') {
+                if (depth++ == 0) {
+                    elementStart = i;
+                }
+            } else if (c == '}') {
+                if (--depth == 0) {
+                    elements.add(json.substring(elementStart, i + 1));
+                }
+            } else if (c == ']' && depth == 0) {
+                break;
+            }
+        }
+        return elements;
+    }
+}
@@ -1,48 +1,53 @@
+import java.time.LocalDate;
+
 /**
  * Sleeper class ticket - extends Ticket
  * Demonstrates INHERITANCE and POLYMORPHISM
  */
 public class SleeperTicket extends Ticket {
     // Additional field specific to Sleeper ticket
-    private String coachType;
-    private static final double SERVICE_CHARGE = 50.0; // Fixed service charge for sleeper
+    private final String coachType;
 
     // Constructor
-    public SleeperTicket(String ticketId, String passengerName, int age, String trainNumber, double baseFare) {
-        super(ticketId, passengerName, age, trainNumber, baseFare);
-        this.coachType = "Sleeper Class";
+    public SleeperTicket(long ticketNumber, String passengerName, int age, String trainNumber, double baseFare) {
+        this(ticketNumber, passengerName, age, trainNumber, null, baseFare);
+    }
+
+    public SleeperTicket(long ticketNumber, String passengerName, int age, String trainNumber,
+                         LocalDate journeyDate, double baseFare) {
+        this(ticketNumber, passengerName, age, trainNumber, journeyDate, baseFare, "Sleeper Class");
+    }
+
+    public SleeperTicket(long ticketNumber, String passengerName, int age, String trainNumber, double baseFare,
+                         String coachType) {
+        this(ticketNumber, passengerName, age, trainNumber, null, baseFare, coachType);
+    }
+
+    public SleeperTicket(long ticketNumber, String passengerName, int age, String trainNumber,
+                         LocalDate journeyDate, double baseFare, String coachType) {
+        super(ticketNumber, passengerName, age, trainNumber, journeyDate, baseFare);
+        this.coachType = coachType;
     }
 
     // POLYMORPHISM - Overriding abstract method with Sleeper-specific logic
     @Override
     public double calculateFare() {
-        double totalFare = getBaseFare() + SERVICE_CHARGE;
-        
-        // Apply age-based discount
-        if (getAge() < 12) {
-            totalFare = totalFare * 0.5; // 50% discount for children
-        } else if (getAge() >= 60) {
-            totalFare = totalFare * 0.6; // 40% discount for senior citizens
-        }
-        
-        return totalFare;
+        // Base fare + service charge, then the age-based discount from the tariff table
+        // (50% for children, 40% for senior citizens)
+        return FareEngine.getDefault().calculateFare(TravelClass.SLEEPER, getAge(), getBaseFare());
     }
 
-    // Override displayTicketDetails to add coach type
+    // Override appendDetails to add coach type
     @Override
-    public void displayTicketDetails() {
-        super.displayTicketDetails();
-        System.out.println("Coach Type      : " + coachType);
-        System.out.println("Service Charge  : ₹" + SERVICE_CHARGE);
-        System.out.println("====================================\n");
+    protected void appendDetails(StringBuilder out) {
+        super.appendDetails(out);
+        out.append("Coach Type      : ").append(coachType).append('\n');
+        out.append("Service Charge  : ₹").append(FareEngine.getDefault().getClassCharge(TravelClass.SLEEPER))
+                .append('\n');
     }
 
-    // Getter and Setter for coachType
+    // Getter for coachType
     public String getCoachType() {
         return coachType;
     }
-
-    public void setCoachType(String coachType) {
-        this.coachType = coachType;
-    }
 }
@@ -0,0 +1,49 @@
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background compactor for a TicketStore
+ * Reclaims the space of cancelled tickets in small batches on a daemon thread. Each batch holds the
+ * store's write lock only briefly, so bookings and lookups interleave with a long compaction.
+ */
+public class StoreCompactor implements AutoCloseable {
+    public static final int DEFAULT_BATCH_SIZE = 1024;
+    public static final long DEFAULT_INTERVAL_MILLIS = 100;
+
+    private final TicketStore store;
+    private final int batchSize;
+    private final ScheduledExecutorService executor;
+
+    public StoreCompactor(TicketStore store, int batchSize, long intervalMillis) {
+        if (batchSize <= 0 || intervalMillis <= 0) {
+            throw new IllegalArgumentException("Compaction batch size and interval must be greater than 0!");
+        }
+        this.store = store;
+        this.batchSize = batchSize;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ticket-store-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::runOnce, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Compacts batch after batch until nothing is pending, yielding between batches
+     */
+    private void runOnce() {
+        try {
+            while (store.getPendingCompaction() > 0 && store.compact(batchSize) > 0) {
+                Thread.yield();
+            }
+        } catch (RuntimeException e) {
+            System.err.println("⚠️  Background compaction failed: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
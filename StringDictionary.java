@@ -0,0 +1,80 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dictionary encoding for repeated strings (train numbers, passenger names)
+ * Each distinct string is stored once and referenced by a small int code.
+ * Codes are reference counted and recycled when no ticket uses them. Not thread-safe.
+ */
+public class StringDictionary {
+    private final Map<String, Integer> codes = new HashMap<>();
+    private final List<String> values = new ArrayList<>();
+    private int[] refCounts = new int[16];
+    private int[] freeCodes = new int[16];
+    private int freeCount;
+
+    /**
+     * Returns the code for a string, adding it (or taking another reference) as needed
+     */
+    public int acquire(String value) {
+        Integer existing = codes.get(value);
+        int code;
+        if (existing != null) {
+            code = existing;
+        } else {
+            if (freeCount > 0) {
+                code = freeCodes[--freeCount];
+                values.set(code, value);
+            } else {
+                code = values.size();
+                values.add(value);
+                if (code >= refCounts.length) {
+                    refCounts = Arrays.copyOf(refCounts, refCounts.length * 2);
+                }
+            }
+            codes.put(value, code);
+        }
+        refCounts[code]++;
+        return code;
+    }
+
+    /**
+     * Drops one reference, the string is forgotten when its last reference goes
+     */
+    public void release(int code) {
+        if (--refCounts[code] == 0) {
+            codes.remove(values.get(code));
+            values.set(code, null);
+            if (freeCount == freeCodes.length) {
+                freeCodes = Arrays.copyOf(freeCodes, freeCodes.length * 2);
+            }
+            freeCodes[freeCount++] = code;
+        }
+    }
+
+    /**
+     * Returns the code of a string, or -1 if it is not in the dictionary
+     */
+    public int codeOf(String value) {
+        Integer code = codes.get(value);
+        return code == null ? -1 : code;
+    }
+
+    public String valueOf(int code) {
+        return values.get(code);
+    }
+
+    /**
+     * Upper bound (exclusive) of the codes handed out so far
+     */
+    public int capacity() {
+        return values.size();
+    }
+
+    public int size() {
+        return codes.size();
+    }
+}
@@ -1,21 +1,40 @@
+import java.time.LocalDate;
+
 /**
  * Abstract class representing a Railway Ticket
  * Demonstrates ABSTRACTION - hides fare calculation implementation from user
  */
 public abstract class Ticket {
-    // ENCAPSULATION - All fields are private
-    private String ticketId;
-    private String passengerName;
-    private int age;
-    private String trainNumber;
-    private double baseFare;
+    public static final String ID_PREFIX = "TKT";
+
+    // ENCAPSULATION - All fields are private; what was booked never changes
+    private final long ticketNumber; // identity - shown as TKT<number> only at the edges
+    private final String passengerName;
+    private final int age;
+    private final String trainNumber;
+    private final LocalDate journeyDate; // day the train departs, null for tickets booked without one
+    private final double baseFare;
+    // The two fields that change after booking - volatile, since promotion and repricing run on other
+    // threads than the readers (view, cancel, refund, snapshots)
+    private volatile Seat seat; // Assigned berth, null while on the RAC/waiting list
+    private volatile double fare = Double.NaN; // Priced total fare, NaN until first priced
+
+    // One reusable buffer per thread - a ticket is formatted into it and printed with a single write
+    private static final ThreadLocal<StringBuilder> DISPLAY_BUFFER =
+            ThreadLocal.withInitial(() -> new StringBuilder(512));
 
     // Constructor
-    public Ticket(String ticketId, String passengerName, int age, String trainNumber, double baseFare) {
-        this.ticketId = ticketId;
+    public Ticket(long ticketNumber, String passengerName, int age, String trainNumber, double baseFare) {
+        this(ticketNumber, passengerName, age, trainNumber, null, baseFare);
+    }
+
+    public Ticket(long ticketNumber, String passengerName, int age, String trainNumber, LocalDate journeyDate,
+                  double baseFare) {
+        this.ticketNumber = ticketNumber;
         this.passengerName = passengerName;
         this.age = age;
         this.trainNumber = trainNumber;
+        this.journeyDate = journeyDate;
         this.baseFare = baseFare;
     }
 
@@ -23,56 +42,99 @@ public abstract class Ticket {
     // ABSTRACTION - User doesn't know how fare is calculated
     public abstract double calculateFare();
 
+    /**
+     * Total fare, priced once with calculateFare() and then reused by view/cancel/refund
+     * Stays fixed until the ticket is repriced (FareEngine.reprice)
+     */
+    public double getFare() {
+        double total = fare;
+        if (Double.isNaN(total)) {
+            total = calculateFare();
+            fare = total;
+        }
+        return total;
+    }
+
+    void setFare(double fare) {
+        this.fare = fare;
+    }
+
     // Concrete method - displays ticket details
     public void displayTicketDetails() {
-        System.out.println("\n========== TICKET DETAILS ==========");
-        System.out.println("Ticket ID       : " + ticketId);
-        System.out.println("Passenger Name  : " + passengerName);
-        System.out.println("Age             : " + age);
-        System.out.println("Train Number    : " + trainNumber);
-        System.out.println("Base Fare       : ₹" + baseFare);
-        System.out.println("Total Fare      : ₹" + calculateFare());
-        System.out.println("====================================\n");
+        StringBuilder out = DISPLAY_BUFFER.get();
+        out.setLength(0);
+        appendDetails(out);
+        out.append("====================================\n\n");
+        System.out.print(out);
     }
 
-    // ENCAPSULATION - Getters and Setters for private fields
-    public String getTicketId() {
-        return ticketId;
+    /**
+     * Appends the detail lines of this ticket - child classes add their own lines after these
+     */
+    protected void appendDetails(StringBuilder out) {
+        out.append("\n========== TICKET DETAILS ==========\n");
+        out.append("Ticket ID       : ").append(ID_PREFIX).append(ticketNumber).append('\n');
+        out.append("Passenger Name  : ").append(passengerName).append('\n');
+        out.append("Age             : ").append(age).append('\n');
+        out.append("Train Number    : ").append(trainNumber).append('\n');
+        if (journeyDate != null) {
+            out.append("Journey Date    : ").append(journeyDate).append('\n');
+        }
+        Seat assigned = seat;
+        if (assigned != null) {
+            out.append("Coach / Berth   : ").append(assigned).append('\n');
+        }
+        out.append("Base Fare       : ₹").append(baseFare).append('\n');
+        out.append("Total Fare      : ₹").append(getFare()).append('\n');
     }
 
-    public void setTicketId(String ticketId) {
-        this.ticketId = ticketId;
+    // ENCAPSULATION - Getters only; the berth is the one thing that changes (RAC/WL promotion)
+    public long getTicketNumber() {
+        return ticketNumber;
     }
 
-    public String getPassengerName() {
-        return passengerName;
+    /**
+     * Ticket ID as shown to passengers (TKT1000) - built on every call, so only at the edges
+     */
+    public String getTicketId() {
+        return formatTicketId(ticketNumber);
     }
 
-    public void setPassengerName(String passengerName) {
-        this.passengerName = passengerName;
+    public String getPassengerName() {
+        return passengerName;
     }
 
     public int getAge() {
         return age;
     }
 
-    public void setAge(int age) {
-        this.age = age;
-    }
-
     public String getTrainNumber() {
         return trainNumber;
     }
 
-    public void setTrainNumber(String trainNumber) {
-        this.trainNumber = trainNumber;
+    /**
+     * Day the train departs, null if the ticket was booked without one (it then never expires)
+     */
+    public LocalDate getJourneyDate() {
+        return journeyDate;
     }
 
     public double getBaseFare() {
         return baseFare;
     }
 
-    public void setBaseFare(double baseFare) {
-        this.baseFare = baseFare;
+    public Seat getSeat() {
+        return seat;
+    }
+
+    /**
+     * Assigns the berth - by the service and the stores only, when a booking or promotion gets one
+     */
+    void setSeat(Seat seat) {
+        this.seat = seat;
+    }
+
+    public static String formatTicketId(long ticketNumber) {
+        return ID_PREFIX + ticketNumber;
     }
 }
@@ -0,0 +1,169 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * In-memory ticket store backed by hash indexes
+ * Primary index: ticket number -> ticket (constant-time view/cancel, no boxing)
+ * Secondary indexes: train number -> tickets, passenger name -> tickets
+ * Thread-safe: readers never block, writers only contend on the same index key
+ */
+public class TicketRepository implements TicketStore {
+    // Primary index keyed by ticket number (TKT1000 -> 1000)
+    private final ConcurrentLongMap<Ticket> ticketsById = new ConcurrentLongMap<>();
+
+    // Secondary indexes - concurrent key sets give O(1) add/remove per bucket
+    private final ConcurrentHashMap<String, Set<Ticket>> ticketsByTrain = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Set<Ticket>> ticketsByPassenger = new ConcurrentHashMap<>();
+
+    /**
+     * Adds a ticket to the primary and secondary indexes
+     */
+    @Override
+    public void add(Ticket ticket) {
+        if (ticketsById.putIfAbsent(ticket.getTicketNumber(), ticket) != null) {
+            throw new IllegalStateException("Duplicate ticket ID: " + ticket.getTicketId());
+        }
+        addToIndex(ticketsByTrain, normalizeTrainNumber(ticket.getTrainNumber()), ticket);
+        addToIndex(ticketsByPassenger, normalizePassengerName(ticket.getPassengerName()), ticket);
+    }
+
+    /**
+     * Finds a ticket by number, returns null if not found - lock-free
+     */
+    @Override
+    public Ticket findById(long ticketNumber) {
+        return ticketsById.get(ticketNumber);
+    }
+
+    /**
+     * Removes a ticket from all indexes, returns the removed ticket or null
+     */
+    @Override
+    public Ticket remove(long ticketNumber) {
+        Ticket ticket = ticketsById.remove(ticketNumber);
+        if (ticket != null) {
+            removeFromIndex(ticketsByTrain, normalizeTrainNumber(ticket.getTrainNumber()), ticket);
+            removeFromIndex(ticketsByPassenger, normalizePassengerName(ticket.getPassengerName()), ticket);
+        }
+        return ticket;
+    }
+
+    /**
+     * Sets the berth inside the map's compute, so whoever removes or reads the ticket next sees it
+     */
+    @Override
+    public boolean assignSeat(long ticketNumber, Seat seat) {
+        return ticketsById.computeIfPresent(ticketNumber, ticket -> {
+            ticket.setSeat(seat);
+            return ticket;
+        }) != null;
+    }
+
+    /**
+     * Detaches the train's index bucket and removes its tickets, returns the removed tickets
+     * Tickets booked on the train while this runs go into a new bucket and stay booked
+     */
+    @Override
+    public List<Ticket> removeByTrain(String trainNumber) {
+        Set<Ticket> tickets = ticketsByTrain.remove(normalizeTrainNumber(trainNumber));
+        List<Ticket> removed = new ArrayList<>(tickets == null ? 0 : tickets.size());
+        if (tickets == null) {
+            return removed;
+        }
+        for (Ticket ticket : tickets) {
+            // remove(key, value) - a concurrent single cancellation gets each ticket at most once
+            if (ticketsById.remove(ticket.getTicketNumber(), ticket) != null) {
+                removeFromIndex(ticketsByPassenger, normalizePassengerName(ticket.getPassengerName()), ticket);
+                removed.add(ticket);
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Returns all tickets booked on a train
+     */
+    @Override
+    public List<Ticket> findByTrain(String trainNumber) {
+        Set<Ticket> tickets = ticketsByTrain.get(normalizeTrainNumber(trainNumber));
+        return tickets == null ? new ArrayList<>() : new ArrayList<>(tickets);
+    }
+
+    /**
+     * Returns all tickets booked for a passenger name (case-insensitive)
+     */
+    @Override
+    public List<Ticket> findByPassenger(String passengerName) {
+        Set<Ticket> tickets = ticketsByPassenger.get(normalizePassengerName(passengerName));
+        return tickets == null ? new ArrayList<>() : new ArrayList<>(tickets);
+    }
+
+    /**
+     * Returns a point-in-time copy of all tickets (weakly consistent under concurrent updates)
+     */
+    @Override
+    public List<Ticket> findAll() {
+        List<Ticket> tickets = new ArrayList<>(ticketsById.size());
+        ticketsById.forEachValue(tickets::add);
+        return tickets;
+    }
+
+    /**
+     * Iterates the primary index directly - no copy of the ticket collection
+     */
+    @Override
+    public void forEachTicket(Consumer<? super Ticket> action) {
+        ticketsById.forEachValue(action);
+    }
+
+    @Override
+    public int size() {
+        return ticketsById.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return ticketsById.isEmpty();
+    }
+
+    /**
+     * Helper method to add a ticket to a secondary index bucket
+     * compute() runs atomically per key, so a bucket is never dropped while being filled
+     */
+    private static void addToIndex(ConcurrentHashMap<String, Set<Ticket>> index, String key, Ticket ticket) {
+        index.compute(key, (k, tickets) -> {
+            if (tickets == null) {
+                tickets = ConcurrentHashMap.newKeySet();
+            }
+            tickets.add(ticket);
+            return tickets;
+        });
+    }
+
+    /**
+     * Helper method to drop a ticket from a secondary index bucket
+     */
+    private static void removeFromIndex(ConcurrentHashMap<String, Set<Ticket>> index, String key, Ticket ticket) {
+        index.computeIfPresent(key, (k, tickets) -> {
+            tickets.remove(ticket);
+            return tickets.isEmpty() ? null : tickets;
+        });
+    }
+
+    // Normalization helpers - all lookups go through the same key format
+    static String normalizeTicketId(String ticketId) {
+        return ticketId.trim().toUpperCase(Locale.ROOT);
+    }
+
+    static String normalizeTrainNumber(String trainNumber) {
+        return trainNumber == null ? "" : trainNumber.trim().toUpperCase(Locale.ROOT);
+    }
+
+    static String normalizePassengerName(String passengerName) {
+        return passengerName == null ? "" : passengerName.trim().toLowerCase(Locale.ROOT);
+    }
+}
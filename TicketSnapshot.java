@@ -0,0 +1,471 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.stream.IntStream;
+
+/**
+ * Compact binary snapshot of every live ticket, read straight from a memory-mapped file
+ *
+ * File layout (big-endian):
+ * - header: [int magic "RRSS"][int version][int count][int hash capacity][long journal sequence]
+ *   [long next ticket number][long offsets position][long hash position][long file length], padded to 64 bytes
+ * - records: [int length][byte kind][byte class][byte age][short coach][short berth][double base fare]
+ *   [ticket ID][passenger name][train number], then [coach type] for sleeper tickets or [AC tier][double AC charge]
+ *   for AC tickets, then [long journey date as an epoch day] (Long.MIN_VALUE = none).
+ *   Strings are [unsigned short length][UTF-8 bytes]; a coach of -1 means no berth.
+ * - offsets: [long] file position of every record, in record order
+ * - hash table: [int] record number + 1 (0 = empty), linear probing on the upper-case ticket ID
+ *
+ * Records are length-prefixed so a newer version can append fields that older readers skip.
+ * Opening a snapshot only maps the file and checks the header - tickets are decoded one at a
+ * time when they are visited or looked up, so a snapshot of tens of millions of tickets opens instantly.
+ * An open snapshot is immutable and safe for concurrent readers.
+ */
+public final class TicketSnapshot implements Iterable<Ticket>, Closeable {
+    static final int MAGIC = 0x52525353; // "RRSS"
+    static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 64;
+    private static final int FIXED_FIELDS_SIZE = 15; // kind, class, age, coach, berth, base fare
+    private static final byte KIND_SLEEPER = 1;
+    private static final byte KIND_AC = 2;
+    private static final int MAX_STRING_BYTES = 0xFFFF;
+    // Upper bound of one encoded record: fixed fields plus four strings of at most 64 KB
+    private static final int MAX_RECORD_SIZE = 1 << 19;
+    private static final int IO_BUFFER_SIZE = 1 << 20;
+    private static final int MAX_HASH_CAPACITY = 1 << 30;
+    private static final long NO_JOURNEY_DATE = Long.MIN_VALUE;
+
+    // The file is mapped in 1 GB regions that overlap by one maximal record, so any record
+    // (or offset/hash entry) starting inside a region can be read from that region alone
+    private static final int REGION_BITS = 30;
+    private static final long REGION_MASK = (1L << REGION_BITS) - 1;
+
+    /**
+     * Where the tickets of a snapshot come from, e.g. TicketStore::forEachTicket
+     */
+    @FunctionalInterface
+    public interface Source {
+        void forEachTicket(Consumer<? super Ticket> action);
+    }
+
+    private final Path file;
+    private final FileChannel channel;
+    private final MappedByteBuffer[] regions;
+    private final int count;
+    private final int hashMask;
+    private final long sequence;
+    private final long nextTicketNumber;
+    private final long offsetsPosition;
+    private final long hashPosition;
+
+    private TicketSnapshot(Path file, FileChannel channel) throws IOException {
+        this.file = file;
+        this.channel = channel;
+        long length = channel.size();
+        if (length < HEADER_SIZE) {
+            throw new IOException("Snapshot file is too short: " + file);
+        }
+        int regionCount = (int) ((length - 1) >>> REGION_BITS) + 1;
+        regions = new MappedByteBuffer[regionCount];
+        for (int i = 0; i < regionCount; i++) {
+            long start = (long) i << REGION_BITS;
+            long size = Math.min(length - start, (1L << REGION_BITS) + MAX_RECORD_SIZE);
+            regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+        }
+
+        ByteBuffer header = regions[0];
+        if (header.getInt(0) != MAGIC) {
+            throw new IOException("Not a ticket snapshot: " + file);
+        }
+        int version = header.getInt(4);
+        if (version < 1 || version > VERSION) {
+            throw new IOException("Unsupported snapshot version " + version + " in " + file);
+        }
+        count = header.getInt(8);
+        int hashCapacity = header.getInt(12);
+        sequence = header.getLong(16);
+        nextTicketNumber = header.getLong(24);
+        offsetsPosition = header.getLong(32);
+        hashPosition = header.getLong(40);
+        if (header.getLong(48) != length || count < 0 || Integer.bitCount(hashCapacity) != 1
+                || offsetsPosition + 8L * count > length || hashPosition + 4L * hashCapacity > length) {
+            throw new IOException("Snapshot file is truncated or corrupt: " + file);
+        }
+        hashMask = hashCapacity - 1;
+    }
+
+    /**
+     * Maps a snapshot file for reading. Only the header is read here.
+     */
+    public static TicketSnapshot open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return new TicketSnapshot(file, channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // ==================== Writing ====================
+
+    /**
+     * Streams every ticket of the source into a new snapshot file, returns the number of tickets written
+     * The source is visited once without being copied, so bookings and cancellations carry on meanwhile
+     * (tickets booked or cancelled while it runs may or may not be included). The file is written next to
+     * the target, fsynced and then moved into place, so readers never see a half-written snapshot.
+     *
+     * nextTicketNumber is asked for after the last ticket was written; sequence is the journal
+     * position the snapshot covers (0 outside a journal).
+     */
+    public static int write(Path file, long sequence, Source tickets, LongSupplier nextTicketNumber)
+            throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        int count;
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            RecordWriter writer = new RecordWriter(channel);
+            tickets.forEachTicket(writer);
+            writer.finish(sequence, nextTicketNumber.getAsLong());
+            count = writer.count;
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return count;
+    }
+
+    /**
+     * Encodes tickets into a buffer that is written out whenever it fills up,
+     * remembering each record's position and ID hash for the tables at the end of the file
+     */
+    private static final class RecordWriter implements Consumer<Ticket> {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(IO_BUFFER_SIZE);
+        private long position = HEADER_SIZE; // file position of the buffer's first byte
+        private long[] offsets = new long[1024];
+        private int[] hashes = new int[1024];
+        private long maxTicketNumber = -1; // highest sequence number, without the journey date slot
+        private int count;
+
+        RecordWriter(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public void accept(Ticket ticket) {
+            try {
+                if (buffer.remaining() < MAX_RECORD_SIZE) {
+                    flush();
+                }
+                if (count == offsets.length) {
+                    if (count == Integer.MAX_VALUE - 8) {
+                        throw new IllegalStateException("Too many tickets for one snapshot!");
+                    }
+                    int capacity = (int) Math.min(Integer.MAX_VALUE - 8L, count * 2L);
+                    offsets = Arrays.copyOf(offsets, capacity);
+                    hashes = Arrays.copyOf(hashes, capacity);
+                }
+                offsets[count] = position + buffer.position();
+                hashes[count] = ticket.getTicketId().hashCode(); // already normalized
+                count++;
+                encode(buffer, ticket);
+                maxTicketNumber = Math.max(maxTicketNumber, JourneyDateStore.sequenceOf(ticket.getTicketNumber()));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Snapshot write failed: " + e.getMessage(), e);
+            }
+        }
+
+        /**
+         * Writes the offset and hash tables, then the header
+         */
+        void finish(long sequence, long nextTicketNumber) throws IOException {
+            long offsetsPosition = position + buffer.position();
+            for (int i = 0; i < count; i++) {
+                if (buffer.remaining() < Long.BYTES) {
+                    flush();
+                }
+                buffer.putLong(offsets[i]);
+            }
+
+            long hashPosition = position + buffer.position();
+            int capacity = hashCapacity(count);
+            int[] table = new int[capacity];
+            int mask = capacity - 1;
+            for (int i = 0; i < count; i++) {
+                int slot = slotOf(hashes[i], mask);
+                while (table[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = i + 1;
+            }
+            for (int entry : table) {
+                if (buffer.remaining() < Integer.BYTES) {
+                    flush();
+                }
+                buffer.putInt(entry);
+            }
+            flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putInt(count).putInt(capacity)
+                    .putLong(sequence)
+                    .putLong(Math.max(nextTicketNumber, maxTicketNumber + 1))
+                    .putLong(offsetsPosition)
+                    .putLong(hashPosition)
+                    .putLong(position);
+            header.clear();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            buffer.clear();
+        }
+    }
+
+    private static void encode(ByteBuffer out, Ticket ticket) {
+        int start = out.position();
+        Seat seat = ticket.getSeat();
+        out.putInt(0); // length placeholder
+        out.put(ticket instanceof ACTicket ? KIND_AC : KIND_SLEEPER);
+        out.put((byte) TravelClass.of(ticket).ordinal());
+        out.put((byte) ticket.getAge());
+        out.putShort((short) (seat == null ? -1 : seat.getCoachIndex()));
+        out.putShort((short) (seat == null ? -1 : seat.getBerthNumber()));
+        out.putDouble(ticket.getBaseFare());
+        putString(out, ticket.getTicketId());
+        putString(out, ticket.getPassengerName());
+        putString(out, ticket.getTrainNumber());
+        if (ticket instanceof ACTicket) {
+            ACTicket acTicket = (ACTicket) ticket;
+            putString(out, acTicket.getAcTier());
+            out.putDouble(acTicket.getAcCharge());
+        } else if (ticket instanceof SleeperTicket) {
+            putString(out, ((SleeperTicket) ticket).getCoachType());
+        } else {
+            throw new IllegalArgumentException("Unsupported ticket type: " + ticket.getClass().getName());
+        }
+        LocalDate journeyDate = ticket.getJourneyDate();
+        out.putLong(journeyDate == null ? NO_JOURNEY_DATE : journeyDate.toEpochDay());
+        out.putInt(start, out.position() - start - Integer.BYTES);
+    }
+
+    private static void putString(ByteBuffer out, String value) {
+        byte[] bytes = value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_STRING_BYTES) {
+            throw new IllegalArgumentException("Text too long for a snapshot: " + bytes.length + " bytes");
+        }
+        out.putShort((short) bytes.length);
+        out.put(bytes);
+    }
+
+    // ==================== Reading ====================
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Journal sequence number the snapshot covers, 0 for a plain export
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Ticket number to hand out next, past every ticket in the snapshot
+     */
+    public long getNextTicketNumber() {
+        return nextTicketNumber;
+    }
+
+    /**
+     * Decodes the index-th ticket in file order
+     */
+    public Ticket get(int index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Ticket " + index + " of " + count);
+        }
+        return decode(offsetOf(index));
+    }
+
+    /**
+     * Looks a ticket up by ID (case-insensitive) without decoding any other ticket, null if absent
+     */
+    public Ticket find(String ticketId) {
+        String id = TicketRepository.normalizeTicketId(ticketId);
+        for (int slot = slotOf(id.hashCode(), hashMask); ; slot = (slot + 1) & hashMask) {
+            long position = hashPosition + 4L * slot;
+            int entry = region(position).getInt(indexIn(position));
+            if (entry == 0) {
+                return null;
+            }
+            long offset = offsetOf(entry - 1);
+            // The ticket ID is the first string, right after the fixed-size fields
+            if (TicketRepository.normalizeTicketId(readString(offset + Integer.BYTES + FIXED_FIELDS_SIZE)).equals(id)) {
+                return decode(offset);
+            }
+        }
+    }
+
+    /**
+     * Visits every ticket in file order, decoding each one only when it is reached
+     */
+    public void forEachTicket(Consumer<? super Ticket> action) {
+        long position = HEADER_SIZE;
+        for (int i = 0; i < count; i++) {
+            action.accept(decode(position));
+            position += Integer.BYTES + region(position).getInt(indexIn(position));
+        }
+    }
+
+    /**
+     * Visits every ticket from several threads of the common fork/join pool, in no particular order
+     * The action must be thread-safe; this returns once every ticket has been visited
+     */
+    public void parallelForEachTicket(Consumer<? super Ticket> action) {
+        IntStream.range(0, count).parallel().forEach(index -> action.accept(decode(offsetOf(index))));
+    }
+
+    @Override
+    public Iterator<Ticket> iterator() {
+        return new Iterator<Ticket>() {
+            private long position = HEADER_SIZE;
+            private int remaining = count;
+
+            @Override
+            public boolean hasNext() {
+                return remaining > 0;
+            }
+
+            @Override
+            public Ticket next() {
+                if (remaining == 0) {
+                    throw new NoSuchElementException();
+                }
+                Ticket ticket = decode(position);
+                position += Integer.BYTES + region(position).getInt(indexIn(position));
+                remaining--;
+                return ticket;
+            }
+        };
+    }
+
+    /**
+     * Closes the file. The mapping itself is released once the snapshot is garbage collected.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    @Override
+    public String toString() {
+        return "TicketSnapshot[" + file + ", " + count + " tickets]";
+    }
+
+    private Ticket decode(long position) {
+        ByteBuffer region = region(position);
+        int at = indexIn(position) + Integer.BYTES;
+        byte kind = region.get(at);
+        TravelClass travelClass = TravelClass.values()[region.get(at + 1)];
+        int age = region.get(at + 2) & 0xFF;
+        int coachIndex = region.getShort(at + 3);
+        int berthNumber = region.getShort(at + 5);
+        double baseFare = region.getDouble(at + 7);
+
+        long next = position + Integer.BYTES + FIXED_FIELDS_SIZE;
+        String ticketId = readString(next);
+        next += 2 + stringLength(next);
+        String passengerName = readString(next);
+        next += 2 + stringLength(next);
+        String trainNumber = readString(next);
+        next += 2 + stringLength(next);
+
+        long ticketNumber = ReservationService.parseTicketNumber(ticketId);
+        if (ticketNumber < 0) {
+            throw new IllegalStateException("Unrecognised ticket ID " + ticketId + " in " + file);
+        }
+        // Class-specific fields, then the journey date
+        String acTier = null;
+        double acCharge = 0;
+        String coachType = null;
+        if (kind == KIND_AC) {
+            acTier = readString(next);
+            next += 2 + stringLength(next);
+            acCharge = region(next).getDouble(indexIn(next));
+            next += Double.BYTES;
+        } else if (kind == KIND_SLEEPER) {
+            coachType = readString(next);
+            next += 2 + stringLength(next);
+        } else {
+            throw new IllegalStateException("Unknown ticket kind " + kind + " in " + file);
+        }
+        long journeyDay = region(next).getLong(indexIn(next));
+        LocalDate journeyDate = journeyDay == NO_JOURNEY_DATE ? null : LocalDate.ofEpochDay(journeyDay);
+        Ticket ticket = kind == KIND_AC
+                ? new ACTicket(ticketNumber, passengerName, age, trainNumber, journeyDate, baseFare, acTier, acCharge)
+                : new SleeperTicket(ticketNumber, passengerName, age, trainNumber, journeyDate, baseFare, coachType);
+        if (coachIndex >= 0) {
+            ticket.setSeat(new Seat(travelClass, coachIndex, berthNumber));
+        }
+        return ticket;
+    }
+
+    private String readString(long position) {
+        int length = stringLength(position);
+        byte[] bytes = new byte[length];
+        region(position).get(indexIn(position) + 2, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int stringLength(long position) {
+        return region(position).getShort(indexIn(position)) & 0xFFFF;
+    }
+
+    private long offsetOf(int index) {
+        long position = offsetsPosition + 8L * index;
+        return region(position).getLong(indexIn(position));
+    }
+
+    private ByteBuffer region(long position) {
+        return regions[(int) (position >>> REGION_BITS)];
+    }
+
+    private static int indexIn(long position) {
+        return (int) (position & REGION_MASK);
+    }
+
+    private static int hashCapacity(int count) {
+        long capacity = Long.highestOneBit(Math.max(2L, count * 4L / 3)) << 1; // load factor at most 3/4
+        if (capacity > MAX_HASH_CAPACITY) {
+            throw new IllegalStateException("Too many tickets for one snapshot: " + count);
+        }
+        return (int) capacity;
+    }
+
+    private static int slotOf(int hash, int mask) {
+        long h = hash * 0x9E3779B97F4A7C15L; // Fibonacci hashing, as in LongIntHashMap
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
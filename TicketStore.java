@@ -0,0 +1,108 @@
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Storage for live tickets, with lookup by ID, train and passenger
+ * Implementations must be safe for concurrent use by ReservationService
+ */
+public interface TicketStore {
+    /**
+     * Adds a ticket, throws IllegalStateException if its ID is already stored
+     */
+    void add(Ticket ticket);
+
+    /**
+     * Finds a ticket by number (TKT1000 -> 1000), returns null if not found
+     */
+    Ticket findById(long ticketNumber);
+
+    /**
+     * Removes a ticket, returns the removed ticket or null
+     */
+    Ticket remove(long ticketNumber);
+
+    /**
+     * Allocates a berth to a stored ticket that had none (a waitlisted passenger being promoted)
+     * Returns false if the ticket is not stored, e.g. it was cancelled meanwhile
+     */
+    boolean assignSeat(long ticketNumber, Seat seat);
+
+    /**
+     * Removes every ticket booked on a train in one pass, returns the removed tickets
+     */
+    List<Ticket> removeByTrain(String trainNumber);
+
+    List<Ticket> findByTrain(String trainNumber);
+
+    List<Ticket> findByPassenger(String passengerName);
+
+    List<Ticket> findAll();
+
+    /**
+     * Visits every live ticket, without first copying them all into one list
+     * Weakly consistent: tickets booked or cancelled meanwhile may or may not be visited
+     */
+    default void forEachTicket(Consumer<? super Ticket> action) {
+        findAll().forEach(action);
+    }
+
+    int size();
+
+    boolean isEmpty();
+
+    /**
+     * Reclaims the space of up to maxTickets removed tickets, returns how many were reclaimed
+     * Stores that free space on removal have nothing to do
+     */
+    default int compact(int maxTickets) {
+        return 0;
+    }
+
+    /**
+     * Number of removed tickets whose space has not been reclaimed yet
+     */
+    default int getPendingCompaction() {
+        return 0;
+    }
+
+    /**
+     * Store-specific figures for the console metrics view (nothing by default)
+     */
+    default void appendSummary(StringBuilder out) {
+    }
+
+    /**
+     * Store-specific metrics in Prometheus text format (nothing by default)
+     */
+    default void appendPrometheus(StringBuilder out) {
+    }
+
+    /**
+     * Creates a store by mode name: "objects" (default, hash-indexed Ticket objects),
+     * "columnar" (compact primitive columns), "offheap" (columnar, outside the Java heap) or
+     * "tiered" (the most recently used tickets in memory, the rest spilled to disk)
+     */
+    static TicketStore create(String mode) {
+        return create(mode, TieredTicketStore.DEFAULT_HOT_CAPACITY);
+    }
+
+    /**
+     * Same as create(mode), with the number of tickets a tiered store keeps in memory
+     */
+    static TicketStore create(String mode, int hotCapacity) {
+        if (mode == null || mode.equalsIgnoreCase("objects")) {
+            return new TicketRepository();
+        }
+        if (mode.equalsIgnoreCase("columnar")) {
+            return new ColumnarTicketStore(false);
+        }
+        if (mode.equalsIgnoreCase("offheap")) {
+            return new ColumnarTicketStore(true);
+        }
+        if (mode.equalsIgnoreCase("tiered")) {
+            return TieredTicketStore.createTemporary(hotCapacity);
+        }
+        throw new IllegalArgumentException("Unknown store mode: " + mode
+                + " (expected objects, columnar, offheap or tiered)");
+    }
+}
@@ -0,0 +1,589 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Two-tier ticket store: recently used tickets in memory, the rest in spill files on local disk
+ *
+ * The hot tier is an LRU cache of Ticket objects holding at most hotCapacity tickets. The least
+ * recently used ticket beyond that is written to a fixed-size record (RECORD_SIZE bytes, journal
+ * encoding) in a spill file, and only its index entry stays on the heap: ticket number -> record,
+ * plus the record's ticket number and train/passenger hashes - about 30 bytes per cold ticket.
+ * findById() reads a cold ticket back and caches it again; the record is kept as a clean copy, so
+ * evicting it a second time costs no write. Records of removed tickets are reused, so the files only
+ * grow to the peak number of cold tickets. Scans (train, passenger, every ticket) read cold records
+ * directly and do not disturb the cache.
+ *
+ * Tickets are spread over STRIPES stripes by ticket number, each with its own lock, LRU order and
+ * spill file, so lookups on different stripes never wait for each other's disk reads.
+ * The spill files are a cache, not a copy for recovery (that is the journal's job): they are deleted
+ * when the store is closed or the JVM exits.
+ *
+ * Like ColumnarTicketStore, tickets read back from disk are new objects - only assignSeat() changes a
+ * stored ticket. A ticket too large for a record (a very long name) stays in memory.
+ */
+public class TieredTicketStore implements TicketStore, Closeable {
+    public static final int DEFAULT_HOT_CAPACITY = 100_000;
+    static final int RECORD_SIZE = 256; // [short length][journal-encoded ticket], zero padded
+    private static final int STRIPES = 16;
+    private static final int SCAN_BATCH = 512; // cold records read per lock acquisition during a scan
+    private static final int FREE = -1;
+
+    private final Path directory;
+    private final int stripeCapacity;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final LongAdder hits = new LongAdder();   // found in memory
+    private final LongAdder misses = new LongAdder(); // read back from disk
+    private final LongAdder spills = new LongAdder(); // written to disk on eviction
+
+    public TieredTicketStore(Path directory, int hotCapacity) throws IOException {
+        if (hotCapacity < STRIPES) {
+            throw new IllegalArgumentException("The hot tier needs room for at least " + STRIPES + " tickets!");
+        }
+        this.directory = directory;
+        this.stripeCapacity = hotCapacity / STRIPES;
+        Files.createDirectories(directory);
+        try {
+            for (int i = 0; i < STRIPES; i++) {
+                stripes[i] = new Stripe(FileChannel.open(directory.resolve(String.format(Locale.ROOT,
+                        "cold-%02d.dat", i)), StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                        StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE));
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * A store spilling into a new temporary directory, removed again when the JVM exits
+     */
+    static TieredTicketStore createTemporary(int hotCapacity) {
+        try {
+            Path directory = Files.createTempDirectory("railway-cold-");
+            directory.toFile().deleteOnExit();
+            return new TieredTicketStore(directory, hotCapacity);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create spill files: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void add(Ticket ticket) {
+        long number = ticket.getTicketNumber();
+        Stripe stripe = stripeOf(number);
+        synchronized (stripe) {
+            if (stripe.contains(number)) {
+                throw new IllegalStateException("Duplicate ticket ID: " + ticket.getTicketId());
+            }
+            stripe.hot.put(number, ticket);
+            stripe.size++;
+            evictOverflow(stripe);
+        }
+    }
+
+    /**
+     * Serves hot tickets from memory; a cold one is read from disk and becomes the most recently used
+     */
+    @Override
+    public Ticket findById(long number) {
+        Stripe stripe = stripeOf(number);
+        synchronized (stripe) {
+            Ticket ticket = stripe.hot.get(number);
+            if (ticket == null) {
+                ticket = stripe.pinned.get(number);
+            }
+            if (ticket != null) {
+                hits.increment();
+                return ticket;
+            }
+            int record = stripe.cold.get(number);
+            if (record == LongIntHashMap.NO_VALUE) {
+                return null;
+            }
+            misses.increment();
+            ticket = stripe.read(record);
+            stripe.hot.put(number, ticket); // the record stays as its clean copy
+            evictOverflow(stripe);
+            return ticket;
+        }
+    }
+
+    @Override
+    public Ticket remove(long number) {
+        Stripe stripe = stripeOf(number);
+        synchronized (stripe) {
+            return removeLocked(stripe, number);
+        }
+    }
+
+    /**
+     * Sets the berth on the cached ticket and, if it has a record, in the record's seat field
+     */
+    @Override
+    public boolean assignSeat(long number, Seat seat) {
+        Stripe stripe = stripeOf(number);
+        synchronized (stripe) {
+            Ticket ticket = stripe.hot.get(number);
+            if (ticket == null) {
+                ticket = stripe.pinned.get(number);
+            }
+            int record = stripe.cold.get(number);
+            if (ticket == null && record == LongIntHashMap.NO_VALUE) {
+                return false;
+            }
+            if (ticket != null) {
+                ticket.setSeat(seat);
+            }
+            if (record != LongIntHashMap.NO_VALUE) {
+                stripe.writeSeat(record, seat);
+            }
+            return true;
+        }
+    }
+
+    @Override
+    public List<Ticket> removeByTrain(String trainNumber) {
+        String key = TicketRepository.normalizeTrainNumber(trainNumber);
+        List<Ticket> removed = new ArrayList<>();
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                for (Ticket ticket : matching(stripe, key, true)) {
+                    removed.add(removeLocked(stripe, ticket.getTicketNumber()));
+                }
+            }
+        }
+        return removed;
+    }
+
+    @Override
+    public List<Ticket> findByTrain(String trainNumber) {
+        String key = TicketRepository.normalizeTrainNumber(trainNumber);
+        List<Ticket> tickets = new ArrayList<>();
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                tickets.addAll(matching(stripe, key, true));
+            }
+        }
+        return tickets;
+    }
+
+    @Override
+    public List<Ticket> findByPassenger(String passengerName) {
+        String key = TicketRepository.normalizePassengerName(passengerName);
+        List<Ticket> tickets = new ArrayList<>();
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                tickets.addAll(matching(stripe, key, false));
+            }
+        }
+        return tickets;
+    }
+
+    @Override
+    public List<Ticket> findAll() {
+        List<Ticket> tickets = new ArrayList<>(size());
+        forEachTicket(tickets::add);
+        return tickets;
+    }
+
+    /**
+     * Visits one stripe at a time: its cached tickets, then its cold records in batches of SCAN_BATCH,
+     * each batch read under the stripe's lock but visited outside it
+     */
+    @Override
+    public void forEachTicket(Consumer<? super Ticket> action) {
+        List<Ticket> batch = new ArrayList<>(SCAN_BATCH);
+        for (Stripe stripe : stripes) {
+            int[] records;
+            long[] numbers;
+            int count = 0;
+            synchronized (stripe) {
+                batch.addAll(stripe.hot.values());
+                batch.addAll(stripe.pinned.values());
+                records = new int[stripe.cold.size()];
+                numbers = new long[records.length];
+                for (int record = 0; record < stripe.recordCount; record++) {
+                    long number = stripe.recordNumbers[record];
+                    if (number != FREE && !stripe.hot.containsKey(number)) {
+                        records[count] = record;
+                        numbers[count++] = number;
+                    }
+                }
+            }
+            batch.forEach(action);
+            batch.clear();
+            for (int start = 0; start < count; start += SCAN_BATCH) {
+                synchronized (stripe) {
+                    for (int i = start; i < Math.min(count, start + SCAN_BATCH); i++) {
+                        // Skipped if the ticket was removed meanwhile and its record reused
+                        if (stripe.recordNumbers[records[i]] == numbers[i]) {
+                            batch.add(stripe.read(records[i]));
+                        }
+                    }
+                }
+                batch.forEach(action);
+                batch.clear();
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size;
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    // ==================== Statistics ====================
+
+    /**
+     * Lookups served from memory
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Lookups that had to read the ticket from disk
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Tickets written to disk when they dropped out of the hot tier
+     */
+    public long getSpills() {
+        return spills.sum();
+    }
+
+    public int getHotCapacity() {
+        return stripeCapacity * STRIPES;
+    }
+
+    /**
+     * Tickets currently in memory (the hot tier plus tickets too large to spill)
+     */
+    public int getHotCount() {
+        int count = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                count += stripe.hot.size() + stripe.pinned.size();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Tickets with a record on disk (some of them are also cached)
+     */
+    public int getColdCount() {
+        int count = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                count += stripe.cold.size();
+            }
+        }
+        return count;
+    }
+
+    public long getSpillFileBytes() {
+        long bytes = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                bytes += (long) stripe.recordCount * RECORD_SIZE;
+            }
+        }
+        return bytes;
+    }
+
+    @Override
+    public void appendSummary(StringBuilder out) {
+        long hitCount = getHits();
+        long missCount = getMisses();
+        out.append("🗄️  Hot tickets         : ").append(getHotCount()).append(" of ").append(getHotCapacity())
+                .append(" (").append(getColdCount()).append(" on disk, ")
+                .append(getSpillFileBytes() / 1024).append(" KiB)\n");
+        out.append("🎯 Cache hits / misses : ").append(hitCount).append(" / ").append(missCount)
+                .append(String.format(Locale.ROOT, " (%.1f%% hits)", hitCount + missCount == 0 ? 0.0
+                        : 100.0 * hitCount / (hitCount + missCount))).append('\n');
+    }
+
+    @Override
+    public void appendPrometheus(StringBuilder out) {
+        out.append("# HELP railway_store_lookups_total Ticket lookups by tier that answered them\n");
+        out.append("# TYPE railway_store_lookups_total counter\n");
+        out.append("railway_store_lookups_total{tier=\"hot\"} ").append(getHits()).append('\n');
+        out.append("railway_store_lookups_total{tier=\"cold\"} ").append(getMisses()).append('\n');
+        out.append("# HELP railway_store_spills_total Tickets written to the spill files on eviction\n");
+        out.append("# TYPE railway_store_spills_total counter\n");
+        out.append("railway_store_spills_total ").append(getSpills()).append('\n');
+        out.append("# HELP railway_store_tickets Tickets held in memory and on disk\n");
+        out.append("# TYPE railway_store_tickets gauge\n");
+        out.append("railway_store_tickets{tier=\"hot\"} ").append(getHotCount()).append('\n');
+        out.append("railway_store_tickets{tier=\"cold\"} ").append(getColdCount()).append('\n');
+        out.append("# HELP railway_store_hot_capacity Tickets the hot tier holds before spilling\n");
+        out.append("# TYPE railway_store_hot_capacity gauge\n");
+        out.append("railway_store_hot_capacity ").append(getHotCapacity()).append('\n');
+    }
+
+    /**
+     * Closes (and so deletes) the spill files - the store must not be used afterwards
+     */
+    @Override
+    public void close() {
+        for (Stripe stripe : stripes) {
+            if (stripe != null) {
+                synchronized (stripe) {
+                    try {
+                        stripe.file.close();
+                    } catch (IOException e) {
+                        System.err.println("⚠️  Could not close spill file: " + e.getMessage());
+                    }
+                }
+            }
+        }
+        try {
+            Files.deleteIfExists(directory);
+        } catch (IOException e) {
+            // not empty - left for deleteOnExit
+        }
+    }
+
+    // ==================== Internals (caller holds the stripe's lock) ====================
+
+    private Ticket removeLocked(Stripe stripe, long number) {
+        Ticket ticket = stripe.hot.remove(number);
+        if (ticket == null) {
+            ticket = stripe.pinned.remove(number);
+        }
+        int record = stripe.cold.remove(number);
+        if (record != LongIntHashMap.NO_VALUE) {
+            if (ticket == null) {
+                ticket = stripe.read(record);
+            }
+            stripe.freeRecord(record);
+        }
+        if (ticket != null) {
+            stripe.size--;
+        }
+        return ticket;
+    }
+
+    /**
+     * Moves least recently used tickets out of the hot tier until it fits its capacity again
+     */
+    private void evictOverflow(Stripe stripe) {
+        Iterator<Map.Entry<Long, Ticket>> eldest = stripe.hot.entrySet().iterator();
+        while (stripe.hot.size() > stripeCapacity) {
+            Map.Entry<Long, Ticket> entry = eldest.next();
+            long number = entry.getKey();
+            Ticket ticket = entry.getValue();
+            eldest.remove();
+            if (stripe.cold.get(number) != LongIntHashMap.NO_VALUE) {
+                continue; // already has a clean copy on disk
+            }
+            if (stripe.spill(number, ticket)) {
+                spills.increment();
+            } else {
+                stripe.pinned.put(number, ticket);
+            }
+        }
+    }
+
+    /**
+     * Hot, pinned and cold tickets whose train (byTrain) or passenger name matches a normalized key
+     * Cold records are filtered by hash first and only the candidates are read
+     */
+    private static List<Ticket> matching(Stripe stripe, String key, boolean byTrain) {
+        List<Ticket> tickets = new ArrayList<>();
+        for (Ticket ticket : stripe.hot.values()) {
+            if (matches(ticket, key, byTrain)) {
+                tickets.add(ticket);
+            }
+        }
+        for (Ticket ticket : stripe.pinned.values()) {
+            if (matches(ticket, key, byTrain)) {
+                tickets.add(ticket);
+            }
+        }
+        int hash = key.hashCode();
+        int[] hashes = byTrain ? stripe.trainHashes : stripe.nameHashes;
+        for (int record = 0; record < stripe.recordCount; record++) {
+            long number = stripe.recordNumbers[record];
+            if (number != FREE && hashes[record] == hash && !stripe.hot.containsKey(number)) {
+                Ticket ticket = stripe.read(record);
+                if (matches(ticket, key, byTrain)) {
+                    tickets.add(ticket);
+                }
+            }
+        }
+        return tickets;
+    }
+
+    private static boolean matches(Ticket ticket, String key, boolean byTrain) {
+        return byTrain ? TicketRepository.normalizeTrainNumber(ticket.getTrainNumber()).equals(key)
+                : TicketRepository.normalizePassengerName(ticket.getPassengerName()).equals(key);
+    }
+
+    private Stripe stripeOf(long number) {
+        return stripes[(int) ((number * 0x9E3779B97F4A7C15L) >>> 60)];
+    }
+
+    /**
+     * One lock's worth of the store: LRU hot map, oversized tickets and a spill file of records
+     */
+    private static final class Stripe {
+        final LinkedHashMap<Long, Ticket> hot = new LinkedHashMap<>(64, 0.75f, true); // access order
+        final Map<Long, Ticket> pinned = new HashMap<>(); // too large for a record
+        final LongIntHashMap cold = new LongIntHashMap(1024); // ticket number -> record
+        final FileChannel file;
+        final ByteArrayOutputStream encoded = new ByteArrayOutputStream(RECORD_SIZE);
+        final DataOutputStream encoder = new DataOutputStream(encoded);
+        long[] recordNumbers = new long[64]; // record -> ticket number, FREE if unused
+        int[] trainHashes = new int[64];
+        int[] nameHashes = new int[64];
+        int recordCount; // records below this have been used at least once
+        int[] freeRecords = new int[16];
+        int freeCount;
+        int size; // distinct tickets, wherever they are
+
+        Stripe(FileChannel file) {
+            this.file = file;
+        }
+
+        boolean contains(long number) {
+            return hot.containsKey(number) || pinned.containsKey(number)
+                    || cold.get(number) != LongIntHashMap.NO_VALUE;
+        }
+
+        /**
+         * Writes a ticket to a free record, false if it does not fit in one
+         */
+        boolean spill(long number, Ticket ticket) {
+            try {
+                encoded.reset();
+                encoded.write(0);
+                encoded.write(0); // length, filled in below
+                BookingJournal.writeTicket(encoder, ticket);
+                encoder.flush();
+            } catch (IOException e) {
+                return false; // a string over 64 KiB of UTF-8 - nothing else can fail in memory
+            }
+            if (encoded.size() > RECORD_SIZE) {
+                return false;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE);
+            buffer.put(encoded.toByteArray());
+            buffer.putShort(0, (short) (encoded.size() - 2));
+            buffer.clear();
+            int record = allocateRecord();
+            try {
+                writeFully(buffer, (long) record * RECORD_SIZE);
+            } catch (IOException e) {
+                freeRecord(record);
+                throw new UncheckedIOException("Could not write spill file: " + e.getMessage(), e);
+            }
+            recordNumbers[record] = number;
+            trainHashes[record] = TicketRepository.normalizeTrainNumber(ticket.getTrainNumber()).hashCode();
+            nameHashes[record] = TicketRepository.normalizePassengerName(ticket.getPassengerName()).hashCode();
+            cold.put(number, record);
+            return true;
+        }
+
+        Ticket read(int record) {
+            ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE);
+            try {
+                readFully(buffer, (long) record * RECORD_SIZE);
+                int length = buffer.getShort(0);
+                return BookingJournal.readTicket(new DataInputStream(new ByteArrayInputStream(buffer.array(),
+                        2, length)));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not read spill file: " + e.getMessage(), e);
+            }
+        }
+
+        /**
+         * Overwrites coach and berth, the two shorts before the encoded ticket's journey date (a long)
+         */
+        void writeSeat(int record, Seat seat) {
+            long position = (long) record * RECORD_SIZE;
+            try {
+                ByteBuffer length = ByteBuffer.allocate(2);
+                readFully(length, position);
+                ByteBuffer fields = ByteBuffer.allocate(4);
+                fields.putShort((short) (seat == null ? -1 : seat.getCoachIndex()));
+                fields.putShort((short) (seat == null ? -1 : seat.getBerthNumber()));
+                fields.flip();
+                writeFully(fields, position + 2 + length.getShort(0) - 12);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not write spill file: " + e.getMessage(), e);
+            }
+        }
+
+        int allocateRecord() {
+            if (freeCount > 0) {
+                return freeRecords[--freeCount];
+            }
+            if (recordCount == recordNumbers.length) {
+                int capacity = recordNumbers.length * 2;
+                recordNumbers = Arrays.copyOf(recordNumbers, capacity);
+                trainHashes = Arrays.copyOf(trainHashes, capacity);
+                nameHashes = Arrays.copyOf(nameHashes, capacity);
+            }
+            return recordCount++;
+        }
+
+        void freeRecord(int record) {
+            recordNumbers[record] = FREE;
+            if (freeCount == freeRecords.length) {
+                freeRecords = Arrays.copyOf(freeRecords, freeCount * 2);
+            }
+            freeRecords[freeCount++] = record;
+        }
+
+        private void readFully(ByteBuffer buffer, long position) throws IOException {
+            while (buffer.hasRemaining()) {
+                if (file.read(buffer, position + buffer.position()) < 0) {
+                    throw new IOException("Spill file ends inside a record");
+                }
+            }
+            buffer.flip();
+        }
+
+        private void writeFully(ByteBuffer buffer, long position) throws IOException {
+            while (buffer.hasRemaining()) {
+                file.write(buffer, position + buffer.position());
+            }
+        }
+    }
+}
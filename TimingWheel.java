@@ -0,0 +1,139 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hierarchical timing wheel: items are scheduled for a time and handed back once that time has passed
+ *
+ * The finest level has wheelSize buckets of tickMillis each; every coarser level's bucket spans one whole
+ * turn of the level below, and coarser levels are only created when something is scheduled that far ahead.
+ * An item sits in the finest level whose turn reaches its deadline and moves down a level whenever the
+ * clock enters its bucket, so it is touched at most once per level. Scheduling is constant time, and
+ * advancing the clock costs one step per bucket passed plus one per item moved or due - however many
+ * items are waiting. Not thread-safe: the owner synchronizes.
+ */
+public class TimingWheel<T> {
+    private final Level<T> finest;
+    private final List<Entry<T>> current = new ArrayList<>(); // due later within the tick in progress
+    private long now;
+    private int size;
+
+    /**
+     * A wheel whose clock starts at startMillis
+     */
+    public TimingWheel(long tickMillis, int wheelSize, long startMillis) {
+        if (tickMillis <= 0 || wheelSize < 2) {
+            throw new IllegalArgumentException("A timing wheel needs a positive tick and at least 2 buckets!");
+        }
+        this.now = startMillis;
+        this.finest = new Level<>(tickMillis, wheelSize, startMillis);
+    }
+
+    /**
+     * Schedules an item - it is returned by the first advance() to a time at or after deadlineMillis
+     */
+    public void schedule(T item, long deadlineMillis) {
+        Entry<T> entry = new Entry<>(item, deadlineMillis);
+        if (deadlineMillis <= now || !finest.add(entry)) {
+            current.add(entry);
+        }
+        size++;
+    }
+
+    /**
+     * Moves the clock forward to nowMillis and returns the items that fell due, in no particular order
+     * The clock never goes back: an earlier time only returns what was already due
+     */
+    public List<T> advance(long nowMillis) {
+        now = Math.max(now, nowMillis);
+        List<Entry<T>> moved = new ArrayList<>(current);
+        current.clear();
+        finest.advance(now, moved);
+
+        List<T> due = new ArrayList<>();
+        for (Entry<T> entry : moved) {
+            if (entry.deadline <= now) {
+                due.add(entry.item);
+            } else if (!finest.add(entry)) {
+                current.add(entry);
+            }
+        }
+        size -= due.size();
+        return due;
+    }
+
+    /**
+     * Items scheduled and not returned yet
+     */
+    public int size() {
+        return size;
+    }
+
+    private static final class Entry<T> {
+        final T item;
+        final long deadline;
+
+        Entry(T item, long deadline) {
+            this.item = item;
+            this.deadline = deadline;
+        }
+    }
+
+    /**
+     * One level: bucket i holds the entries due in the i-th tick of the turn that starts after currentTime
+     */
+    private static final class Level<T> {
+        final long tick;
+        final List<List<Entry<T>>> buckets;
+        long currentTime; // start of the tick in progress on this level
+        Level<T> coarser;
+
+        Level(long tick, int wheelSize, long startMillis) {
+            this.tick = tick;
+            this.buckets = new ArrayList<>(wheelSize);
+            for (int i = 0; i < wheelSize; i++) {
+                buckets.add(new ArrayList<>());
+            }
+            this.currentTime = startMillis - Math.floorMod(startMillis, tick);
+        }
+
+        /**
+         * Puts an entry in this level or a coarser one, false if it is due within the tick in progress
+         */
+        boolean add(Entry<T> entry) {
+            if (entry.deadline < currentTime + tick) {
+                return false;
+            }
+            int wheelSize = buckets.size();
+            if (entry.deadline < currentTime + tick * wheelSize) {
+                buckets.get((int) Math.floorMod(entry.deadline / tick, (long) wheelSize)).add(entry);
+                return true;
+            }
+            if (coarser == null) {
+                coarser = new Level<>(tick * wheelSize, wheelSize, currentTime);
+            }
+            return coarser.add(entry);
+        }
+
+        /**
+         * Moves this level and the coarser ones to the tick holding nowMillis, collecting the entries
+         * of every bucket the clock entered so they can be placed again (or returned as due)
+         */
+        void advance(long nowMillis, List<Entry<T>> moved) {
+            long target = nowMillis - Math.floorMod(nowMillis, tick);
+            if (target > currentTime) {
+                int wheelSize = buckets.size();
+                long steps = Math.min((target - currentTime) / tick, wheelSize);
+                long firstTick = currentTime / tick + 1;
+                for (long step = 0; step < steps; step++) {
+                    List<Entry<T>> bucket = buckets.get((int) Math.floorMod(firstTick + step, (long) wheelSize));
+                    moved.addAll(bucket);
+                    bucket.clear();
+                }
+                currentTime = target;
+            }
+            if (coarser != null) {
+                coarser.advance(nowMillis, moved);
+            }
+        }
+    }
+}
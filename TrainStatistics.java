@@ -0,0 +1,397 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * Revenue and occupancy aggregates per train, kept up to date on every booking and cancellation
+ *
+ * Each train has a fixed set of counters in one AtomicLongArray: revenue and refunds in paise,
+ * cancellations, passengers per class and passengers per age band (child/adult/senior).
+ * Bookings on one train already contend on its seat inventory, so plain atomics are enough there;
+ * the totals over all trains are updated by every thread and use striped counters (LongAdder).
+ * Reading a report copies those counters - constant time, however many tickets the train has.
+ * Amounts are kept in paise so totals add up exactly.
+ *
+ * rebuild() recomputes the same aggregates from the ticket store and refund ledger with fork/join,
+ * for consistency checks. While bookings are running the two may differ by the in-flight ones.
+ * Columnar stores price tickets with the current tariff when they are read, so after a tariff change
+ * their trains only match a rebuild again once repriced (see ReservationService.repriceTrain).
+ */
+public class TrainStatistics {
+    // Counter layout, shared by the live counters, the rebuild and Report
+    private static final int REVENUE = 0;
+    private static final int REFUNDS = 1;
+    private static final int CANCELLATIONS = 2;
+    private static final int CLASS_BASE = 3;
+    private static final int BAND_BASE = CLASS_BASE + TravelClass.values().length;
+    private static final int FIELDS = BAND_BASE + FareEngine.AgeBand.values().length;
+
+    private static final int REBUILD_THRESHOLD = 8192; // tickets per fork/join leaf task
+
+    private final ConcurrentHashMap<String, AtomicLongArray> trains = new ConcurrentHashMap<>();
+    private final LongAdder[] totals = new LongAdder[FIELDS];
+
+    public TrainStatistics() {
+        for (int i = 0; i < FIELDS; i++) {
+            totals[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Adds a booked (or restored) ticket: its fare, class and age band
+     */
+    public void recordBooking(Ticket ticket) {
+        long fare = toPaise(ticket.getFare());
+        int travelClass = CLASS_BASE + TravelClass.of(ticket).ordinal();
+        int band = BAND_BASE + FareEngine.AgeBand.of(ticket.getAge()).ordinal();
+        AtomicLongArray train = countersFor(ticket.getTrainNumber());
+        train.addAndGet(REVENUE, fare);
+        train.incrementAndGet(travelClass);
+        train.incrementAndGet(band);
+        totals[REVENUE].add(fare);
+        totals[travelClass].increment();
+        totals[band].increment();
+    }
+
+    /**
+     * Takes a cancelled ticket out again and adds the refund paid for it
+     */
+    public void recordCancellation(Ticket ticket, double refund) {
+        long fare = toPaise(ticket.getFare());
+        long refundPaise = toPaise(refund);
+        int travelClass = CLASS_BASE + TravelClass.of(ticket).ordinal();
+        int band = BAND_BASE + FareEngine.AgeBand.of(ticket.getAge()).ordinal();
+        AtomicLongArray train = countersFor(ticket.getTrainNumber());
+        train.addAndGet(REVENUE, -fare);
+        train.decrementAndGet(travelClass);
+        train.decrementAndGet(band);
+        train.addAndGet(REFUNDS, refundPaise);
+        train.incrementAndGet(CANCELLATIONS);
+        totals[REVENUE].add(-fare);
+        totals[travelClass].decrement();
+        totals[band].decrement();
+        totals[REFUNDS].add(refundPaise);
+        totals[CANCELLATIONS].increment();
+    }
+
+    /**
+     * Takes out a ticket that moved to another shard node - no refund, not a cancellation
+     */
+    public void recordTransfer(Ticket ticket) {
+        long fare = toPaise(ticket.getFare());
+        int travelClass = CLASS_BASE + TravelClass.of(ticket).ordinal();
+        int band = BAND_BASE + FareEngine.AgeBand.of(ticket.getAge()).ordinal();
+        AtomicLongArray train = countersFor(ticket.getTrainNumber());
+        train.addAndGet(REVENUE, -fare);
+        train.decrementAndGet(travelClass);
+        train.decrementAndGet(band);
+        totals[REVENUE].add(-fare);
+        totals[travelClass].decrement();
+        totals[band].decrement();
+    }
+
+    /**
+     * Re-bases a train's revenue on its repriced fares (in paise)
+     */
+    public void recordRepricing(String trainNumber, long revenuePaise) {
+        AtomicLongArray train = countersFor(trainNumber);
+        long deltaPaise = revenuePaise - train.get(REVENUE);
+        train.addAndGet(REVENUE, deltaPaise);
+        totals[REVENUE].add(deltaPaise);
+    }
+
+    /**
+     * Takes another set of aggregates out of these, e.g. the share of a journey date that is over
+     * Constant time per train, however many tickets the share covers
+     */
+    public void subtract(TrainStatistics share) {
+        share.trains.forEach((trainNumber, counters) -> {
+            AtomicLongArray train = countersFor(trainNumber);
+            for (int i = 0; i < FIELDS; i++) {
+                long value = counters.get(i);
+                if (value != 0) {
+                    train.addAndGet(i, -value);
+                    totals[i].add(-value);
+                }
+            }
+        });
+    }
+
+    /**
+     * Aggregates of one train, null if nothing was ever booked on it
+     */
+    public Report getReport(String trainNumber) {
+        String key = TicketRepository.normalizeTrainNumber(trainNumber);
+        AtomicLongArray train = trains.get(key);
+        return train == null ? null : new Report(key, snapshot(train));
+    }
+
+    /**
+     * Aggregates over every train
+     */
+    public Report getTotals() {
+        long[] values = new long[FIELDS];
+        for (int i = 0; i < FIELDS; i++) {
+            values[i] = totals[i].sum();
+        }
+        return new Report(null, values);
+    }
+
+    /**
+     * Reports of all trains that had bookings, ordered by train number
+     */
+    public Map<String, Report> getReports() {
+        Map<String, Report> reports = new TreeMap<>();
+        trains.forEach((trainNumber, train) -> reports.put(trainNumber, new Report(trainNumber, snapshot(train))));
+        return reports;
+    }
+
+    /**
+     * Recomputes every train's aggregates from scratch, splitting the work across the pool:
+     * live tickets give revenue and passenger counts, the refund ledger gives refunds and cancellations
+     */
+    public static Map<String, Report> rebuild(Collection<Ticket> tickets, Collection<RefundLedger.Entry> refunds,
+                                              ForkJoinPool pool) {
+        List<Ticket> ticketList = new ArrayList<>(tickets);
+        Map<String, long[]> fromTickets = pool.invoke(new RebuildTask<>(ticketList, (ticket, sums) -> {
+            long[] values = sums.computeIfAbsent(TicketRepository.normalizeTrainNumber(ticket.getTrainNumber()),
+                    k -> new long[FIELDS]);
+            values[REVENUE] += toPaise(ticket.getFare());
+            values[CLASS_BASE + TravelClass.of(ticket).ordinal()]++;
+            values[BAND_BASE + FareEngine.AgeBand.of(ticket.getAge()).ordinal()]++;
+        }));
+        List<RefundLedger.Entry> refundList = new ArrayList<>(refunds);
+        Map<String, long[]> fromRefunds = pool.invoke(new RebuildTask<>(refundList, (entry, sums) -> {
+            long[] values = sums.computeIfAbsent(TicketRepository.normalizeTrainNumber(entry.getTrainNumber()),
+                    k -> new long[FIELDS]);
+            values[REFUNDS] += toPaise(entry.getAmount());
+            values[CANCELLATIONS]++;
+        }));
+        merge(fromTickets, fromRefunds);
+
+        Map<String, Report> reports = new TreeMap<>();
+        fromTickets.forEach((trainNumber, values) -> reports.put(trainNumber, new Report(trainNumber, values)));
+        return reports;
+    }
+
+    /**
+     * Trains whose live aggregates differ from a rebuild - empty when everything is consistent
+     */
+    public List<String> findMismatches(Map<String, Report> rebuilt) {
+        List<String> mismatches = new ArrayList<>();
+        Map<String, Report> live = getReports();
+        for (Map.Entry<String, Report> entry : rebuilt.entrySet()) {
+            Report report = live.get(entry.getKey());
+            if (report == null || !report.sameValues(entry.getValue())) {
+                mismatches.add(entry.getKey());
+            }
+        }
+        for (Map.Entry<String, Report> entry : live.entrySet()) {
+            // A train whose tickets were all cancelled, with no refunds recorded, is empty in both
+            if (!rebuilt.containsKey(entry.getKey()) && !entry.getValue().isEmpty()) {
+                mismatches.add(entry.getKey());
+            }
+        }
+        return mismatches;
+    }
+
+    // ==================== Helpers ====================
+
+    private AtomicLongArray countersFor(String trainNumber) {
+        String key = TicketRepository.normalizeTrainNumber(trainNumber);
+        AtomicLongArray train = trains.get(key); // get first: computeIfAbsent may lock the bin even on a hit
+        return train != null ? train : trains.computeIfAbsent(key, k -> new AtomicLongArray(FIELDS));
+    }
+
+    private static long[] snapshot(AtomicLongArray train) {
+        long[] values = new long[FIELDS];
+        for (int i = 0; i < FIELDS; i++) {
+            values[i] = train.get(i);
+        }
+        return values;
+    }
+
+    private static void merge(Map<String, long[]> into, Map<String, long[]> from) {
+        from.forEach((trainNumber, values) -> {
+            long[] target = into.get(trainNumber);
+            if (target == null) {
+                into.put(trainNumber, values);
+            } else {
+                for (int i = 0; i < FIELDS; i++) {
+                    target[i] += values[i];
+                }
+            }
+        });
+    }
+
+    private static long toPaise(double amount) {
+        return Math.round(amount * 100);
+    }
+
+    /**
+     * Fork/join task: splits a list in halves down to REBUILD_THRESHOLD items, sums each part per
+     * train into its own map (no sharing), then merges the maps on the way back up
+     */
+    private static final class RebuildTask<T> extends RecursiveTask<Map<String, long[]>> {
+        private static final long serialVersionUID = 1L;
+
+        private final List<T> items;
+        private final int from;
+        private final int to;
+        private final BiConsumer<T, Map<String, long[]>> accumulator;
+
+        RebuildTask(List<T> items, BiConsumer<T, Map<String, long[]>> accumulator) {
+            this(items, 0, items.size(), accumulator);
+        }
+
+        private RebuildTask(List<T> items, int from, int to, BiConsumer<T, Map<String, long[]>> accumulator) {
+            this.items = items;
+            this.from = from;
+            this.to = to;
+            this.accumulator = accumulator;
+        }
+
+        @Override
+        protected Map<String, long[]> compute() {
+            if (to - from <= REBUILD_THRESHOLD) {
+                Map<String, long[]> sums = new HashMap<>();
+                for (int i = from; i < to; i++) {
+                    accumulator.accept(items.get(i), sums);
+                }
+                return sums;
+            }
+            int middle = (from + to) >>> 1;
+            RebuildTask<T> left = new RebuildTask<>(items, from, middle, accumulator);
+            left.fork();
+            Map<String, long[]> right = new RebuildTask<>(items, middle, to, accumulator).compute();
+            Map<String, long[]> sums = left.join();
+            merge(sums, right);
+            return sums;
+        }
+    }
+
+    /**
+     * Aggregates of one train (or all trains) at one moment - immutable
+     */
+    public static final class Report {
+        private final String trainNumber; // null for the totals
+        private final long[] values;
+
+        private Report(String trainNumber, long[] values) {
+            this.trainNumber = trainNumber;
+            this.values = values;
+        }
+
+        public String getTrainNumber() {
+            return trainNumber;
+        }
+
+        /**
+         * Fares of the tickets currently booked
+         */
+        public double getRevenue() {
+            return values[REVENUE] / 100.0;
+        }
+
+        public double getRefunds() {
+            return values[REFUNDS] / 100.0;
+        }
+
+        public long getCancellations() {
+            return values[CANCELLATIONS];
+        }
+
+        public long getPassengers(TravelClass travelClass) {
+            return values[CLASS_BASE + travelClass.ordinal()];
+        }
+
+        public long getPassengers() {
+            long passengers = 0;
+            for (TravelClass travelClass : TravelClass.values()) {
+                passengers += getPassengers(travelClass);
+            }
+            return passengers;
+        }
+
+        public long getPassengers(FareEngine.AgeBand band) {
+            return values[BAND_BASE + band.ordinal()];
+        }
+
+        public long getChildren() {
+            return getPassengers(FareEngine.AgeBand.CHILD);
+        }
+
+        public long getSeniors() {
+            return getPassengers(FareEngine.AgeBand.SENIOR);
+        }
+
+        boolean isEmpty() {
+            for (long value : values) {
+                if (value != 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        boolean sameValues(Report other) {
+            return Arrays.equals(values, other.values);
+        }
+
+        /**
+         * Readable summary for the console
+         */
+        public void appendSummary(StringBuilder out) {
+            out.append("🚆 Train               : ").append(trainNumber == null ? "(all trains)" : trainNumber)
+                    .append('\n');
+            out.append("💰 Revenue (booked)    : ₹").append(String.format(Locale.ROOT, "%.2f", getRevenue()))
+                    .append('\n');
+            out.append("💸 Refunds             : ₹").append(String.format(Locale.ROOT, "%.2f", getRefunds()))
+                    .append(" (").append(getCancellations()).append(" cancellations)\n");
+            out.append("👥 Passengers          : ").append(getPassengers()).append('\n');
+            for (TravelClass travelClass : TravelClass.values()) {
+                out.append(String.format(Locale.ROOT, "   %-19s: %d%n", travelClass.getDisplayName(),
+                        getPassengers(travelClass)));
+            }
+            out.append("🧒 Children (<12)      : ").append(getChildren()).append('\n');
+            out.append("👴 Seniors (60+)       : ").append(getSeniors()).append('\n');
+        }
+
+        /**
+         * JSON object for the HTTP server
+         */
+        public void appendJson(StringBuilder out) {
+            out.append("{\"trainNumber\":");
+            if (trainNumber == null) {
+                out.append("null");
+            } else {
+                ManifestWriter.appendJsonString(out, trainNumber);
+            }
+            out.append(",\"revenue\":");
+            ManifestWriter.appendAmount(out, values[REVENUE]);
+            out.append(",\"refunds\":");
+            ManifestWriter.appendAmount(out, values[REFUNDS]);
+            out.append(",\"cancellations\":").append(getCancellations());
+            out.append(",\"passengers\":{");
+            for (TravelClass travelClass : TravelClass.values()) {
+                out.append('"').append(travelClass.getCode()).append("\":").append(getPassengers(travelClass))
+                        .append(',');
+            }
+            out.append("\"total\":").append(getPassengers()).append('}');
+            out.append(",\"children\":").append(getChildren());
+            out.append(",\"seniors\":").append(getSeniors());
+            out.append('}');
+        }
+    }
+}
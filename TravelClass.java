@@ -0,0 +1,84 @@
+import java.util.Locale;
+
+/**
+ * Travel classes that can be booked
+ * Sleeper maps to SleeperTicket, the AC tiers map to ACTicket
+ * Each class also carries its default coach layout (coach prefix, coaches per train, berths per coach)
+ * and how many RAC passengers a coach takes (two per side-lower berth) once it is full
+ */
+public enum TravelClass {
+    SLEEPER("SL", "Sleeper Class", "S", 10, 72, 18),
+    FIRST_AC("1A", "First AC", "H", 1, 24, 0),
+    SECOND_AC("2A", "Second AC", "A", 2, 48, 16),
+    THIRD_AC("3A", "Third AC", "B", 4, 64, 16);
+
+    private final String code;
+    private final String displayName;
+    private final String coachPrefix;
+    private final int defaultCoaches;
+    private final int berthsPerCoach;
+    private final int racPerCoach;
+
+    TravelClass(String code, String displayName, String coachPrefix, int defaultCoaches, int berthsPerCoach,
+                int racPerCoach) {
+        this.code = code;
+        this.displayName = displayName;
+        this.coachPrefix = coachPrefix;
+        this.defaultCoaches = defaultCoaches;
+        this.berthsPerCoach = berthsPerCoach;
+        this.racPerCoach = racPerCoach;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    public String getCoachPrefix() {
+        return coachPrefix;
+    }
+
+    public int getDefaultCoaches() {
+        return defaultCoaches;
+    }
+
+    public int getBerthsPerCoach() {
+        return berthsPerCoach;
+    }
+
+    public int getRacPerCoach() {
+        return racPerCoach;
+    }
+
+    public boolean isAc() {
+        return this != SLEEPER;
+    }
+
+    /**
+     * Looks up a class by its code (SL, 1A, 2A, 3A), case-insensitive
+     */
+    public static TravelClass fromCode(String code) {
+        if (code != null) {
+            String normalized = code.trim().toUpperCase(Locale.ROOT);
+            for (TravelClass travelClass : values()) {
+                if (travelClass.code.equals(normalized)) {
+                    return travelClass;
+                }
+            }
+        }
+        throw new IllegalArgumentException("Invalid class/tier: " + code + " (expected SL, 1A, 2A or 3A)");
+    }
+
+    /**
+     * Returns the class of an existing ticket
+     */
+    public static TravelClass of(Ticket ticket) {
+        if (ticket instanceof ACTicket) {
+            return ((ACTicket) ticket).getTravelClass();
+        }
+        return SLEEPER;
+    }
+}
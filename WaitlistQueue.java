@@ -0,0 +1,203 @@
+/**
+ * Passengers waiting for a berth in one class of one train, in booking order
+ * The first racSlots passengers are RAC (they travel sharing a berth), the rest are waitlisted
+ *
+ * Every passenger gets the next sequence number when queued. A Fenwick tree (binary indexed tree)
+ * over the sequence numbers counts who is still waiting, so finding the head, removing a passenger
+ * from the middle and computing anyone's position are all O(log n) - no scan, however long the queue.
+ *
+ * Not thread-safe on its own: callers synchronize on the queue (see SeatInventory), one lock per
+ * class of one train, so promotions on different trains never wait for each other.
+ */
+public class WaitlistQueue {
+    private static final int INITIAL_CAPACITY = 16;
+    private static final Ticket[] NO_ENTRIES = new Ticket[0];
+    private static final int[] EMPTY_TREE = new int[1]; // never written: an empty tree has no nodes
+
+    private final int racSlots;
+    private final int limit;
+
+    // Allocated when the first passenger is queued - most classes never fill up
+    private Ticket[] entries = NO_ENTRIES; // by sequence number, null once promoted or removed
+    private int[] tree = EMPTY_TREE;       // 1-based Fenwick tree of waiting flags
+    private LongIntHashMap sequences;         // ticket number -> sequence
+    private int nextSequence;
+    private int size;
+
+    public WaitlistQueue(int racSlots, int limit) {
+        if (racSlots < 0 || limit < 0) {
+            throw new IllegalArgumentException("RAC slots and waitlist limit cannot be negative!");
+        }
+        this.racSlots = racSlots;
+        this.limit = limit;
+    }
+
+    /**
+     * Queues a passenger at the back, returns their status
+     * Throws IllegalStateException if the waiting list is full
+     */
+    public BookingStatus add(Ticket ticket) {
+        if (isFull()) {
+            throw new IllegalStateException("Waiting list is full!");
+        }
+        return addUnbounded(ticket);
+    }
+
+    /**
+     * Queues a passenger even past the limit (used when restoring saved tickets)
+     */
+    BookingStatus addUnbounded(Ticket ticket) {
+        long number = ticket.getTicketNumber();
+        if (sequences == null) {
+            sequences = new LongIntHashMap(INITIAL_CAPACITY);
+        } else if (sequences.get(number) != LongIntHashMap.NO_VALUE) {
+            throw new IllegalStateException("Ticket " + ticket.getTicketId() + " is already waiting!");
+        }
+        if (nextSequence == entries.length) {
+            grow();
+        }
+        int sequence = nextSequence++;
+        entries[sequence] = ticket;
+        sequences.put(number, sequence);
+        update(sequence, 1);
+        size++;
+        return BookingStatus.ofQueuePosition(size, racSlots);
+    }
+
+    /**
+     * Removes and returns the passenger at the head (first RAC), null if nobody is waiting
+     */
+    public Ticket poll() {
+        if (size == 0) {
+            return null;
+        }
+        int sequence = findNth(1);
+        Ticket ticket = entries[sequence];
+        removeAt(sequence, ticket.getTicketNumber());
+        return ticket;
+    }
+
+    /**
+     * Removes a waiting passenger (e.g. they cancelled), returns false if the ticket is not waiting
+     */
+    public boolean remove(long number) {
+        int sequence = size == 0 ? LongIntHashMap.NO_VALUE : sequences.get(number);
+        if (sequence == LongIntHashMap.NO_VALUE) {
+            return false;
+        }
+        removeAt(sequence, number);
+        return true;
+    }
+
+    /**
+     * 1-based position of a waiting ticket (RAC first, then waitlisted), 0 if it is not waiting
+     */
+    public int positionOf(long number) {
+        int sequence = size == 0 ? LongIntHashMap.NO_VALUE : sequences.get(number);
+        return sequence == LongIntHashMap.NO_VALUE ? 0 : prefixSum(sequence);
+    }
+
+    /**
+     * RAC/WL status of a waiting ticket, null if it is not waiting
+     */
+    public BookingStatus statusOf(long number) {
+        int position = positionOf(number);
+        return position == 0 ? null : BookingStatus.ofQueuePosition(position, racSlots);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean isFull() {
+        return size >= limit;
+    }
+
+    public int getRacSlots() {
+        return racSlots;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    // ==================== Helpers ====================
+
+    private void removeAt(int sequence, long number) {
+        entries[sequence] = null;
+        sequences.remove(number);
+        update(sequence, -1);
+        size--;
+        if (size == 0) {
+            // Empty again - every flag in the tree is back to 0, so numbering can restart
+            nextSequence = 0;
+        }
+    }
+
+    /**
+     * Out of sequence numbers: renumber the waiting passengers from 0 if at least half of the
+     * numbers are gone, otherwise double the capacity. Either way the tree is rebuilt in O(n).
+     */
+    private void grow() {
+        int capacity = Math.max(INITIAL_CAPACITY, size <= entries.length / 2 ? entries.length : entries.length * 2);
+        Ticket[] renumbered = new Ticket[capacity];
+        int count = 0;
+        for (int sequence = 0; sequence < nextSequence; sequence++) {
+            Ticket ticket = entries[sequence];
+            if (ticket != null) {
+                renumbered[count] = ticket;
+                sequences.put(ticket.getTicketNumber(), count);
+                count++;
+            }
+        }
+        entries = renumbered;
+        nextSequence = count;
+
+        tree = new int[capacity + 1];
+        for (int i = 1; i <= count; i++) {
+            tree[i] = 1;
+        }
+        for (int i = 1; i <= capacity; i++) {
+            int parent = i + (i & -i);
+            if (parent <= capacity) {
+                tree[parent] += tree[i];
+            }
+        }
+    }
+
+    private void update(int sequence, int delta) {
+        for (int i = sequence + 1; i < tree.length; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    /**
+     * Number of waiting passengers with a sequence number up to and including this one
+     */
+    private int prefixSum(int sequence) {
+        int sum = 0;
+        for (int i = sequence + 1; i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Sequence number of the n-th waiting passenger (1-based), by descending the tree
+     */
+    private int findNth(int n) {
+        int index = 0;
+        for (int step = Integer.highestOneBit(tree.length - 1); step > 0; step >>>= 1) {
+            int next = index + step;
+            if (next < tree.length && tree[next] < n) {
+                index = next;
+                n -= tree[next];
+            }
+        }
+        return index; // 1-based tree index + 1, minus 1 for the sequence number
+    }
+}
@@ -0,0 +1,200 @@
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+/**
+ * Seeded, reproducible stream of book/view/cancel operations for load runs
+ *
+ * The same seed and settings always give the same stream, whatever the service answers: views and
+ * cancellations name their target by booking ordinal (the n-th booking of the stream), and the runner
+ * maps ordinals to the ticket numbers it got back. Trains are picked with a Zipfian skew - train T0 is the
+ * most popular, T1 the next, ... - so a few trains fill up and waitlist while most stay quiet.
+ * Ages are drawn so the child (< 12) and senior (60+) fare branches get their share.
+ *
+ * next() fills in one reused Operation, so generating costs no allocation beyond the growing list of
+ * live bookings. Not thread-safe: one generator per driving thread.
+ */
+public class WorkloadGenerator {
+    public enum Kind {
+        BOOK, VIEW, CANCEL
+    }
+
+    /**
+     * One generated operation - overwritten by the next call to next()
+     */
+    public static final class Operation {
+        private Kind kind;
+        private long bookingOrdinal; // BOOK: ordinal of this booking; VIEW/CANCEL: the booking it targets
+        private String trainNumber;
+        private TravelClass travelClass;
+        private int age;
+        private double baseFare;
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        public long getBookingOrdinal() {
+            return bookingOrdinal;
+        }
+
+        public String getTrainNumber() {
+            return trainNumber;
+        }
+
+        public TravelClass getTravelClass() {
+            return travelClass;
+        }
+
+        public int getAge() {
+            return age;
+        }
+
+        public double getBaseFare() {
+            return baseFare;
+        }
+    }
+
+    private final long seed;
+    private final double skew;
+    private final int[] classWeights; // per TravelClass ordinal, any scale
+    private final int childPercent;
+    private final int seniorPercent;
+    private final int viewPercent;
+    private final int cancelPercent;
+    private final String[] trainNumbers;
+    private final double[] trainCdf; // cumulative popularity by train rank
+    private final int classWeightTotal;
+    private final SplittableRandom random;
+    private final Operation operation = new Operation();
+    private long[] live = new long[1024]; // ordinals of bookings not cancelled yet, in no particular order
+    private int liveCount;
+    private long bookings;
+
+    /**
+     * skew is the Zipf exponent (0 = every train equally popular, 1 = classic Zipf, higher = hotter head);
+     * view and cancel percentages are of all operations, the rest are bookings
+     */
+    public WorkloadGenerator(long seed, int trains, double skew, int[] classWeights, int childPercent,
+                             int seniorPercent, int viewPercent, int cancelPercent) {
+        if (trains < 1 || skew < 0 || classWeights.length != TravelClass.values().length) {
+            throw new IllegalArgumentException("A workload needs at least one train, a skew of 0 or more and "
+                    + TravelClass.values().length + " class weights!");
+        }
+        if (childPercent < 0 || seniorPercent < 0 || childPercent + seniorPercent > 100
+                || viewPercent < 0 || cancelPercent < 0 || viewPercent + cancelPercent >= 100) {
+            throw new IllegalArgumentException("Workload percentages must be positive, children + seniors at most "
+                    + "100 and views + cancellations below 100!");
+        }
+        int total = 0;
+        for (int weight : classWeights) {
+            if (weight < 0) {
+                throw new IllegalArgumentException("Class weights must not be negative!");
+            }
+            total += weight;
+        }
+        if (total == 0) {
+            throw new IllegalArgumentException("At least one class needs a weight!");
+        }
+        this.seed = seed;
+        this.skew = skew;
+        this.classWeights = classWeights.clone();
+        this.classWeightTotal = total;
+        this.childPercent = childPercent;
+        this.seniorPercent = seniorPercent;
+        this.viewPercent = viewPercent;
+        this.cancelPercent = cancelPercent;
+        this.trainNumbers = new String[trains];
+        this.trainCdf = new double[trains];
+        double cumulative = 0;
+        for (int rank = 0; rank < trains; rank++) {
+            trainNumbers[rank] = "T" + rank;
+            cumulative += 1 / Math.pow(rank + 1, skew);
+            trainCdf[rank] = cumulative;
+        }
+        for (int rank = 0; rank < trains; rank++) {
+            trainCdf[rank] /= cumulative;
+        }
+        this.random = new SplittableRandom(seed);
+    }
+
+    /**
+     * Generates the next operation (the same object every time)
+     * Views and cancellations only target live bookings; with none yet, the operation is a booking
+     */
+    public Operation next() {
+        int roll = random.nextInt(100);
+        if (liveCount > 0 && roll < viewPercent) {
+            operation.kind = Kind.VIEW;
+            operation.bookingOrdinal = live[random.nextInt(liveCount)];
+        } else if (liveCount > 0 && roll < viewPercent + cancelPercent) {
+            int index = random.nextInt(liveCount);
+            operation.kind = Kind.CANCEL;
+            operation.bookingOrdinal = live[index];
+            live[index] = live[--liveCount];
+        } else {
+            operation.kind = Kind.BOOK;
+            operation.bookingOrdinal = bookings++;
+            operation.trainNumber = trainNumbers[nextTrainRank()];
+            operation.travelClass = nextTravelClass();
+            operation.age = nextAge();
+            operation.baseFare = 100 + random.nextInt(2000);
+            if (liveCount == live.length) {
+                live = Arrays.copyOf(live, liveCount * 2);
+            }
+            live[liveCount++] = operation.bookingOrdinal;
+        }
+        return operation;
+    }
+
+    /**
+     * Bookings generated so far - ordinals run from 0 to this minus one
+     */
+    public long getBookings() {
+        return bookings;
+    }
+
+    public String describe() {
+        StringBuilder classes = new StringBuilder();
+        for (TravelClass travelClass : TravelClass.values()) {
+            if (classes.length() > 0) {
+                classes.append(',');
+            }
+            classes.append(travelClass.getCode()).append(':').append(classWeights[travelClass.ordinal()]);
+        }
+        return String.format(Locale.ROOT, "seed %d, %d trains, skew %.2f, classes %s, %d%% children, "
+                        + "%d%% seniors, %d%% views, %d%% cancellations", seed, trainNumbers.length, skew, classes,
+                childPercent, seniorPercent, viewPercent, cancelPercent);
+    }
+
+    /**
+     * Inverse of the popularity CDF: rank of the first train whose cumulative share exceeds a uniform draw
+     */
+    private int nextTrainRank() {
+        int rank = Arrays.binarySearch(trainCdf, random.nextDouble());
+        return Math.min(rank < 0 ? -rank - 1 : rank, trainCdf.length - 1);
+    }
+
+    private TravelClass nextTravelClass() {
+        int roll = random.nextInt(classWeightTotal);
+        TravelClass[] classes = TravelClass.values();
+        for (int i = 0; i < classes.length; i++) {
+            roll -= classWeights[i];
+            if (roll < 0) {
+                return classes[i];
+            }
+        }
+        return classes[classes.length - 1];
+    }
+
+    private int nextAge() {
+        int roll = random.nextInt(100);
+        if (roll < childPercent) {
+            return 1 + random.nextInt(11);              // 1-11: child fare
+        }
+        if (roll < childPercent + seniorPercent) {
+            return 60 + random.nextInt(31);             // 60-90: senior concession
+        }
+        return 12 + random.nextInt(48);                 // 12-59: adult
+    }
+}
@@ -0,0 +1,391 @@
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays a WorkloadGenerator stream against an in-process ReservationService and reports
+ * throughput, latency percentiles per operation, and GC/allocation for the run
+ *
+ * Run:  java WorkloadRunner [--seed 42] [--operations 1000000] [--trains 1000] [--skew 1.0]
+ *                           [--classes SL:70,3A:20,2A:7,1A:3] [--children 10] [--seniors 15]
+ *                           [--views 40] [--cancellations 10] [--rate <ops/s>] [--runs 3]
+ *                           [--store objects|columnar|offheap|tiered] [--pipeline <writers>] [--csv <file>]
+ *
+ * Every run replays the same stream on a fresh service, so runs (and builds) are comparable; the first
+ * run only warms up the JIT unless --runs 1. Without --rate the stream is replayed flat out; with it,
+ * operations are due at fixed intervals and latency is measured from when each was due, so a stall
+ * shows up in the percentiles of everything queued behind it (no coordinated omission).
+ * --csv appends one line per measured run, for comparing builds in a spreadsheet. Allocation (B/op) counts
+ * every thread of the JVM - the driver, pipeline writers and any other worker - over the run.
+ */
+public class WorkloadRunner {
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final String CSV_HEADER = "workload,store,rate,operations,seconds,ops_per_s,"
+            + "book_p50_us,book_p99_us,book_p999_us,view_p50_us,view_p99_us,cancel_p50_us,cancel_p99_us,"
+            + "booked,waitlisted,rejected,not_found,gc_count,gc_ms,bytes_per_op";
+    private static final List<String> OPTIONS = Arrays.asList("--seed", "--operations", "--trains", "--skew",
+            "--classes", "--children", "--seniors", "--views", "--cancellations", "--rate", "--runs", "--store",
+            "--pipeline", "--csv");
+    private static final String USAGE = "Usage: java WorkloadRunner [--seed 42] [--operations 1000000]"
+            + " [--trains 1000] [--skew 1.0] [--classes SL:70,3A:20,2A:7,1A:3] [--children 10] [--seniors 15]"
+            + " [--views 40] [--cancellations 10] [--rate <ops/s>] [--runs 3]"
+            + " [--store objects|columnar|offheap|tiered] [--pipeline <writers>] [--csv <file>]";
+
+    private final WorkloadSettings settings;
+    private final String storeMode;
+    private final int pipelineWriters; // 0 = callers book on their own thread
+    private final double rate;         // operations per second, 0 = flat out
+
+    public WorkloadRunner(WorkloadSettings settings, String storeMode, int pipelineWriters, double rate) {
+        if (rate < 0 || pipelineWriters < 0) {
+            throw new IllegalArgumentException("Rate and pipeline writers must not be negative!");
+        }
+        this.settings = settings;
+        this.storeMode = storeMode;
+        this.pipelineWriters = pipelineWriters;
+        this.rate = rate;
+    }
+
+    public static void main(String[] args) throws IOException {
+        WorkloadRunner runner;
+        int runs;
+        try {
+            checkOptions(args);
+            WorkloadSettings settings = new WorkloadSettings(
+                    Long.parseLong(getOption(args, "--seed", "42")),
+                    Integer.parseInt(getOption(args, "--operations", "1000000")),
+                    Integer.parseInt(getOption(args, "--trains", "1000")),
+                    Double.parseDouble(getOption(args, "--skew", "1.0")),
+                    parseClassWeights(getOption(args, "--classes", "SL:70,3A:20,2A:7,1A:3")),
+                    Integer.parseInt(getOption(args, "--children", "10")),
+                    Integer.parseInt(getOption(args, "--seniors", "15")),
+                    Integer.parseInt(getOption(args, "--views", "40")),
+                    Integer.parseInt(getOption(args, "--cancellations", "10")));
+            settings.newGenerator(); // validates the settings before anything runs
+            runner = new WorkloadRunner(settings, getOption(args, "--store", "objects"),
+                    Integer.parseInt(getOption(args, "--pipeline", "0")),
+                    Double.parseDouble(getOption(args, "--rate", "0")));
+            runs = Integer.parseInt(getOption(args, "--runs", "3"));
+        } catch (IllegalArgumentException e) {
+            System.out.println("❌ " + e.getMessage());
+            System.out.println(USAGE);
+            return;
+        }
+        String csv = getOption(args, "--csv", null);
+
+        System.out.println("🎲 Workload: " + runner.settings.newGenerator().describe());
+        System.out.println("⚙️  Store " + runner.storeMode + (runner.pipelineWriters > 0
+                ? ", pipeline with " + runner.pipelineWriters + " writers" : "")
+                + (runner.rate > 0 ? String.format(Locale.ROOT, ", %.0f ops/s", runner.rate) : ", flat out"));
+        for (int run = 1; run <= runs; run++) {
+            Result result = runner.run();
+            boolean warmup = run == 1 && runs > 1;
+            System.out.println();
+            System.out.println((warmup ? "🔥 Warmup run" : "📊 Run " + run) + " of " + runs);
+            System.out.print(result.format());
+            if (csv != null && !warmup) {
+                runner.appendCsv(Paths.get(csv), result);
+            }
+        }
+    }
+
+    /**
+     * Replays the whole stream once on a fresh service
+     */
+    public Result run() {
+        ReservationService service = new ReservationService(TicketStore.create(storeMode),
+                new SeatInventoryManager());
+        BookingPipeline pipeline = pipelineWriters > 0 ? new BookingPipeline(service, pipelineWriters) : null;
+        service.setBookingPipeline(pipeline);
+        WorkloadGenerator generator = settings.newGenerator();
+        long[] ticketNumbers = new long[settings.operations]; // by booking ordinal, -1 if it failed or was cancelled
+        Arrays.fill(ticketNumbers, -1);
+        Result result = new Result();
+        long intervalNanos = rate > 0 ? Math.round(1_000_000_000.0 / rate) : 0;
+
+        System.gc();
+        long gcCountBefore = gcCount();
+        long gcMillisBefore = gcMillis();
+        Map<Long, Long> bytesBefore = threadAllocatedBytes();
+        long writerBytesBefore = pipeline == null ? 0 : pipeline.getAllocatedBytes();
+        long start = System.nanoTime();
+        try {
+            for (int i = 0; i < settings.operations; i++) {
+                long due = start + i * intervalNanos;
+                if (intervalNanos > 0) {
+                    awaitDue(due);
+                }
+                long begin = intervalNanos > 0 ? due : System.nanoTime();
+                WorkloadGenerator.Operation operation = generator.next();
+                WorkloadGenerator.Kind kind = operation.getKind();
+                switch (kind) {
+                    case BOOK:
+                        book(service, operation, ticketNumbers, result);
+                        break;
+                    case VIEW:
+                        long viewed = ticketNumbers[(int) operation.getBookingOrdinal()];
+                        if (viewed < 0 || service.findTicket(viewed) == null) {
+                            result.notFound++;
+                        }
+                        break;
+                    default:
+                        long cancelled = ticketNumbers[(int) operation.getBookingOrdinal()];
+                        if (cancelled < 0) {
+                            result.notFound++;
+                        } else {
+                            service.cancelTicket(cancelled);
+                            ticketNumbers[(int) operation.getBookingOrdinal()] = -1;
+                        }
+                        break;
+                }
+                result.latencies[kind.ordinal()].record(System.nanoTime() - begin);
+            }
+            result.elapsedNanos = System.nanoTime() - start;
+        } finally {
+            if (pipeline != null) {
+                service.setBookingPipeline(null);
+                pipeline.close();
+            }
+        }
+        // Threads still alive, plus the writers, whose counters are gone once they have exited
+        result.allocatedBytes = 0;
+        for (Map.Entry<Long, Long> thread : threadAllocatedBytes().entrySet()) {
+            result.allocatedBytes += thread.getValue() - bytesBefore.getOrDefault(thread.getKey(), 0L);
+        }
+        if (pipeline != null) {
+            result.allocatedBytes += pipeline.getAllocatedBytes() - writerBytesBefore;
+        }
+        result.gcCount = gcCount() - gcCountBefore;
+        result.gcMillis = gcMillis() - gcMillisBefore;
+        result.operations = settings.operations;
+        return result;
+    }
+
+    private static void book(ReservationService service, WorkloadGenerator.Operation operation, long[] ticketNumbers,
+                             Result result) {
+        try {
+            Ticket ticket = service.bookTicket(passengerName(operation.getBookingOrdinal()), operation.getAge(),
+                    operation.getTrainNumber(), operation.getBaseFare(), operation.getTravelClass());
+            ticketNumbers[(int) operation.getBookingOrdinal()] = ticket.getTicketNumber();
+            if (ticket.getSeat() == null) {
+                result.waitlisted++;
+            } else {
+                result.booked++;
+            }
+        } catch (IllegalStateException e) {
+            result.rejected++; // class and waiting list full
+        }
+    }
+
+    /**
+     * Deterministic passenger name for a booking ordinal
+     */
+    static String passengerName(long bookingOrdinal) {
+        return "Passenger " + bookingOrdinal;
+    }
+
+    /**
+     * Bytes allocated so far by every live thread, by thread ID
+     */
+    private static Map<Long, Long> threadAllocatedBytes() {
+        long[] ids = THREADS.getAllThreadIds();
+        long[] bytes = THREADS.getThreadAllocatedBytes(ids);
+        Map<Long, Long> allocated = new HashMap<>(ids.length * 2);
+        for (int i = 0; i < ids.length; i++) {
+            if (bytes[i] >= 0) { // -1 for a thread that exited meanwhile
+                allocated.put(ids[i], bytes[i]);
+            }
+        }
+        return allocated;
+    }
+
+    private static void awaitDue(long dueNanos) {
+        long remaining;
+        while ((remaining = dueNanos - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    private void appendCsv(Path file, Result result) throws IOException {
+        StringBuilder line = new StringBuilder(256);
+        if (!Files.exists(file)) {
+            line.append(CSV_HEADER).append('\n');
+        }
+        LatencyHistogram.Snapshot book = result.latencies[WorkloadGenerator.Kind.BOOK.ordinal()].snapshot();
+        LatencyHistogram.Snapshot view = result.latencies[WorkloadGenerator.Kind.VIEW.ordinal()].snapshot();
+        LatencyHistogram.Snapshot cancel = result.latencies[WorkloadGenerator.Kind.CANCEL.ordinal()].snapshot();
+        line.append('"').append(settings.newGenerator().describe()).append('"')
+                .append(',').append(storeMode + (pipelineWriters > 0 ? "+pipeline" + pipelineWriters : ""))
+                .append(',').append(rate > 0 ? String.format(Locale.ROOT, "%.0f", rate) : "max")
+                .append(',').append(result.operations)
+                .append(String.format(Locale.ROOT, ",%.3f,%.0f", result.elapsedNanos / 1e9, result.throughput()))
+                .append(String.format(Locale.ROOT, ",%.1f,%.1f,%.1f,%.1f,%.1f,%.1f,%.1f",
+                        micros(book, 0.5), micros(book, 0.99), micros(book, 0.999), micros(view, 0.5),
+                        micros(view, 0.99), micros(cancel, 0.5), micros(cancel, 0.99)))
+                .append(',').append(result.booked).append(',').append(result.waitlisted)
+                .append(',').append(result.rejected).append(',').append(result.notFound)
+                .append(',').append(result.gcCount).append(',').append(result.gcMillis)
+                .append(String.format(Locale.ROOT, ",%.1f", result.allocatedBytes / (double) result.operations))
+                .append('\n');
+        Files.write(file, line.toString().getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private static double micros(LatencyHistogram.Snapshot snapshot, double quantile) {
+        return snapshot.getValueAtQuantile(quantile) / 1000.0;
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, collector.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, collector.getCollectionTime());
+        }
+        return millis;
+    }
+
+    /**
+     * SL:70,3A:20,... -> weights by TravelClass ordinal (classes not listed get 0)
+     */
+    static int[] parseClassWeights(String value) {
+        int[] weights = new int[TravelClass.values().length];
+        for (String part : value.split(",")) {
+            int colon = part.indexOf(':');
+            if (colon < 0) {
+                throw new IllegalArgumentException("Invalid class weight: " + part + " (expected e.g. SL:70)");
+            }
+            weights[TravelClass.fromCode(part.substring(0, colon)).ordinal()] =
+                    Integer.parseInt(part.substring(colon + 1).trim());
+        }
+        return weights;
+    }
+
+    /**
+     * Rejects anything but known options, each followed by its value - a misspelled option would
+     * otherwise silently run a different workload
+     */
+    static void checkOptions(String[] args) {
+        for (int i = 0; i < args.length; i += 2) {
+            if (!OPTIONS.contains(args[i])) {
+                throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("Option " + args[i] + " needs a value!");
+            }
+        }
+    }
+
+    private static String getOption(String[] args, String name, String defaultValue) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals(name)) {
+                return args[i + 1];
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Everything that defines a workload - the same settings always generate the same stream
+     */
+    public static final class WorkloadSettings {
+        final long seed;
+        final int operations;
+        final int trains;
+        final double skew;
+        final int[] classWeights;
+        final int childPercent;
+        final int seniorPercent;
+        final int viewPercent;
+        final int cancelPercent;
+
+        public WorkloadSettings(long seed, int operations, int trains, double skew, int[] classWeights,
+                                int childPercent, int seniorPercent, int viewPercent, int cancelPercent) {
+            if (operations < 1) {
+                throw new IllegalArgumentException("A workload needs at least one operation!");
+            }
+            this.seed = seed;
+            this.operations = operations;
+            this.trains = trains;
+            this.skew = skew;
+            this.classWeights = classWeights.clone();
+            this.childPercent = childPercent;
+            this.seniorPercent = seniorPercent;
+            this.viewPercent = viewPercent;
+            this.cancelPercent = cancelPercent;
+        }
+
+        public WorkloadGenerator newGenerator() {
+            return new WorkloadGenerator(seed, trains, skew, classWeights, childPercent, seniorPercent,
+                    viewPercent, cancelPercent);
+        }
+    }
+
+    /**
+     * Outcome of one run
+     */
+    public static final class Result {
+        final LatencyHistogram[] latencies = new LatencyHistogram[WorkloadGenerator.Kind.values().length];
+        int operations;
+        long elapsedNanos;
+        long booked;
+        long waitlisted;
+        long rejected;
+        long notFound; // views/cancellations of bookings that failed
+        long gcCount;
+        long gcMillis;
+        long allocatedBytes; // by every thread, pipeline writers included
+
+        Result() {
+            for (int i = 0; i < latencies.length; i++) {
+                latencies[i] = new LatencyHistogram();
+            }
+        }
+
+        public double throughput() {
+            return operations * 1_000_000_000.0 / elapsedNanos;
+        }
+
+        String format() {
+            StringBuilder out = new StringBuilder(1024);
+            out.append(String.format(Locale.ROOT, "%-10s %10s %10s %10s %10s %10s %10s%n", "Operation", "Count",
+                    "p50 µs", "p90 µs", "p99 µs", "p99.9 µs", "max µs"));
+            for (WorkloadGenerator.Kind kind : WorkloadGenerator.Kind.values()) {
+                LatencyHistogram.Snapshot snapshot = latencies[kind.ordinal()].snapshot();
+                out.append(String.format(Locale.ROOT, "%-10s %10d", kind, snapshot.getCount()));
+                for (double quantile : QUANTILES) {
+                    out.append(String.format(Locale.ROOT, " %10.1f", micros(snapshot, quantile)));
+                }
+                out.append(String.format(Locale.ROOT, " %10.1f%n", snapshot.getMaxNanos() / 1000.0));
+            }
+            out.append(String.format(Locale.ROOT, "Throughput : %.0f ops/s (%d operations in %.2f s)%n",
+                    throughput(), operations, elapsedNanos / 1e9));
+            out.append("Bookings   : ").append(booked).append(" confirmed, ").append(waitlisted)
+                    .append(" RAC/waiting list, ").append(rejected).append(" rejected (class full)\n");
+            out.append("Not found  : ").append(notFound).append(" (views/cancellations of failed bookings)\n");
+            out.append(String.format(Locale.ROOT, "GC         : %d collections, %d ms%n", gcCount, gcMillis));
+            out.append(String.format(Locale.ROOT, "Allocation : %.1f B/op (%.1f MB/s)%n",
+                    allocatedBytes / (double) operations, allocatedBytes * 1000.0 / elapsedNanos));
+            return out.toString();
+        }
+    }
+}
@@ -0,0 +1,315 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Journal recovery after a crash mid-write: a torn or corrupt last record is dropped and cut off
+ * the segment, everything before it is replayed, and records written afterwards survive the next restart.
+ * A failed write or fsync fails the journal for good, and an interrupted booking is never undone
+ * behind the journal's back.
+ */
+class BookingJournalTest {
+    private static final int TICKETS = 20;
+
+    @TempDir
+    Path directory;
+    private BookingJournal journal; // of the service recover() returned last
+
+    @Test
+    void tornTailIsDroppedAndTruncated() throws IOException {
+        bookTickets(TICKETS);
+        Path segment = lastSegment();
+        long intactLength = Files.size(segment);
+
+        // A header promising 100 bytes followed by only a few of them
+        ByteBuffer torn = ByteBuffer.allocate(14).putInt(100).putInt(0x12345678);
+        Files.write(segment, torn.array(), StandardOpenOption.APPEND);
+
+        ReservationService service = recover();
+        assertEquals(TICKETS, service.getTicketCount());
+        assertEquals(intactLength, Files.size(segment));
+        assertNotNull(service.findTicket(1000 + TICKETS - 1));
+        journal.close();
+    }
+
+    @Test
+    void corruptLastRecordIsDropped() throws IOException {
+        bookTickets(TICKETS);
+        Path segment = lastSegment();
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            file.seek(file.length() - 1);
+            int last = file.read();
+            file.seek(file.length() - 1);
+            file.write(last ^ 0xFF); // checksum no longer matches
+        }
+
+        ReservationService service = recover();
+        assertEquals(TICKETS - 1, service.getTicketCount());
+        assertNull(service.findTicket(1000 + TICKETS - 1));
+        journal.close();
+    }
+
+    @Test
+    void bookingsAfterRecoveryAreReplayedNextTime() throws IOException {
+        bookTickets(TICKETS);
+        Files.write(lastSegment(), new byte[] {0, 0, 0}, StandardOpenOption.APPEND); // torn header
+
+        ReservationService service = recover();
+        Ticket ticket = service.bookTicket("After Crash", 40, "12951", 750, TravelClass.SECOND_AC);
+        journal.close();
+
+        ReservationService restarted = recover();
+        assertEquals(TICKETS + 1, restarted.getTicketCount());
+        Ticket recovered = restarted.findTicket(ticket.getTicketNumber());
+        assertNotNull(recovered);
+        assertEquals("After Crash", recovered.getPassengerName());
+        assertEquals(ticket.getSeat(), recovered.getSeat());
+        journal.close();
+    }
+
+    @Test
+    void interruptedBookingIsKeptAndRecovered() throws IOException {
+        bookTickets(TICKETS);
+        ReservationService service = recover();
+        Ticket ticket;
+        boolean stillInterrupted;
+        Thread.currentThread().interrupt(); // e.g. a request thread cancelled while its record is queued
+        try {
+            ticket = service.bookTicket("Interrupted", 35, "12951", 600, TravelClass.SLEEPER);
+        } finally {
+            stillInterrupted = Thread.interrupted();
+        }
+        assertTrue(stillInterrupted, "the interrupt flag must be restored");
+        assertNotNull(service.findTicket(ticket.getTicketNumber()));
+        journal.close();
+
+        ReservationService restarted = recover();
+        assertEquals(TICKETS + 1, restarted.getTicketCount());
+        assertEquals(ticket.getSeat(), restarted.findTicket(ticket.getTicketNumber()).getSeat());
+        journal.close();
+    }
+
+    @Test
+    void failedFsyncKeepsTheBookingAndRejectsEverythingAfter() throws IOException {
+        FailingChannel.Mode mode = new FailingChannel.Mode();
+        journal = BookingJournal.open(directory, 0, path -> new FailingChannel(path, mode));
+        ReservationService service = new ReservationService();
+        service.attachJournal(journal);
+        for (int i = 0; i < TICKETS; i++) {
+            service.bookTicket("Passenger " + i, 20 + i, "12951", 500 + i, TravelClass.SLEEPER);
+        }
+
+        mode.failForce = true; // the bytes reach the file, the fsync reports an error
+        assertThrows(JournalFailedException.class,
+                () -> service.bookTicket("Unsure", 40, "12951", 700, TravelClass.SLEEPER));
+        assertEquals(TICKETS + 1, service.getTicketCount(), "a booking that may be on disk is not undone");
+        assertTrue(journal.isFailed());
+
+        mode.failForce = false; // even if the disk recovers, nothing is appended after the failure
+        assertThrows(IllegalStateException.class,
+                () -> service.bookTicket("Rejected", 41, "12951", 700, TravelClass.SLEEPER));
+        assertEquals(TICKETS + 1, service.getTicketCount(), "a rejected booking is undone");
+        journal.close();
+
+        ReservationService restarted = recover(); // no berth held by two tickets
+        assertEquals(TICKETS + 1, restarted.getTicketCount());
+        journal.close();
+    }
+
+    @Test
+    void tornWriteIsNotFollowedByAcknowledgedRecords() throws IOException {
+        FailingChannel.Mode mode = new FailingChannel.Mode();
+        journal = BookingJournal.open(directory, 0, path -> new FailingChannel(path, mode));
+        ReservationService service = new ReservationService();
+        service.attachJournal(journal);
+        for (int i = 0; i < TICKETS; i++) {
+            service.bookTicket("Passenger " + i, 20 + i, "12951", 500 + i, TravelClass.SLEEPER);
+        }
+
+        mode.tearWrite = true; // half a record reaches the file, then the write fails
+        assertThrows(JournalFailedException.class,
+                () -> service.bookTicket("Torn", 40, "12951", 700, TravelClass.SLEEPER));
+        mode.tearWrite = false;
+        for (int i = 0; i < 3; i++) {
+            int age = 50 + i;
+            assertThrows(IllegalStateException.class,
+                    () -> service.bookTicket("After Failure", age, "12951", 700, TravelClass.SLEEPER));
+        }
+        journal.close();
+
+        ReservationService restarted = recover();
+        assertEquals(TICKETS, restarted.getTicketCount());
+        Ticket ticket = restarted.bookTicket("After Restart", 45, "12951", 800, TravelClass.SLEEPER);
+        journal.close();
+
+        ReservationService again = recover();
+        assertEquals(TICKETS + 1, again.getTicketCount());
+        assertNotNull(again.findTicket(ticket.getTicketNumber()));
+        journal.close();
+    }
+
+    private void bookTickets(int count) throws IOException {
+        ReservationService service = recover();
+        for (int i = 0; i < count; i++) {
+            service.bookTicket("Passenger " + i, 20 + i, "12951", 500 + i, TravelClass.SLEEPER);
+        }
+        journal.close();
+    }
+
+    private ReservationService recover() throws IOException {
+        journal = BookingJournal.open(directory, 0);
+        ReservationService service = new ReservationService();
+        service.attachJournal(journal);
+        return service;
+    }
+
+    private Path lastSegment() throws IOException {
+        Path last = null;
+        try (DirectoryStream<Path> segments = Files.newDirectoryStream(directory, "journal-*.log")) {
+            for (Path segment : segments) {
+                if (last == null || segmentStart(segment) > segmentStart(last)) {
+                    last = segment;
+                }
+            }
+        }
+        assertNotNull(last, "no journal segment written");
+        return last;
+    }
+
+    /**
+     * A segment file whose writes or fsyncs can be made to fail on demand
+     */
+    private static final class FailingChannel extends FileChannel {
+        static final class Mode {
+            volatile boolean failForce;
+            volatile boolean tearWrite;
+        }
+
+        private final FileChannel file;
+        private final Mode mode;
+
+        FailingChannel(Path path, Mode mode) throws IOException {
+            this.file = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+            this.mode = mode;
+        }
+
+        @Override
+        public int write(ByteBuffer source) throws IOException {
+            if (mode.tearWrite) {
+                ByteBuffer half = source.duplicate();
+                half.limit(source.position() + source.remaining() / 2);
+                file.write(half);
+                throw new IOException("Simulated write failure");
+            }
+            return file.write(source);
+        }
+
+        @Override
+        public void force(boolean metaData) throws IOException {
+            file.force(metaData);
+            if (mode.failForce) {
+                throw new IOException("Simulated fsync failure");
+            }
+        }
+
+        @Override
+        public int read(ByteBuffer destination) throws IOException {
+            return file.read(destination);
+        }
+
+        @Override
+        public long read(ByteBuffer[] destinations, int offset, int length) throws IOException {
+            return file.read(destinations, offset, length);
+        }
+
+        @Override
+        public long write(ByteBuffer[] sources, int offset, int length) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long position() throws IOException {
+            return file.position();
+        }
+
+        @Override
+        public FileChannel position(long newPosition) throws IOException {
+            file.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return file.size();
+        }
+
+        @Override
+        public FileChannel truncate(long size) throws IOException {
+            file.truncate(size);
+            return this;
+        }
+
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            return file.transferTo(position, count, target);
+        }
+
+        @Override
+        public long transferFrom(ReadableByteChannel source, long position, long count) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int read(ByteBuffer destination, long position) throws IOException {
+            return file.read(destination, position);
+        }
+
+        @Override
+        public int write(ByteBuffer source, long position) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public MappedByteBuffer map(MapMode mapMode, long position, long size) throws IOException {
+            return file.map(mapMode, position, size);
+        }
+
+        @Override
+        public FileLock lock(long position, long size, boolean shared) throws IOException {
+            return file.lock(position, size, shared);
+        }
+
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+            return file.tryLock(position, size, shared);
+        }
+
+        @Override
+        protected void implCloseChannel() throws IOException {
+            file.close();
+        }
+    }
+
+    private static long segmentStart(Path segment) {
+        String name = segment.getFileName().toString(); // journal-<first sequence>.log
+        return Long.parseLong(name.substring("journal-".length(), name.length() - ".log".length()));
+    }
+}
@@ -0,0 +1,132 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+
+/**
+ * ConcurrentLongMap against a HashMap model, and lock-free readers running while writers leave removal
+ * markers behind and rebuild segments under them
+ */
+class ConcurrentLongMapTest {
+
+    @Test
+    void removedKeyCanBeStoredAgain() {
+        ConcurrentLongMap<String> map = new ConcurrentLongMap<>();
+        assertNull(map.putIfAbsent(1000, "first"));
+        assertEquals("first", map.putIfAbsent(1000, "second"));
+        assertEquals("first", map.remove(1000));
+        assertNull(map.get(1000));
+        assertNull(map.remove(1000));
+
+        assertNull(map.putIfAbsent(1000, "again")); // reuses the removal marker
+        assertEquals("again", map.get(1000));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    void conditionalRemoveAndComputeIfPresent() {
+        ConcurrentLongMap<String> map = new ConcurrentLongMap<>();
+        map.putIfAbsent(7, "seven");
+        assertNull(map.remove(7, "other"));
+        String upper = map.computeIfPresent(7, String::toUpperCase);
+        assertEquals("SEVEN", upper);
+        assertNull(map.computeIfPresent(8, String::toUpperCase));
+        assertThrows(IllegalArgumentException.class, () -> map.computeIfPresent(7, value -> null));
+        assertNull(map.remove(7, new String("SEVEN")), "the expected value is compared by identity");
+        assertSame(upper, map.remove(7, upper));
+        assertTrue(map.isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> map.putIfAbsent(Long.MIN_VALUE, "reserved"));
+    }
+
+    @Test
+    void randomOperationsMatchAHashMap() {
+        Random random = new Random(42);
+        ConcurrentLongMap<Long> map = new ConcurrentLongMap<>();
+        Map<Long, Long> model = new HashMap<>();
+        for (int i = 0; i < 300_000; i++) {
+            long key = 1000 + random.nextInt(5_000); // few keys: markers pile up and force rebuilds
+            switch (random.nextInt(4)) {
+                case 0:
+                case 1:
+                    Long value = random.nextLong();
+                    assertEquals(model.putIfAbsent(key, value), map.putIfAbsent(key, value));
+                    break;
+                case 2:
+                    assertEquals(model.remove(key), map.remove(key));
+                    break;
+                default:
+                    Long updated = model.computeIfPresent(key, (k, v) -> v + 1);
+                    assertEquals(updated, map.computeIfPresent(key, v -> v + 1));
+            }
+        }
+        assertEquals(model.size(), map.size());
+        for (long key = 1000; key < 6000; key++) {
+            assertEquals(model.get(key), map.get(key), "key " + key);
+        }
+        List<Long> values = new ArrayList<>();
+        map.forEachValue(values::add);
+        assertEquals(model.size(), values.size());
+        assertTrue(values.containsAll(model.values()));
+    }
+
+    @Test
+    void readersAlwaysSeeStableKeysWhileSegmentsAreRebuilt() throws InterruptedException {
+        ConcurrentLongMap<Long> map = new ConcurrentLongMap<>();
+        int stable = 10_000;
+        for (long key = 0; key < stable; key++) {
+            map.putIfAbsent(key, key); // never removed: must be found by every read
+        }
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<String> failure = new AtomicReference<>();
+
+        List<Thread> readers = new ArrayList<>();
+        for (int r = 0; r < 3; r++) {
+            long seed = r;
+            readers.add(new Thread(() -> {
+                Random random = new Random(seed);
+                while (running.get() && failure.get() == null) {
+                    long key = random.nextInt(stable);
+                    Long value = map.get(key);
+                    if (value == null || value != key) {
+                        failure.compareAndSet(null, "stable key " + key + " read as " + value);
+                    }
+                    long churned = stable + random.nextInt(50_000);
+                    Long other = map.get(churned); // present or not, never someone else's value
+                    if (other != null && other != churned) {
+                        failure.compareAndSet(null, "key " + churned + " read as " + other);
+                    }
+                }
+            }));
+        }
+        readers.forEach(Thread::start);
+
+        // Churn keys in and out: the markers they leave trigger rebuilds in every segment
+        Random random = new Random(99);
+        for (int i = 0; i < 2_000_000 && failure.get() == null; i++) {
+            long key = stable + random.nextInt(50_000);
+            if (random.nextBoolean()) {
+                map.putIfAbsent(key, key);
+            } else {
+                map.remove(key);
+            }
+        }
+        running.set(false);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        assertNull(failure.get());
+        for (long key = 0; key < stable; key++) {
+            assertEquals(key, map.get(key));
+        }
+    }
+}
@@ -0,0 +1,111 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The standard tariff must price exactly like the SleeperTicket/ACTicket rules it replaced -
+ * bit for bit, for every class, AC tier and age band, one ticket at a time or in a batch reprice
+ */
+class FareEngineTest {
+    private static final String[] TIERS = {"SL", "1A", "2A", "3A", "XX"}; // XX: unknown tier, priced as 3A
+    private static final int[] AGES = {1, 5, 11, 12, 30, 59, 60, 75, 110}; // child, adult and senior edges
+    private static final double[] BASE_FARES = {0, 1, 99.99, 350, 1234.56, 4999.5};
+
+    @AfterEach
+    void restoreStandardTariff() {
+        FareEngine.setDefaultTariff(FareEngine.Tariff.standard());
+    }
+
+    @Test
+    void everyClassTierAndAgeBandMatchesTheOriginalRules() {
+        for (String tier : TIERS) {
+            for (int age : AGES) {
+                for (double baseFare : BASE_FARES) {
+                    Ticket ticket = ticket(1, tier, age, baseFare);
+                    assertEquals(baselineFare(tier, age, baseFare), ticket.calculateFare(),
+                            tier + ", age " + age + ", base " + baseFare);
+                }
+            }
+        }
+    }
+
+    @Test
+    void batchRepriceMatchesTheOriginalRules() {
+        List<Ticket> tickets = new ArrayList<>();
+        double expectedTotal = 0;
+        long ticketNumber = 1000;
+        for (String tier : TIERS) {
+            for (int age : AGES) {
+                for (double baseFare : BASE_FARES) {
+                    tickets.add(ticket(ticketNumber++, tier, age, baseFare));
+                    expectedTotal += baselineFare(tier, age, baseFare);
+                }
+            }
+        }
+
+        assertEquals(expectedTotal, FareEngine.getDefault().reprice(tickets));
+        int i = 0;
+        for (String tier : TIERS) {
+            for (int age : AGES) {
+                for (double baseFare : BASE_FARES) {
+                    assertEquals(baselineFare(tier, age, baseFare), tickets.get(i++).getFare(),
+                            tier + ", age " + age + ", base " + baseFare);
+                }
+            }
+        }
+    }
+
+    @Test
+    void repriceFollowsATariffChangeForEveryClass() {
+        Ticket sleeper = ticket(1, "SL", 30, 400);
+        Ticket secondAc = ticket(2, "2A", 30, 400);
+        FareEngine.setDefaultTariff(FareEngine.getDefault().getTariff()
+                .withClassCharge(TravelClass.SLEEPER, FareEngine.Quota.GENERAL, 80)
+                .withClassCharge(TravelClass.SECOND_AC, FareEngine.Quota.GENERAL, 450));
+
+        assertEquals(480.0 + 850.0, FareEngine.getDefault().reprice(List.of(sleeper, secondAc)));
+        assertEquals(480.0, sleeper.getFare());
+        assertEquals(850.0, secondAc.getFare()); // from the new tariff, not the charge it was sold with
+    }
+
+    private static Ticket ticket(long ticketNumber, String tier, int age, double baseFare) {
+        return tier.equals("SL") ? new SleeperTicket(ticketNumber, "Passenger", age, "12951", baseFare)
+                : new ACTicket(ticketNumber, "Passenger", age, "12951", baseFare, tier);
+    }
+
+    /**
+     * The fare rules as SleeperTicket and ACTicket wrote them before the fare engine
+     */
+    private static double baselineFare(String tier, int age, double baseFare) {
+        if (tier.equals("SL")) {
+            double totalFare = baseFare + 50.0;
+            if (age < 12) {
+                totalFare = totalFare * 0.5;
+            } else if (age >= 60) {
+                totalFare = totalFare * 0.6;
+            }
+            return totalFare;
+        }
+        double acCharge;
+        switch (tier) {
+            case "1A":
+                acCharge = 500.0;
+                break;
+            case "2A":
+                acCharge = 300.0;
+                break;
+            default:
+                acCharge = 200.0;
+        }
+        double totalFare = baseFare + acCharge;
+        if (age < 12) {
+            totalFare = totalFare * 0.5;
+        } else if (age >= 60) {
+            totalFare = totalFare * 0.7;
+        }
+        return totalFare;
+    }
+}
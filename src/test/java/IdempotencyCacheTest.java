@@ -0,0 +1,79 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Retries with the same key and request get the first outcome back; a different request under a
+ * reused key is rejected - also when its fields share a 32-bit hash with the first one
+ */
+class IdempotencyCacheTest {
+
+    @Test
+    void retryReplaysTheFirstOutcome() {
+        IdempotencyCache<String> cache = new IdempotencyCache<>(64, 60_000);
+        AtomicInteger runs = new AtomicInteger();
+        byte[] request = IdempotencyCache.fingerprint("BOOK", "Asha", 30);
+        assertEquals("TKT1000", cache.execute("key-1", request, () -> "TKT" + (1000 + runs.getAndIncrement())));
+        assertEquals("TKT1000", cache.execute("key-1", IdempotencyCache.fingerprint("BOOK", "Asha", 30),
+                () -> "TKT" + (1000 + runs.getAndIncrement())));
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    void differentRequestUnderAReusedKeyIsRejected() {
+        IdempotencyCache<String> cache = new IdempotencyCache<>(64, 60_000);
+        cache.execute("key-1", IdempotencyCache.fingerprint("BOOK", "Asha", 30), () -> "TKT1000");
+        assertThrows(IllegalArgumentException.class,
+                () -> cache.execute("key-1", IdempotencyCache.fingerprint("BOOK", "Asha", 31), () -> "TKT1001"));
+    }
+
+    @Test
+    void failedRequestCanBeRetried() {
+        IdempotencyCache<String> cache = new IdempotencyCache<>(64, 60_000);
+        byte[] request = IdempotencyCache.fingerprint("CANCEL", "TKT1000");
+        assertThrows(IllegalStateException.class, () -> cache.execute("key-1", request, () -> {
+            throw new IllegalStateException("journal unavailable");
+        }));
+        assertEquals("done", cache.execute("key-1", request, () -> "done"));
+    }
+
+    @Test
+    void fingerprintSeparatesFieldsAndNulls() {
+        assertArrayEquals(IdempotencyCache.fingerprint("BOOK", "Asha", 30),
+                IdempotencyCache.fingerprint("BOOK", "Asha", 30));
+        assertFalse(Arrays.equals(IdempotencyCache.fingerprint("a", "bc"), IdempotencyCache.fingerprint("ab", "c")));
+        assertFalse(Arrays.equals(IdempotencyCache.fingerprint((Object) null),
+                IdempotencyCache.fingerprint("null")));
+        assertEquals(16, IdempotencyCache.fingerprint("BOOK").length);
+    }
+
+    @Test
+    void bookingReplayAndMismatchThroughTheService() {
+        ReservationService service = new ReservationService();
+        Ticket first = service.bookTicket("Aa", 30, "12951", 500, TravelClass.SLEEPER, "booking-1");
+        // A retry with blanks around the name is the same request
+        assertSame(first, service.bookTicket(" Aa ", 30, "12951", 500, TravelClass.SLEEPER, "booking-1"));
+        assertEquals(1, service.getTicketCount());
+
+        // "Aa" and "BB" have the same String.hashCode - the old 32-bit fingerprint mistook this for a retry
+        assertEquals("Aa".hashCode(), "BB".hashCode());
+        assertThrows(IllegalArgumentException.class,
+                () -> service.bookTicket("BB", 30, "12951", 500, TravelClass.SLEEPER, "booking-1"));
+        assertEquals(1, service.getTicketCount());
+    }
+
+    @Test
+    void cancellationReplayThroughTheService() {
+        ReservationService service = new ReservationService();
+        Ticket ticket = service.bookTicket("Asha", 30, "12951", 500, TravelClass.SLEEPER);
+        Ticket cancelled = service.cancelTicket(ticket.getTicketId(), "cancel-1");
+        assertSame(cancelled, service.cancelTicket(ticket.getTicketId().toLowerCase(), "cancel-1"));
+        assertThrows(IllegalArgumentException.class, () -> service.cancelTicket("TKT999999", "cancel-1"));
+    }
+}
@@ -0,0 +1,73 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Expired journey dates are archived to snapshot files; a date whose file could not be written
+ * keeps its tickets and is written on the next expiry run
+ */
+class JourneyArchiveTest {
+    private static final LocalDate JOURNEY = LocalDate.of(2026, 10, 18);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void failedArchiveIsRetriedOnTheNextRun() throws Exception {
+        MutableClock clock = new MutableClock(Instant.parse("2026-10-18T06:00:00Z"));
+        ReservationService service = new ReservationService();
+        service.setClock(clock);
+        Path archive = directory.resolve("archive"); // not created yet, so the first write fails
+        service.setArchiveDirectory(archive);
+        Ticket ticket = service.bookTicket("Asha Verma", 30, "100", JOURNEY, 500, TravelClass.SLEEPER);
+
+        clock.now = Instant.parse("2026-10-25T00:00:00Z");
+        assertEquals(1, service.expireJourneys());
+        assertNull(service.findTicket(ticket.getTicketId()));
+        Path file = archive.resolve("journey-" + JOURNEY + ".snap");
+        assertFalse(Files.exists(file));
+
+        Files.createDirectories(archive);
+        assertEquals(0, service.expireJourneys());
+        assertTrue(Files.exists(file));
+        try (TicketSnapshot snapshot = TicketSnapshot.open(file)) {
+            Ticket archived = snapshot.find(ticket.getTicketId());
+            assertEquals("Asha Verma", archived.getPassengerName());
+            assertEquals(JOURNEY, archived.getJourneyDate());
+        }
+        assertEquals(1, service.getMetrics().getExpiredJourneys());
+    }
+
+    private static final class MutableClock extends Clock {
+        private volatile Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneId.of("Asia/Kolkata");
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
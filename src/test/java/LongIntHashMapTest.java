@@ -0,0 +1,78 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * LongIntHashMap against a HashMap model - deletion shifts entries back instead of leaving tombstones,
+ * so every key must stay reachable however removes and re-inserts interleave
+ */
+class LongIntHashMapTest {
+
+    @Test
+    void removedKeyCanBeInsertedAgain() {
+        LongIntHashMap map = new LongIntHashMap(4);
+        assertEquals(LongIntHashMap.NO_VALUE, map.put(1000, 1));
+        assertEquals(1, map.remove(1000));
+        assertEquals(LongIntHashMap.NO_VALUE, map.get(1000));
+        assertEquals(LongIntHashMap.NO_VALUE, map.remove(1000));
+
+        assertEquals(LongIntHashMap.NO_VALUE, map.put(1000, 2));
+        assertEquals(2, map.get(1000));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    void removingFromTheMiddleOfAProbeChainKeepsTheRestReachable() {
+        LongIntHashMap map = new LongIntHashMap(64);
+        // Many keys in a small table: long probe chains that wrap around the end of the array
+        for (int key = 0; key < 38; key++) {
+            map.put(key, key * 10);
+        }
+        for (int key = 0; key < 38; key += 3) {
+            assertEquals(key * 10, map.remove(key));
+        }
+        for (int key = 0; key < 38; key++) {
+            assertEquals(key % 3 == 0 ? LongIntHashMap.NO_VALUE : key * 10, map.get(key), "key " + key);
+        }
+        for (int key = 0; key < 38; key += 3) {
+            assertEquals(LongIntHashMap.NO_VALUE, map.put(key, key * 20));
+        }
+        for (int key = 0; key < 38; key++) {
+            assertEquals(key % 3 == 0 ? key * 20 : key * 10, map.get(key), "key " + key);
+        }
+        assertEquals(38, map.size());
+    }
+
+    @Test
+    void randomPutsAndRemovesMatchAHashMap() {
+        Random random = new Random(42);
+        LongIntHashMap map = new LongIntHashMap(16);
+        Map<Long, Integer> model = new HashMap<>();
+        for (int i = 0; i < 200_000; i++) {
+            long key = random.nextInt(2_000) - 1_000L; // few keys, so the same ones come and go
+            if (random.nextInt(3) == 0) {
+                Integer expected = model.remove(key);
+                assertEquals(expected == null ? LongIntHashMap.NO_VALUE : expected, map.remove(key));
+            } else {
+                int value = random.nextInt(Integer.MAX_VALUE);
+                Integer expected = model.put(key, value);
+                assertEquals(expected == null ? LongIntHashMap.NO_VALUE : expected, map.put(key, value));
+            }
+        }
+        assertEquals(model.size(), map.size());
+        for (long key = -1_000; key < 1_000; key++) {
+            Integer expected = model.get(key);
+            assertEquals(expected == null ? LongIntHashMap.NO_VALUE : expected, map.get(key), "key " + key);
+        }
+    }
+
+    @Test
+    void reservedKeyIsRejected() {
+        LongIntHashMap map = new LongIntHashMap(4);
+        assertThrows(IllegalArgumentException.class, () -> map.put(Long.MIN_VALUE, 1));
+    }
+}
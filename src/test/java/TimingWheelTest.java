@@ -0,0 +1,90 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * TimingWheel hands every item back exactly once, at the first advance that reaches its deadline -
+ * including items that cascade down from coarser levels
+ */
+class TimingWheelTest {
+
+    @Test
+    void itemsFallDueAtTheirDeadlineTickByTick() {
+        // 4 buckets of 10 ms: deadlines up to 50 s need several coarser levels
+        TimingWheel<Long> wheel = new TimingWheel<>(10, 4, 0);
+        List<Long> deadlines = new ArrayList<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 500; i++) {
+            long deadline = 1 + random.nextInt(50_000);
+            deadlines.add(deadline);
+            wheel.schedule(deadline, deadline);
+        }
+        assertEquals(deadlines.size(), wheel.size());
+
+        int due = 0;
+        for (long now = 1; now <= 50_000; now++) {
+            for (long deadline : wheel.advance(now)) {
+                assertEquals(now, deadline, "returned too early or too late");
+                due++;
+            }
+        }
+        assertEquals(deadlines.size(), due);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void largeJumpsReturnEverythingDueAndNothingElse() {
+        TimingWheel<Integer> wheel = new TimingWheel<>(1, 8, 1_000);
+        Random random = new Random(11);
+        Map<Integer, Long> deadlines = new HashMap<>();
+        for (int item = 0; item < 2_000; item++) {
+            long deadline = 1_000 + random.nextInt(1_000_000);
+            deadlines.put(item, deadline);
+            wheel.schedule(item, deadline);
+        }
+
+        long previous = 1_000;
+        long now = 1_000;
+        int due = 0;
+        while (now < 1_001_000) {
+            now += 1 + random.nextInt(50_000);
+            for (int item : wheel.advance(now)) {
+                long deadline = deadlines.remove(item);
+                assertTrue(deadline > previous && deadline <= now,
+                        "item due at " + deadline + " returned by the advance to " + now);
+                due++;
+            }
+            previous = now;
+        }
+        assertEquals(2_000, due);
+        assertTrue(deadlines.isEmpty());
+    }
+
+    @Test
+    void itemsScheduledLaterCascadeFromWhereTheClockIs() {
+        TimingWheel<String> wheel = new TimingWheel<>(10, 4, 0);
+        wheel.advance(12_345);
+        wheel.schedule("near", 12_350);
+        wheel.schedule("far", 12_345 + 40 * 4 * 4 + 7); // beyond the second level
+        assertEquals(List.of(), wheel.advance(12_349));
+        assertEquals(List.of("near"), wheel.advance(12_350));
+        assertEquals(List.of(), wheel.advance(12_345 + 40 * 4 * 4 + 6));
+        assertEquals(List.of("far"), wheel.advance(12_345 + 40 * 4 * 4 + 7));
+    }
+
+    @Test
+    void pastDeadlinesAreDueOnTheNextAdvanceAndTheClockNeverGoesBack() {
+        TimingWheel<String> wheel = new TimingWheel<>(10, 4, 1_000);
+        wheel.schedule("late", 500);
+        wheel.schedule("later", 1_200);
+        assertEquals(List.of("late"), wheel.advance(900)); // earlier time: only what was already due
+        assertEquals(List.of(), wheel.advance(1_199));
+        assertEquals(List.of("later"), wheel.advance(1_200));
+    }
+}
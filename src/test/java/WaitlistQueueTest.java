@@ -0,0 +1,129 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * WaitlistQueue against a plain list: the Fenwick tree must give the right head, positions and
+ * RAC/WL status after removals from the middle and after the queue grows or renumbers past 16 entries
+ */
+class WaitlistQueueTest {
+
+    @Test
+    void passengersLeaveInBookingOrder() {
+        WaitlistQueue queue = new WaitlistQueue(2, 100);
+        List<Ticket> tickets = tickets(1000, 40); // more than the initial 16 sequence numbers
+        for (int i = 0; i < tickets.size(); i++) {
+            BookingStatus status = queue.add(tickets.get(i));
+            assertEquals(i < 2 ? BookingStatus.Type.RAC : BookingStatus.Type.WAITLISTED, status.getType());
+            assertEquals(i < 2 ? i + 1 : i - 1, status.getPosition());
+        }
+        for (Ticket ticket : tickets) {
+            assertSame(ticket, queue.poll());
+        }
+        assertNull(queue.poll());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    void removalFromTheMiddleMovesEveryoneBehindUp() {
+        WaitlistQueue queue = new WaitlistQueue(3, 100);
+        List<Ticket> tickets = tickets(1000, 10);
+        tickets.forEach(queue::add);
+
+        assertTrue(queue.remove(1004));
+        assertFalse(queue.remove(1004));
+        assertTrue(queue.remove(1000)); // the head
+        assertTrue(queue.remove(1009)); // the tail
+
+        assertEquals(0, queue.positionOf(1004));
+        assertNull(queue.statusOf(1004));
+        int[] expected = {1001, 1002, 1003, 1005, 1006, 1007, 1008};
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(i + 1, queue.positionOf(expected[i]));
+        }
+        assertEquals(BookingStatus.Type.RAC, queue.statusOf(1003).getType());
+        assertEquals(BookingStatus.Type.WAITLISTED, queue.statusOf(1005).getType());
+        assertEquals(1, queue.statusOf(1005).getPosition());
+        assertSame(tickets.get(1), queue.poll());
+    }
+
+    @Test
+    void randomOperationsMatchAListAcrossGrowthAndRenumbering() {
+        Random random = new Random(42);
+        WaitlistQueue queue = new WaitlistQueue(4, Integer.MAX_VALUE);
+        List<Ticket> model = new ArrayList<>();
+        long nextNumber = 1000;
+        for (int i = 0; i < 50_000; i++) {
+            int operation = random.nextInt(10);
+            if (operation < 5 || model.isEmpty()) {
+                Ticket ticket = ticket(nextNumber++);
+                queue.add(ticket);
+                model.add(ticket);
+            } else if (operation < 7) {
+                assertSame(model.remove(0), queue.poll());
+            } else {
+                Ticket ticket = model.remove(random.nextInt(model.size()));
+                assertTrue(queue.remove(ticket.getTicketNumber()));
+            }
+            assertEquals(model.size(), queue.size());
+            if (i % 97 == 0) { // full check now and then - positions of everyone still waiting
+                for (int position = 1; position <= model.size(); position++) {
+                    assertEquals(position, queue.positionOf(model.get(position - 1).getTicketNumber()));
+                }
+            }
+        }
+        for (Ticket ticket : model) {
+            assertSame(ticket, queue.poll());
+        }
+    }
+
+    @Test
+    void renumberingKeepsOrderWhenMostSequenceNumbersAreUsedUp() {
+        WaitlistQueue queue = new WaitlistQueue(0, 100);
+        List<Ticket> tickets = tickets(1000, 16);
+        tickets.forEach(queue::add);
+        for (int i = 0; i < 12; i++) {
+            queue.poll(); // 4 left, numbers 12-15 - the next add renumbers them from 0
+        }
+        Ticket late = ticket(2000);
+        queue.add(late);
+        for (int i = 12; i < 16; i++) {
+            assertEquals(i - 11, queue.positionOf(tickets.get(i).getTicketNumber()));
+        }
+        assertEquals(5, queue.positionOf(2000));
+        assertEquals(BookingStatus.Type.WAITLISTED, queue.statusOf(2000).getType());
+        assertSame(tickets.get(12), queue.poll());
+    }
+
+    @Test
+    void limitAndDuplicatesAreRejected() {
+        WaitlistQueue queue = new WaitlistQueue(1, 2);
+        queue.add(ticket(1));
+        assertThrows(IllegalStateException.class, () -> queue.addUnbounded(ticket(1)));
+        queue.add(ticket(2));
+        assertTrue(queue.isFull());
+        assertThrows(IllegalStateException.class, () -> queue.add(ticket(3)));
+        queue.addUnbounded(ticket(3)); // restoring saved tickets may go past the limit
+        assertEquals(3, queue.positionOf(3));
+    }
+
+    private static List<Ticket> tickets(long firstNumber, int count) {
+        List<Ticket> tickets = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            tickets.add(ticket(firstNumber + i));
+        }
+        return tickets;
+    }
+
+    private static Ticket ticket(long number) {
+        return new SleeperTicket(number, "Passenger " + number, 30, "12951", 500);
+    }
+}